@@ -0,0 +1,106 @@
+/**
+ * Copyright (c) 2017-2018, FinancialForce.com, inc
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ *   are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ *      this list of conditions and the following disclaimer in the documentation
+ *      and/or other materials provided with the distribution.
+ * - Neither the name of the FinancialForce.com, inc nor the names of its contributors
+ *      may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ *  OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL
+ *  THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ *  EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ *  OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY
+ *  OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ **/
+
+package com.financialforce.orizuru.benchmark;
+
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaBuilder;
+import org.apache.avro.generic.GenericContainer;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.generic.GenericRecordBuilder;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.financialforce.orizuru.AbstractPublisher;
+import com.financialforce.orizuru.message.Context;
+import com.financialforce.orizuru.message.Message;
+
+/**
+ * The messages shared by the benchmarks, built once for each combination of shape and size.
+ */
+@State(Scope.Benchmark)
+public class BenchmarkState {
+
+	static final String QUEUE_NAME = "benchmark";
+
+	@Param
+	public PayloadShape shape;
+
+	@Param
+	public PayloadSize size;
+
+	/**
+	 * The decoded message.
+	 */
+	public GenericRecord record;
+
+	/**
+	 * The message encoded on its own.
+	 */
+	public Message message;
+
+	/**
+	 * A context as a consumer would receive it.
+	 */
+	public Context context;
+
+	/**
+	 * The transport of the context and message, as received by a consumer.
+	 */
+	public byte[] transport;
+
+	/**
+	 * A publisher sending messages in the schema transport format.
+	 */
+	public AbstractPublisher<GenericContainer> publisher;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+
+		record = shape.create(size.getBytes());
+
+		message = new Message();
+		message.encode(record);
+
+		Schema contextSchema = SchemaBuilder.record("Context").namespace("com.financialforce.orizuru.benchmark").fields()
+				.requiredString("tenantId")
+				.requiredString("userId")
+				.endRecord();
+
+		context = new Context();
+		context.encode(new GenericRecordBuilder(contextSchema).set("tenantId", "00D000000000001").set("userId", "005000000000001").build());
+
+		publisher = new AbstractPublisher<GenericContainer>(QUEUE_NAME) {
+		};
+
+		transport = publisher.publish(context, record);
+
+	}
+
+}
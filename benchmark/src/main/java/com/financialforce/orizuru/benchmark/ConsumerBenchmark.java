@@ -0,0 +1,85 @@
+/**
+ * Copyright (c) 2017-2018, FinancialForce.com, inc
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ *   are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ *      this list of conditions and the following disclaimer in the documentation
+ *      and/or other materials provided with the distribution.
+ * - Neither the name of the FinancialForce.com, inc nor the names of its contributors
+ *      may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ *  OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL
+ *  THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ *  EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ *  OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY
+ *  OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ **/
+
+package com.financialforce.orizuru.benchmark;
+
+import org.apache.avro.generic.GenericContainer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.financialforce.orizuru.AbstractConsumer;
+import com.financialforce.orizuru.exception.consumer.handler.HandleMessageException;
+import com.financialforce.orizuru.interfaces.IConsumer;
+import com.financialforce.orizuru.interfaces.IPublisher;
+import com.financialforce.orizuru.message.Context;
+
+/**
+ * Benchmarks consuming a transport, with and without publishing the outgoing message.
+ */
+@State(Scope.Benchmark)
+public class ConsumerBenchmark {
+
+	private IConsumer consumer;
+
+	private IConsumer publishingConsumer;
+
+	@Setup(Level.Trial)
+	public void setUp(BenchmarkState state) {
+		consumer = new PassThroughConsumer(null);
+		publishingConsumer = new PassThroughConsumer(state.publisher);
+	}
+
+	@Benchmark
+	public byte[] consume(BenchmarkState state) throws Exception {
+		return consumer.consume(state.transport);
+	}
+
+	@Benchmark
+	public byte[] consumeAndPublish(BenchmarkState state) throws Exception {
+		return publishingConsumer.consume(state.transport);
+	}
+
+	/**
+	 * Returns each incoming message as the outgoing message.
+	 */
+	private static class PassThroughConsumer extends AbstractConsumer<GenericContainer, GenericContainer> {
+
+		PassThroughConsumer(IPublisher<GenericContainer> publisher) {
+			super(BenchmarkState.QUEUE_NAME);
+			this.publisher = publisher;
+		}
+
+		@Override
+		public GenericContainer handleMessage(Context context, GenericContainer input) throws HandleMessageException {
+			return input;
+		}
+
+	}
+
+}
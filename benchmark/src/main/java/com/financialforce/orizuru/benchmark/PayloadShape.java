@@ -0,0 +1,197 @@
+/**
+ * Copyright (c) 2017-2018, FinancialForce.com, inc
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ *   are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ *      this list of conditions and the following disclaimer in the documentation
+ *      and/or other materials provided with the distribution.
+ * - Neither the name of the FinancialForce.com, inc nor the names of its contributors
+ *      may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ *  OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL
+ *  THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ *  EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ *  OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY
+ *  OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ **/
+
+package com.financialforce.orizuru.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaBuilder;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.generic.GenericRecordBuilder;
+
+/**
+ * The shapes of the messages used by the benchmarks.
+ * <p>
+ * Each shape builds a message close to a requested encoded size, so that the cost of a shape can be compared at the
+ * same payload size.
+ */
+public enum PayloadShape {
+
+	/**
+	 * A single record of primitive fields, sized by the length of its description.
+	 */
+	FLAT {
+
+		@Override
+		public GenericRecord create(int size) {
+			return new GenericRecordBuilder(schema)
+					.set("id", 1L)
+					.set("name", "Account")
+					.set("amount", 100.25)
+					.set("description", text(Math.max(0, size - 24)))
+					.build();
+		}
+
+		@Override
+		protected Schema createSchema() {
+			return SchemaBuilder.record("Flat").namespace(NAMESPACE).fields()
+					.requiredLong("id")
+					.requiredString("name")
+					.requiredDouble("amount")
+					.requiredString("description")
+					.endRecord();
+		}
+
+	},
+
+	/**
+	 * Records nested to a fixed depth, sized by the length of the innermost value.
+	 */
+	NESTED {
+
+		@Override
+		public GenericRecord create(int size) {
+			return create(schema, 0, size);
+		}
+
+		@Override
+		protected Schema createSchema() {
+			return createSchema(0);
+		}
+
+		private GenericRecord create(Schema recordSchema, int depth, int size) {
+
+			GenericRecordBuilder builder = new GenericRecordBuilder(recordSchema);
+			builder.set("name", "Level" + depth);
+
+			if (depth < NESTED_DEPTH) {
+				builder.set("child", create(recordSchema.getField("child").schema(), depth + 1, size));
+			} else {
+				builder.set("value", text(Math.max(0, size - NESTED_DEPTH * 8)));
+			}
+
+			return builder.build();
+
+		}
+
+		private Schema createSchema(int depth) {
+
+			SchemaBuilder.FieldAssembler<Schema> fields = SchemaBuilder.record("Nested" + depth).namespace(NAMESPACE).fields()
+					.requiredString("name");
+
+			if (depth < NESTED_DEPTH) {
+				fields = fields.name("child").type(createSchema(depth + 1)).noDefault();
+			} else {
+				fields = fields.requiredString("value");
+			}
+
+			return fields.endRecord();
+
+		}
+
+	},
+
+	/**
+	 * A record holding an array of small records, sized by the number of elements.
+	 */
+	ARRAY {
+
+		@Override
+		public GenericRecord create(int size) {
+
+			Schema lineSchema = schema.getField("lines").schema().getElementType();
+
+			int count = Math.max(1, size / 32);
+			List<GenericRecord> lines = new ArrayList<>(count);
+			for (int i = 0; i < count; i++) {
+				lines.add(new GenericRecordBuilder(lineSchema)
+						.set("account", "ACC-" + i)
+						.set("amount", i * 1.5)
+						.set("memo", "Journal line")
+						.build());
+			}
+
+			return new GenericRecordBuilder(schema)
+					.set("lines", new GenericData.Array<>(schema.getField("lines").schema(), lines))
+					.build();
+
+		}
+
+		@Override
+		protected Schema createSchema() {
+
+			Schema lineSchema = SchemaBuilder.record("Line").namespace(NAMESPACE).fields()
+					.requiredString("account")
+					.requiredDouble("amount")
+					.requiredString("memo")
+					.endRecord();
+
+			return SchemaBuilder.record("Lines").namespace(NAMESPACE).fields()
+					.name("lines").type().array().items(lineSchema).noDefault()
+					.endRecord();
+
+		}
+
+	};
+
+	private static final String NAMESPACE = "com.financialforce.orizuru.benchmark";
+
+	private static final int NESTED_DEPTH = 8;
+
+	protected final Schema schema = createSchema();
+
+	/**
+	 * Creates a message of this shape.
+	 * 
+	 * @param size The approximate size of the encoded message in bytes.
+	 * @return The message.
+	 */
+	public abstract GenericRecord create(int size);
+
+	/**
+	 * @return the schema of the messages of this shape
+	 */
+	public Schema getSchema() {
+		return schema;
+	}
+
+	protected abstract Schema createSchema();
+
+	private static String text(int length) {
+
+		StringBuilder text = new StringBuilder(length);
+		for (int i = 0; i < length; i++) {
+			text.append((char) ('a' + i % 26));
+		}
+
+		return text.toString();
+
+	}
+
+}
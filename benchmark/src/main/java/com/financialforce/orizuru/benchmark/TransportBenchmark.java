@@ -0,0 +1,69 @@
+/**
+ * Copyright (c) 2017-2018, FinancialForce.com, inc
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ *   are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ *      this list of conditions and the following disclaimer in the documentation
+ *      and/or other materials provided with the distribution.
+ * - Neither the name of the FinancialForce.com, inc nor the names of its contributors
+ *      may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ *  OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL
+ *  THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ *  EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ *  OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY
+ *  OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ **/
+
+package com.financialforce.orizuru.benchmark;
+
+import java.nio.ByteBuffer;
+
+import org.apache.avro.io.BinaryDecoder;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.specific.SpecificDatumReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import com.financialforce.orizuru.codec.TransportCodec;
+import com.financialforce.orizuru.transport.Transport;
+
+/**
+ * Benchmarks reading the transport envelope with the transport codec and with the generated reader.
+ */
+public class TransportBenchmark {
+
+	@Benchmark
+	public Transport readWithCodec(BenchmarkState state) throws Exception {
+		return TransportCodec.read(ByteBuffer.wrap(state.transport));
+	}
+
+	@Benchmark
+	public Transport readWithGeneratedReader(BenchmarkState state, Reader reader) throws Exception {
+		reader.decoder = DecoderFactory.get().binaryDecoder(state.transport, reader.decoder);
+		return reader.reader.read(null, reader.decoder);
+	}
+
+	/**
+	 * A generated reader and decoder for each thread.
+	 */
+	@State(Scope.Thread)
+	public static class Reader {
+
+		private final SpecificDatumReader<Transport> reader = new SpecificDatumReader<>(Transport.class);
+
+		private BinaryDecoder decoder;
+
+	}
+
+}
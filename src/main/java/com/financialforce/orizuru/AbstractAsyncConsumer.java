@@ -0,0 +1,265 @@
+/**
+ * Copyright (c) 2017-2018, FinancialForce.com, inc
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ *   are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ *      this list of conditions and the following disclaimer in the documentation
+ *      and/or other materials provided with the distribution.
+ * - Neither the name of the FinancialForce.com, inc nor the names of its contributors
+ *      may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ *  OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL
+ *  THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ *  EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ *  OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY
+ *  OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ **/
+
+package com.financialforce.orizuru;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericContainer;
+
+import com.financialforce.orizuru.cache.DeduplicationCache;
+import com.financialforce.orizuru.codec.TransportFormat;
+import com.financialforce.orizuru.exception.OrizuruException;
+import com.financialforce.orizuru.exception.consumer.handler.HandleMessageException;
+import com.financialforce.orizuru.instrumentation.Stage;
+import com.financialforce.orizuru.interfaces.IAsyncConsumer;
+import com.financialforce.orizuru.interfaces.ISchemaRegistry;
+import com.financialforce.orizuru.message.Context;
+
+/**
+ * Handles a message containing a FinancialForce Orizuru Avro Transport schema without blocking the consuming thread.
+ * <p>
+ * The handler returns a future of the outgoing message, so a handler waiting on a slow downstream service does not
+ * hold on to a thread. Messages are decoded on the thread that calls {@link #consumeAsync(byte[])}, and the outgoing
+ * message is published on the thread that completes the future returned by the handler.
+ * <p>
+ * The synchronous {@link #consume(byte[])} methods are also available, and wait for the handler to complete.
+ */
+public abstract class AbstractAsyncConsumer<I extends GenericContainer, O extends GenericContainer> extends AbstractConsumer<I, O>
+		implements IAsyncConsumer {
+
+	public AbstractAsyncConsumer(String queueName) {
+		super(queueName);
+	}
+
+	public AbstractAsyncConsumer(String queueName, ISchemaRegistry schemaRegistry) {
+		super(queueName, schemaRegistry);
+	}
+
+	public AbstractAsyncConsumer(String queueName, ISchemaRegistry schemaRegistry, Schema readerSchema) {
+		super(queueName, schemaRegistry, readerSchema);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.financialforce.orizuru.interfaces.IAsyncConsumer#consumeAsync(byte[])
+	 */
+	@Override
+	public CompletableFuture<byte[]> consumeAsync(byte[] body) {
+
+		try {
+
+			ByteBuffer buffer = body == null ? null : ByteBuffer.wrap(body);
+			TransportFormat format = decodeTransportFormat(buffer);
+			Context peeked = peekIfRequired(buffer, format);
+
+			if (!accept(peeked, buffer)) {
+				return CompletableFuture.completedFuture(null);
+			}
+
+			// A duplicate message is not consumed again; the bytes published for it the first time are returned
+			Object key = deduplicationKey(peeked, buffer);
+			DeduplicationCache.Entry previous = key == null ? null : deduplicationCache.get(key);
+			if (previous != null) {
+				return CompletableFuture.completedFuture(previous.getOutgoingMessage());
+			}
+
+			Context context = peeked == null ? new Context() : peeked;
+			if (format == TransportFormat.BATCH) {
+				List<I> inputs = decodeBatch(context, buffer);
+				long startTime = System.nanoTime();
+				return publishWhenHandled(handle(() -> handleMessagesAsync(context, inputs)), startTime, inputs.size(),
+						outgoingMessages -> remember(key, publishBatch(context, inputs, outgoingMessages)));
+			}
+
+			I input = decode(context, peeked != null, buffer, format);
+			long startTime = System.nanoTime();
+			return publishWhenHandled(handle(() -> handleMessageAsync(context, input)), startTime, 1,
+					outgoingMessage -> remember(key, publish(context, outgoingMessage)));
+
+		} catch (OrizuruException | RuntimeException ex) {
+			// A filter or key extractor that throws fails the future like any other failure
+			return failed(ex);
+		}
+
+	}
+
+	/**
+	 * Handles a message asynchronously.
+	 * 
+	 * @param context The context of the message.
+	 * @param input The decoded message.
+	 * @return A future of the outgoing message.
+	 */
+	public abstract CompletableFuture<O> handleMessageAsync(Context context, I input);
+
+	/**
+	 * Handles a batch of messages sharing the same context asynchronously.
+	 * <p>
+	 * By default each message is passed to {@link #handleMessageAsync(Context, GenericContainer)}, and the returned
+	 * future completes once all of them have completed.
+	 * 
+	 * @param context The context shared by the messages.
+	 * @param inputs The decoded messages, in the order in which they were received.
+	 * @return A future of the outgoing messages, one for each incoming message and in the same order.
+	 */
+	public CompletableFuture<List<O>> handleMessagesAsync(Context context, List<I> inputs) {
+
+		List<CompletableFuture<O>> handledMessages = new ArrayList<>(inputs.size());
+		for (I input : inputs) {
+			handledMessages.add(handleMessageAsync(context, input));
+		}
+
+		return CompletableFuture.allOf(handledMessages.toArray(new CompletableFuture<?>[0])).thenApply(ignored -> {
+
+			List<O> outgoingMessages = new ArrayList<>(handledMessages.size());
+			for (CompletableFuture<O> handledMessage : handledMessages) {
+				outgoingMessages.add(handledMessage.join());
+			}
+
+			return outgoingMessages;
+
+		});
+
+	}
+
+	/**
+	 * Handles a message by waiting for {@link #handleMessageAsync(Context, GenericContainer)} to complete.
+	 */
+	@Override
+	public O handleMessage(Context context, I input) throws HandleMessageException {
+
+		try {
+			return handleMessageAsync(context, input).get();
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new HandleMessageException(ex);
+		} catch (ExecutionException ex) {
+			throw toHandleMessageException(ex.getCause());
+		} catch (Exception ex) {
+			throw toHandleMessageException(ex);
+		}
+
+	}
+
+	// private methods
+
+	/**
+	 * Records the published bytes of a message in the deduplication cache, if the message has a key.
+	 */
+	private byte[] remember(Object key, byte[] outgoingMessage) {
+
+		if (key != null) {
+			deduplicationCache.put(key, outgoingMessage);
+		}
+
+		return outgoingMessage;
+
+	}
+
+	/**
+	 * Calls a handler, turning an exception thrown by the handler itself into a failed future.
+	 */
+	private static <T> CompletableFuture<T> handle(Handler<T> handler) {
+
+		try {
+			CompletableFuture<T> handled = handler.handle();
+			return handled != null ? handled : failed(new NullPointerException("The handler returned a null future"));
+		} catch (Exception ex) {
+			return failed(ex);
+		}
+
+	}
+
+	/**
+	 * Publishes the result of a handler once it completes, reporting the time taken by the handler to the stage
+	 * listener if it is enabled.
+	 */
+	private <T> CompletableFuture<byte[]> publishWhenHandled(CompletableFuture<T> handled, long startTime, int size,
+			Publication<T> publication) {
+
+		CompletableFuture<byte[]> published = new CompletableFuture<>();
+
+		handled.whenComplete((handledMessage, failure) -> {
+
+			HandleMessageException handleFailure = failure == null ? null : toHandleMessageException(failure);
+
+			if (stageListener.isEnabled()) {
+				stageListener.stageCompleted(getQueueName(), Stage.HANDLE_MESSAGE, System.nanoTime() - startTime, size, handleFailure);
+			}
+
+			if (handleFailure != null) {
+				published.completeExceptionally(handleFailure);
+				return;
+			}
+
+			try {
+				published.complete(publication.publish(handledMessage));
+			} catch (Exception ex) {
+				published.completeExceptionally(ex);
+			}
+
+		});
+
+		return published;
+
+	}
+
+	private static HandleMessageException toHandleMessageException(Throwable failure) {
+
+		Throwable cause = failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+		if (cause instanceof HandleMessageException) {
+			return (HandleMessageException) cause;
+		}
+
+		return new HandleMessageException(cause);
+
+	}
+
+	private static <T> CompletableFuture<T> failed(Throwable failure) {
+		CompletableFuture<T> future = new CompletableFuture<>();
+		future.completeExceptionally(failure);
+		return future;
+	}
+
+	private interface Handler<T> {
+
+		CompletableFuture<T> handle();
+
+	}
+
+	private interface Publication<T> {
+
+		byte[] publish(T handledMessage) throws OrizuruException;
+
+	}
+
+}
@@ -26,20 +26,48 @@
 
 package com.financialforce.orizuru;
 
+import java.io.IOException;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.avro.AvroRuntimeException;
 import org.apache.avro.Schema;
 import org.apache.avro.generic.GenericContainer;
 import org.apache.avro.io.BinaryDecoder;
-import org.apache.avro.io.DatumReader;
-import org.apache.avro.io.DecoderFactory;
-import org.apache.avro.specific.SpecificDatumReader;
+import org.apache.avro.specific.SpecificData;
+import org.apache.avro.specific.SpecificRecord;
+import org.apache.avro.util.Utf8;
 
+import com.financialforce.orizuru.cache.DeduplicationCache;
+import com.financialforce.orizuru.codec.ByteBufferInputStream;
+import com.financialforce.orizuru.codec.CompressionCodecRegistry;
+import com.financialforce.orizuru.codec.ThreadLocalCodec;
+import com.financialforce.orizuru.codec.TransportCodec;
+import com.financialforce.orizuru.codec.TransportFormat;
 import com.financialforce.orizuru.exception.OrizuruException;
+import com.financialforce.orizuru.exception.consumer.decode.DecodeMessageContentException;
 import com.financialforce.orizuru.exception.consumer.decode.DecodeTransportException;
 import com.financialforce.orizuru.exception.consumer.handler.HandleMessageException;
+import com.financialforce.orizuru.instrumentation.NoOpStageListener;
+import com.financialforce.orizuru.instrumentation.Stage;
 import com.financialforce.orizuru.interfaces.IConsumer;
+import com.financialforce.orizuru.interfaces.IMessageFilter;
+import com.financialforce.orizuru.interfaces.IMessageKeyExtractor;
 import com.financialforce.orizuru.interfaces.IPublisher;
+import com.financialforce.orizuru.interfaces.ISchemaRegistry;
+import com.financialforce.orizuru.interfaces.IStageListener;
 import com.financialforce.orizuru.message.Context;
 import com.financialforce.orizuru.message.Message;
+import com.financialforce.orizuru.transport.BatchTransport;
+import com.financialforce.orizuru.transport.FingerprintTransport;
 import com.financialforce.orizuru.transport.Transport;
 
 /**
@@ -63,17 +91,70 @@ import com.financialforce.orizuru.transport.Transport;
  * }
  * </code>
  * </pre>
+ * <p>
+ * Messages in the {@link TransportFormat#FINGERPRINT} format, which carry schema fingerprints in place of the schema
+ * text, are also accepted if a schema registry has been provided.
+ * <p>
+ * Messages in the {@link TransportFormat#COMPRESSED} and {@link TransportFormat#COMPRESSED_FINGERPRINT} formats are
+ * decompressed with the codec named in their header, found in the shared {@link CompressionCodecRegistry}, as the
+ * transport is decoded.
+ * <p>
+ * Messages are decoded into the reader schema of the consumer, which by default is the schema of the generated class
+ * bound to <code>I</code>. Fields written by the publisher that are not in the reader schema are skipped, so a
+ * consumer only pays for the fields it uses and publishers and consumers can evolve their schemas independently.
+ * <p>
+ * All of the messages in a {@link TransportFormat#BATCH} transport are passed to
+ * {@link #handleMessages(Context, List)} together, and the outgoing messages are published as a batch.
+ * <p>
+ * If a message filter is set, only the context of each incoming message is read before the message is passed to
+ * the filter. Messages that the filter rejects are dropped without decoding them, and nothing is published for them.
+ * <p>
+ * If a deduplication cache is set, a message that has already been consumed is not decoded or handled again;
+ * instead the bytes published for it the first time are returned. Messages are identified by a fingerprint of the
+ * body or, if a message key extractor is set, by a key taken from the context.
+ * <p>
+ * The time taken by each {@link Stage} of consuming a message is reported to the stage listener. By default no
+ * listener is set and the stages are not timed.
  */
 public abstract class AbstractConsumer<I extends GenericContainer, O extends GenericContainer> implements IConsumer {
 
-	private static Schema transportSchema = Transport.getClassSchema();
-
 	protected IPublisher<O> publisher = null;
 
+	protected ISchemaRegistry schemaRegistry = null;
+
+	protected Schema readerSchema = null;
+
+	protected IStageListener stageListener = NoOpStageListener.getInstance();
+
+	protected IMessageFilter messageFilter = null;
+
+	protected DeduplicationCache deduplicationCache = null;
+
+	protected IMessageKeyExtractor messageKeyExtractor = null;
+
 	private String queueName = null;
 
 	public AbstractConsumer(String queueName) {
+		this(queueName, null, null);
+	}
+
+	public AbstractConsumer(String queueName, ISchemaRegistry schemaRegistry) {
+		this(queueName, schemaRegistry, null);
+	}
+
+	/**
+	 * Constructs a consumer that decodes incoming messages into the given reader schema.
+	 * 
+	 * @param queueName The name of the queue.
+	 * @param schemaRegistry The registry used to decode fingerprint transports, or null.
+	 * @param readerSchema The schema into which incoming messages are decoded, or null to use the schema of the
+	 *            generated class consumed by this consumer. If neither is available messages are decoded using the
+	 *            schema they were written with.
+	 */
+	public AbstractConsumer(String queueName, ISchemaRegistry schemaRegistry, Schema readerSchema) {
 		this.queueName = queueName;
+		this.schemaRegistry = schemaRegistry;
+		this.readerSchema = readerSchema != null ? readerSchema : findSchema(getClass(), AbstractConsumer.class.getTypeParameters()[0]);
 	}
 
 	/* (non-Javadoc)
@@ -81,46 +162,792 @@ public abstract class AbstractConsumer<I extends GenericContainer, O extends Gen
 	 */
 	@Override
 	public byte[] consume(byte[] body) throws OrizuruException {
+		return consumeBody(body == null ? null : ByteBuffer.wrap(body));
+	}
 
-		// Handle the input
-		Transport transport = decodeTransport(body);
+	/**
+	 * Handles a message that has already been decoded and publishes the outgoing message.
+	 * <p>
+	 * This is used to pass a message directly from a consumer in the same JVM, without encoding it.
+	 * 
+	 * @param context The context of the message.
+	 * @param input The message.
+	 * @return The published message bytes, or null if there is no publisher.
+	 * @throws OrizuruException Exception thrown if handling or publishing the message fails.
+	 */
+	public byte[] consume(Context context, I input) throws OrizuruException {
+
+		// Handle the message
+		O outgoingMessage = stageListener.isEnabled()
+				? time(Stage.HANDLE_MESSAGE, 1, () -> handleMessage(context, input))
+				: handleMessage(context, input);
+
+		return publish(context, outgoingMessage);
+
+	}
+
+	/* (non-Javadoc)
+	 * @see com.financialforce.orizuru.interfaces.IConsumer#consumeBuffer(java.nio.ByteBuffer)
+	 */
+	@Override
+	public ByteBuffer consumeBuffer(ByteBuffer body) throws OrizuruException {
+		byte[] outgoingMessage = consumeBody(body);
+		return outgoingMessage == null ? null : ByteBuffer.wrap(outgoingMessage);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.financialforce.orizuru.interfaces.IConsumer#consumeBatch(java.util.List)
+	 */
+	@Override
+	public List<byte[]> consumeBatch(List<byte[]> bodies) throws OrizuruException {
+
+		List<byte[]> outgoingMessages = new ArrayList<>(bodies.size());
+
+		// The deduplication key of each message whose outcome is to be recorded, in step with the outgoing messages
+		List<Object> keys = new ArrayList<>(bodies.size());
+		Set<Object> pendingKeys = new HashSet<>();
+
+		// Consecutive messages with the same context are handled together
+		Context context = null;
+		List<I> inputs = new ArrayList<>();
+
+		for (byte[] body : bodies) {
+
+			ByteBuffer buffer = body == null ? null : ByteBuffer.wrap(body);
+			TransportFormat format = decodeTransportFormat(buffer);
+			Context peeked = peekIfRequired(buffer, format);
+
+			// A rejected message is dropped, so nothing is published for it
+			if (!accept(peeked, buffer)) {
+				publishEach(context, inputs, outgoingMessages);
+				inputs = new ArrayList<>();
+				outgoingMessages.add(null);
+				keys.add(null);
+				continue;
+			}
+
+			// A message delivered twice in the same batch waits for the outcome of the first delivery to be recorded
+			Object key = deduplicationKey(peeked, buffer);
+			if (key != null && pendingKeys.contains(key)) {
+				publishEach(context, inputs, outgoingMessages);
+				inputs = new ArrayList<>();
+				recordOutcomes(keys, outgoingMessages);
+				pendingKeys.clear();
+			}
+
+			// A duplicate message is not consumed again; the bytes published for it the first time are returned
+			DeduplicationCache.Entry previous = key == null ? null : deduplicationCache.get(key);
+			if (previous != null) {
+				publishEach(context, inputs, outgoingMessages);
+				inputs = new ArrayList<>();
+				outgoingMessages.add(previous.getOutgoingMessage());
+				keys.add(null);
+				continue;
+			}
+
+			keys.add(key);
+			if (key != null) {
+				pendingKeys.add(key);
+			}
+
+			// A batch transport is already a batch, so it is consumed on its own
+			if (format == TransportFormat.BATCH) {
+				publishEach(context, inputs, outgoingMessages);
+				inputs = new ArrayList<>();
+				outgoingMessages.add(consumeBatchTransport(new Context(), buffer));
+				continue;
+			}
+
+			Context nextContext = peeked == null ? new Context() : peeked;
+			I input = decode(nextContext, peeked != null, buffer, format);
+
+			if (context != null && !context.contentEquals(nextContext)) {
+				publishEach(context, inputs, outgoingMessages);
+				inputs = new ArrayList<>();
+			}
+
+			if (inputs.isEmpty()) {
+				context = nextContext;
+			}
+
+			inputs.add(input);
+
+		}
+
+		publishEach(context, inputs, outgoingMessages);
+		recordOutcomes(keys, outgoingMessages);
+
+		return outgoingMessages;
+
+	}
+
+	/**
+	 * Handles a batch of messages that have already been decoded and publishes the outgoing messages as a batch.
+	 * <p>
+	 * This is used to pass messages directly from a consumer in the same JVM, without encoding them.
+	 * 
+	 * @param context The context shared by the messages.
+	 * @param inputs The messages.
+	 * @return The published batch bytes, or null if there is no publisher or there are no messages.
+	 * @throws OrizuruException Exception thrown if handling or publishing the messages fails.
+	 */
+	public byte[] consumeBatch(Context context, List<I> inputs) throws OrizuruException {
+
+		// Handle the messages
+		List<O> outgoingMessages = stageListener.isEnabled()
+				? time(Stage.HANDLE_MESSAGE, inputs.size(), () -> handleMessages(context, inputs))
+				: handleMessages(context, inputs);
+
+		return publishBatch(context, inputs, outgoingMessages);
+
+	}
+
+	public abstract O handleMessage(Context context, I input) throws HandleMessageException;
+
+	/**
+	 * Handles a batch of messages sharing the same context.
+	 * <p>
+	 * By default each message is passed to {@link #handleMessage(Context, GenericContainer)} in turn. Override this
+	 * method to handle the whole batch at once, such as with a single database round trip.
+	 * 
+	 * @param context The context shared by the messages.
+	 * @param inputs The decoded messages, in the order in which they were received.
+	 * @return The outgoing messages, one for each incoming message and in the same order.
+	 * @throws HandleMessageException Exception thrown if handling the messages fails.
+	 */
+	public List<O> handleMessages(Context context, List<I> inputs) throws HandleMessageException {
+
+		List<O> outgoingMessages = new ArrayList<>(inputs.size());
+		for (I input : inputs) {
+			outgoingMessages.add(handleMessage(context, input));
+		}
+
+		return outgoingMessages;
+
+	}
+
+	@Override
+	public String getQueueName() {
+		return queueName;
+	}
+
+	/**
+	 * Decodes only the context of an incoming message, skipping over the message itself.
+	 * <p>
+	 * The context of a batch transport is that shared by all of its messages.
+	 * 
+	 * @param body The incoming message bytes.
+	 * @return The context, whose content is only decoded if requested.
+	 * @throws OrizuruException Exception thrown if the format is not known or decoding the context fails.
+	 */
+	public Context peekContext(ByteBuffer body) throws OrizuruException {
+		return peek(body, decodeTransportFormat(body));
+	}
+
+	// protected methods
+
+	/**
+	 * Determines the format of the incoming message.
+	 * 
+	 * @param body The incoming message bytes.
+	 * @return The format of the message.
+	 * @throws DecodeTransportException Exception thrown if the format is not known.
+	 */
+	protected TransportFormat decodeTransportFormat(ByteBuffer body) throws DecodeTransportException {
+
+		try {
+			return TransportFormat.of(body);
+		} catch (Exception ex) {
+			throw new DecodeTransportException(ex);
+		}
+
+	}
+
+	/**
+	 * Decodes only the context of an incoming message, skipping over the message itself.
+	 * 
+	 * @param body The incoming message bytes.
+	 * @param format The format of the message.
+	 * @return The context, whose content is only decoded if requested.
+	 * @throws OrizuruException Exception thrown if decoding the context fails.
+	 */
+	protected Context peek(ByteBuffer body, TransportFormat format) throws OrizuruException {
 
 		Context context = new Context();
-		context.decodeFromTransport(transport);
+
+		if (format == TransportFormat.FINGERPRINT || format == TransportFormat.COMPRESSED_FINGERPRINT) {
+			context.decodeFromTransport(peekFingerprintTransport(body, format), schemaRegistry);
+		} else {
+			context.decodeFromTransport(peekTransport(body, format));
+		}
+
+		return context;
+
+	}
+
+	/**
+	 * Decodes only the context of an incoming message if the message filter or the message key extractor needs it.
+	 * <p>
+	 * The context is peeked once and the same instance is passed to the filter, the key extractor and the handler, so
+	 * that it is not decoded again for each of them.
+	 * 
+	 * @param body The incoming message bytes.
+	 * @param format The format of the message.
+	 * @return The context, or null if neither the filter nor the key extractor needs it.
+	 * @throws OrizuruException Exception thrown if decoding the context fails.
+	 */
+	protected Context peekIfRequired(ByteBuffer body, TransportFormat format) throws OrizuruException {
+
+		if (messageFilter == null && (deduplicationCache == null || messageKeyExtractor == null)) {
+			return null;
+		}
+
+		return peek(body, format);
+
+	}
+
+	/**
+	 * Passes the context of an incoming message to the message filter, if one is set, to decide whether to consume
+	 * the message.
+	 * 
+	 * @param context The context peeked from the message by {@link #peekIfRequired(ByteBuffer, TransportFormat)}.
+	 * @param body The incoming message bytes.
+	 * @return true if there is no filter or the filter accepts the message.
+	 * @throws OrizuruException Exception thrown if the filter fails.
+	 */
+	protected boolean accept(Context context, ByteBuffer body) throws OrizuruException {
+
+		if (messageFilter == null) {
+			return true;
+		}
+
+		if (!stageListener.isEnabled()) {
+			return messageFilter.accept(queueName, context, body);
+		}
+
+		return time(Stage.FILTER_MESSAGE, sizeOf(body), () -> messageFilter.accept(queueName, context, body));
+
+	}
+
+	/**
+	 * Computes the key identifying an incoming message, if a deduplication cache is set.
+	 * 
+	 * @param context The context peeked from the message by {@link #peekIfRequired(ByteBuffer, TransportFormat)}.
+	 * @param body The incoming message bytes.
+	 * @return The key of the message, or null if there is no deduplication cache or the message is not to be
+	 *         deduplicated.
+	 * @throws OrizuruException Exception thrown if extracting the key fails.
+	 */
+	protected Object deduplicationKey(Context context, ByteBuffer body) throws OrizuruException {
+
+		if (deduplicationCache == null || body == null) {
+			return null;
+		}
+
+		if (messageKeyExtractor == null) {
+			return DeduplicationCache.fingerprint(body);
+		}
+
+		return messageKeyExtractor.extractKey(context);
+
+	}
+
+	/**
+	 * Decodes an incoming message, other than a batch transport, into the context and returns the message content.
+	 * 
+	 * @param context The context into which the context of the message is decoded.
+	 * @param contextPeeked True if the context has already been peeked from the message, so is not decoded again.
+	 * @param body The incoming message bytes.
+	 * @param format The format of the message.
+	 * @return The message content.
+	 * @throws OrizuruException Exception thrown if decoding the message fails.
+	 */
+	protected I decode(Context context, boolean contextPeeked, ByteBuffer body, TransportFormat format) throws OrizuruException {
+		return decodeContent(decodeMessage(context, contextPeeked, body, format));
+	}
+
+	/**
+	 * Decodes the transport of an incoming message, other than a batch transport, into the context and returns the
+	 * message without decoding its content.
+	 * 
+	 * @param context The context into which the context of the message is decoded.
+	 * @param contextPeeked True if the context has already been peeked from the message, so is not decoded again.
+	 * @param body The incoming message bytes.
+	 * @param format The format of the message.
+	 * @return The message, holding its schema and undecoded data.
+	 * @throws OrizuruException Exception thrown if decoding the transport or the context fails.
+	 */
+	protected Message decodeMessage(Context context, boolean contextPeeked, ByteBuffer body, TransportFormat format) throws OrizuruException {
 
 		Message incomingMessage = new Message();
-		incomingMessage.decodeFromTransport(transport);
 
-		I input = incomingMessage.decode();
+		// Handle the input
+		if (format == TransportFormat.FINGERPRINT || format == TransportFormat.COMPRESSED_FINGERPRINT) {
 
-		// Handle the message
-		O outgoingMessage = handleMessage(context, input);
+			FingerprintTransport transport = stageListener.isEnabled()
+					? time(Stage.DECODE_TRANSPORT, sizeOf(body), () -> decodeFingerprintTransport(body, format, contextPeeked))
+					: decodeFingerprintTransport(body, format, contextPeeked);
+
+			// The context already passed to the filter or key extractor is handled as it is
+			if (!contextPeeked && stageListener.isEnabled()) {
+				time(Stage.DECODE_CONTEXT, transport.getContextBuffer().remaining(), () -> {
+					context.decodeFromTransport(transport, schemaRegistry);
+					return context;
+				});
+			} else if (!contextPeeked) {
+				context.decodeFromTransport(transport, schemaRegistry);
+			}
+
+			incomingMessage.decodeFromTransport(transport, schemaRegistry);
+
+		} else {
+
+			Transport transport = stageListener.isEnabled()
+					? time(Stage.DECODE_TRANSPORT, sizeOf(body), () -> decodeTransport(body, format, contextPeeked))
+					: decodeTransport(body, format, contextPeeked);
+
+			// The context already passed to the filter or key extractor is handled as it is
+			if (!contextPeeked && stageListener.isEnabled()) {
+				time(Stage.DECODE_CONTEXT, transport.getContextBuffer().remaining(), () -> {
+					context.decodeFromTransport(transport);
+					return context;
+				});
+			} else if (!contextPeeked) {
+				context.decodeFromTransport(transport);
+			}
+
+			incomingMessage.decodeFromTransport(transport);
+
+		}
+
+		return incomingMessage;
+
+	}
+
+	/**
+	 * Decodes the content of an incoming message, handles it and publishes the outgoing message.
+	 * <p>
+	 * Override this method to handle the message without decoding all of its content first.
+	 * 
+	 * @param context The context of the message.
+	 * @param incomingMessage The message, holding its schema and undecoded data.
+	 * @return The published message bytes, or null if there is no publisher.
+	 * @throws OrizuruException Exception thrown if decoding, handling or publishing the message fails.
+	 */
+	protected byte[] consumeMessage(Context context, Message incomingMessage) throws OrizuruException {
+		return consume(context, decodeContent(incomingMessage));
+	}
+
+	/**
+	 * Decodes a batch transport into the context and returns the content of each message.
+	 * 
+	 * @param context The context into which the context of the batch is decoded.
+	 * @param body The incoming message bytes.
+	 * @return The content of the messages, in the order in which they appear in the batch.
+	 * @throws OrizuruException Exception thrown if decoding the batch fails.
+	 */
+	protected List<I> decodeBatch(Context context, ByteBuffer body) throws OrizuruException {
+
+		if (!stageListener.isEnabled()) {
+			BatchTransport transport = decodeBatchTransport(body);
+			context.decodeFromBatchTransport(transport);
+			return readBatchContent(transport);
+		}
+
+		BatchTransport transport = time(Stage.DECODE_TRANSPORT, sizeOf(body), () -> decodeBatchTransport(body));
+		time(Stage.DECODE_CONTEXT, transport.getContextBuffer().remaining(), () -> {
+			context.decodeFromBatchTransport(transport);
+			return context;
+		});
+
+		int messagesSize = 0;
+		for (ByteBuffer messageBuffer : transport.getMessageBuffers()) {
+			messagesSize += messageBuffer.remaining();
+		}
+
+		return time(Stage.DECODE_MESSAGE, messagesSize, () -> readBatchContent(transport));
+
+	}
+
+	/**
+	 * Reads the content of an incoming message into the reader schema.
+	 * <p>
+	 * Override this method to read the content with a different reader.
+	 * 
+	 * @param incomingMessage The message, holding its schema and undecoded data.
+	 * @return The message content.
+	 * @throws DecodeMessageContentException Exception thrown if decoding the message content fails.
+	 */
+	protected I readContent(Message incomingMessage) throws DecodeMessageContentException {
+		return incomingMessage.decode(readerSchema, null);
+	}
+
+	/**
+	 * Publishes an outgoing message if a publisher is defined.
+	 * 
+	 * @param context The context of the incoming message.
+	 * @param outgoingMessage The outgoing message.
+	 * @return The published message bytes, or null if there is no publisher.
+	 * @throws OrizuruException Exception thrown if publishing the message fails.
+	 */
+	protected byte[] publish(Context context, O outgoingMessage) throws OrizuruException {
 
 		// If a publisher is defined then create the message to publish
 		if (publisher != null) {
-			return publisher.publish(context, outgoingMessage);
+			return stageListener.isEnabled()
+					? timePublish(() -> publisher.publish(context, outgoingMessage))
+					: publisher.publish(context, outgoingMessage);
 		}
 
 		return null;
 
 	}
 
-	public abstract O handleMessage(Context context, I input) throws HandleMessageException;
+	/**
+	 * Publishes the outgoing messages for a batch transport as a batch if a publisher is defined.
+	 * 
+	 * @param context The context of the batch.
+	 * @param inputs The incoming messages.
+	 * @param outgoingMessages The outgoing messages, one for each incoming message.
+	 * @return The published batch bytes, or null if there is no publisher or there are no messages.
+	 * @throws OrizuruException Exception thrown if there is not an outgoing message for each incoming message, or if
+	 *             publishing the batch fails.
+	 */
+	protected byte[] publishBatch(Context context, List<I> inputs, List<O> outgoingMessages) throws OrizuruException {
+
+		checkOutgoingMessages(inputs, outgoingMessages);
+
+		// If a publisher is defined then create the batch to publish
+		if (publisher != null && !outgoingMessages.isEmpty()) {
+			return stageListener.isEnabled()
+					? timePublish(() -> publisher.publishBatch(context, outgoingMessages))
+					: publisher.publishBatch(context, outgoingMessages);
+		}
+
+		return null;
+
+	}
+
+	// package-private methods
+
+	/**
+	 * Runs a stage, reporting its duration and outcome to the stage listener.
+	 * <p>
+	 * Callers check that the listener is enabled before calling this, so that the step and the size are not created
+	 * for every message when nothing is listening.
+	 */
+	<T> T time(Stage stage, int size, Step<T> step) throws OrizuruException {
+
+		long startTime = System.nanoTime();
+		try {
+			T result = step.run();
+			stageListener.stageCompleted(queueName, stage, System.nanoTime() - startTime, size, null);
+			return result;
+		} catch (OrizuruException | RuntimeException ex) {
+			stageListener.stageCompleted(queueName, stage, System.nanoTime() - startTime, size, ex);
+			throw ex;
+		}
+
+	}
+
+	/**
+	 * Finds the schema of the generated class bound to a type parameter of a consumer class, or null if the type is
+	 * not a generated class.
+	 */
+	static Schema findSchema(Class<?> consumerClass, TypeVariable<?> parameter) {
+
+		Type type = findTypeArgument(consumerClass, parameter);
+		if (!(type instanceof Class) || !SpecificRecord.class.isAssignableFrom((Class<?>) type)) {
+			return null;
+		}
+
+		try {
+			return SpecificData.get().getSchema(type);
+		} catch (AvroRuntimeException ex) {
+			// Classes that are not generated may not declare their schema; their messages are decoded as written
+			return null;
+		}
 
-	@Override
-	public String getQueueName() {
-		return queueName;
 	}
 
 	// private methods
 
-	private Transport decodeTransport(byte[] body) throws DecodeTransportException {
+	/**
+	 * Consumes a single transport or a batch transport.
+	 */
+	private byte[] consumeBody(ByteBuffer body) throws OrizuruException {
+
+		TransportFormat format = decodeTransportFormat(body);
+		Context peeked = peekIfRequired(body, format);
+
+		if (!accept(peeked, body)) {
+			return null;
+		}
+
+		Object key = deduplicationKey(peeked, body);
+		if (key == null) {
+			return consumeTransport(peeked, body, format);
+		}
+
+		DeduplicationCache.Entry previous = deduplicationCache.get(key);
+		if (previous != null) {
+			return previous.getOutgoingMessage();
+		}
+
+		byte[] outgoingMessage = consumeTransport(peeked, body, format);
+		deduplicationCache.put(key, outgoingMessage);
+
+		return outgoingMessage;
+
+	}
+
+	/**
+	 * Decodes, handles and publishes a single transport or a batch transport, reusing the context if it was peeked.
+	 */
+	private byte[] consumeTransport(Context peeked, ByteBuffer body, TransportFormat format) throws OrizuruException {
+
+		if (format == TransportFormat.BATCH) {
+			return consumeBatchTransport(new Context(), body);
+		}
+
+		Context context = peeked == null ? new Context() : peeked;
+		Message incomingMessage = decodeMessage(context, peeked != null, body, format);
+
+		return consumeMessage(context, incomingMessage);
+
+	}
+
+	/**
+	 * Handles all of the messages in a batch transport together and publishes the outgoing messages as a batch.
+	 */
+	private byte[] consumeBatchTransport(Context context, ByteBuffer body) throws OrizuruException {
+
+		List<I> inputs = decodeBatch(context, body);
+
+		return consumeBatch(context, inputs);
+
+	}
+
+	/**
+	 * Passes a run of messages with the same context to the handler and publishes each outgoing message.
+	 */
+	private void publishEach(Context context, List<I> inputs, List<byte[]> outgoingMessages) throws OrizuruException {
+
+		if (inputs.isEmpty()) {
+			return;
+		}
+
+		List<O> handledMessages = stageListener.isEnabled()
+				? time(Stage.HANDLE_MESSAGE, inputs.size(), () -> handleMessages(context, inputs))
+				: handleMessages(context, inputs);
+		checkOutgoingMessages(inputs, handledMessages);
+
+		for (O handledMessage : handledMessages) {
+			outgoingMessages.add(publish(context, handledMessage));
+		}
+
+	}
+
+	/**
+	 * Records the outcome of each message in a batch that has a deduplication key, so that it is only recorded once.
+	 */
+	private void recordOutcomes(List<Object> keys, List<byte[]> outgoingMessages) {
+
+		for (int i = 0; i < keys.size(); i++) {
+			if (keys.get(i) != null) {
+				deduplicationCache.put(keys.get(i), outgoingMessages.get(i));
+				keys.set(i, null);
+			}
+		}
+
+	}
+
+	/**
+	 * Decodes the message content into the reader schema.
+	 */
+	private I decodeContent(Message incomingMessage) throws OrizuruException {
+
+		if (!stageListener.isEnabled()) {
+			return readContent(incomingMessage);
+		}
+
+		return time(Stage.DECODE_MESSAGE, incomingMessage.getDataSize(), () -> readContent(incomingMessage));
+
+	}
+
+	/**
+	 * Reads the content of each message in a batch transport into the reader schema.
+	 */
+	private List<I> readBatchContent(BatchTransport transport) throws OrizuruException {
+
+		List<Message> incomingMessages = Message.decodeBatchFromTransport(transport);
+		List<I> inputs = new ArrayList<>(incomingMessages.size());
+		for (Message incomingMessage : incomingMessages) {
+			inputs.add(readContent(incomingMessage));
+		}
+
+		return inputs;
+
+	}
+
+	/**
+	 * Runs the publisher, reporting the size of the published bytes rather than that of the input.
+	 * <p>
+	 * As with {@link #time(Stage, int, Step)}, callers check that the listener is enabled before calling this.
+	 */
+	private byte[] timePublish(Step<byte[]> step) throws OrizuruException {
+
+		long startTime = System.nanoTime();
+		try {
+			byte[] outgoingMessage = step.run();
+			int size = outgoingMessage == null ? 0 : outgoingMessage.length;
+			stageListener.stageCompleted(queueName, Stage.PUBLISH, System.nanoTime() - startTime, size, null);
+			return outgoingMessage;
+		} catch (OrizuruException | RuntimeException ex) {
+			stageListener.stageCompleted(queueName, Stage.PUBLISH, System.nanoTime() - startTime, 0, ex);
+			throw ex;
+		}
+
+	}
+
+	private static int sizeOf(ByteBuffer body) {
+		return body == null ? 0 : body.remaining();
+	}
+
+	private void checkOutgoingMessages(List<I> inputs, List<O> outgoingMessages) throws HandleMessageException {
+
+		if (outgoingMessages.size() != inputs.size()) {
+			throw new HandleMessageException(new IllegalStateException(String.format(
+					"Expected %d outgoing messages but %d were returned", inputs.size(), outgoingMessages.size())));
+		}
+
+	}
+
+	/**
+	 * Follows the superclasses of a consumer class to find the type bound to a type parameter of one of them.
+	 */
+	private static Type findTypeArgument(Class<?> consumerClass, TypeVariable<?> parameter) {
+
+		Map<TypeVariable<?>, Type> typeArguments = new HashMap<>();
+		Class<?> rawType = consumerClass;
+
+		while (rawType != parameter.getGenericDeclaration()) {
+
+			Type superclass = rawType.getGenericSuperclass();
+			rawType = rawType.getSuperclass();
+
+			if (superclass instanceof ParameterizedType) {
+
+				Type[] arguments = ((ParameterizedType) superclass).getActualTypeArguments();
+				TypeVariable<?>[] parameters = rawType.getTypeParameters();
+
+				for (int i = 0; i < parameters.length; i++) {
+					typeArguments.put(parameters[i], typeArguments.getOrDefault(arguments[i], arguments[i]));
+				}
+
+			}
+
+		}
+
+		return typeArguments.get(parameter);
+
+	}
+
+	/**
+	 * Reads the transport with the {@link TransportCodec}, rather than with the generated reader, so that the context
+	 * and message buffers are slices of the body instead of copies. Compressed buffers are decompressed into new
+	 * buffers.
+	 */
+	private Transport decodeTransport(ByteBuffer body, TransportFormat format, boolean contextPeeked) throws DecodeTransportException {
+
+		try {
+
+			Transport transport = TransportCodec.read(recordOf(body, format));
+
+			// A context that has already been peeked is not decompressed again
+			if (!contextPeeked) {
+				transport.setContextBuffer(decompress(body, format, TransportFormat.CONTEXT_COMPRESSED, transport.getContextBuffer()));
+			}
+			transport.setMessageBuffer(decompress(body, format, TransportFormat.MESSAGE_COMPRESSED, transport.getMessageBuffer()));
+
+			return transport;
+
+		} catch (Exception ex) {
+			throw new DecodeTransportException(ex);
+		}
+
+	}
+
+	private BatchTransport decodeBatchTransport(ByteBuffer body) throws DecodeTransportException {
+
+		try {
+
+			ThreadLocalCodec codec = ThreadLocalCodec.get();
+			BinaryDecoder transportDecoder = codec.inputDecoder(recordOf(body, TransportFormat.BATCH));
+			ByteBufferInputStream input = codec.getInput();
+
+			Utf8 contextSchema = transportDecoder.readString(null);
+			ByteBuffer contextBuffer = input.readSlice(transportDecoder.readInt());
+			Utf8 messageSchema = transportDecoder.readString(null);
+
+			List<ByteBuffer> messageBuffers = new ArrayList<>();
+			for (long count = transportDecoder.readArrayStart(); count != 0; count = transportDecoder.arrayNext()) {
+				for (long i = 0; i < count; i++) {
+					messageBuffers.add(input.readSlice(transportDecoder.readInt()));
+				}
+			}
+
+			return new BatchTransport(contextSchema, contextBuffer, messageSchema, messageBuffers);
+
+		} catch (Exception ex) {
+			throw new DecodeTransportException(ex);
+		}
+
+	}
+
+	private FingerprintTransport decodeFingerprintTransport(ByteBuffer body, TransportFormat format, boolean contextPeeked)
+			throws DecodeTransportException {
+
+		try {
+
+			if (schemaRegistry == null) {
+				throw new IllegalStateException("A schema registry is required to decode a fingerprint transport");
+			}
+
+			ThreadLocalCodec codec = ThreadLocalCodec.get();
+			BinaryDecoder transportDecoder = codec.inputDecoder(recordOf(body, format));
+			ByteBufferInputStream input = codec.getInput();
+
+			long contextFingerprint = transportDecoder.readLong();
+			ByteBuffer contextBuffer = input.readSlice(transportDecoder.readInt());
+			long messageFingerprint = transportDecoder.readLong();
+			ByteBuffer messageBuffer = input.readSlice(transportDecoder.readInt());
+
+			// A context that has already been peeked is not decompressed again
+			if (!contextPeeked) {
+				contextBuffer = decompress(body, format, TransportFormat.CONTEXT_COMPRESSED, contextBuffer);
+			}
+			messageBuffer = decompress(body, format, TransportFormat.MESSAGE_COMPRESSED, messageBuffer);
+
+			return new FingerprintTransport(contextFingerprint, contextBuffer, messageFingerprint, messageBuffer);
+
+		} catch (Exception ex) {
+			throw new DecodeTransportException(ex);
+		}
+
+	}
+
+	/**
+	 * Reads only the context fields of a transport or batch transport, decompressing the context if required.
+	 */
+	private Transport peekTransport(ByteBuffer body, TransportFormat format) throws DecodeTransportException {
 
 		try {
 
-			DatumReader<Transport> transportDatumReader = new SpecificDatumReader<Transport>(transportSchema);
-			BinaryDecoder transportDecoder = DecoderFactory.get().binaryDecoder(body, null);
-			return transportDatumReader.read(null, transportDecoder);
+			Transport transport = TransportCodec.peekContext(recordOf(body, format));
+			transport.setContextBuffer(decompress(body, format, TransportFormat.CONTEXT_COMPRESSED, transport.getContextBuffer()));
+
+			return transport;
 
 		} catch (Exception ex) {
 			throw new DecodeTransportException(ex);
@@ -128,4 +955,72 @@ public abstract class AbstractConsumer<I extends GenericContainer, O extends Gen
 
 	}
 
+	/**
+	 * Reads only the context fields of a fingerprint transport, decompressing the context if required.
+	 */
+	private FingerprintTransport peekFingerprintTransport(ByteBuffer body, TransportFormat format) throws DecodeTransportException {
+
+		try {
+
+			if (schemaRegistry == null) {
+				throw new IllegalStateException("A schema registry is required to decode a fingerprint transport");
+			}
+
+			ThreadLocalCodec codec = ThreadLocalCodec.get();
+			BinaryDecoder transportDecoder = codec.inputDecoder(recordOf(body, format));
+
+			long contextFingerprint = transportDecoder.readLong();
+			ByteBuffer contextBuffer = codec.getInput().readSlice(transportDecoder.readInt());
+
+			contextBuffer = decompress(body, format, TransportFormat.CONTEXT_COMPRESSED, contextBuffer);
+
+			// The message fields are not read; the fingerprint is a primitive so is left as zero
+			return new FingerprintTransport(contextFingerprint, contextBuffer, 0L, null);
+
+		} catch (Exception ex) {
+			throw new DecodeTransportException(ex);
+		}
+
+	}
+
+	/**
+	 * Returns the body positioned at the start of the record that follows the header of the format.
+	 */
+	private static ByteBuffer recordOf(ByteBuffer body, TransportFormat format) {
+
+		int offset = format.getRecordOffset();
+		if (offset == 0) {
+			return body;
+		}
+
+		ByteBuffer record = body.duplicate();
+		record.position(record.position() + offset);
+		return record;
+
+	}
+
+	/**
+	 * Decompresses a buffer of a compressed format if the header has its flag set, otherwise returns the buffer
+	 * itself.
+	 */
+	private static ByteBuffer decompress(ByteBuffer body, TransportFormat format, byte flag, ByteBuffer buffer) throws IOException {
+
+		int position = body.position() + TransportFormat.HEADER_LENGTH;
+		if (!format.isCompressed() || (body.get(position + 1) & flag) == 0) {
+			return buffer;
+		}
+
+		return CompressionCodecRegistry.getInstance().get(body.get(position)).decompress(buffer);
+
+	}
+
+	/**
+	 * A stage of consuming a message.
+	 */
+	interface Step<T> {
+
+		T run() throws OrizuruException;
+
+	}
+
 }
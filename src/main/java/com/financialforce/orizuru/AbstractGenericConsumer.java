@@ -0,0 +1,79 @@
+/**
+ * Copyright (c) 2017-2018, FinancialForce.com, inc
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ *   are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ *      this list of conditions and the following disclaimer in the documentation
+ *      and/or other materials provided with the distribution.
+ * - Neither the name of the FinancialForce.com, inc nor the names of its contributors
+ *      may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ *  OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL
+ *  THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ *  EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ *  OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY
+ *  OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ **/
+
+package com.financialforce.orizuru;
+
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericContainer;
+import org.apache.avro.generic.GenericRecord;
+
+import com.financialforce.orizuru.exception.consumer.decode.DecodeMessageContentException;
+import com.financialforce.orizuru.interfaces.ISchemaRegistry;
+import com.financialforce.orizuru.message.Message;
+
+/**
+ * Handles messages as generic records, without regard to any generated classes for their schemas.
+ * <p>
+ * Messages are decoded with a generic reader, so no classes are looked up by schema name and consumers such as
+ * routers can handle messages whose generated classes are not on the classpath. Messages are decoded into the reader
+ * schema of the consumer if one is given, otherwise as they were written. A handler that only inspects a few fields
+ * of each message can find them with {@link com.financialforce.orizuru.message.FieldPositions}.
+ * <p>
+ * Use an {@link AbstractGenericPublisher} to publish the outgoing records in the same way.
+ */
+public abstract class AbstractGenericConsumer<O extends GenericContainer> extends AbstractConsumer<GenericRecord, O> {
+
+	public AbstractGenericConsumer(String queueName) {
+		this(queueName, null, null);
+	}
+
+	public AbstractGenericConsumer(String queueName, ISchemaRegistry schemaRegistry) {
+		this(queueName, schemaRegistry, null);
+	}
+
+	/**
+	 * Constructs a consumer that decodes incoming messages into generic records of the given reader schema.
+	 * 
+	 * @param queueName The name of the queue.
+	 * @param schemaRegistry The registry used to decode fingerprint transports, or null.
+	 * @param readerSchema The schema into which incoming messages are decoded, or null to decode messages using the
+	 *            schema they were written with.
+	 */
+	public AbstractGenericConsumer(String queueName, ISchemaRegistry schemaRegistry, Schema readerSchema) {
+		super(queueName, schemaRegistry, readerSchema);
+	}
+
+	// protected methods
+
+	/**
+	 * Reads the content of an incoming message into a generic record of the reader schema.
+	 */
+	@Override
+	protected GenericRecord readContent(Message incomingMessage) throws DecodeMessageContentException {
+		return incomingMessage.decodeGeneric(readerSchema, null);
+	}
+
+}
@@ -0,0 +1,62 @@
+/**
+ * Copyright (c) 2017-2018, FinancialForce.com, inc
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ *   are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ *      this list of conditions and the following disclaimer in the documentation
+ *      and/or other materials provided with the distribution.
+ * - Neither the name of the FinancialForce.com, inc nor the names of its contributors
+ *      may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ *  OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL
+ *  THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ *  EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ *  OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY
+ *  OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ **/
+
+package com.financialforce.orizuru;
+
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericContainer;
+import org.apache.avro.io.DatumWriter;
+
+import com.financialforce.orizuru.cache.DatumCache;
+import com.financialforce.orizuru.interfaces.ISchemaRegistry;
+
+/**
+ * Sends messages encoded with a generic writer, without regard to any generated classes for their schemas.
+ * <p>
+ * The transport is the same as that sent by {@link AbstractPublisher}; only the writer used for the message content
+ * differs, so that publishing generic records does not look up classes by schema name.
+ */
+public abstract class AbstractGenericPublisher<O extends GenericContainer> extends AbstractPublisher<O> {
+
+	public AbstractGenericPublisher(String queueName) {
+		super(queueName);
+	}
+
+	public AbstractGenericPublisher(String queueName, ISchemaRegistry schemaRegistry) {
+		super(queueName, schemaRegistry);
+	}
+
+	// protected methods
+
+	/**
+	 * Returns the generic writer for messages with the given schema.
+	 */
+	@Override
+	protected DatumWriter<O> getMessageWriter(Schema messageSchema) {
+		return DatumCache.getInstance().getGenericWriter(messageSchema);
+	}
+
+}
@@ -26,21 +26,32 @@
 
 package com.financialforce.orizuru;
 
-import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.List;
 
+import org.apache.avro.Schema;
 import org.apache.avro.generic.GenericContainer;
 import org.apache.avro.io.BinaryEncoder;
 import org.apache.avro.io.DatumWriter;
-import org.apache.avro.io.EncoderFactory;
-import org.apache.avro.specific.SpecificDatumWriter;
 
+import com.financialforce.orizuru.cache.DatumCache;
+import com.financialforce.orizuru.codec.DirectBufferPool;
+import com.financialforce.orizuru.codec.PooledBuffer;
+import com.financialforce.orizuru.codec.ReusableOutputStream;
+import com.financialforce.orizuru.codec.ThreadLocalCodec;
+import com.financialforce.orizuru.codec.TransportCodec;
+import com.financialforce.orizuru.codec.TransportFormat;
 import com.financialforce.orizuru.exception.publisher.OrizuruPublisherException;
+import com.financialforce.orizuru.exception.publisher.encode.EncodeMessageContentException;
 import com.financialforce.orizuru.exception.publisher.encode.EncodeTransportException;
+import com.financialforce.orizuru.instrumentation.NoOpStageListener;
+import com.financialforce.orizuru.instrumentation.Stage;
+import com.financialforce.orizuru.interfaces.ICompressionCodec;
 import com.financialforce.orizuru.interfaces.IPublisher;
+import com.financialforce.orizuru.interfaces.ISchemaRegistry;
+import com.financialforce.orizuru.interfaces.IStageListener;
 import com.financialforce.orizuru.message.Context;
-import com.financialforce.orizuru.message.Message;
-import com.financialforce.orizuru.transport.Transport;
 
 /**
  * Sends a message containing a FinancialForce Orizuru Avro Transport schema.
@@ -62,15 +73,54 @@ import com.financialforce.orizuru.transport.Transport;
  * }
  * </code>
  * </pre>
+ * <p>
+ * If a schema registry is provided, messages are instead sent in the {@link TransportFormat#FINGERPRINT} format,
+ * which carries the schema fingerprints in place of the schema text.
+ * <p>
+ * Many messages sharing one context can be published together in the {@link TransportFormat#BATCH} format, which
+ * carries the context and the schema text once for the whole batch.
+ * <p>
+ * If a compression codec is set, context and message buffers of at least the compression threshold are compressed
+ * and the transport is sent in the {@link TransportFormat#COMPRESSED} or
+ * {@link TransportFormat#COMPRESSED_FINGERPRINT} format. A buffer is only sent compressed if that makes it smaller.
+ * Consumers decompress the buffers before decoding the context and message, so handlers are unaffected. Batch
+ * transports are not compressed.
+ * <p>
+ * Messages can also be published into a direct buffer taken from the buffer pool, which the caller releases once
+ * the message has been sent. This saves both allocating a byte array for each message and copying it into a direct
+ * buffer for the socket.
+ * <p>
+ * The time taken to write each transport is reported to the stage listener as {@link Stage#ENCODE_TRANSPORT}. By
+ * default no listener is set and publishing is not timed.
  */
 public abstract class AbstractPublisher<O extends GenericContainer> implements IPublisher<O> {
 
+	/**
+	 * The default size in bytes from which buffers are compressed.
+	 */
+	public static final int DEFAULT_COMPRESSION_THRESHOLD = 1024;
+
 	protected String queueName;
 
+	protected ISchemaRegistry schemaRegistry = null;
+
+	protected IStageListener stageListener = NoOpStageListener.getInstance();
+
+	protected ICompressionCodec compressionCodec = null;
+
+	protected int compressionThreshold = DEFAULT_COMPRESSION_THRESHOLD;
+
+	protected DirectBufferPool bufferPool = DirectBufferPool.getInstance();
+
 	public AbstractPublisher(String queueName) {
 		this.queueName = queueName;
 	}
 
+	public AbstractPublisher(String queueName, ISchemaRegistry schemaRegistry) {
+		this.queueName = queueName;
+		this.schemaRegistry = schemaRegistry;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -80,19 +130,212 @@ public abstract class AbstractPublisher<O extends GenericContainer> implements I
 	 */
 	@Override
 	public byte[] publish(Context context, O message) throws OrizuruPublisherException {
+		return write(context, message).toByteArray();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * com.financialforce.orizuru.interfaces.IPublisher#publish(com.financialforce.
+	 * orizuru.message.Context, org.apache.avro.generic.GenericContainer, java.nio.ByteBuffer)
+	 */
+	@Override
+	public ByteBuffer publish(Context context, O message, ByteBuffer destination) throws OrizuruPublisherException {
+
+		ReusableOutputStream output = write(context, message);
+
+		try {
+			destination.put(output.getBuffer(), 0, output.size());
+			return destination;
+		} catch (Exception ex) {
+			throw new OrizuruPublisherException(ex);
+		}
+
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * com.financialforce.orizuru.interfaces.IPublisher#publishBatch(com.financialforce.
+	 * orizuru.message.Context, java.util.List)
+	 */
+	@Override
+	public byte[] publishBatch(Context context, List<O> messages) throws OrizuruPublisherException {
+		return writeBatchTimed(context, messages).toByteArray();
+	}
+
+	/**
+	 * Publishes the given context and message into a direct buffer taken from the buffer pool.
+	 * 
+	 * @param context The FinancialForce Orizuru Avro Context part of the Transport schema.
+	 * @param message The message to be published.
+	 * @return The pooled buffer, holding the FinancialForce Orizuru Avro Transport message between its position and
+	 *         limit; it must be released once the message has been sent.
+	 * @throws OrizuruPublisherException Exception thrown when publishing the message fails.
+	 */
+	public PooledBuffer publishPooled(Context context, O message) throws OrizuruPublisherException {
+		return toPooledBuffer(write(context, message));
+	}
+
+	/**
+	 * Publishes the given context and messages as a single batch into a direct buffer taken from the buffer pool.
+	 * 
+	 * @param context The FinancialForce Orizuru Avro Context part of the Transport schema.
+	 * @param messages The messages to be published.
+	 * @return The pooled buffer, holding the batch transport between its position and limit; it must be released
+	 *         once the batch has been sent.
+	 * @throws OrizuruPublisherException Exception thrown when publishing the batch fails.
+	 */
+	public PooledBuffer publishBatchPooled(Context context, List<O> messages) throws OrizuruPublisherException {
+		return toPooledBuffer(writeBatchTimed(context, messages));
+	}
+
+	@Override
+	public String getQueueName() {
+		return queueName;
+	}
+
+	// protected methods
+
+	/**
+	 * Returns the writer used to encode messages with the given schema.
+	 * <p>
+	 * Override this method to encode messages with a different writer.
+	 * 
+	 * @param messageSchema The schema of the message.
+	 * @return The datum writer.
+	 */
+	protected DatumWriter<O> getMessageWriter(Schema messageSchema) {
+		return DatumCache.getInstance().getWriter(messageSchema);
+	}
+
+	// private methods
+
+	/**
+	 * Writes the transport into the output stream of the thread's codec, timing it only if the stage listener is
+	 * enabled.
+	 */
+	private ReusableOutputStream write(Context context, O message) throws OrizuruPublisherException {
+		return stageListener.isEnabled() ? time(() -> writeTransport(context, message)) : writeTransport(context, message);
+	}
+
+	/**
+	 * Writes the batch transport, timing it only if the stage listener is enabled.
+	 */
+	private ReusableOutputStream writeBatchTimed(Context context, List<O> messages) throws OrizuruPublisherException {
+		return stageListener.isEnabled() ? time(() -> writeBatch(context, messages)) : writeBatch(context, messages);
+	}
+
+	/**
+	 * Copies the written transport into a buffer from the buffer pool, ready to be read.
+	 */
+	private PooledBuffer toPooledBuffer(ReusableOutputStream output) {
+
+		PooledBuffer pooledBuffer = bufferPool.acquire(output.size());
 
+		ByteBuffer buffer = pooledBuffer.getBuffer();
+		buffer.put(output.getBuffer(), 0, output.size());
+		buffer.flip();
+
+		return pooledBuffer;
+
+	}
+
+	/**
+	 * Writes a transport, reporting its duration and size to the stage listener.
+	 * <p>
+	 * Callers check that the listener is enabled before calling this, so that the write is not wrapped when nothing
+	 * is listening.
+	 */
+	private ReusableOutputStream time(Write write) throws OrizuruPublisherException {
+
+		long startTime = System.nanoTime();
 		try {
+			ReusableOutputStream output = write.write();
+			stageListener.stageCompleted(queueName, Stage.ENCODE_TRANSPORT, System.nanoTime() - startTime, output.size(), null);
+			return output;
+		} catch (OrizuruPublisherException ex) {
+			stageListener.stageCompleted(queueName, Stage.ENCODE_TRANSPORT, System.nanoTime() - startTime, 0, ex);
+			throw ex;
+		}
+
+	}
+
+	/**
+	 * Writes the batch transport into the output stream of the thread's codec.
+	 */
+	private ReusableOutputStream writeBatch(Context context, List<O> messages) throws OrizuruPublisherException {
+
+		try {
+
+			if (messages.isEmpty()) {
+				throw new IllegalArgumentException("A batch must contain at least one message");
+			}
+
+			Schema messageSchema = messages.get(0).getSchema();
+
+			ThreadLocalCodec codec = ThreadLocalCodec.get();
+			BinaryEncoder encoder = codec.encoder();
+
+			writeBatchTransportHeader(codec, encoder, context.getSchemaText(), context.getDataBuffer(), messageSchema.toString(),
+					messages.size());
+
+			for (O message : messages) {
+
+				if (!messageSchema.equals(message.getSchema())) {
+					throw new IllegalArgumentException("All of the messages in a batch must have the same schema");
+				}
+
+				encoder.startItem();
+				writeMessage(codec, encoder, messageSchema, message);
+
+			}
+
+			encoder.writeArrayEnd();
+
+			return codec.getOutput();
+
+		} catch (OrizuruPublisherException ex) {
+			throw ex;
+		} catch (Exception ex) {
+			throw new OrizuruPublisherException(ex);
+		}
+
+	}
+
+	/**
+	 * Writes the single message transport into the output stream of the thread's codec.
+	 */
+	private ReusableOutputStream writeTransport(Context context, O message) throws OrizuruPublisherException {
+
+		try {
+
+			if (compressionCodec != null) {
+				return writeCompressedTransport(context, message);
+			}
 
-			CharSequence contextSchema = context.getSchema().toString();
 			ByteBuffer contextBuffer = context.getDataBuffer();
+			Schema messageSchema = message.getSchema();
 
-			Message outgoingMessage = new Message();
-			outgoingMessage.encode(message);
+			// The transport fields and the message are written in a single pass into one buffer
+			ThreadLocalCodec codec = ThreadLocalCodec.get();
+			BinaryEncoder encoder = codec.encoder();
 
-			CharSequence messageSchema = outgoingMessage.getSchema().toString();
-			ByteBuffer messageBuffer = outgoingMessage.getDataBuffer();
+			if (schemaRegistry != null) {
+				long contextFingerprint = schemaRegistry.register(context.getSchema());
+				long messageFingerprint = schemaRegistry.register(messageSchema);
+				writeFormatHeader(codec.getOutput(), TransportFormat.FINGERPRINT, (byte) 0);
+				writeFingerprintTransportHeader(encoder, contextFingerprint, contextBuffer, messageFingerprint);
+			} else {
+				// The context schema text is forwarded as received, so the context is never parsed
+				writeTransportHeader(codec.getOutput(), context.getSchemaText(), contextBuffer, messageSchema.toString());
+			}
 
-			return writeTransport(contextSchema, contextBuffer, messageSchema, messageBuffer);
+			writeMessage(codec, encoder, messageSchema, message);
+
+			return codec.getOutput();
 
 		} catch (OrizuruPublisherException ex) {
 			throw ex;
@@ -102,33 +345,184 @@ public abstract class AbstractPublisher<O extends GenericContainer> implements I
 
 	}
 
-	@Override
-	public String getQueueName() {
-		return queueName;
+	/**
+	 * Writes the single message transport, compressing the buffers that reach the threshold, into the output stream
+	 * of the thread's codec.
+	 */
+	private ReusableOutputStream writeCompressedTransport(Context context, O message) throws OrizuruPublisherException, IOException {
+
+		ByteBuffer contextBuffer = context.getDataBuffer();
+		Schema messageSchema = message.getSchema();
+
+		// The message must be compressed before the transport is written, so it is encoded on its own first
+		ByteBuffer messageBuffer = encodeMessage(messageSchema, message);
+
+		ByteBuffer compressedContext = compress(contextBuffer);
+		ByteBuffer compressedMessage = compress(messageBuffer);
+		int flags = (compressedContext == contextBuffer ? 0 : TransportFormat.CONTEXT_COMPRESSED)
+				| (compressedMessage == messageBuffer ? 0 : TransportFormat.MESSAGE_COMPRESSED);
+
+		ThreadLocalCodec codec = ThreadLocalCodec.get();
+		BinaryEncoder encoder = codec.encoder();
+
+		if (schemaRegistry != null) {
+			long contextFingerprint = schemaRegistry.register(context.getSchema());
+			long messageFingerprint = schemaRegistry.register(messageSchema);
+			writeFormatHeader(codec.getOutput(), flags == 0 ? TransportFormat.FINGERPRINT : TransportFormat.COMPRESSED_FINGERPRINT,
+					(byte) flags);
+			writeFingerprintTransportHeader(encoder, contextFingerprint, compressedContext, messageFingerprint);
+		} else {
+			if (flags != 0) {
+				writeFormatHeader(codec.getOutput(), TransportFormat.COMPRESSED, (byte) flags);
+			}
+			writeTransportHeader(codec.getOutput(), context.getSchemaText(), compressedContext, messageSchema.toString());
+		}
+
+		encoder.writeBytes(compressedMessage);
+		encoder.flush();
+
+		return codec.getOutput();
+
 	}
 
-	// private methods
+	/**
+	 * Compresses the buffer if it reaches the threshold and compressing it makes it smaller, otherwise returns the
+	 * buffer itself.
+	 */
+	private ByteBuffer compress(ByteBuffer buffer) throws EncodeTransportException {
+
+		try {
+
+			if (buffer.remaining() < compressionThreshold) {
+				return buffer;
+			}
 
-	private byte[] writeTransport(CharSequence contextSchema, ByteBuffer contextBuffer, CharSequence messageSchema,
-			ByteBuffer messageBuffer) throws EncodeTransportException {
+			ByteBuffer compressed = compressionCodec.compress(buffer);
+			return compressed.remaining() < buffer.remaining() ? compressed : buffer;
+
+		} catch (Exception ex) {
+			throw new EncodeTransportException(ex);
+		}
+
+	}
+
+	/**
+	 * Writes the marker and version of a format with a header, followed by the codec identifier and flags of a
+	 * compressed format.
+	 */
+	private void writeFormatHeader(ReusableOutputStream output, TransportFormat format, byte flags) {
+
+		output.write(TransportFormat.MARKER);
+		output.write(format.getVersion());
+
+		if (format.isCompressed()) {
+			output.write(compressionCodec.getId());
+			output.write(flags);
+		}
+
+	}
+
+	/**
+	 * Writes the fields of the Transport record that precede the message buffer with the {@link TransportCodec}.
+	 */
+	private void writeTransportHeader(ReusableOutputStream output, CharSequence contextSchema, ByteBuffer contextBuffer,
+			String messageSchema) throws EncodeTransportException {
 
 		try {
+			TransportCodec.writeHeader(output, contextSchema, contextBuffer, messageSchema);
+		} catch (Exception ex) {
+			throw new EncodeTransportException(ex);
+		}
 
-			ByteArrayOutputStream baos = new ByteArrayOutputStream();
+	}
 
-			DatumWriter<Transport> transportDatumWriter = new SpecificDatumWriter<Transport>(Transport.class);
-			BinaryEncoder transportEncoder = EncoderFactory.get().binaryEncoder(baos, null);
+	/**
+	 * Writes the fields of the FingerprintTransport record that precede the message buffer.
+	 */
+	private void writeFingerprintTransportHeader(BinaryEncoder encoder, long contextFingerprint, ByteBuffer contextBuffer,
+			long messageFingerprint) throws EncodeTransportException {
 
-			Transport transport = new Transport(contextSchema, contextBuffer, messageSchema, messageBuffer);
-			transportDatumWriter.write(transport, transportEncoder);
-			transportEncoder.flush();
+		try {
+			encoder.writeLong(contextFingerprint);
+			encoder.writeBytes(contextBuffer);
+			encoder.writeLong(messageFingerprint);
+		} catch (Exception ex) {
+			throw new EncodeTransportException(ex);
+		}
 
-			return baos.toByteArray();
+	}
+
+	/**
+	 * Writes the format header and the fields of the BatchTransport record that precede the message buffers, up to
+	 * the start of the message buffer array.
+	 */
+	private void writeBatchTransportHeader(ThreadLocalCodec codec, BinaryEncoder encoder, CharSequence contextSchema,
+			ByteBuffer contextBuffer, String messageSchema, int messageCount) throws EncodeTransportException {
 
+		try {
+			writeFormatHeader(codec.getOutput(), TransportFormat.BATCH, (byte) 0);
+			encoder.writeString(contextSchema);
+			encoder.writeBytes(contextBuffer);
+			encoder.writeString(messageSchema);
+			encoder.writeArrayStart();
+			encoder.setItemCount(messageCount);
 		} catch (Exception ex) {
 			throw new EncodeTransportException(ex);
 		}
 
 	}
 
+	/**
+	 * Writes the message buffer field by encoding the message directly after a length prefix.
+	 */
+	private void writeMessage(ThreadLocalCodec codec, BinaryEncoder encoder, Schema messageSchema, O message)
+			throws EncodeMessageContentException {
+
+		try {
+
+			ReusableOutputStream output = codec.getOutput();
+			int lengthPosition = output.reserveLengthPrefix();
+
+			DatumWriter<O> messageDatumWriter = getMessageWriter(messageSchema);
+			messageDatumWriter.write(message, encoder);
+			encoder.flush();
+
+			output.writeLengthPrefix(lengthPosition);
+
+		} catch (Exception ex) {
+			throw new EncodeMessageContentException(ex);
+		}
+
+	}
+
+	/**
+	 * Encodes the message on its own into a new buffer.
+	 */
+	private ByteBuffer encodeMessage(Schema messageSchema, O message) throws EncodeMessageContentException {
+
+		try {
+
+			ThreadLocalCodec codec = ThreadLocalCodec.get();
+			BinaryEncoder encoder = codec.encoder();
+
+			getMessageWriter(messageSchema).write(message, encoder);
+			encoder.flush();
+
+			return ByteBuffer.wrap(codec.getOutput().toByteArray());
+
+		} catch (Exception ex) {
+			throw new EncodeMessageContentException(ex);
+		}
+
+	}
+
+	/**
+	 * Writes a transport into the output stream of the thread's codec.
+	 */
+	private interface Write {
+
+		ReusableOutputStream write() throws OrizuruPublisherException;
+
+	}
+
 }
@@ -0,0 +1,160 @@
+/**
+ * Copyright (c) 2017-2018, FinancialForce.com, inc
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ *   are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ *      this list of conditions and the following disclaimer in the documentation
+ *      and/or other materials provided with the distribution.
+ * - Neither the name of the FinancialForce.com, inc nor the names of its contributors
+ *      may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ *  OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL
+ *  THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ *  EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ *  OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY
+ *  OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ **/
+
+package com.financialforce.orizuru;
+
+import org.apache.avro.AvroRuntimeException;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericContainer;
+import org.apache.avro.generic.IndexedRecord;
+
+import com.financialforce.orizuru.exception.OrizuruException;
+import com.financialforce.orizuru.exception.consumer.decode.DecodeMessageContentException;
+import com.financialforce.orizuru.exception.consumer.handler.HandleMessageException;
+import com.financialforce.orizuru.instrumentation.Stage;
+import com.financialforce.orizuru.interfaces.ISchemaRegistry;
+import com.financialforce.orizuru.message.ArrayStream;
+import com.financialforce.orizuru.message.Context;
+import com.financialforce.orizuru.message.Message;
+
+/**
+ * Handles a message whose content is essentially one large array, passing the items of the array to the handler as
+ * they are decoded rather than decoding the whole message first.
+ * <p>
+ * The items are decoded from the message bytes one at a time, so the memory used by a message is bounded by the size
+ * of an item however large the array. The fields of the message before the array are skipped, and those after it are
+ * not read. Items are decoded into the reader schema of the consumer, which by default is the schema of the generated
+ * class bound to <code>E</code>.
+ * <p>
+ * The items of a message passed directly from a consumer in the same JVM, and of the messages in a batch, have
+ * already been decoded, and are passed to the handler as they are.
+ * <p>
+ * The time reported for {@link Stage#HANDLE_MESSAGE} includes the time taken to decode the items.
+ */
+public abstract class AbstractStreamingConsumer<E extends GenericContainer, O extends GenericContainer>
+		extends AbstractConsumer<GenericContainer, O> {
+
+	protected String fieldName;
+
+	protected Schema itemReaderSchema;
+
+	public AbstractStreamingConsumer(String queueName, String fieldName) {
+		this(queueName, null, fieldName, null);
+	}
+
+	public AbstractStreamingConsumer(String queueName, ISchemaRegistry schemaRegistry, String fieldName) {
+		this(queueName, schemaRegistry, fieldName, null);
+	}
+
+	/**
+	 * Constructs a consumer that decodes the items of the array field into the given reader schema.
+	 * 
+	 * @param queueName The name of the queue.
+	 * @param schemaRegistry The registry used to decode fingerprint transports, or null.
+	 * @param fieldName The name of the array field of the incoming messages.
+	 * @param itemReaderSchema The schema into which the items are decoded, or null to use the schema of the generated
+	 *            class of the items. If neither is available the items are decoded using the schema they were written
+	 *            with.
+	 */
+	public AbstractStreamingConsumer(String queueName, ISchemaRegistry schemaRegistry, String fieldName, Schema itemReaderSchema) {
+		super(queueName, schemaRegistry);
+		this.fieldName = fieldName;
+		this.itemReaderSchema = itemReaderSchema != null ? itemReaderSchema
+				: findSchema(getClass(), AbstractStreamingConsumer.class.getTypeParameters()[0]);
+	}
+
+	/**
+	 * Handles the items of the array field of a message.
+	 * 
+	 * @param context The context of the message.
+	 * @param items The items, decoded as they are requested.
+	 * @return The outgoing message.
+	 * @throws HandleMessageException Exception thrown if handling the items fails.
+	 */
+	public abstract O handleItems(Context context, ArrayStream<E> items) throws HandleMessageException;
+
+	/**
+	 * Handles a message that has already been decoded by passing the items of its array field to
+	 * {@link #handleItems(Context, ArrayStream)}.
+	 */
+	@Override
+	public final O handleMessage(Context context, GenericContainer input) throws HandleMessageException {
+
+		ArrayStream<E> items;
+		try {
+			items = ArrayStream.of((IndexedRecord) input, fieldName);
+		} catch (RuntimeException ex) {
+			throw new HandleMessageException(ex);
+		}
+
+		return handleItems(context, items);
+
+	}
+
+	/**
+	 * @return the name of the array field
+	 */
+	public String getFieldName() {
+		return fieldName;
+	}
+
+	// protected methods
+
+	/**
+	 * Passes the items of the array field to the handler as they are decoded, and publishes the outgoing message.
+	 */
+	@Override
+	protected byte[] consumeMessage(Context context, Message incomingMessage) throws OrizuruException {
+
+		if (!stageListener.isEnabled()) {
+			return publish(context, handleStream(context, incomingMessage.decodeArray(fieldName, itemReaderSchema)));
+		}
+
+		ArrayStream<E> items = time(Stage.DECODE_MESSAGE, incomingMessage.getDataSize(),
+				() -> incomingMessage.decodeArray(fieldName, itemReaderSchema));
+
+		O outgoingMessage = time(Stage.HANDLE_MESSAGE, 1, () -> handleStream(context, items));
+
+		return publish(context, outgoingMessage);
+
+	}
+
+	// private methods
+
+	/**
+	 * Passes the items to the handler, reporting a failure to decode an item as a decoding failure.
+	 */
+	private O handleStream(Context context, ArrayStream<E> items) throws OrizuruException {
+
+		try {
+			return handleItems(context, items);
+		} catch (AvroRuntimeException ex) {
+			throw new DecodeMessageContentException(ex);
+		}
+
+	}
+
+}
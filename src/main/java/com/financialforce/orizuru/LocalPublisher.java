@@ -0,0 +1,188 @@
+/**
+ * Copyright (c) 2017-2018, FinancialForce.com, inc
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ *   are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ *      this list of conditions and the following disclaimer in the documentation
+ *      and/or other materials provided with the distribution.
+ * - Neither the name of the FinancialForce.com, inc nor the names of its contributors
+ *      may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ *  OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL
+ *  THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ *  EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ *  OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY
+ *  OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ **/
+
+package com.financialforce.orizuru;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericContainer;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.specific.SpecificData;
+import org.apache.avro.specific.SpecificRecord;
+
+import com.financialforce.orizuru.exception.OrizuruException;
+import com.financialforce.orizuru.exception.publisher.OrizuruPublisherException;
+import com.financialforce.orizuru.interfaces.IPublisher;
+import com.financialforce.orizuru.message.Context;
+
+/**
+ * Publishes messages directly to the next consumer in the same JVM.
+ * <p>
+ * Rather than encoding the context and message into a transport, only for the next consumer to decode them again,
+ * the publisher passes them straight to {@link AbstractConsumer#consume(Context, GenericContainer)}. The bytes
+ * returned are those published by the next consumer, so a chain of local consumers only encodes a message when it
+ * leaves the process.
+ * <p>
+ * By default the message object itself is passed on, so neither consumer should change it once published. If the
+ * publisher is constructed to copy messages, each consumer sees its own copy instead.
+ * <p>
+ * If the next consumer reads a different schema from that of the message, the message is encoded and consumed as
+ * usual so that the schemas are resolved. The same applies if the next consumer filters or deduplicates messages,
+ * since both work on the encoded message.
+ * 
+ * @param <O> the type of the message content to publish
+ */
+public class LocalPublisher<O extends GenericContainer> implements IPublisher<O> {
+
+	protected AbstractConsumer<O, ?> consumer;
+
+	protected boolean copyMessages = false;
+
+	protected AbstractPublisher<O> transportPublisher;
+
+	public LocalPublisher(AbstractConsumer<O, ?> consumer) {
+		this(consumer, false);
+	}
+
+	public LocalPublisher(AbstractConsumer<O, ?> consumer, boolean copyMessages) {
+		this.consumer = consumer;
+		this.copyMessages = copyMessages;
+		this.transportPublisher = new AbstractPublisher<O>(consumer.getQueueName(), consumer.schemaRegistry) {
+		};
+	}
+
+	/* (non-Javadoc)
+	 * @see com.financialforce.orizuru.interfaces.IPublisher#publish(com.financialforce.orizuru.message.Context, org.apache.avro.generic.GenericContainer)
+	 */
+	@Override
+	public byte[] publish(Context context, O message) throws OrizuruException {
+
+		if (message == null) {
+			throw new OrizuruPublisherException(new NullPointerException("The message must not be null"));
+		}
+
+		if (!isConsumedDirectly(message.getSchema())) {
+			return consumer.consume(transportPublisher.publish(context, message));
+		}
+
+		return consumer.consume(context, prepare(message));
+
+	}
+
+	/* (non-Javadoc)
+	 * @see com.financialforce.orizuru.interfaces.IPublisher#publish(com.financialforce.orizuru.message.Context, org.apache.avro.generic.GenericContainer, java.nio.ByteBuffer)
+	 */
+	@Override
+	public ByteBuffer publish(Context context, O message, ByteBuffer destination) throws OrizuruException {
+
+		byte[] outgoingMessage = publish(context, message);
+
+		try {
+			return outgoingMessage == null ? destination : destination.put(outgoingMessage);
+		} catch (BufferOverflowException ex) {
+			throw new OrizuruPublisherException(ex);
+		}
+
+	}
+
+	/* (non-Javadoc)
+	 * @see com.financialforce.orizuru.interfaces.IPublisher#publishBatch(com.financialforce.orizuru.message.Context, java.util.List)
+	 */
+	@Override
+	public byte[] publishBatch(Context context, List<O> messages) throws OrizuruException {
+
+		if (messages.isEmpty()) {
+			throw new OrizuruPublisherException(new IllegalArgumentException("A batch must contain at least one message"));
+		}
+
+		Schema messageSchema = messages.get(0).getSchema();
+		if (!isConsumedDirectly(messageSchema)) {
+			return consumer.consume(transportPublisher.publishBatch(context, messages));
+		}
+
+		List<O> inputs = new ArrayList<>(messages.size());
+		for (O message : messages) {
+
+			if (!messageSchema.equals(message.getSchema())) {
+				throw new OrizuruPublisherException(new IllegalArgumentException("All of the messages in a batch must have the same schema"));
+			}
+
+			inputs.add(prepare(message));
+
+		}
+
+		return consumer.consumeBatch(context, inputs);
+
+	}
+
+	/**
+	 * @return the queue name of the next consumer
+	 */
+	@Override
+	public String getQueueName() {
+		return consumer.getQueueName();
+	}
+
+	// private methods
+
+	/**
+	 * Checks whether messages can be passed to the next consumer without being encoded. The message filter and the
+	 * deduplication cache of the next consumer both need the encoded message.
+	 */
+	private boolean isConsumedDirectly(Schema messageSchema) {
+		return consumer.messageFilter == null && consumer.deduplicationCache == null && isReadAsWritten(messageSchema);
+	}
+
+	/**
+	 * Checks whether the next consumer reads messages with the schema they were written with.
+	 */
+	private boolean isReadAsWritten(Schema messageSchema) {
+		return consumer.readerSchema == null || consumer.readerSchema.equals(messageSchema);
+	}
+
+	/**
+	 * Copies the message if required, or if the next consumer expects a generated class the message is not.
+	 * Messages for a generic consumer are only ever copied as generic records.
+	 */
+	private O prepare(O message) {
+
+		if (consumer instanceof AbstractGenericConsumer) {
+			return copyMessages ? GenericData.get().deepCopy(message.getSchema(), message) : message;
+		}
+
+		if (copyMessages || (consumer.readerSchema != null && !(message instanceof SpecificRecord))) {
+			return SpecificData.get().deepCopy(message.getSchema(), message);
+		}
+
+		return message;
+
+	}
+
+}
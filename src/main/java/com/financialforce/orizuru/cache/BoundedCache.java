@@ -0,0 +1,246 @@
+/**
+ * Copyright (c) 2017-2018, FinancialForce.com, inc
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ *   are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ *      this list of conditions and the following disclaimer in the documentation
+ *      and/or other materials provided with the distribution.
+ * - Neither the name of the FinancialForce.com, inc nor the names of its contributors
+ *      may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ *  OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL
+ *  THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ *  EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ *  OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY
+ *  OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ **/
+
+package com.financialforce.orizuru.cache;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * A thread-safe cache holding at most a fixed number of entries.
+ * <p>
+ * Lookups of existing entries do not lock. When a new entry takes the cache over its maximum size, the least
+ * recently used entries are evicted until a sixteenth of the cache is free, so that the cost of finding them is
+ * spread over many new entries. A thread adding an entry while another is evicting does not wait for it, so the
+ * cache may briefly hold more than its maximum size.
+ *
+ * @param <K> The type of the cache keys.
+ * @param <V> The type of the cached values.
+ */
+public class BoundedCache<K, V> {
+
+	private final ConcurrentHashMap<K, Entry<V>> entries = new ConcurrentHashMap<>();
+
+	private final ReentrantLock evictionLock = new ReentrantLock();
+
+	private final int maximumSize;
+
+	private final int evictedSize;
+
+	private final LongAdder requestCount = new LongAdder();
+	private final LongAdder missCount = new LongAdder();
+	private final LongAdder evictionCount = new LongAdder();
+
+	/**
+	 * Constructs a new empty cache.
+	 *
+	 * @param maximumSize The maximum number of entries to hold.
+	 */
+	public BoundedCache(int maximumSize) {
+
+		if (maximumSize < 1) {
+			throw new IllegalArgumentException("The maximum size must be at least 1");
+		}
+
+		this.maximumSize = maximumSize;
+		this.evictedSize = maximumSize - maximumSize / 16;
+
+	}
+
+	/**
+	 * Returns the value for the given key, loading and caching it if it is not already present.
+	 * <p>
+	 * If the loader throws an exception nothing is cached and the exception is propagated.
+	 *
+	 * @param key The key of the value.
+	 * @param loader The function used to create a missing value; must not return null.
+	 * @return The cached value.
+	 */
+	public V get(K key, Function<? super K, ? extends V> loader) {
+
+		requestCount.increment();
+
+		Entry<V> entry = entries.get(key);
+		if (entry == null) {
+			entry = entries.computeIfAbsent(key, k -> {
+				missCount.increment();
+				return new Entry<V>(loader.apply(k));
+			});
+			evict();
+		}
+
+		entry.lastAccess = System.nanoTime();
+		return entry.value;
+
+	}
+
+	/**
+	 * Returns the value for the given key without loading it.
+	 *
+	 * @param key The key of the value.
+	 * @return The cached value, or null if there is none.
+	 */
+	public V getIfPresent(K key) {
+
+		requestCount.increment();
+
+		Entry<V> entry = entries.get(key);
+		if (entry == null) {
+			missCount.increment();
+			return null;
+		}
+
+		entry.lastAccess = System.nanoTime();
+		return entry.value;
+
+	}
+
+	/**
+	 * Caches a value, replacing any existing value for the key.
+	 *
+	 * @param key The key of the value.
+	 * @param value The value; must not be null.
+	 */
+	public void put(K key, V value) {
+		entries.put(key, new Entry<V>(value));
+		evict();
+	}
+
+	/**
+	 * Removes the entry for the given key only if it holds the given value.
+	 *
+	 * @param key The key of the value.
+	 * @param value The value expected to be cached.
+	 * @return true if the entry was removed.
+	 */
+	public boolean remove(K key, V value) {
+
+		Entry<V> entry = entries.get(key);
+
+		return entry != null && entry.value == value && entries.remove(key, entry);
+
+	}
+
+	/**
+	 * Removes all entries from the cache. The statistics are not reset.
+	 */
+	public void clear() {
+		entries.clear();
+	}
+
+	/**
+	 * @return the number of entries currently in the cache
+	 */
+	public int size() {
+		return entries.size();
+	}
+
+	/**
+	 * @return the maximum number of entries held by the cache
+	 */
+	public int getMaximumSize() {
+		return maximumSize;
+	}
+
+	/**
+	 * @return the number of lookups that found an existing entry
+	 */
+	public long getHitCount() {
+		return requestCount.sum() - missCount.sum();
+	}
+
+	/**
+	 * @return the number of lookups that had to load a new entry
+	 */
+	public long getMissCount() {
+		return missCount.sum();
+	}
+
+	/**
+	 * @return the number of entries evicted to keep the cache within its maximum size
+	 */
+	public long getEvictionCount() {
+		return evictionCount.sum();
+	}
+
+	// private methods
+
+	private void evict() {
+
+		if (entries.size() <= maximumSize || !evictionLock.tryLock()) {
+			return;
+		}
+
+		try {
+
+			List<Map.Entry<K, Entry<V>>> candidates = new ArrayList<>(entries.entrySet());
+
+			// The access times are read once, so that the entries evicted are those found to be the eldest
+			long[] accesses = new long[candidates.size()];
+			for (int i = 0; i < accesses.length; i++) {
+				accesses[i] = candidates.get(i).getValue().lastAccess;
+			}
+
+			// Another thread may have evicted since the size was checked, leaving nothing to evict
+			int excess = candidates.size() > maximumSize ? candidates.size() - evictedSize : 0;
+			long[] sortedAccesses = accesses.clone();
+			Arrays.sort(sortedAccesses);
+			long newestEvicted = excess > 0 ? sortedAccesses[excess - 1] : Long.MIN_VALUE;
+
+			for (int i = 0; i < accesses.length && excess > 0; i++) {
+				Map.Entry<K, Entry<V>> candidate = candidates.get(i);
+				if (accesses[i] <= newestEvicted && entries.remove(candidate.getKey(), candidate.getValue())) {
+					evictionCount.increment();
+					excess--;
+				}
+			}
+
+		} finally {
+			evictionLock.unlock();
+		}
+
+	}
+
+	private static final class Entry<V> {
+
+		private final V value;
+
+		private volatile long lastAccess;
+
+		private Entry(V value) {
+			this.value = value;
+			this.lastAccess = System.nanoTime();
+		}
+
+	}
+
+}
@@ -0,0 +1,236 @@
+/**
+ * Copyright (c) 2017-2018, FinancialForce.com, inc
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ *   are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ *      this list of conditions and the following disclaimer in the documentation
+ *      and/or other materials provided with the distribution.
+ * - Neither the name of the FinancialForce.com, inc nor the names of its contributors
+ *      may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ *  OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL
+ *  THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ *  EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ *  OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY
+ *  OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ **/
+
+package com.financialforce.orizuru.cache;
+
+import java.util.function.BiFunction;
+
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.io.DatumReader;
+import org.apache.avro.io.DatumWriter;
+import org.apache.avro.specific.SpecificDatumReader;
+import org.apache.avro.specific.SpecificDatumWriter;
+
+/**
+ * Caches Avro datum readers and writers so that they are not rebuilt for every message.
+ * <p>
+ * Readers are keyed by the pair of writer and reader schemas. Avro datum readers keep unsynchronised internal
+ * state, so each thread is given its own reader for a pair. Datum writers are stateless once constructed and are
+ * shared between threads.
+ * <p>
+ * Specific readers and writers map schemas to generated classes where they exist. Generic readers and writers only
+ * ever use {@link org.apache.avro.generic.GenericData} records, so they avoid looking up classes by schema name, and
+ * are cached separately.
+ */
+public class DatumCache {
+
+	/**
+	 * The maximum number of readers and of writers held by the shared cache.
+	 */
+	public static final int DEFAULT_MAXIMUM_SIZE = 256;
+
+	private static final DatumCache INSTANCE = new DatumCache(DEFAULT_MAXIMUM_SIZE);
+
+	private final BoundedCache<Object, ThreadLocal<DatumReader<?>>> readers;
+
+	private final BoundedCache<Schema, DatumWriter<?>> writers;
+
+	private final BoundedCache<Object, ThreadLocal<DatumReader<?>>> genericReaders;
+
+	private final BoundedCache<Schema, DatumWriter<?>> genericWriters;
+
+	/**
+	 * Constructs a new empty datum cache.
+	 * 
+	 * @param maximumSize The maximum number of readers and of writers to hold.
+	 */
+	public DatumCache(int maximumSize) {
+		this.readers = new BoundedCache<>(maximumSize);
+		this.writers = new BoundedCache<>(maximumSize);
+		this.genericReaders = new BoundedCache<>(maximumSize);
+		this.genericWriters = new BoundedCache<>(maximumSize);
+	}
+
+	/**
+	 * @return the datum cache shared by the consumers and publishers
+	 */
+	public static DatumCache getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Returns a reader for data written with the given schema.
+	 * 
+	 * @param <T> The type of the data to read.
+	 * @param schema The schema used both to write and to read the data.
+	 * @return The datum reader for the current thread.
+	 */
+	public <T> DatumReader<T> getReader(Schema schema) {
+		return getReader(schema, schema);
+	}
+
+	/**
+	 * Returns a reader that resolves data written with the writer schema into the reader schema.
+	 * 
+	 * @param <T> The type of the data to read.
+	 * @param writerSchema The schema used to write the data.
+	 * @param readerSchema The schema of the data to read.
+	 * @return The datum reader for the current thread.
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> DatumReader<T> getReader(Schema writerSchema, Schema readerSchema) {
+
+		ThreadLocal<DatumReader<?>> reader = readers.get(keyOf(writerSchema, readerSchema),
+				key -> createReader(key, SpecificDatumReader<Object>::new));
+
+		return (DatumReader<T>) reader.get();
+
+	}
+
+	/**
+	 * Returns a generic reader that resolves data written with the writer schema into generic records of the reader
+	 * schema.
+	 * 
+	 * @param <T> The type of the data to read.
+	 * @param writerSchema The schema used to write the data.
+	 * @param readerSchema The schema of the data to read.
+	 * @return The datum reader for the current thread.
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> DatumReader<T> getGenericReader(Schema writerSchema, Schema readerSchema) {
+
+		ThreadLocal<DatumReader<?>> reader = genericReaders.get(keyOf(writerSchema, readerSchema),
+				key -> createReader(key, GenericDatumReader<Object>::new));
+
+		return (DatumReader<T>) reader.get();
+
+	}
+
+	/**
+	 * Returns a writer for data with the given schema.
+	 * 
+	 * @param <T> The type of the data to write.
+	 * @param schema The schema of the data.
+	 * @return The datum writer.
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> DatumWriter<T> getWriter(Schema schema) {
+		return (DatumWriter<T>) writers.get(schema, key -> new SpecificDatumWriter<Object>(key));
+	}
+
+	/**
+	 * Returns a generic writer for data with the given schema.
+	 * 
+	 * @param <T> The type of the data to write.
+	 * @param schema The schema of the data.
+	 * @return The datum writer.
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> DatumWriter<T> getGenericWriter(Schema schema) {
+		return (DatumWriter<T>) genericWriters.get(schema, key -> new GenericDatumWriter<Object>(key));
+	}
+
+	/**
+	 * @return the cache of datum readers, providing its statistics
+	 */
+	public BoundedCache<?, ?> getReaders() {
+		return readers;
+	}
+
+	/**
+	 * @return the cache of datum writers, providing its statistics
+	 */
+	public BoundedCache<?, ?> getWriters() {
+		return writers;
+	}
+
+	/**
+	 * @return the cache of generic datum readers, providing its statistics
+	 */
+	public BoundedCache<?, ?> getGenericReaders() {
+		return genericReaders;
+	}
+
+	/**
+	 * @return the cache of generic datum writers, providing its statistics
+	 */
+	public BoundedCache<?, ?> getGenericWriters() {
+		return genericWriters;
+	}
+
+	// private methods
+
+	/**
+	 * Keys readers that do not resolve between schemas by the schema alone to avoid allocating a pair.
+	 * <p>
+	 * Schemas parsed separately are distinct but equal, so they are compared by value; the schema caches
+	 * its hash code, which keeps the comparison cheap for schemas that differ.
+	 */
+	private static Object keyOf(Schema writerSchema, Schema readerSchema) {
+		return writerSchema == readerSchema || writerSchema.equals(readerSchema) ? writerSchema
+				: new SchemaPair(writerSchema, readerSchema);
+	}
+
+	private static ThreadLocal<DatumReader<?>> createReader(Object key, BiFunction<Schema, Schema, DatumReader<?>> factory) {
+
+		if (key instanceof SchemaPair) {
+			SchemaPair pair = (SchemaPair) key;
+			return ThreadLocal.withInitial(() -> factory.apply(pair.writerSchema, pair.readerSchema));
+		}
+
+		Schema schema = (Schema) key;
+		return ThreadLocal.withInitial(() -> factory.apply(schema, schema));
+
+	}
+
+	private static final class SchemaPair {
+
+		private final Schema writerSchema;
+
+		private final Schema readerSchema;
+
+		private SchemaPair(Schema writerSchema, Schema readerSchema) {
+			this.writerSchema = writerSchema;
+			this.readerSchema = readerSchema;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof SchemaPair
+					&& writerSchema.equals(((SchemaPair) obj).writerSchema)
+					&& readerSchema.equals(((SchemaPair) obj).readerSchema);
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * writerSchema.hashCode() + readerSchema.hashCode();
+		}
+
+	}
+
+}
@@ -0,0 +1,222 @@
+/**
+ * Copyright (c) 2017-2018, FinancialForce.com, inc
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ *   are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ *      this list of conditions and the following disclaimer in the documentation
+ *      and/or other materials provided with the distribution.
+ * - Neither the name of the FinancialForce.com, inc nor the names of its contributors
+ *      may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ *  OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL
+ *  THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ *  EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ *  OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY
+ *  OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ **/
+
+package com.financialforce.orizuru.cache;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Remembers the outcome of consuming each incoming message for a time, so that a consumer can recognise a message
+ * delivered more than once and return the previously published bytes instead of handling it again.
+ * <p>
+ * Messages are identified by a key, which is either a fingerprint of the message body or a key taken from the
+ * message context. Only the most recently used keys are held, and each key expires a fixed time after its outcome
+ * was recorded. A message that is redelivered while the first delivery is still being handled is not recognised.
+ * <p>
+ * Keys are not qualified by queue, so each consumer needs its own cache.
+ */
+public class DeduplicationCache {
+
+	/**
+	 * The default maximum number of messages remembered.
+	 */
+	public static final int DEFAULT_MAXIMUM_SIZE = 10000;
+
+	private static final String FINGERPRINT_ALGORITHM = "SHA-256";
+
+	private static final ThreadLocal<MessageDigest> DIGEST = ThreadLocal.withInitial(() -> createDigest(FINGERPRINT_ALGORITHM));
+
+	private final BoundedCache<Object, Entry> entries;
+
+	private final long timeToLive;
+
+	private final LongAdder duplicateCount = new LongAdder();
+
+	/**
+	 * Constructs a new empty cache.
+	 * 
+	 * @param maximumSize The maximum number of messages to remember.
+	 * @param timeToLive How long to remember each message for.
+	 * @param unit The unit of the time to live.
+	 */
+	public DeduplicationCache(int maximumSize, long timeToLive, TimeUnit unit) {
+
+		if (timeToLive <= 0) {
+			throw new IllegalArgumentException("The time to live must be positive");
+		}
+
+		this.entries = new BoundedCache<>(maximumSize);
+		this.timeToLive = unit.toNanos(timeToLive);
+
+	}
+
+	/**
+	 * Computes a key identifying a message by its content.
+	 * <p>
+	 * The key is a cryptographic digest of the remaining bytes of the body, so it does not keep the body itself
+	 * alive. The position of the body is not changed.
+	 * 
+	 * @param body The incoming message bytes.
+	 * @return The fingerprint of the body.
+	 */
+	public static Object fingerprint(ByteBuffer body) {
+
+		MessageDigest digest = DIGEST.get();
+		digest.update(body.duplicate());
+
+		return new Fingerprint(digest.digest());
+
+	}
+
+	/**
+	 * Returns the recorded outcome of consuming the message with the given key.
+	 * 
+	 * @param key The key of the message.
+	 * @return The outcome, or null if the message has not been consumed or its outcome has expired.
+	 */
+	public Entry get(Object key) {
+
+		Entry entry = entries.getIfPresent(key);
+		if (entry == null) {
+			return null;
+		}
+
+		if (System.nanoTime() - entry.recordedTime >= timeToLive) {
+			entries.remove(key, entry);
+			return null;
+		}
+
+		duplicateCount.increment();
+		return entry;
+
+	}
+
+	/**
+	 * Records the outcome of consuming the message with the given key. The cache keeps its own copy of the bytes.
+	 * 
+	 * @param key The key of the message.
+	 * @param outgoingMessage The published message bytes, or null if nothing was published.
+	 */
+	public void put(Object key, byte[] outgoingMessage) {
+		entries.put(key, new Entry(outgoingMessage == null ? null : outgoingMessage.clone()));
+	}
+
+	/**
+	 * Forgets all of the messages. The statistics are not reset.
+	 */
+	public void clear() {
+		entries.clear();
+	}
+
+	/**
+	 * @return the number of messages currently remembered, including any that have expired but not been removed
+	 */
+	public int size() {
+		return entries.size();
+	}
+
+	/**
+	 * @return the number of messages recognised as duplicates
+	 */
+	public long getDuplicateCount() {
+		return duplicateCount.sum();
+	}
+
+	/**
+	 * @return the number of messages forgotten before they expired to keep the cache within its maximum size
+	 */
+	public long getEvictionCount() {
+		return entries.getEvictionCount();
+	}
+
+	// package-private methods
+
+	/**
+	 * Creates a digest for fingerprints, failing with an {@link IllegalStateException} if the JVM lacks the
+	 * algorithm, which every JVM is required to provide for SHA-256.
+	 */
+	static MessageDigest createDigest(String algorithm) {
+
+		try {
+			return MessageDigest.getInstance(algorithm);
+		} catch (NoSuchAlgorithmException ex) {
+			throw new IllegalStateException(ex);
+		}
+
+	}
+
+	/**
+	 * The recorded outcome of consuming a message.
+	 */
+	public static final class Entry {
+
+		private final byte[] outgoingMessage;
+
+		private final long recordedTime;
+
+		private Entry(byte[] outgoingMessage) {
+			this.outgoingMessage = outgoingMessage;
+			this.recordedTime = System.nanoTime();
+		}
+
+		/**
+		 * @return a copy of the bytes published for the message, or null if nothing was published
+		 */
+		public byte[] getOutgoingMessage() {
+			return outgoingMessage == null ? null : outgoingMessage.clone();
+		}
+
+	}
+
+	private static final class Fingerprint {
+
+		private final byte[] digest;
+
+		private final int hashCode;
+
+		private Fingerprint(byte[] digest) {
+			this.digest = digest;
+			this.hashCode = Arrays.hashCode(digest);
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			return other instanceof Fingerprint && Arrays.equals(digest, ((Fingerprint) other).digest);
+		}
+
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+
+	}
+
+}
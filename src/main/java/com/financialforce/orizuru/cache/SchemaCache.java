@@ -0,0 +1,72 @@
+/**
+ * Copyright (c) 2017-2018, FinancialForce.com, inc
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ *   are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ *      this list of conditions and the following disclaimer in the documentation
+ *      and/or other materials provided with the distribution.
+ * - Neither the name of the FinancialForce.com, inc nor the names of its contributors
+ *      may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ *  OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL
+ *  THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ *  EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ *  OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY
+ *  OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ **/
+
+package com.financialforce.orizuru.cache;
+
+import org.apache.avro.Schema;
+
+/**
+ * Caches parsed Avro schemas keyed by their JSON text.
+ * <p>
+ * The schemas carried in the FinancialForce Orizuru Avro Transport schema are usually drawn from a small set, so
+ * parsing each one only once saves a significant amount of work when decoding messages.
+ */
+public class SchemaCache extends BoundedCache<String, Schema> {
+
+	/**
+	 * The maximum number of schemas held by the shared cache.
+	 */
+	public static final int DEFAULT_MAXIMUM_SIZE = 256;
+
+	private static final SchemaCache INSTANCE = new SchemaCache(DEFAULT_MAXIMUM_SIZE);
+
+	/**
+	 * Constructs a new empty schema cache.
+	 * 
+	 * @param maximumSize The maximum number of schemas to hold.
+	 */
+	public SchemaCache(int maximumSize) {
+		super(maximumSize);
+	}
+
+	/**
+	 * @return the schema cache shared by the message and context decoders
+	 */
+	public static SchemaCache getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Returns the parsed form of the given schema text, parsing it only if it is not already cached.
+	 * 
+	 * @param schema The JSON text of the schema.
+	 * @return The parsed schema.
+	 */
+	public Schema parse(String schema) {
+		return get(schema, text -> new Schema.Parser().parse(text));
+	}
+
+}
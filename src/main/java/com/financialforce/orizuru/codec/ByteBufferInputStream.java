@@ -0,0 +1,114 @@
+/**
+ * Copyright (c) 2017-2018, FinancialForce.com, inc
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ *   are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ *      this list of conditions and the following disclaimer in the documentation
+ *      and/or other materials provided with the distribution.
+ * - Neither the name of the FinancialForce.com, inc nor the names of its contributors
+ *      may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ *  OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL
+ *  THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ *  EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ *  OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY
+ *  OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ **/
+
+package com.financialforce.orizuru.codec;
+
+import java.io.EOFException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * An unsynchronised input stream reading the remaining bytes of a {@link ByteBuffer}.
+ * <p>
+ * The stream reads from a view of the buffer, so the position of the buffer itself is never changed. Unlike other
+ * streams, it can also return the next bytes as a slice of the buffer rather than copying them, which allows Avro
+ * bytes fields to be decoded without copying.
+ */
+public class ByteBufferInputStream extends InputStream {
+
+	private ByteBuffer buffer = ByteBuffer.allocate(0);
+
+	/**
+	 * Sets the buffer to read from.
+	 *
+	 * @param src The buffer; the bytes between its position and limit are read.
+	 * @return This stream.
+	 */
+	public ByteBufferInputStream reset(ByteBuffer src) {
+		buffer = src.duplicate();
+		return this;
+	}
+
+	@Override
+	public int read() {
+		return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+	}
+
+	@Override
+	public int read(byte[] dst, int offset, int length) {
+
+		if (length == 0) {
+			return 0;
+		}
+
+		if (!buffer.hasRemaining()) {
+			return -1;
+		}
+
+		int count = Math.min(length, buffer.remaining());
+		buffer.get(dst, offset, count);
+		return count;
+
+	}
+
+	@Override
+	public long skip(long length) {
+		int count = (int) Math.max(0, Math.min(length, buffer.remaining()));
+		buffer.position(buffer.position() + count);
+		return count;
+	}
+
+	@Override
+	public int available() {
+		return buffer.remaining();
+	}
+
+	/**
+	 * Reads the next bytes as a slice sharing the content of the buffer.
+	 *
+	 * @param length The number of bytes to read.
+	 * @return The slice, positioned at zero with its limit at the given length.
+	 * @throws EOFException Exception thrown if fewer bytes remain.
+	 * @throws IllegalArgumentException Exception thrown if the length is negative.
+	 */
+	public ByteBuffer readSlice(int length) throws EOFException {
+
+		if (length < 0) {
+			throw new IllegalArgumentException(String.format("Malformed data. Length is negative: %d", length));
+		}
+
+		if (length > buffer.remaining()) {
+			throw new EOFException();
+		}
+
+		ByteBuffer slice = buffer.slice();
+		slice.limit(length);
+		buffer.position(buffer.position() + length);
+		return slice;
+
+	}
+
+}
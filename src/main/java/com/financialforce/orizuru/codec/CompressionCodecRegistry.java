@@ -0,0 +1,121 @@
+/**
+ * Copyright (c) 2017-2018, FinancialForce.com, inc
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ *   are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ *      this list of conditions and the following disclaimer in the documentation
+ *      and/or other materials provided with the distribution.
+ * - Neither the name of the FinancialForce.com, inc nor the names of its contributors
+ *      may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ *  OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL
+ *  THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ *  EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ *  OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY
+ *  OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ **/
+
+package com.financialforce.orizuru.codec;
+
+import java.util.ServiceLoader;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.financialforce.orizuru.interfaces.ICompressionCodec;
+
+/**
+ * Finds the compression codec for the identifier in the header of a compressed transport.
+ * <p>
+ * The shared registry holds the {@link DeflateCompressionCodec} and every codec declared as an
+ * {@link ICompressionCodec} service in <code>META-INF/services</code>. Other codecs can be registered at runtime.
+ */
+public class CompressionCodecRegistry {
+
+	private static final CompressionCodecRegistry INSTANCE = createInstance();
+
+	private final AtomicReferenceArray<ICompressionCodec> codecs = new AtomicReferenceArray<>(256);
+
+	/**
+	 * Constructs a new registry holding only the {@link DeflateCompressionCodec}.
+	 */
+	public CompressionCodecRegistry() {
+		register(new DeflateCompressionCodec());
+	}
+
+	/**
+	 * @return the registry shared by the consumers
+	 */
+	public static CompressionCodecRegistry getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Registers a codec, replacing any codec with the same identifier and name.
+	 * 
+	 * @param codec The codec to register.
+	 * @throws IllegalArgumentException Exception thrown if a codec with a different name has the same identifier.
+	 */
+	public void register(ICompressionCodec codec) {
+
+		int index = codec.getId() & 0xFF;
+
+		// The codec only replaces the one it was checked against, so a conflicting codec is never briefly visible
+		ICompressionCodec existing;
+		do {
+
+			existing = codecs.get(index);
+			if (existing != null && !existing.getName().equals(codec.getName())) {
+				throw new IllegalArgumentException(
+						String.format("The compression codec identifier %d is already used by %s", index, existing.getName()));
+			}
+
+		} while (!codecs.compareAndSet(index, existing, codec));
+
+	}
+
+	/**
+	 * Registers every codec found by the service loader.
+	 * 
+	 * @param loader The service loader.
+	 */
+	public void registerAll(ServiceLoader<ICompressionCodec> loader) {
+		for (ICompressionCodec codec : loader) {
+			register(codec);
+		}
+	}
+
+	/**
+	 * Finds the codec with the given identifier.
+	 * 
+	 * @param id The identifier of the codec.
+	 * @return The codec.
+	 * @throws IllegalArgumentException Exception thrown if no codec has the identifier.
+	 */
+	public ICompressionCodec get(byte id) {
+
+		ICompressionCodec codec = codecs.get(id & 0xFF);
+		if (codec == null) {
+			throw new IllegalArgumentException(String.format("Unknown compression codec: %d", id & 0xFF));
+		}
+
+		return codec;
+
+	}
+
+	// private methods
+
+	private static CompressionCodecRegistry createInstance() {
+		CompressionCodecRegistry registry = new CompressionCodecRegistry();
+		registry.registerAll(ServiceLoader.load(ICompressionCodec.class));
+		return registry;
+	}
+
+}
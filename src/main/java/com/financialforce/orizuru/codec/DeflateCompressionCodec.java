@@ -0,0 +1,293 @@
+/**
+ * Copyright (c) 2017-2018, FinancialForce.com, inc
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ *   are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ *      this list of conditions and the following disclaimer in the documentation
+ *      and/or other materials provided with the distribution.
+ * - Neither the name of the FinancialForce.com, inc nor the names of its contributors
+ *      may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ *  OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL
+ *  THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ *  EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ *  OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY
+ *  OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ **/
+
+package com.financialforce.orizuru.codec;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Consumer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+import com.financialforce.orizuru.interfaces.ICompressionCodec;
+
+/**
+ * Compresses buffers with the Deflate algorithm of the JDK.
+ * <p>
+ * The compressed bytes are the length of the uncompressed bytes, as a four byte big-endian integer, followed by the
+ * raw Deflate stream, so the decompressed buffer can be allocated once at its final size. As the length comes from
+ * the incoming message, lengths above the maximum decompressed size are rejected before anything is allocated.
+ * <p>
+ * Deflaters and inflaters hold native memory, so a small number of idle ones are kept for reuse and any others are
+ * ended as soon as they have been used. Closing the codec ends the idle ones.
+ */
+public class DeflateCompressionCodec implements ICompressionCodec, AutoCloseable {
+
+	/**
+	 * The identifier of the codec.
+	 */
+	public static final byte ID = 1;
+
+	/**
+	 * The name of the codec.
+	 */
+	public static final String NAME = "deflate";
+
+	/**
+	 * The default largest size of the decompressed bytes.
+	 */
+	public static final int DEFAULT_MAXIMUM_DECOMPRESSED_SIZE = 64 << 20;
+
+	private static final int LENGTH_PREFIX = 4;
+
+	private static final int MAXIMUM_IDLE = 2 * Runtime.getRuntime().availableProcessors();
+
+	private final int level;
+
+	private final int maximumDecompressedSize;
+
+	private final BlockingQueue<Deflater> deflaters = new ArrayBlockingQueue<>(MAXIMUM_IDLE);
+
+	private final BlockingQueue<Inflater> inflaters = new ArrayBlockingQueue<>(MAXIMUM_IDLE);
+
+	private volatile boolean closed = false;
+
+	/**
+	 * Constructs a codec using the default compression level.
+	 */
+	public DeflateCompressionCodec() {
+		this(Deflater.DEFAULT_COMPRESSION);
+	}
+
+	/**
+	 * Constructs a codec using the given compression level.
+	 * 
+	 * @param level The compression level, from 0 to 9, or -1 for the default level.
+	 */
+	public DeflateCompressionCodec(int level) {
+		this(level, DEFAULT_MAXIMUM_DECOMPRESSED_SIZE);
+	}
+
+	/**
+	 * Constructs a codec using the given compression level and maximum decompressed size.
+	 * 
+	 * @param level The compression level, from 0 to 9, or -1 for the default level.
+	 * @param maximumDecompressedSize The largest number of bytes that compressed data may decompress to.
+	 */
+	public DeflateCompressionCodec(int level, int maximumDecompressedSize) {
+
+		if (level < Deflater.DEFAULT_COMPRESSION || level > Deflater.BEST_COMPRESSION) {
+			throw new IllegalArgumentException(String.format("Invalid compression level: %d", level));
+		}
+
+		if (maximumDecompressedSize < 1) {
+			throw new IllegalArgumentException("The maximum decompressed size must be at least 1");
+		}
+
+		this.level = level;
+		this.maximumDecompressedSize = maximumDecompressedSize;
+
+	}
+
+	@Override
+	public byte getId() {
+		return ID;
+	}
+
+	@Override
+	public String getName() {
+		return NAME;
+	}
+
+	/**
+	 * @return the compression level
+	 */
+	public int getLevel() {
+		return level;
+	}
+
+	/**
+	 * @return the largest number of bytes that compressed data may decompress to
+	 */
+	public int getMaximumDecompressedSize() {
+		return maximumDecompressedSize;
+	}
+
+	@Override
+	public ByteBuffer compress(ByteBuffer input) throws IOException {
+
+		Deflater deflater = deflaters.poll();
+		if (deflater == null) {
+			deflater = new Deflater(level, true);
+		}
+
+		try {
+
+			setInput(input, deflater::setInput);
+			deflater.finish();
+
+			int length = input.remaining();
+			byte[] output = new byte[LENGTH_PREFIX + length / 2 + 64];
+			ByteBuffer.wrap(output).putInt(length);
+
+			int size = LENGTH_PREFIX;
+			while (!deflater.finished()) {
+				if (size == output.length) {
+					output = Arrays.copyOf(output, output.length * 2);
+				}
+				size += deflater.deflate(output, size, output.length - size);
+			}
+
+			return ByteBuffer.wrap(output, 0, size);
+
+		} finally {
+			deflater.reset();
+			recycle(deflaters, deflater, Deflater::end);
+		}
+
+	}
+
+	@Override
+	public ByteBuffer decompress(ByteBuffer input) throws IOException {
+
+		if (input.remaining() < LENGTH_PREFIX) {
+			throw new ZipException("Compressed data is truncated");
+		}
+
+		int length = input.getInt(input.position());
+		if (length < 0) {
+			throw new ZipException(String.format("Malformed data. Length is negative: %d", length));
+		}
+
+		if (length > maximumDecompressedSize) {
+			throw new ZipException(String.format("Malformed data. Length %d is larger than the maximum decompressed size of %d", length,
+					maximumDecompressedSize));
+		}
+
+		ByteBuffer data = input.duplicate();
+		data.position(data.position() + LENGTH_PREFIX);
+
+		Inflater inflater = inflaters.poll();
+		if (inflater == null) {
+			inflater = new Inflater(true);
+		}
+
+		byte[] output = new byte[length];
+
+		try {
+
+			setInput(data, inflater::setInput);
+
+			int size = 0;
+			while (!inflater.finished()) {
+
+				int count = inflater.inflate(output, size, length - size);
+				if (count == 0 && !inflater.finished()) {
+					throw new ZipException(size == length ? "Compressed data is longer than its length" : "Compressed data is truncated");
+				}
+
+				size += count;
+
+			}
+
+			if (size != length) {
+				throw new ZipException("Compressed data is shorter than its length");
+			}
+
+		} catch (DataFormatException ex) {
+			throw new ZipException(ex.getMessage());
+		} finally {
+			inflater.reset();
+			recycle(inflaters, inflater, Inflater::end);
+		}
+
+		return ByteBuffer.wrap(output);
+
+	}
+
+	/**
+	 * Ends the idle deflaters and inflaters. The codec can still be used, but no longer keeps any for reuse.
+	 */
+	@Override
+	public void close() {
+
+		closed = true;
+
+		for (Deflater deflater = deflaters.poll(); deflater != null; deflater = deflaters.poll()) {
+			deflater.end();
+		}
+
+		for (Inflater inflater = inflaters.poll(); inflater != null; inflater = inflaters.poll()) {
+			inflater.end();
+		}
+
+	}
+
+	// private methods
+
+	/**
+	 * Keeps a deflater or inflater for reuse if there is room and the codec is open, or ends it otherwise.
+	 */
+	private <T> void recycle(BlockingQueue<T> idle, T instance, Consumer<T> end) {
+
+		// If the codec was closed after the instance was queued, it may have missed being ended by close
+		if (closed || !idle.offer(instance) || closed && idle.remove(instance)) {
+			end.accept(instance);
+		}
+
+	}
+
+	/**
+	 * Passes the remaining bytes of the buffer to the deflater or inflater, copying them only if the buffer is not
+	 * backed by an array.
+	 */
+	private static void setInput(ByteBuffer input, Input target) {
+
+		if (input.hasArray()) {
+			target.setInput(input.array(), input.arrayOffset() + input.position(), input.remaining());
+		} else {
+			byte[] bytes = new byte[input.remaining()];
+			input.duplicate().get(bytes);
+			target.setInput(bytes, 0, bytes.length);
+		}
+
+	}
+
+	/**
+	 * Sets the input of a deflater or inflater.
+	 */
+	private interface Input {
+
+		void setInput(byte[] bytes, int offset, int length);
+
+	}
+
+}
@@ -0,0 +1,194 @@
+/**
+ * Copyright (c) 2017-2018, FinancialForce.com, inc
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ *   are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ *      this list of conditions and the following disclaimer in the documentation
+ *      and/or other materials provided with the distribution.
+ * - Neither the name of the FinancialForce.com, inc nor the names of its contributors
+ *      may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ *  OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL
+ *  THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ *  EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ *  OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY
+ *  OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ **/
+
+package com.financialforce.orizuru.codec;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A pool of direct byte buffers, so that messages can be handed to a socket without copying them out of the heap
+ * and without allocating a direct buffer for every message.
+ * <p>
+ * Buffers are pooled in size classes of powers of two, from {@link #MINIMUM_SIZE_CLASS} up to a maximum pooled size.
+ * A request is served from the smallest class that fits it, so a buffer is at most twice the size requested. Larger
+ * requests are served by a new buffer that is discarded on release. Each class keeps at most a fixed number of free
+ * buffers; buffers released to a full class are discarded.
+ * <p>
+ * A buffer must be released exactly once, after which it must no longer be used.
+ */
+public class DirectBufferPool {
+
+	/**
+	 * The size of the smallest buffers in the pool.
+	 */
+	public static final int MINIMUM_SIZE_CLASS = 256;
+
+	/**
+	 * The size of the largest buffers held by the shared pool.
+	 */
+	public static final int DEFAULT_MAXIMUM_POOLED_SIZE = 1 << 20;
+
+	/**
+	 * The number of free buffers of each size held by the shared pool.
+	 */
+	public static final int DEFAULT_MAXIMUM_FREE_BUFFERS = 64;
+
+	private static final DirectBufferPool INSTANCE = new DirectBufferPool(DEFAULT_MAXIMUM_POOLED_SIZE, DEFAULT_MAXIMUM_FREE_BUFFERS);
+
+	private static final int MINIMUM_SHIFT = Integer.numberOfTrailingZeros(MINIMUM_SIZE_CLASS);
+
+	private final int maximumPooledSize;
+
+	private final List<ArrayBlockingQueue<ByteBuffer>> freeBuffers;
+
+	private final LongAdder allocationCount = new LongAdder();
+	private final LongAdder reuseCount = new LongAdder();
+
+	/**
+	 * Constructs a new empty pool.
+	 * 
+	 * @param maximumPooledSize The size of the largest buffers to pool, rounded up to a power of two.
+	 * @param maximumFreeBuffers The number of free buffers of each size to keep.
+	 */
+	public DirectBufferPool(int maximumPooledSize, int maximumFreeBuffers) {
+
+		if (maximumPooledSize < MINIMUM_SIZE_CLASS || maximumPooledSize > 1 << 30) {
+			throw new IllegalArgumentException(
+					String.format("The maximum pooled size must be between %d and %d", MINIMUM_SIZE_CLASS, 1 << 30));
+		}
+
+		if (maximumFreeBuffers < 1) {
+			throw new IllegalArgumentException("The maximum number of free buffers must be at least 1");
+		}
+
+		int sizeClasses = classOf(maximumPooledSize) + 1;
+		this.freeBuffers = new ArrayList<>(sizeClasses);
+		this.maximumPooledSize = sizeOf(sizeClasses - 1);
+
+		for (int i = 0; i < sizeClasses; i++) {
+			freeBuffers.add(new ArrayBlockingQueue<>(maximumFreeBuffers));
+		}
+
+	}
+
+	/**
+	 * @return the pool shared by the publishers
+	 */
+	public static DirectBufferPool getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Takes a buffer from the pool, or allocates one if there is no free buffer of the right size.
+	 * 
+	 * @param capacity The number of bytes required.
+	 * @return The buffer, cleared and with its limit set to the capacity requested.
+	 */
+	public PooledBuffer acquire(int capacity) {
+
+		if (capacity < 0) {
+			throw new IllegalArgumentException("The capacity must not be negative");
+		}
+
+		if (capacity > maximumPooledSize) {
+			allocationCount.increment();
+			return new PooledBuffer(null, ByteBuffer.allocateDirect(capacity));
+		}
+
+		int sizeClass = classOf(capacity);
+
+		ByteBuffer buffer = freeBuffers.get(sizeClass).poll();
+		if (buffer == null) {
+			allocationCount.increment();
+			buffer = ByteBuffer.allocateDirect(sizeOf(sizeClass));
+		} else {
+			reuseCount.increment();
+			buffer.clear();
+		}
+
+		buffer.limit(capacity);
+
+		return new PooledBuffer(this, buffer);
+
+	}
+
+	/**
+	 * @return the size of the largest buffers pooled
+	 */
+	public int getMaximumPooledSize() {
+		return maximumPooledSize;
+	}
+
+	/**
+	 * @return the number of free buffers currently held by the pool
+	 */
+	public int getFreeCount() {
+
+		int count = 0;
+		for (ArrayBlockingQueue<ByteBuffer> free : freeBuffers) {
+			count += free.size();
+		}
+
+		return count;
+
+	}
+
+	/**
+	 * @return the number of buffers allocated because there was no free buffer of the right size
+	 */
+	public long getAllocationCount() {
+		return allocationCount.sum();
+	}
+
+	/**
+	 * @return the number of requests served by a free buffer
+	 */
+	public long getReuseCount() {
+		return reuseCount.sum();
+	}
+
+	// package-private methods
+
+	void release(ByteBuffer buffer) {
+		freeBuffers.get(classOf(buffer.capacity())).offer(buffer);
+	}
+
+	// private methods
+
+	private static int classOf(int capacity) {
+		int shift = 32 - Integer.numberOfLeadingZeros(Math.max(capacity, MINIMUM_SIZE_CLASS) - 1);
+		return shift - MINIMUM_SHIFT;
+	}
+
+	private static int sizeOf(int sizeClass) {
+		return 1 << (sizeClass + MINIMUM_SHIFT);
+	}
+
+}
@@ -0,0 +1,91 @@
+/**
+ * Copyright (c) 2017-2018, FinancialForce.com, inc
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ *   are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ *      this list of conditions and the following disclaimer in the documentation
+ *      and/or other materials provided with the distribution.
+ * - Neither the name of the FinancialForce.com, inc nor the names of its contributors
+ *      may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ *  OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL
+ *  THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ *  EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ *  OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY
+ *  OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ **/
+
+package com.financialforce.orizuru.codec;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A direct byte buffer taken from a {@link DirectBufferPool}, which must be released once it is no longer needed.
+ * <p>
+ * Closing the buffer releases it, so it can be used in a try-with-resources statement.
+ */
+public final class PooledBuffer implements AutoCloseable {
+
+	private final DirectBufferPool pool;
+
+	private final ByteBuffer buffer;
+
+	private final AtomicBoolean released = new AtomicBoolean();
+
+	PooledBuffer(DirectBufferPool pool, ByteBuffer buffer) {
+		this.pool = pool;
+		this.buffer = buffer;
+	}
+
+	/**
+	 * @return the direct buffer
+	 * @throws IllegalStateException Exception thrown if the buffer has been released.
+	 */
+	public ByteBuffer getBuffer() {
+
+		if (released.get()) {
+			throw new IllegalStateException("The buffer has already been released");
+		}
+
+		return buffer;
+
+	}
+
+	/**
+	 * Returns the buffer to its pool. The buffer must not be used afterwards.
+	 * 
+	 * @throws IllegalStateException Exception thrown if the buffer has already been released.
+	 */
+	public void release() {
+
+		if (!released.compareAndSet(false, true)) {
+			throw new IllegalStateException("The buffer has already been released");
+		}
+
+		if (pool != null) {
+			pool.release(buffer);
+		}
+
+	}
+
+	/**
+	 * Releases the buffer if it has not already been released.
+	 */
+	@Override
+	public void close() {
+		if (released.compareAndSet(false, true) && pool != null) {
+			pool.release(buffer);
+		}
+	}
+
+}
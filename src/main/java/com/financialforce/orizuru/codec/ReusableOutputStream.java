@@ -0,0 +1,197 @@
+/**
+ * Copyright (c) 2017-2018, FinancialForce.com, inc
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ *   are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ *      this list of conditions and the following disclaimer in the documentation
+ *      and/or other materials provided with the distribution.
+ * - Neither the name of the FinancialForce.com, inc nor the names of its contributors
+ *      may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ *  OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL
+ *  THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ *  EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ *  OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY
+ *  OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ **/
+
+package com.financialforce.orizuru.codec;
+
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.apache.avro.io.BinaryData;
+
+/**
+ * An unsynchronised byte array output stream whose buffer is kept between uses.
+ * <p>
+ * Unlike {@link java.io.ByteArrayOutputStream}, resetting the stream keeps the buffer it has grown to, so encoding
+ * messages of a similar size repeatedly does not allocate. A buffer that has grown beyond a maximum retained
+ * capacity is kept while large messages keep being written, and released once {@link #RELEASE_AFTER_RESETS}
+ * messages in a row have fitted within the maximum, so that one very large message does not pin its buffer forever.
+ */
+public class ReusableOutputStream extends OutputStream {
+
+	/**
+	 * The space reserved for a length prefix: the longest Avro variable length encoding of an int.
+	 */
+	public static final int MAXIMUM_LENGTH_PREFIX = 5;
+
+	/**
+	 * The number of resets in a row after messages within the maximum retained capacity that release a larger buffer.
+	 */
+	public static final int RELEASE_AFTER_RESETS = 16;
+
+	private final int initialCapacity;
+
+	private final int maximumRetainedCapacity;
+
+	private byte[] buffer;
+
+	private int count;
+
+	private int smallResets;
+
+	/**
+	 * Constructs a new stream.
+	 * 
+	 * @param initialCapacity The initial size of the buffer.
+	 * @param maximumRetainedCapacity The largest buffer to keep when the stream is reset.
+	 */
+	public ReusableOutputStream(int initialCapacity, int maximumRetainedCapacity) {
+		this.initialCapacity = initialCapacity;
+		this.maximumRetainedCapacity = maximumRetainedCapacity;
+		this.buffer = new byte[initialCapacity];
+	}
+
+	@Override
+	public void write(int value) {
+		ensureCapacity(count + 1);
+		buffer[count++] = (byte) value;
+	}
+
+	@Override
+	public void write(byte[] src, int offset, int length) {
+		ensureCapacity(count + length);
+		System.arraycopy(src, offset, buffer, count, length);
+		count += length;
+	}
+
+	/**
+	 * Writes the remaining bytes of the buffer without changing its position.
+	 * 
+	 * @param src The bytes to write.
+	 */
+	public void write(ByteBuffer src) {
+		int length = src.remaining();
+		ensureCapacity(count + length);
+		src.duplicate().get(buffer, count, length);
+		count += length;
+	}
+
+	/**
+	 * Writes an int in the Avro variable length zig-zag encoding, as used for lengths.
+	 * 
+	 * @param value The value to write.
+	 */
+	public void writeVarInt(int value) {
+		ensureCapacity(count + MAXIMUM_LENGTH_PREFIX);
+		count += BinaryData.encodeInt(value, buffer, count);
+	}
+
+	/**
+	 * Reserves space for the Avro length prefix of bytes that are about to be written.
+	 * <p>
+	 * This allows a value of unknown length to be encoded directly into the stream as an Avro bytes field, rather
+	 * than being encoded separately and copied in. Call {@link #writeLengthPrefix(int)} once the value is written.
+	 * 
+	 * @return The position of the reserved space.
+	 */
+	public int reserveLengthPrefix() {
+		int position = count;
+		ensureCapacity(count + MAXIMUM_LENGTH_PREFIX);
+		count += MAXIMUM_LENGTH_PREFIX;
+		return position;
+	}
+
+	/**
+	 * Writes the length of the bytes written since the prefix was reserved into the reserved space, then moves the
+	 * bytes back over any part of the space that the length did not need.
+	 * 
+	 * @param position The position returned by {@link #reserveLengthPrefix()}.
+	 */
+	public void writeLengthPrefix(int position) {
+
+		int start = position + MAXIMUM_LENGTH_PREFIX;
+		int length = count - start;
+
+		int prefixLength = BinaryData.encodeLong(length, buffer, position);
+		System.arraycopy(buffer, start, buffer, position + prefixLength, length);
+		count -= MAXIMUM_LENGTH_PREFIX - prefixLength;
+
+	}
+
+	/**
+	 * Discards the written bytes so that the buffer can be reused.
+	 */
+	public void reset() {
+
+		if (count > maximumRetainedCapacity) {
+			smallResets = 0;
+		} else if (buffer.length > maximumRetainedCapacity && ++smallResets >= RELEASE_AFTER_RESETS) {
+			buffer = new byte[initialCapacity];
+			smallResets = 0;
+		}
+
+		count = 0;
+
+	}
+
+	/**
+	 * @return the number of bytes written
+	 */
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * @return the underlying buffer, valid up to {@link #size()} until the next write or reset
+	 */
+	public byte[] getBuffer() {
+		return buffer;
+	}
+
+	/**
+	 * @return a copy of the bytes written
+	 */
+	public byte[] toByteArray() {
+		return Arrays.copyOf(buffer, count);
+	}
+
+	/**
+	 * Ensures that the buffer can hold at least the given number of bytes.
+	 * <p>
+	 * The buffer grows by at least half of its current size to keep the number of copies low.
+	 * 
+	 * @param capacity The required capacity.
+	 */
+	public void ensureCapacity(int capacity) {
+
+		if (capacity > buffer.length) {
+			int newCapacity = Math.max(capacity, buffer.length + (buffer.length >> 1));
+			buffer = Arrays.copyOf(buffer, newCapacity);
+		}
+
+	}
+
+}
@@ -0,0 +1,160 @@
+/**
+ * Copyright (c) 2017-2018, FinancialForce.com, inc
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ *   are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ *      this list of conditions and the following disclaimer in the documentation
+ *      and/or other materials provided with the distribution.
+ * - Neither the name of the FinancialForce.com, inc nor the names of its contributors
+ *      may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ *  OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL
+ *  THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ *  EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ *  OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY
+ *  OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ **/
+
+package com.financialforce.orizuru.codec;
+
+import java.nio.ByteBuffer;
+
+import org.apache.avro.io.BinaryDecoder;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.io.EncoderFactory;
+
+/**
+ * Per-thread Avro binary encoder, decoder and output buffer.
+ * <p>
+ * Each call reconfigures and returns the same instances, so encoding and decoding messages does not allocate new
+ * encoders, decoders or buffers once a thread has warmed up. The instances are only valid until the next call on
+ * the same thread, so an encoded message must be copied out of the output buffer, and a message decoded, before the
+ * codec is used again.
+ */
+public final class ThreadLocalCodec {
+
+	/**
+	 * The initial size of the output buffer.
+	 */
+	public static final int INITIAL_BUFFER_SIZE = 1024;
+
+	/**
+	 * The largest output buffer retained between messages.
+	 */
+	public static final int MAXIMUM_RETAINED_BUFFER_SIZE = 1024 * 1024;
+
+	private static final ThreadLocal<ThreadLocalCodec> CODECS = ThreadLocal.withInitial(ThreadLocalCodec::new);
+
+	private final ReusableOutputStream output = new ReusableOutputStream(INITIAL_BUFFER_SIZE, MAXIMUM_RETAINED_BUFFER_SIZE);
+
+	private final BinaryEncoder encoder = EncoderFactory.get().directBinaryEncoder(output, null);
+
+	private BinaryDecoder decoder = null;
+
+	private final ByteBufferInputStream input = new ByteBufferInputStream();
+
+	private final BinaryDecoder inputDecoder = DecoderFactory.get().directBinaryDecoder(input, null);
+
+	private ThreadLocalCodec() {
+	}
+
+	/**
+	 * @return the codec for the current thread
+	 */
+	public static ThreadLocalCodec get() {
+		return CODECS.get();
+	}
+
+	/**
+	 * Returns the decoder configured to read the given bytes.
+	 * 
+	 * @param data The bytes to decode.
+	 * @param offset The offset of the first byte to decode.
+	 * @param length The number of bytes to decode.
+	 * @return The decoder.
+	 */
+	public BinaryDecoder decoder(byte[] data, int offset, int length) {
+		decoder = DecoderFactory.get().binaryDecoder(data, offset, length, decoder);
+		return decoder;
+	}
+
+	/**
+	 * Returns the decoder configured to read all of the given bytes.
+	 * 
+	 * @param data The bytes to decode.
+	 * @return The decoder.
+	 */
+	public BinaryDecoder decoder(byte[] data) {
+		return decoder(data, 0, data.length);
+	}
+
+	/**
+	 * Returns the decoder configured to read the remaining bytes of the given buffer.
+	 * <p>
+	 * Buffers backed by an accessible array are read directly from the array; other buffers, such as direct or
+	 * read-only buffers, are read through the {@link #inputDecoder(ByteBuffer) input decoder}. The position of the
+	 * buffer is not changed.
+	 * 
+	 * @param data The buffer to decode.
+	 * @return The decoder.
+	 */
+	public BinaryDecoder decoder(ByteBuffer data) {
+
+		if (data.hasArray()) {
+			return decoder(data.array(), data.arrayOffset() + data.position(), data.remaining());
+		}
+
+		return inputDecoder(data);
+
+	}
+
+	/**
+	 * Returns the unbuffered decoder reading from the input stream, after setting the stream to read the remaining
+	 * bytes of the given buffer.
+	 * <p>
+	 * As the decoder does not read ahead, bytes fields can be read as slices of the buffer by reading the length from
+	 * the decoder then calling {@link ByteBufferInputStream#readSlice(int)} on the {@link #getInput() input stream}.
+	 * 
+	 * @param data The buffer to decode.
+	 * @return The decoder.
+	 */
+	public BinaryDecoder inputDecoder(ByteBuffer data) {
+		input.reset(data);
+		return inputDecoder;
+	}
+
+	/**
+	 * Returns the encoder, writing unbuffered to the output stream, after resetting the output stream.
+	 * 
+	 * @return The encoder.
+	 */
+	public BinaryEncoder encoder() {
+		output.reset();
+		return encoder;
+	}
+
+	/**
+	 * @return the output stream written to by the encoder
+	 */
+	public ReusableOutputStream getOutput() {
+		return output;
+	}
+
+	/**
+	 * @return the input stream read by the input decoder
+	 */
+	public ByteBufferInputStream getInput() {
+		return input;
+	}
+
+}
@@ -0,0 +1,223 @@
+/**
+ * Copyright (c) 2017-2018, FinancialForce.com, inc
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ *   are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ *      this list of conditions and the following disclaimer in the documentation
+ *      and/or other materials provided with the distribution.
+ * - Neither the name of the FinancialForce.com, inc nor the names of its contributors
+ *      may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ *  OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL
+ *  THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ *  EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ *  OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY
+ *  OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ **/
+
+package com.financialforce.orizuru.codec;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.avro.util.Utf8;
+
+import com.financialforce.orizuru.transport.Transport;
+
+/**
+ * Reads and writes the FinancialForce Orizuru Avro Transport record without the Avro datum reader and writer.
+ * <p>
+ * The record always has the same four fields: the context schema text, the context bytes, the message schema text
+ * and the message bytes. Each is encoded as its length, in the Avro variable length zig-zag encoding, followed by
+ * that many bytes, so the record is read and written here directly with no schema resolution or reflection. The
+ * encoding is the same as that of the generated {@link Transport} class.
+ * <p>
+ * The bytes fields are read as slices sharing the content of the incoming buffer rather than as copies.
+ */
+public final class TransportCodec {
+
+	/**
+	 * The longest Avro variable length encoding of an int.
+	 */
+	private static final int MAXIMUM_INT_LENGTH = 5;
+
+	private TransportCodec() {
+	}
+
+	/**
+	 * Reads a Transport record from the remaining bytes of the buffer, without changing its position.
+	 * <p>
+	 * Any bytes after the record are ignored.
+	 * 
+	 * @param record The buffer holding the record.
+	 * @return The transport, whose buffers are slices of the record buffer.
+	 * @throws EOFException Exception thrown if the record is truncated.
+	 * @throws IOException Exception thrown if a length is malformed.
+	 */
+	public static Transport read(ByteBuffer record) throws IOException {
+
+		ByteBuffer input = record.duplicate();
+
+		Utf8 contextSchema = readString(input);
+		ByteBuffer contextBuffer = readBytes(input);
+		Utf8 messageSchema = readString(input);
+		ByteBuffer messageBuffer = readBytes(input);
+
+		return new Transport(contextSchema, contextBuffer, messageSchema, messageBuffer);
+
+	}
+
+	/**
+	 * Reads only the context fields of a Transport record from the remaining bytes of the buffer, without changing its
+	 * position or reading the message fields.
+	 * <p>
+	 * A BatchTransport record starts with the same context fields, so its context can be read in the same way.
+	 * 
+	 * @param record The buffer holding the record.
+	 * @return The transport, holding the context schema text and a slice of the context bytes, with null message
+	 *         fields.
+	 * @throws EOFException Exception thrown if the record is truncated.
+	 * @throws IOException Exception thrown if a length is malformed.
+	 */
+	public static Transport peekContext(ByteBuffer record) throws IOException {
+
+		ByteBuffer input = record.duplicate();
+
+		Utf8 contextSchema = readString(input);
+		ByteBuffer contextBuffer = readBytes(input);
+
+		return new Transport(contextSchema, contextBuffer, null, null);
+
+	}
+
+	/**
+	 * Writes a Transport record to the output stream.
+	 * <p>
+	 * The remaining bytes of the context and message buffers are written without changing their positions.
+	 * 
+	 * @param output The stream to write to.
+	 * @param transport The transport.
+	 * @throws NullPointerException Exception thrown if a field of the transport is null.
+	 */
+	public static void write(ReusableOutputStream output, Transport transport) {
+		writeHeader(output, transport.getContextSchema(), transport.getContextBuffer(), transport.getMessageSchema());
+		writeBytes(output, transport.getMessageBuffer());
+	}
+
+	/**
+	 * Writes the fields of a Transport record that precede the message buffer to the output stream.
+	 * <p>
+	 * The record is completed by writing the message buffer as an Avro bytes field, such as with
+	 * {@link ReusableOutputStream#reserveLengthPrefix()} while encoding the message directly into the stream.
+	 * 
+	 * @param output The stream to write to.
+	 * @param contextSchema The context schema text.
+	 * @param contextBuffer The context bytes.
+	 * @param messageSchema The message schema text.
+	 * @throws NullPointerException Exception thrown if a field is null.
+	 */
+	public static void writeHeader(ReusableOutputStream output, CharSequence contextSchema, ByteBuffer contextBuffer,
+			CharSequence messageSchema) {
+		writeString(output, contextSchema);
+		writeBytes(output, contextBuffer);
+		writeString(output, messageSchema);
+	}
+
+	// package-private methods
+
+	/**
+	 * Reads an int in the Avro variable length zig-zag encoding, advancing the position of the buffer.
+	 */
+	static int readInt(ByteBuffer input) throws IOException {
+
+		int value = 0;
+		for (int shift = 0; shift < MAXIMUM_INT_LENGTH * 7; shift += 7) {
+
+			if (!input.hasRemaining()) {
+				throw new EOFException();
+			}
+
+			int next = input.get() & 0xFF;
+			value |= (next & 0x7F) << shift;
+
+			if ((next & 0x80) == 0) {
+				return (value >>> 1) ^ -(value & 1);
+			}
+
+		}
+
+		throw new IOException("Invalid int encoding");
+
+	}
+
+	// private methods
+
+	private static int readLength(ByteBuffer input) throws IOException {
+
+		int length = readInt(input);
+		if (length < 0) {
+			throw new IOException(String.format("Malformed data. Length is negative: %d", length));
+		}
+
+		if (length > input.remaining()) {
+			throw new EOFException();
+		}
+
+		return length;
+
+	}
+
+	private static Utf8 readString(ByteBuffer input) throws IOException {
+
+		byte[] bytes = new byte[readLength(input)];
+		input.get(bytes);
+
+		return new Utf8(bytes);
+
+	}
+
+	private static ByteBuffer readBytes(ByteBuffer input) throws IOException {
+
+		int length = readLength(input);
+
+		ByteBuffer slice = input.slice();
+		slice.limit(length);
+		input.position(input.position() + length);
+
+		return slice;
+
+	}
+
+	private static void writeString(ReusableOutputStream output, CharSequence value) {
+
+		// Schema text decoded from a transport is Utf8, whose bytes are written as they are
+		if (value instanceof Utf8) {
+			Utf8 utf8 = (Utf8) value;
+			output.writeVarInt(utf8.getByteLength());
+			output.write(utf8.getBytes(), 0, utf8.getByteLength());
+			return;
+		}
+
+		byte[] bytes = value.toString().getBytes(StandardCharsets.UTF_8);
+		output.writeVarInt(bytes.length);
+		output.write(bytes, 0, bytes.length);
+
+	}
+
+	private static void writeBytes(ReusableOutputStream output, ByteBuffer value) {
+		output.writeVarInt(value.remaining());
+		output.write(value);
+	}
+
+}
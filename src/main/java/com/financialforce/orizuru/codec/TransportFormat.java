@@ -0,0 +1,172 @@
+/**
+ * Copyright (c) 2017-2018, FinancialForce.com, inc
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ *   are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ *      this list of conditions and the following disclaimer in the documentation
+ *      and/or other materials provided with the distribution.
+ * - Neither the name of the FinancialForce.com, inc nor the names of its contributors
+ *      may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ *  OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL
+ *  THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ *  EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ *  OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY
+ *  OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ **/
+
+package com.financialforce.orizuru.codec;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The formats in which a FinancialForce Orizuru Avro Transport message can be encoded.
+ * <p>
+ * A {@link #SCHEMA} message is a plain Avro <code>Transport</code> record carrying the full text of both schemas.
+ * <p>
+ * Every other format starts with a two byte header: the {@link #MARKER} byte followed by the format version. The
+ * marker can never start a <code>Transport</code> record, as the first field is a string whose length would decode
+ * as negative, so both kinds of message can be told apart from their first bytes.
+ * <p>
+ * The {@link #COMPRESSED} and {@link #COMPRESSED_FINGERPRINT} headers are followed by two more bytes: the identifier
+ * of the {@link com.financialforce.orizuru.interfaces.ICompressionCodec} and flags marking which of the context and
+ * message buffers of the record were compressed with it.
+ */
+public enum TransportFormat {
+
+	/**
+	 * An Avro <code>Transport</code> record, with no header.
+	 */
+	SCHEMA((byte) 0),
+
+	/**
+	 * An Avro <code>FingerprintTransport</code> record, carrying 64-bit schema fingerprints in place of schema text.
+	 */
+	FINGERPRINT((byte) 1),
+
+	/**
+	 * An Avro <code>BatchTransport</code> record, carrying one context and message schema for a block of messages.
+	 */
+	BATCH((byte) 2),
+
+	/**
+	 * An Avro <code>Transport</code> record in which the context or message buffer is compressed.
+	 */
+	COMPRESSED((byte) 3),
+
+	/**
+	 * An Avro <code>FingerprintTransport</code> record in which the context or message buffer is compressed.
+	 */
+	COMPRESSED_FINGERPRINT((byte) 4);
+
+	/**
+	 * The first byte of every message with a header.
+	 */
+	public static final byte MARKER = (byte) 0xC3;
+
+	/**
+	 * The length of the header for formats other than {@link #SCHEMA}.
+	 */
+	public static final int HEADER_LENGTH = 2;
+
+	/**
+	 * The length of the codec identifier and flags that follow the header of the compressed formats.
+	 */
+	public static final int COMPRESSION_HEADER_LENGTH = 2;
+
+	/**
+	 * The flag set if the context buffer of a compressed format is compressed.
+	 */
+	public static final byte CONTEXT_COMPRESSED = 1;
+
+	/**
+	 * The flag set if the message buffer of a compressed format is compressed.
+	 */
+	public static final byte MESSAGE_COMPRESSED = 2;
+
+	private final byte version;
+
+	TransportFormat(byte version) {
+		this.version = version;
+	}
+
+	/**
+	 * @return the version byte written after the marker
+	 */
+	public byte getVersion() {
+		return version;
+	}
+
+	/**
+	 * @return true if the format is one of the compressed formats
+	 */
+	public boolean isCompressed() {
+		return this == COMPRESSED || this == COMPRESSED_FINGERPRINT;
+	}
+
+	/**
+	 * @return the number of bytes before the record, including the codec identifier and flags of a compressed format
+	 */
+	public int getRecordOffset() {
+		if (this == SCHEMA) {
+			return 0;
+		}
+		return isCompressed() ? HEADER_LENGTH + COMPRESSION_HEADER_LENGTH : HEADER_LENGTH;
+	}
+
+	/**
+	 * @return the header to write before the encoded message; for a compressed format the codec identifier and flags
+	 *         follow it
+	 */
+	public byte[] getHeader() {
+		return this == SCHEMA ? new byte[0] : new byte[] { MARKER, version };
+	}
+
+	/**
+	 * Determines the format of an encoded message from its header.
+	 * 
+	 * @param body The encoded message.
+	 * @return The format of the message.
+	 * @throws IllegalArgumentException Exception thrown if the message has a header with an unknown version.
+	 */
+	public static TransportFormat of(byte[] body) {
+		return of(ByteBuffer.wrap(body));
+	}
+
+	/**
+	 * Determines the format of an encoded message from the header at the position of the buffer.
+	 * <p>
+	 * The position of the buffer is not changed.
+	 * 
+	 * @param body The encoded message.
+	 * @return The format of the message.
+	 * @throws IllegalArgumentException Exception thrown if the message has a header with an unknown version.
+	 */
+	public static TransportFormat of(ByteBuffer body) {
+
+		int position = body.position();
+		if (body.remaining() < HEADER_LENGTH || body.get(position) != MARKER) {
+			return SCHEMA;
+		}
+
+		byte version = body.get(position + 1);
+		for (TransportFormat format : values()) {
+			if (format != SCHEMA && format.version == version) {
+				return format;
+			}
+		}
+
+		throw new IllegalArgumentException(String.format("Unknown transport format version: %d", version));
+
+	}
+
+}
@@ -0,0 +1,117 @@
+/**
+ * Copyright (c) 2017-2018, FinancialForce.com, inc
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ *   are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ *      this list of conditions and the following disclaimer in the documentation
+ *      and/or other materials provided with the distribution.
+ * - Neither the name of the FinancialForce.com, inc nor the names of its contributors
+ *      may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ *  OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL
+ *  THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ *  EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ *  OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY
+ *  OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ **/
+
+package com.financialforce.orizuru.instrumentation;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.financialforce.orizuru.interfaces.IStageListener;
+
+/**
+ * A listener that aggregates the timings of each stage for each queue.
+ * <p>
+ * Recording a stage does not lock, so one listener can be shared by all the consumers and publishers in a process.
+ */
+public class AggregatingStageListener implements IStageListener {
+
+	private final ConcurrentHashMap<String, StageStatistics[]> statistics = new ConcurrentHashMap<>();
+
+	@Override
+	public void stageCompleted(String queueName, Stage stage, long duration, int size, Throwable failure) {
+		getQueueStatistics(queueName)[stage.ordinal()].record(duration, size, failure != null);
+	}
+
+	/**
+	 * Returns the statistics for one stage of a queue.
+	 * 
+	 * @param queueName The name of the queue.
+	 * @param stage The stage.
+	 * @return The statistics, which are empty if the stage has not completed for the queue.
+	 */
+	public StageStatistics getStatistics(String queueName, Stage stage) {
+		return getQueueStatistics(queueName)[stage.ordinal()];
+	}
+
+	/**
+	 * Returns the statistics for every stage of a queue.
+	 * 
+	 * @param queueName The name of the queue.
+	 * @return The statistics, keyed by stage.
+	 */
+	public Map<Stage, StageStatistics> getStatistics(String queueName) {
+
+		StageStatistics[] queueStatistics = getQueueStatistics(queueName);
+
+		Map<Stage, StageStatistics> stages = new EnumMap<>(Stage.class);
+		for (Stage stage : Stage.values()) {
+			stages.put(stage, queueStatistics[stage.ordinal()]);
+		}
+
+		return stages;
+
+	}
+
+	/**
+	 * @return the names of the queues for which statistics have been recorded or requested
+	 */
+	public Set<String> getQueueNames() {
+		return Collections.unmodifiableSet(statistics.keySet());
+	}
+
+	/**
+	 * Discards all of the statistics.
+	 */
+	public void reset() {
+		statistics.clear();
+	}
+
+	// private methods
+
+	private StageStatistics[] getQueueStatistics(String queueName) {
+
+		StageStatistics[] queueStatistics = statistics.get(queueName);
+		if (queueStatistics == null) {
+			queueStatistics = statistics.computeIfAbsent(queueName, name -> {
+
+				StageStatistics[] stages = new StageStatistics[Stage.values().length];
+				for (int i = 0; i < stages.length; i++) {
+					stages[i] = new StageStatistics();
+				}
+
+				return stages;
+
+			});
+		}
+
+		return queueStatistics;
+
+	}
+
+}
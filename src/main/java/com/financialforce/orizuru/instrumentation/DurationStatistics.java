@@ -0,0 +1,99 @@
+/**
+ * Copyright (c) 2017-2018, FinancialForce.com, inc
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ *   are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ *      this list of conditions and the following disclaimer in the documentation
+ *      and/or other materials provided with the distribution.
+ * - Neither the name of the FinancialForce.com, inc nor the names of its contributors
+ *      may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ *  OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL
+ *  THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ *  EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ *  OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY
+ *  OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ **/
+
+package com.financialforce.orizuru.instrumentation;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Count, failure count, mean and maximum of a repeated timed operation.
+ * <p>
+ * Durations are recorded by many threads at once without locking, so values read while durations are being recorded
+ * may be slightly out of step with each other.
+ */
+public class DurationStatistics {
+
+	private final LongAdder count = new LongAdder();
+	private final LongAdder failureCount = new LongAdder();
+	private final LongAdder totalDuration = new LongAdder();
+	private final LongAccumulator maximumDuration = new LongAccumulator(Math::max, 0);
+
+	/**
+	 * Records one completion of the operation.
+	 * 
+	 * @param duration The time taken, in nanoseconds.
+	 * @param failed true if the operation failed.
+	 */
+	public void record(long duration, boolean failed) {
+
+		count.increment();
+		totalDuration.add(duration);
+		maximumDuration.accumulate(duration);
+
+		if (failed) {
+			failureCount.increment();
+		}
+
+	}
+
+	/**
+	 * @return the number of times the operation completed, including failures
+	 */
+	public long getCount() {
+		return count.sum();
+	}
+
+	/**
+	 * @return the number of times the operation failed
+	 */
+	public long getFailureCount() {
+		return failureCount.sum();
+	}
+
+	/**
+	 * @return the total time taken by the operation, in nanoseconds
+	 */
+	public long getTotalDuration() {
+		return totalDuration.sum();
+	}
+
+	/**
+	 * @return the mean time taken by the operation, in nanoseconds
+	 */
+	public long getMeanDuration() {
+		long completedCount = count.sum();
+		return completedCount == 0 ? 0 : totalDuration.sum() / completedCount;
+	}
+
+	/**
+	 * @return the longest time taken by the operation, in nanoseconds
+	 */
+	public long getMaximumDuration() {
+		return maximumDuration.get();
+	}
+
+}
@@ -0,0 +1,71 @@
+/**
+ * Copyright (c) 2017-2018, FinancialForce.com, inc
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ *   are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ *      this list of conditions and the following disclaimer in the documentation
+ *      and/or other materials provided with the distribution.
+ * - Neither the name of the FinancialForce.com, inc nor the names of its contributors
+ *      may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ *  OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL
+ *  THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ *  EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ *  OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY
+ *  OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ **/
+
+package com.financialforce.orizuru.instrumentation;
+
+/**
+ * The stages of consuming and publishing a message that are reported to an
+ * {@link com.financialforce.orizuru.interfaces.IStageListener}.
+ */
+public enum Stage {
+
+	/**
+	 * Reading the fields of the transport from the incoming message bytes. The size is that of the incoming message.
+	 */
+	DECODE_TRANSPORT,
+
+	/**
+	 * Decoding the context from the transport. The size is that of the encoded context.
+	 */
+	DECODE_CONTEXT,
+
+	/**
+	 * Decoding the message content into the reader schema. The size is that of the encoded message content.
+	 */
+	DECODE_MESSAGE,
+
+	/**
+	 * Handling the decoded message. The size is the number of messages handled.
+	 */
+	HANDLE_MESSAGE,
+
+	/**
+	 * Publishing the outgoing message from a consumer. The size is that of the published bytes.
+	 */
+	PUBLISH,
+
+	/**
+	 * Writing the transport within a publisher. The size is that of the written bytes.
+	 */
+	ENCODE_TRANSPORT,
+
+	/**
+	 * Passing the context of the incoming message, read without decoding the message, to the message filter of a
+	 * consumer. The size is that of the incoming message.
+	 */
+	FILTER_MESSAGE
+
+}
@@ -0,0 +1,73 @@
+/**
+ * Copyright (c) 2017-2018, FinancialForce.com, inc
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ *   are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ *      this list of conditions and the following disclaimer in the documentation
+ *      and/or other materials provided with the distribution.
+ * - Neither the name of the FinancialForce.com, inc nor the names of its contributors
+ *      may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ *  OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL
+ *  THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ *  EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ *  OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY
+ *  OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ **/
+
+package com.financialforce.orizuru.interfaces;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Interface for compressing the context and message buffers of a FinancialForce Orizuru Avro Transport.
+ * <p>
+ * Each codec is identified in the transport header by a single byte, so a consumer must know a codec with the same
+ * identifier as the publisher. Codecs other than the built-in Deflate codec are found with the Java
+ * {@link java.util.ServiceLoader}, or can be registered with
+ * {@link com.financialforce.orizuru.codec.CompressionCodecRegistry#register(ICompressionCodec)}.
+ * <p>
+ * Implementations must be thread-safe.
+ */
+public interface ICompressionCodec {
+
+	/**
+	 * @return the identifier written in the header of a compressed transport
+	 */
+	byte getId();
+
+	/**
+	 * @return the name of the codec
+	 */
+	String getName();
+
+	/**
+	 * Compresses the remaining bytes of the buffer. The position of the buffer is not changed.
+	 * 
+	 * @param input The bytes to compress.
+	 * @return The compressed bytes.
+	 * @throws IOException Exception thrown if compressing the bytes fails.
+	 */
+	ByteBuffer compress(ByteBuffer input) throws IOException;
+
+	/**
+	 * Decompresses the remaining bytes of a buffer compressed by this codec. The position of the buffer is not
+	 * changed.
+	 * 
+	 * @param input The compressed bytes.
+	 * @return The decompressed bytes.
+	 * @throws IOException Exception thrown if the bytes are not valid compressed data.
+	 */
+	ByteBuffer decompress(ByteBuffer input) throws IOException;
+
+}
@@ -26,6 +26,10 @@
 
 package com.financialforce.orizuru.interfaces;
 
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
 import com.financialforce.orizuru.exception.OrizuruException;
 
 /**
@@ -42,4 +46,49 @@ public interface IConsumer extends IQueueable {
 	 */
 	byte[] consume(byte[] body) throws OrizuruException;
 
+	/**
+	 * Consumes a message from the queue held in a buffer.
+	 * <p>
+	 * The remaining bytes of the buffer are consumed, and its position is not changed. By default they are copied
+	 * and passed to {@link #consume(byte[])}; implementations may consume them in place, so the buffer may be
+	 * direct, read-only or a slice of a larger buffer.
+	 * 
+	 * @param body The incoming message bytes.
+	 * @return The outgoing message bytes.
+	 * @throws OrizuruException Exception throw when consuming a message fails.
+	 */
+	default ByteBuffer consumeBuffer(ByteBuffer body) throws OrizuruException {
+
+		byte[] incomingMessage = null;
+		if (body != null) {
+			incomingMessage = new byte[body.remaining()];
+			body.duplicate().get(incomingMessage);
+		}
+
+		byte[] outgoingMessage = consume(incomingMessage);
+		return outgoingMessage == null ? null : ByteBuffer.wrap(outgoingMessage);
+
+	}
+
+	/**
+	 * Consumes a batch of messages from the queue.
+	 * <p>
+	 * By default each message is consumed in turn. Implementations may handle the batch as a whole to share the
+	 * work of decoding and handling between the messages.
+	 * 
+	 * @param bodies The incoming message bytes.
+	 * @return The outgoing message bytes, one entry for each incoming message and in the same order.
+	 * @throws OrizuruException Exception throw when consuming any of the messages fails.
+	 */
+	default List<byte[]> consumeBatch(List<byte[]> bodies) throws OrizuruException {
+
+		List<byte[]> outgoingMessages = new ArrayList<>(bodies.size());
+		for (byte[] body : bodies) {
+			outgoingMessages.add(consume(body));
+		}
+
+		return outgoingMessages;
+
+	}
+
 }
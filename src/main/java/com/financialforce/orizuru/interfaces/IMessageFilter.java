@@ -0,0 +1,56 @@
+/**
+ * Copyright (c) 2017-2018, FinancialForce.com, inc
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ *   are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ *      this list of conditions and the following disclaimer in the documentation
+ *      and/or other materials provided with the distribution.
+ * - Neither the name of the FinancialForce.com, inc nor the names of its contributors
+ *      may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ *  OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL
+ *  THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ *  EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ *  OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY
+ *  OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ **/
+
+package com.financialforce.orizuru.interfaces;
+
+import java.nio.ByteBuffer;
+
+import com.financialforce.orizuru.exception.OrizuruException;
+import com.financialforce.orizuru.message.Context;
+
+/**
+ * Interface to decide, from the context alone, whether a consumer decodes and handles an incoming message.
+ * <p>
+ * The filter is called once only the context has been read from the transport, before the message is decoded, so a
+ * rejected message costs little more than reading its context. A filter that routes or defers messages can pass the
+ * undecoded body on elsewhere and then reject it.
+ * <p>
+ * Implementations must be thread-safe.
+ */
+public interface IMessageFilter {
+
+	/**
+	 * Decides whether to consume an incoming message.
+	 * 
+	 * @param queueName The name of the queue of the consumer.
+	 * @param context The context of the message, whose content is only decoded if requested.
+	 * @param body The incoming message bytes, which must not be changed.
+	 * @return true to decode and handle the message, false to drop it.
+	 * @throws OrizuruException Exception thrown if the message can be neither consumed nor dropped.
+	 */
+	boolean accept(String queueName, Context context, ByteBuffer body) throws OrizuruException;
+
+}
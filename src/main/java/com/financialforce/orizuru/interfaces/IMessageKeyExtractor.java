@@ -0,0 +1,52 @@
+/**
+ * Copyright (c) 2017-2018, FinancialForce.com, inc
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ *   are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ *      this list of conditions and the following disclaimer in the documentation
+ *      and/or other materials provided with the distribution.
+ * - Neither the name of the FinancialForce.com, inc nor the names of its contributors
+ *      may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ *  OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL
+ *  THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ *  EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ *  OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY
+ *  OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ **/
+
+package com.financialforce.orizuru.interfaces;
+
+import com.financialforce.orizuru.exception.OrizuruException;
+import com.financialforce.orizuru.message.Context;
+
+/**
+ * Interface to take the key identifying an incoming message from its context, so that a consumer can recognise a
+ * message delivered more than once.
+ * <p>
+ * The key must be the same for every delivery of a message and different for every other message on the queue,
+ * such as a request id set by the original publisher. Keys are compared with {@link Object#equals(Object)}.
+ * <p>
+ * Implementations must be thread-safe.
+ */
+public interface IMessageKeyExtractor {
+
+	/**
+	 * Takes the key identifying a message from its context.
+	 * 
+	 * @param context The context of the message, whose content is only decoded if requested.
+	 * @return The key of the message, or null if the message is not to be deduplicated.
+	 * @throws OrizuruException Exception thrown if the key cannot be read from the context.
+	 */
+	Object extractKey(Context context) throws OrizuruException;
+
+}
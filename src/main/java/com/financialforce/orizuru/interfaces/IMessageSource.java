@@ -0,0 +1,66 @@
+/**
+ * Copyright (c) 2017-2018, FinancialForce.com, inc
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ *   are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ *      this list of conditions and the following disclaimer in the documentation
+ *      and/or other materials provided with the distribution.
+ * - Neither the name of the FinancialForce.com, inc nor the names of its contributors
+ *      may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ *  OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL
+ *  THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ *  EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ *  OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY
+ *  OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ **/
+
+package com.financialforce.orizuru.interfaces;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Interface to provide the incoming messages for a consumer, such as a broker subscription.
+ * <p>
+ * A source may be read by several threads at once, so implementations must be thread-safe.
+ */
+public interface IMessageSource {
+
+	/**
+	 * Receives the next message, waiting if none is available.
+	 * 
+	 * @param timeout The maximum time to wait.
+	 * @param unit The unit of the timeout.
+	 * @return The incoming message bytes, or null if no message arrived before the timeout.
+	 * @throws InterruptedException Exception thrown if the thread is interrupted while waiting.
+	 */
+	byte[] receive(long timeout, TimeUnit unit) throws InterruptedException;
+
+	/**
+	 * Called once a received message has been consumed. Does nothing by default.
+	 * 
+	 * @param body The incoming message bytes, as returned by {@link #receive(long, TimeUnit)}.
+	 * @param outgoingMessage The outgoing message bytes returned by the consumer, which may be null.
+	 */
+	default void complete(byte[] body, byte[] outgoingMessage) {
+	}
+
+	/**
+	 * Called if consuming a received message fails. Does nothing by default.
+	 * 
+	 * @param body The incoming message bytes, as returned by {@link #receive(long, TimeUnit)}.
+	 * @param cause The exception thrown by the consumer.
+	 */
+	default void fail(byte[] body, Exception cause) {
+	}
+
+}
@@ -26,9 +26,14 @@
 
 package com.financialforce.orizuru.interfaces;
 
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
 import org.apache.avro.generic.GenericContainer;
 
 import com.financialforce.orizuru.exception.OrizuruException;
+import com.financialforce.orizuru.exception.publisher.OrizuruPublisherException;
 import com.financialforce.orizuru.message.Context;
 
 /**
@@ -48,4 +53,47 @@ public interface IPublisher<O extends GenericContainer> extends IQueueable {
 	 */
 	byte[] publish(Context context, O output) throws OrizuruException;
 
+	/**
+	 * Publishes the given context and output into a buffer.
+	 * <p>
+	 * By default the message is published with {@link #publish(Context, GenericContainer)} and copied into the
+	 * buffer. Implementations may write the message into the buffer directly.
+	 * 
+	 * @param context The FinancialForce Orizuru Avro Context part of the Transport schema.
+	 * @param output The type of message to be published.
+	 * @param destination The buffer into which the FinancialForce Orizuru Avro Transport message is written, starting
+	 *            at its position; the position is advanced past the message.
+	 * @return The destination buffer.
+	 * @throws OrizuruException Exception throw when publishing a message fails, including when the message does not
+	 *             fit in the remaining space of the buffer.
+	 */
+	default ByteBuffer publish(Context context, O output, ByteBuffer destination) throws OrizuruException {
+
+		byte[] outgoingMessage = publish(context, output);
+
+		try {
+			return outgoingMessage == null ? destination : destination.put(outgoingMessage);
+		} catch (BufferOverflowException ex) {
+			throw new OrizuruPublisherException(ex);
+		}
+
+	}
+
+	/**
+	 * Publishes the given context and outputs as a single batch.
+	 * <p>
+	 * The batch carries the context and the message schema once, followed by the outputs, which must all have the
+	 * same schema.
+	 * <p>
+	 * By default batches are not supported and an exception is thrown.
+	 * 
+	 * @param context The FinancialForce Orizuru Avro Context part of the Transport schema.
+	 * @param outputs The messages to be published; there must be at least one.
+	 * @return A byte array containing the FinancialForce Orizuru Avro Batch Transport message.
+	 * @throws OrizuruException Exception throw when publishing the messages fails.
+	 */
+	default byte[] publishBatch(Context context, List<O> outputs) throws OrizuruException {
+		throw new OrizuruPublisherException(new UnsupportedOperationException("This publisher does not support batches"));
+	}
+
 }
@@ -0,0 +1,59 @@
+/**
+ * Copyright (c) 2017-2018, FinancialForce.com, inc
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ *   are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ *      this list of conditions and the following disclaimer in the documentation
+ *      and/or other materials provided with the distribution.
+ * - Neither the name of the FinancialForce.com, inc nor the names of its contributors
+ *      may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ *  OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL
+ *  THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ *  EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ *  OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY
+ *  OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ **/
+
+package com.financialforce.orizuru.interfaces;
+
+import com.financialforce.orizuru.instrumentation.Stage;
+
+/**
+ * Interface to receive the timing of each stage of consuming and publishing messages.
+ * <p>
+ * Listeners are called on the consuming thread as each stage completes, so they must be thread-safe and should return
+ * quickly.
+ */
+public interface IStageListener {
+
+	/**
+	 * Determines whether the listener wants to receive timings at all. If not, stages are not timed.
+	 * 
+	 * @return true by default.
+	 */
+	default boolean isEnabled() {
+		return true;
+	}
+
+	/**
+	 * Called when a stage completes.
+	 * 
+	 * @param queueName The name of the queue of the consumer or publisher.
+	 * @param stage The stage.
+	 * @param duration The time taken by the stage, in nanoseconds.
+	 * @param size The size of the data processed by the stage, as described by {@link Stage}.
+	 * @param failure The exception thrown by the stage, or null if the stage succeeded.
+	 */
+	void stageCompleted(String queueName, Stage stage, long duration, int size, Throwable failure);
+
+}
@@ -0,0 +1,244 @@
+/**
+ * Copyright (c) 2017-2018, FinancialForce.com, inc
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ *   are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ *      this list of conditions and the following disclaimer in the documentation
+ *      and/or other materials provided with the distribution.
+ * - Neither the name of the FinancialForce.com, inc nor the names of its contributors
+ *      may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ *  OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL
+ *  THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ *  EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ *  OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY
+ *  OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ **/
+
+package com.financialforce.orizuru.message;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import org.apache.avro.AvroRuntimeException;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.IndexedRecord;
+import org.apache.avro.io.BinaryDecoder;
+import org.apache.avro.io.DatumReader;
+
+/**
+ * Iterates over the items of an array field of a message, decoding each item from the message bytes only when it is
+ * requested.
+ * <p>
+ * Only one item need be held in memory at a time, and none if each item is decoded into the previous one with
+ * {@link #next(Object)}, so the memory used is bounded by the size of an item rather than of the whole array. Items
+ * can be read only once, in order.
+ * <p>
+ * As the iterator cannot throw checked exceptions, an item that cannot be decoded causes an
+ * {@link AvroRuntimeException}.
+ *
+ * @param <E> The type of the array items.
+ */
+public class ArrayStream<E> implements Iterator<E> {
+
+	private final Schema itemSchema;
+
+	private final BinaryDecoder decoder;
+
+	private final DatumReader<E> itemReader;
+
+	private final Iterator<? extends E> items;
+
+	private long blockRemaining;
+
+	private boolean finished;
+
+	private long count = 0;
+
+	/**
+	 * Constructs a stream decoding the items of the array at the position of the decoder.
+	 */
+	ArrayStream(Schema itemSchema, BinaryDecoder decoder, DatumReader<E> itemReader) throws IOException {
+		this.itemSchema = itemSchema;
+		this.decoder = decoder;
+		this.itemReader = itemReader;
+		this.items = null;
+		this.blockRemaining = decoder.readArrayStart();
+		this.finished = blockRemaining == 0;
+	}
+
+	/**
+	 * Constructs a stream over items that have already been decoded.
+	 */
+	private ArrayStream(Schema itemSchema, Collection<? extends E> items) {
+		this.itemSchema = itemSchema;
+		this.decoder = null;
+		this.itemReader = null;
+		this.items = items.iterator();
+	}
+
+	/**
+	 * Creates a stream over the items of an array field of a record that has already been decoded, such as one passed
+	 * directly from a consumer in the same JVM.
+	 * 
+	 * @param <E> The type of the array items.
+	 * @param record The record.
+	 * @param fieldName The name of the array field.
+	 * @return The stream, which is empty if the field is null.
+	 * @throws IllegalArgumentException Exception thrown if the record does not have an array field with the name.
+	 */
+	@SuppressWarnings("unchecked")
+	public static <E> ArrayStream<E> of(IndexedRecord record, String fieldName) {
+
+		Schema.Field field = findField(record.getSchema(), fieldName);
+		Object value = record.get(field.pos());
+
+		return of(findArraySchema(field).getElementType(), value == null ? Collections.<E>emptyList() : (Collection<? extends E>) value);
+
+	}
+
+	/**
+	 * Creates a stream over items that have already been decoded.
+	 * 
+	 * @param <E> The type of the items.
+	 * @param itemSchema The schema of the items.
+	 * @param items The items.
+	 * @return The stream.
+	 */
+	public static <E> ArrayStream<E> of(Schema itemSchema, Collection<? extends E> items) {
+		return new ArrayStream<>(itemSchema, items);
+	}
+
+	@Override
+	public boolean hasNext() {
+
+		if (items != null) {
+			return items.hasNext();
+		}
+
+		try {
+
+			// The array is written in blocks, and a block count of zero marks the end of the array
+			if (blockRemaining == 0 && !finished) {
+				blockRemaining = decoder.arrayNext();
+				finished = blockRemaining == 0;
+			}
+
+			return blockRemaining != 0;
+
+		} catch (IOException ex) {
+			throw new AvroRuntimeException("Failed to decode array", ex);
+		}
+
+	}
+
+	@Override
+	public E next() {
+		return next(null);
+	}
+
+	/**
+	 * Decodes the next item, reusing the given object if possible.
+	 * 
+	 * @param reuse The object to decode into, such as the previous item, or null to create a new object.
+	 * @return The next item.
+	 * @throws NoSuchElementException Exception thrown if there are no more items.
+	 */
+	public E next(E reuse) {
+
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+
+		if (items != null) {
+			count++;
+			return items.next();
+		}
+
+		try {
+			E item = itemReader.read(reuse, decoder);
+			blockRemaining--;
+			count++;
+			return item;
+		} catch (IOException | RuntimeException ex) {
+			throw new AvroRuntimeException("Failed to decode array item", ex);
+		}
+
+	}
+
+	/**
+	 * @return a sequential stream of the remaining items
+	 */
+	public Stream<E> stream() {
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED), false);
+	}
+
+	/**
+	 * @return the schema of the array items
+	 */
+	public Schema getItemSchema() {
+		return itemSchema;
+	}
+
+	/**
+	 * @return the number of items returned so far
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	// package-private methods
+
+	/**
+	 * Finds the field of a record schema with the given name.
+	 */
+	static Schema.Field findField(Schema schema, String fieldName) {
+
+		Schema.Field field = schema.getType() == Schema.Type.RECORD ? schema.getField(fieldName) : null;
+		if (field == null) {
+			throw new IllegalArgumentException(String.format("The message has no field named %s", fieldName));
+		}
+
+		return field;
+
+	}
+
+	/**
+	 * Finds the array schema of a field that is either an array or a union containing an array.
+	 */
+	static Schema findArraySchema(Schema.Field field) {
+
+		Schema schema = field.schema();
+		if (schema.getType() == Schema.Type.ARRAY) {
+			return schema;
+		}
+
+		if (schema.getType() == Schema.Type.UNION) {
+			for (Schema type : schema.getTypes()) {
+				if (type.getType() == Schema.Type.ARRAY) {
+					return type;
+				}
+			}
+		}
+
+		throw new IllegalArgumentException(String.format("The field %s is not an array", field.name()));
+
+	}
+
+}
@@ -26,19 +26,31 @@
 
 package com.financialforce.orizuru.message;
 
-import java.nio.ByteBuffer;
+import java.util.Objects;
 
 import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericContainer;
 
+import com.financialforce.orizuru.cache.SchemaCache;
 import com.financialforce.orizuru.exception.consumer.OrizuruConsumerException;
 import com.financialforce.orizuru.exception.consumer.decode.DecodeContextException;
+import com.financialforce.orizuru.exception.publisher.encode.EncodeMessageContentException;
+import com.financialforce.orizuru.interfaces.ISchemaRegistry;
+import com.financialforce.orizuru.transport.BatchTransport;
+import com.financialforce.orizuru.transport.FingerprintTransport;
 import com.financialforce.orizuru.transport.Transport;
 
 /**
  * Wraps the context part of the FinancialForce Orizuru Avro Transport schema.
+ * <p>
+ * A context decoded from a transport carrying the schema text is decoded lazily: the schema is only parsed when it is
+ * first requested and the data is only decoded when {@link #decode()} is called. A publisher forwarding the context
+ * writes the original schema text and data, so a consumer that ignores the context does not pay for decoding it.
  */
 public class Context extends Message {
 
+	protected CharSequence schemaText;
+
 	/**
 	 * Constructs a new empty Avro context.
 	 */
@@ -57,12 +69,34 @@ public class Context extends Message {
 
 		try {
 
-			String contextSchemaStr = input.getContextSchema().toString();
-			Schema.Parser parser = new Schema.Parser();
-			this.schema = parser.parse(contextSchemaStr);
+			this.schema = null;
+			this.schemaText = Objects.requireNonNull(input.getContextSchema(), "contextSchema");
+
+			this.data = input.getContextBuffer();
+
+		} catch (Exception ex) {
+			throw new DecodeContextException(ex);
+		}
+
+	}
+
+	/**
+	 * Decode the context from the fingerprint transport.
+	 * 
+	 * @param input The FinancialForce Orizuru Avro Fingerprint Transport message from which to decode the context.
+	 * @param schemaRegistry The registry used to find the schema for the context fingerprint.
+	 * @throws OrizuruConsumerException Exception thrown if decoding the context fails.
+	 */
+	@Override
+	public void decodeFromTransport(FingerprintTransport input, ISchemaRegistry schemaRegistry) throws OrizuruConsumerException {
+
+		try {
+
+			// Finding the schema is a lookup in the registry, so there is nothing to gain by deferring it
+			this.schema = lookupSchema(schemaRegistry, input.getContextFingerprint());
+			this.schemaText = null;
 
-			ByteBuffer contextBuffer = input.getContextBuffer();
-			this.data = contextBuffer.array();
+			this.data = input.getContextBuffer();
 
 		} catch (Exception ex) {
 			throw new DecodeContextException(ex);
@@ -70,4 +104,94 @@ public class Context extends Message {
 
 	}
 
+	/**
+	 * Decode the context from the batch transport.
+	 * 
+	 * @param input The FinancialForce Orizuru Avro Batch Transport message from which to decode the context.
+	 * @throws OrizuruConsumerException Exception thrown if decoding the context fails.
+	 */
+	public void decodeFromBatchTransport(BatchTransport input) throws OrizuruConsumerException {
+
+		try {
+
+			this.schema = null;
+			this.schemaText = Objects.requireNonNull(input.getContextSchema(), "contextSchema");
+
+			this.data = input.getContextBuffer();
+
+		} catch (Exception ex) {
+			throw new DecodeContextException(ex);
+		}
+
+	}
+
+	/**
+	 * Encode the context data provided with a generic or a specific writer.
+	 * 
+	 * @param <O> The type of the data to encode.
+	 * @param data The context data.
+	 * @param generic True to use a generic writer.
+	 * @throws EncodeMessageContentException Exception thrown if encoding the context content fails.
+	 */
+	@Override
+	protected <O extends GenericContainer> void encode(O data, boolean generic) throws EncodeMessageContentException {
+		super.encode(data, generic);
+		this.schemaText = null;
+	}
+
+	/**
+	 * Returns the schema, parsing the schema text if this is the first request since the context was decoded.
+	 * 
+	 * @return the schema
+	 * @throws org.apache.avro.SchemaParseException Exception thrown if the schema text cannot be parsed.
+	 */
+	@Override
+	public Schema getSchema() {
+
+		if (schema == null && schemaText != null) {
+			schema = SchemaCache.getInstance().parse(schemaText.toString());
+		}
+
+		return schema;
+
+	}
+
+	/**
+	 * Determines whether another context has the same schema and data, without parsing or decoding either.
+	 * 
+	 * @param other The other context.
+	 * @return True if the contexts have the same schema and data.
+	 */
+	public boolean contentEquals(Context other) {
+
+		boolean sameSchema;
+		if (schemaText != null && other.schemaText != null) {
+			// Schema text decoded from a transport is Utf8, which is compared without converting it to a String
+			sameSchema = schemaText.getClass() == other.schemaText.getClass()
+					? schemaText.equals(other.schemaText)
+					: schemaText.toString().contentEquals(other.schemaText);
+		} else {
+			sameSchema = Objects.equals(getSchema(), other.getSchema());
+		}
+
+		return sameSchema && Objects.equals(data, other.data);
+
+	}
+
+	/**
+	 * Returns the schema text as it was received, without parsing it, or the text of the schema if the context was
+	 * not decoded from schema text.
+	 * 
+	 * @return the schema text
+	 */
+	public CharSequence getSchemaText() {
+
+		if (schemaText != null) {
+			return schemaText;
+		}
+
+		return schema == null ? null : schema.toString();
+
+	}
+
 }
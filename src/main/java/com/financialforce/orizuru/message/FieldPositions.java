@@ -0,0 +1,155 @@
+/**
+ * Copyright (c) 2017-2018, FinancialForce.com, inc
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ *   are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ *      this list of conditions and the following disclaimer in the documentation
+ *      and/or other materials provided with the distribution.
+ * - Neither the name of the FinancialForce.com, inc nor the names of its contributors
+ *      may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ *  OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL
+ *  THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ *  EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ *  OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY
+ *  OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ **/
+
+package com.financialforce.orizuru.message;
+
+import org.apache.avro.AvroRuntimeException;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.IndexedRecord;
+
+import com.financialforce.orizuru.cache.BoundedCache;
+
+/**
+ * Finds a fixed set of named fields in records by their positions, looking the positions up only once for each schema.
+ * <p>
+ * Getting a field of a generic record by name looks the name up in its schema every time. A consumer that only
+ * inspects a few fields of each message, such as one that routes messages, can instead get them by position. The
+ * positions of the most recent schema are kept to hand, so a stream of messages with the same schema does not look
+ * them up at all.
+ */
+public class FieldPositions {
+
+	/**
+	 * The maximum number of schemas for which the positions are held.
+	 */
+	public static final int DEFAULT_MAXIMUM_SIZE = 64;
+
+	private final String[] fieldNames;
+
+	private final BoundedCache<Schema, int[]> positions;
+
+	private volatile Positions last;
+
+	/**
+	 * Constructs the positions of the named fields.
+	 * 
+	 * @param fieldNames The names of the fields, in the order in which they are referred to by index.
+	 */
+	public FieldPositions(String... fieldNames) {
+		this.fieldNames = fieldNames.clone();
+		this.positions = new BoundedCache<>(DEFAULT_MAXIMUM_SIZE);
+	}
+
+	/**
+	 * Returns the position in the schema of each of the named fields.
+	 * 
+	 * @param schema The record schema.
+	 * @return The positions, in the order of the field names, with -1 for a field that is not in the schema. The
+	 *         array is shared and must not be changed.
+	 */
+	public int[] positionsOf(Schema schema) {
+
+		Positions current = last;
+		if (current == null || current.schema != schema) {
+			current = new Positions(schema, positions.get(schema, this::findPositions));
+			last = current;
+		}
+
+		return current.positions;
+
+	}
+
+	/**
+	 * Returns the value of a named field of a record.
+	 * 
+	 * @param record The record.
+	 * @param field The index of the field name.
+	 * @return The value of the field, or null if the field is not in the schema of the record.
+	 */
+	public Object get(IndexedRecord record, int field) {
+
+		int position = positionsOf(record.getSchema())[field];
+		return position < 0 ? null : record.get(position);
+
+	}
+
+	/**
+	 * Sets the value of a named field of a record.
+	 * 
+	 * @param record The record.
+	 * @param field The index of the field name.
+	 * @param value The value of the field.
+	 * @throws AvroRuntimeException Exception thrown if the field is not in the schema of the record.
+	 */
+	public void put(IndexedRecord record, int field, Object value) {
+
+		int position = positionsOf(record.getSchema())[field];
+		if (position < 0) {
+			throw new AvroRuntimeException(String.format("Not a field of %s: %s", record.getSchema().getFullName(), fieldNames[field]));
+		}
+
+		record.put(position, value);
+
+	}
+
+	/**
+	 * @return the names of the fields
+	 */
+	public String[] getFieldNames() {
+		return fieldNames.clone();
+	}
+
+	// private methods
+
+	private int[] findPositions(Schema schema) {
+
+		int[] result = new int[fieldNames.length];
+		for (int i = 0; i < fieldNames.length; i++) {
+			Schema.Field field = schema.getField(fieldNames[i]);
+			result[i] = field == null ? -1 : field.pos();
+		}
+
+		return result;
+
+	}
+
+	/**
+	 * The positions of the fields in a schema.
+	 */
+	private static class Positions {
+
+		private final Schema schema;
+
+		private final int[] positions;
+
+		Positions(Schema schema, int[] positions) {
+			this.schema = schema;
+			this.positions = positions;
+		}
+
+	}
+
+}
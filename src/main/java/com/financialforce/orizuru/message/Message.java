@@ -26,24 +26,33 @@
 
 package com.financialforce.orizuru.message;
 
-import java.io.ByteArrayOutputStream;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
+import org.apache.avro.AvroRuntimeException;
 import org.apache.avro.Schema;
 import org.apache.avro.generic.GenericContainer;
+import org.apache.avro.generic.GenericDatumReader;
 import org.apache.avro.io.BinaryDecoder;
 import org.apache.avro.io.BinaryEncoder;
 import org.apache.avro.io.DatumReader;
 import org.apache.avro.io.DatumWriter;
 import org.apache.avro.io.DecoderFactory;
-import org.apache.avro.io.EncoderFactory;
 import org.apache.avro.specific.SpecificDatumReader;
-import org.apache.avro.specific.SpecificDatumWriter;
 
+import com.financialforce.orizuru.cache.DatumCache;
+import com.financialforce.orizuru.cache.SchemaCache;
+import com.financialforce.orizuru.codec.ByteBufferInputStream;
+import com.financialforce.orizuru.codec.ThreadLocalCodec;
 import com.financialforce.orizuru.exception.consumer.OrizuruConsumerException;
 import com.financialforce.orizuru.exception.consumer.decode.DecodeMessageContentException;
 import com.financialforce.orizuru.exception.consumer.decode.DecodeMessageException;
 import com.financialforce.orizuru.exception.publisher.encode.EncodeMessageContentException;
+import com.financialforce.orizuru.interfaces.ISchemaRegistry;
+import com.financialforce.orizuru.transport.BatchTransport;
+import com.financialforce.orizuru.transport.FingerprintTransport;
 import com.financialforce.orizuru.transport.Transport;
 
 /**
@@ -52,7 +61,7 @@ import com.financialforce.orizuru.transport.Transport;
 public class Message {
 
 	protected Schema schema;
-	protected byte[] data;
+	protected ByteBuffer data;
 
 	/**
 	 * Constructs a new empty Avro message.
@@ -68,7 +77,26 @@ public class Message {
 	 */
 	public Message(Schema schema, byte[] data) {
 		this.schema = schema;
-		this.data = data;
+		this.data = data == null ? null : ByteBuffer.wrap(data);
+	}
+
+	/**
+	 * Creates an Avro message containing the schema and the message data held in a buffer.
+	 * <p>
+	 * The remaining bytes of the buffer are used as the message data without being copied.
+	 * 
+	 * @param schema The FinancialForce Orizuru Avro Message schema.
+	 * @param data The FinancialForce Orizuru Avro Message data.
+	 * @return The message.
+	 */
+	public static Message wrap(Schema schema, ByteBuffer data) {
+
+		Message message = new Message();
+		message.schema = schema;
+		message.data = data;
+
+		return message;
+
 	}
 
 	/**
@@ -79,18 +107,31 @@ public class Message {
 	 * @throws EncodeMessageContentException Exception thrown if encoding the message content fails.
 	 */
 	public <O extends GenericContainer> void encode(O data) throws EncodeMessageContentException {
+		encode(data, false);
+	}
+
+	/**
+	 * Encode the message data provided with a generic or a specific writer.
+	 * 
+	 * @param <O> The type of the data to encode.
+	 * @param data The message data.
+	 * @param generic True to use a generic writer.
+	 * @throws EncodeMessageContentException Exception thrown if encoding the message content fails.
+	 */
+	protected <O extends GenericContainer> void encode(O data, boolean generic) throws EncodeMessageContentException {
 
 		try {
 
-			ByteArrayOutputStream baos = new ByteArrayOutputStream();
+			ThreadLocalCodec codec = ThreadLocalCodec.get();
 
 			this.schema = data.getSchema();
-			DatumWriter<O> outputDatumWriter = new SpecificDatumWriter<O>(this.schema);
-			BinaryEncoder encoder = EncoderFactory.get().binaryEncoder(baos, null);
+			DatumWriter<O> outputDatumWriter = generic ? DatumCache.getInstance().getGenericWriter(this.schema)
+					: DatumCache.getInstance().getWriter(this.schema);
+			BinaryEncoder encoder = codec.encoder();
 			outputDatumWriter.write(data, encoder);
 			encoder.flush();
 
-			this.data = baos.toByteArray();
+			this.data = ByteBuffer.wrap(codec.getOutput().toByteArray());
 
 		} catch (Exception ex) {
 			throw new EncodeMessageContentException(ex);
@@ -98,6 +139,19 @@ public class Message {
 
 	}
 
+	/**
+	 * Encode the message data provided with a generic writer.
+	 * <p>
+	 * The data is written as a generic record whether or not a generated class for its schema is available.
+	 * 
+	 * @param <O> The type of the data to encode.
+	 * @param data The message data.
+	 * @throws EncodeMessageContentException Exception thrown if encoding the message content fails.
+	 */
+	public <O extends GenericContainer> void encodeGeneric(O data) throws EncodeMessageContentException {
+		encode(data, true);
+	}
+
 	/**
 	 * Decode the message from the transport.
 	 * 
@@ -109,11 +163,60 @@ public class Message {
 		try {
 		
 			String messageSchemaStr = input.getMessageSchema().toString();
-			Schema.Parser parser = new Schema.Parser();
-			this.schema = parser.parse(messageSchemaStr);
+			this.schema = SchemaCache.getInstance().parse(messageSchemaStr);
+
+			this.data = input.getMessageBuffer();
+
+		} catch (Exception ex) {
+			throw new DecodeMessageException(ex);
+		}
+
+	}
+
+	/**
+	 * Decode the message from the fingerprint transport.
+	 * 
+	 * @param input The FinancialForce Orizuru Avro Fingerprint Transport message from which to decode the message.
+	 * @param schemaRegistry The registry used to find the schema for the message fingerprint.
+	 * @throws OrizuruConsumerException Exception thrown if decoding the message fails.
+	 */
+	public void decodeFromTransport(FingerprintTransport input, ISchemaRegistry schemaRegistry) throws OrizuruConsumerException {
+
+		try {
+
+			this.schema = lookupSchema(schemaRegistry, input.getMessageFingerprint());
+
+			this.data = input.getMessageBuffer();
+
+		} catch (Exception ex) {
+			throw new DecodeMessageException(ex);
+		}
+
+	}
+
+	/**
+	 * Decode the messages from the batch transport.
+	 * <p>
+	 * The message schema is parsed once and shared by all of the messages.
+	 * 
+	 * @param input The FinancialForce Orizuru Avro Batch Transport message from which to decode the messages.
+	 * @return The messages, in the order in which they appear in the batch.
+	 * @throws OrizuruConsumerException Exception thrown if decoding the messages fails.
+	 */
+	public static List<Message> decodeBatchFromTransport(BatchTransport input) throws OrizuruConsumerException {
+
+		try {
+
+			String messageSchemaStr = input.getMessageSchema().toString();
+			Schema messageSchema = SchemaCache.getInstance().parse(messageSchemaStr);
 
-			ByteBuffer messageBuffer = input.getMessageBuffer();
-			this.data = messageBuffer.array();
+			List<ByteBuffer> messageBuffers = input.getMessageBuffers();
+			List<Message> messages = new ArrayList<>(messageBuffers.size());
+			for (ByteBuffer messageBuffer : messageBuffers) {
+				messages.add(wrap(messageSchema, messageBuffer));
+			}
+
+			return messages;
 
 		} catch (Exception ex) {
 			throw new DecodeMessageException(ex);
@@ -129,12 +232,120 @@ public class Message {
 	 * @throws DecodeMessageContentException Exception thrown if decoding the message content fails.
 	 */
 	public <I extends GenericContainer> I decode() throws DecodeMessageContentException {
+		return decode(null);
+	}
+
+	/**
+	 * Decode the message content, reusing the given object if possible.
+	 * <p>
+	 * Reusing an object decoded from an earlier message avoids allocating a new object graph for every message.
+	 * 
+	 * @param <I> The type of the data that is decoded.
+	 * @param reuse The object to decode into, or null to create a new object.
+	 * @return The message data.
+	 * @throws DecodeMessageContentException Exception thrown if decoding the message content fails.
+	 */
+	public <I extends GenericContainer> I decode(I reuse) throws DecodeMessageContentException {
+		return decode(null, reuse);
+	}
+
+	/**
+	 * Decode the message content into the given reader schema, reusing the given object if possible.
+	 * <p>
+	 * The data is resolved from the schema it was written with into the reader schema, so fields that are not in the
+	 * reader schema are skipped without being decoded, and fields added to the reader schema take their defaults.
+	 * 
+	 * @param <I> The type of the data that is decoded.
+	 * @param readerSchema The schema of the data to decode, or null to decode using the message schema.
+	 * @param reuse The object to decode into, or null to create a new object.
+	 * @return The message data.
+	 * @throws DecodeMessageContentException Exception thrown if decoding the message content fails.
+	 */
+	public <I extends GenericContainer> I decode(Schema readerSchema, I reuse) throws DecodeMessageContentException {
+
+		try {
+
+			DatumReader<I> messageDatumReader = DatumCache.getInstance().getReader(schema, readerSchema == null ? schema : readerSchema);
+			BinaryDecoder decoder = ThreadLocalCodec.get().decoder(data);
+			return messageDatumReader.read(reuse, decoder);
+
+		} catch (Exception ex) {
+			throw new DecodeMessageContentException(ex);
+		}
+
+	}
+
+	/**
+	 * Decode the message content into generic records of the given reader schema, reusing the given record if
+	 * possible.
+	 * <p>
+	 * Generic records are used whether or not generated classes for the schemas are available, so no classes are
+	 * looked up by schema name. This suits consumers that only inspect a few fields of each message, which can find
+	 * them with {@link FieldPositions}.
+	 * 
+	 * @param <I> The type of the data that is decoded.
+	 * @param readerSchema The schema of the data to decode, or null to decode using the message schema.
+	 * @param reuse The record to decode into, or null to create a new record.
+	 * @return The message data.
+	 * @throws DecodeMessageContentException Exception thrown if decoding the message content fails.
+	 */
+	public <I extends GenericContainer> I decodeGeneric(Schema readerSchema, I reuse) throws DecodeMessageContentException {
+
+		try {
+
+			DatumReader<I> messageDatumReader = DatumCache.getInstance().getGenericReader(schema, readerSchema == null ? schema : readerSchema);
+			BinaryDecoder decoder = ThreadLocalCodec.get().decoder(data);
+			return messageDatumReader.read(reuse, decoder);
+
+		} catch (Exception ex) {
+			throw new DecodeMessageContentException(ex);
+		}
+
+	}
+
+	/**
+	 * Decode the items of an array field of the message content one at a time, as they are requested.
+	 * <p>
+	 * The fields before the array are skipped without being decoded, and the fields after it cannot be read. Each
+	 * item is resolved from the schema it was written with into the item reader schema. The stream reads from the
+	 * message data, which must not be changed until the stream is finished with.
+	 * 
+	 * @param <E> The type of the array items.
+	 * @param fieldName The name of the array field, which may also be a union of null and an array.
+	 * @param itemReaderSchema The schema into which each item is decoded, or null to decode the items as written.
+	 * @return The stream of items, which is empty if the field is null.
+	 * @throws DecodeMessageContentException Exception thrown if the message does not have an array field with the
+	 *             name, or the fields before it cannot be skipped.
+	 */
+	public <E> ArrayStream<E> decodeArray(String fieldName, Schema itemReaderSchema) throws DecodeMessageContentException {
 
 		try {
 
-			DatumReader<I> messageDatumReader = new SpecificDatumReader<I>(schema);
-			BinaryDecoder decoder = DecoderFactory.get().binaryDecoder(data, null);
-			return messageDatumReader.read(null, decoder);
+			Schema.Field field = ArrayStream.findField(schema, fieldName);
+			Schema itemSchema = ArrayStream.findArraySchema(field).getElementType();
+
+			// The stream outlives this call, so it has its own decoder rather than the one of the thread's codec
+			BinaryDecoder decoder = data.hasArray()
+					? DecoderFactory.get().binaryDecoder(data.array(), data.arrayOffset() + data.position(), data.remaining(), null)
+					: DecoderFactory.get().binaryDecoder(new ByteBufferInputStream().reset(data), null);
+
+			for (Schema.Field precedingField : schema.getFields()) {
+				if (precedingField == field) {
+					break;
+				}
+				GenericDatumReader.skip(precedingField.schema(), decoder);
+			}
+
+			if (field.schema().getType() == Schema.Type.UNION
+					&& field.schema().getTypes().get(decoder.readIndex()).getType() != Schema.Type.ARRAY) {
+				return ArrayStream.of(itemSchema, Collections.<E>emptyList());
+			}
+
+			// Readers are not safe to share between threads, so the stream has a reader of its own rather than the one
+			// cached for this thread; Avro caches the resolver, so the reader is cheap and the stream can be passed on
+			DatumReader<E> itemReader = new SpecificDatumReader<>(itemSchema, itemReaderSchema == null ? itemSchema : itemReaderSchema);
+
+			return new ArrayStream<>(itemSchema, decoder, itemReader);
 
 		} catch (Exception ex) {
 			throw new DecodeMessageContentException(ex);
@@ -142,6 +353,25 @@ public class Message {
 
 	}
 
+	/**
+	 * Find the schema for a fingerprint.
+	 * 
+	 * @param schemaRegistry The registry containing the schema.
+	 * @param fingerprint The fingerprint of the schema.
+	 * @return The schema.
+	 * @throws AvroRuntimeException Exception thrown if the schema is not in the registry.
+	 */
+	protected static Schema lookupSchema(ISchemaRegistry schemaRegistry, long fingerprint) {
+
+		Schema schema = schemaRegistry.lookup(fingerprint);
+		if (schema == null) {
+			throw new AvroRuntimeException(String.format("No schema registered for fingerprint %016x", fingerprint));
+		}
+
+		return schema;
+
+	}
+
 	/**
 	 * @return the schema
 	 */
@@ -150,17 +380,41 @@ public class Message {
 	}
 
 	/**
+	 * Returns the data as a byte array.
+	 * <p>
+	 * The data is only copied if it is not the whole of an accessible array, such as when it is a slice of the
+	 * incoming message.
+	 * 
 	 * @return the data
 	 */
 	public byte[] getData() {
-		return data;
+
+		if (data == null) {
+			return null;
+		}
+
+		if (data.hasArray() && data.arrayOffset() == 0 && data.position() == 0 && data.remaining() == data.array().length) {
+			return data.array();
+		}
+
+		byte[] bytes = new byte[data.remaining()];
+		data.duplicate().get(bytes);
+		return bytes;
+
+	}
+
+	/**
+	 * @return the number of bytes of data
+	 */
+	public int getDataSize() {
+		return data == null ? 0 : data.remaining();
 	}
 
 	/**
-	 * @return the data as a bytebuffer
+	 * @return the data as a bytebuffer, sharing its content but with an independent position
 	 */
 	public ByteBuffer getDataBuffer() {
-		return ByteBuffer.wrap(data);
+		return data == null ? null : data.duplicate();
 	}
 
 }
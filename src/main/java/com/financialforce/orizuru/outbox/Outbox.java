@@ -0,0 +1,476 @@
+/**
+ * Copyright (c) 2017-2018, FinancialForce.com, inc
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ *   are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ *      this list of conditions and the following disclaimer in the documentation
+ *      and/or other materials provided with the distribution.
+ * - Neither the name of the FinancialForce.com, inc nor the names of its contributors
+ *      may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ *  OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL
+ *  THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ *  EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ *  OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY
+ *  OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ **/
+
+package com.financialforce.orizuru.outbox;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only queue of messages held in memory-mapped files, so that published messages can be kept durably at
+ * memory speed while the broker they are sent to is unavailable.
+ * <p>
+ * Messages are appended to fixed size segment files in the outbox directory; when a message does not fit in the
+ * remaining space of a segment, the next segment is started. Messages are drained in the order in which they were
+ * appended: {@link #peek()} returns the next message and {@link #remove()} moves the drain cursor past it once it
+ * has been sent. The cursor is kept in its own file, and segments are deleted once they have been drained.
+ * <p>
+ * Each message is written with its length and a CRC-32 checksum. When an outbox is reopened after a crash, the last
+ * segment is scanned and anything after the last complete message is discarded, so a partially written message is
+ * never drained. Draining resumes from the cursor, so a message that was sent but not removed before the crash is
+ * drained again.
+ * <p>
+ * How soon writes reach the storage device is set by the {@link SyncPolicy}. Any number of threads may append to an
+ * outbox, but it must only be drained by one thread at a time, since {@link #remove()} removes whichever message was
+ * last peeked. A directory must only be opened by one outbox at a time.
+ * <p>
+ * Each file is closed as soon as it is mapped; a mapping stays valid without its channel, and is released once it is
+ * no longer referenced.
+ */
+public class Outbox implements Closeable {
+
+	/**
+	 * The default size in bytes of each segment file.
+	 */
+	public static final int DEFAULT_SEGMENT_SIZE = 64 << 20;
+
+	/**
+	 * The size of the length and checksum written before each message.
+	 */
+	public static final int RECORD_HEADER_SIZE = 8;
+
+	private static final String SEGMENT_EXTENSION = ".segment";
+
+	private static final String CURSOR_FILE = "cursor";
+
+	private final Path directory;
+
+	private final int segmentSize;
+
+	private final SyncPolicy syncPolicy;
+
+	private final MappedByteBuffer cursor;
+
+	private final CRC32 checksum = new CRC32();
+
+	private Segment writeSegment;
+
+	private int writePosition;
+
+	private Segment readSegment;
+
+	private int readPosition;
+
+	private int peekedLength = -1;
+
+	private boolean closed = false;
+
+	/**
+	 * Opens the outbox in the given directory with the default segment size, forcing writes when a segment is filled.
+	 * 
+	 * @param directory The directory holding the outbox files, which is created if required.
+	 * @throws IOException Exception thrown if the outbox cannot be opened or recovered.
+	 */
+	public Outbox(Path directory) throws IOException {
+		this(directory, DEFAULT_SEGMENT_SIZE, SyncPolicy.ON_ROLL);
+	}
+
+	/**
+	 * Opens the outbox in the given directory, recovering the messages left by a previous outbox.
+	 * 
+	 * @param directory The directory holding the outbox files, which is created if required.
+	 * @param segmentSize The size in bytes of each segment file, which limits the size of a message.
+	 * @param syncPolicy When writes are forced to the storage device.
+	 * @throws IOException Exception thrown if the outbox cannot be opened or recovered.
+	 */
+	public Outbox(Path directory, int segmentSize, SyncPolicy syncPolicy) throws IOException {
+
+		if (segmentSize <= RECORD_HEADER_SIZE) {
+			throw new IllegalArgumentException(String.format("The segment size must be larger than %d", RECORD_HEADER_SIZE));
+		}
+
+		this.directory = Files.createDirectories(directory);
+		this.segmentSize = segmentSize;
+		this.syncPolicy = syncPolicy;
+
+		this.cursor = map(directory.resolve(CURSOR_FILE), Long.BYTES);
+
+		recover();
+
+	}
+
+	/**
+	 * Appends a message to the outbox.
+	 * 
+	 * @param body The message bytes.
+	 * @throws IOException Exception thrown if the next segment cannot be created or the write cannot be forced.
+	 */
+	public void append(byte[] body) throws IOException {
+		append(ByteBuffer.wrap(body));
+	}
+
+	/**
+	 * Appends the remaining bytes of a buffer to the outbox as a message, without changing its position.
+	 * 
+	 * @param body The message bytes.
+	 * @throws IOException Exception thrown if the next segment cannot be created or the write cannot be forced.
+	 */
+	public synchronized void append(ByteBuffer body) throws IOException {
+
+		checkOpen();
+
+		int length = body.remaining();
+		if (length == 0) {
+			throw new IllegalArgumentException("An empty message cannot be appended");
+		}
+
+		if (length > segmentSize - RECORD_HEADER_SIZE) {
+			throw new IllegalArgumentException(
+					String.format("The message of %d bytes does not fit in a segment of %d bytes", length, segmentSize));
+		}
+
+		if (length > segmentSize - RECORD_HEADER_SIZE - writePosition) {
+			roll();
+		}
+
+		MappedByteBuffer buffer = writeSegment.buffer;
+
+		ByteBuffer record = buffer.duplicate();
+		record.position(writePosition + RECORD_HEADER_SIZE);
+		record.put(body.duplicate());
+
+		// The length is written last, so a message that is cut short by a crash reads as the end of the segment
+		buffer.putInt(writePosition + Integer.BYTES, checksumOf(body));
+		buffer.putInt(writePosition, length);
+
+		writePosition += RECORD_HEADER_SIZE + length;
+
+		if (syncPolicy == SyncPolicy.EVERY_APPEND) {
+			buffer.force();
+		}
+
+	}
+
+	/**
+	 * Returns the next message to drain, without moving the drain cursor.
+	 * 
+	 * @return A read-only buffer of the message, valid until the outbox is closed, or null if the outbox is empty.
+	 * @throws IOException Exception thrown if the message is corrupt or a drained segment cannot be deleted.
+	 */
+	public synchronized ByteBuffer peek() throws IOException {
+
+		checkOpen();
+
+		while (true) {
+
+			if (readSegment == writeSegment && readPosition >= writePosition) {
+				return null;
+			}
+
+			int length = readPosition > segmentSize - RECORD_HEADER_SIZE ? 0 : readSegment.buffer.getInt(readPosition);
+			if (length == 0) {
+				nextReadSegment();
+				continue;
+			}
+
+			ByteBuffer record = readRecord(readSegment.buffer, readPosition, length);
+			if (record == null) {
+				throw new IOException(String.format("Corrupt message in outbox segment %d at offset %d", readSegment.index, readPosition));
+			}
+
+			peekedLength = length;
+			return record.asReadOnlyBuffer();
+
+		}
+
+	}
+
+	/**
+	 * Moves the drain cursor past the next message, once it has been sent. If no message has been peeked since the
+	 * last removal, the next message is removed without being returned.
+	 * 
+	 * @throws IOException Exception thrown if the message is corrupt or the cursor cannot be forced.
+	 * @throws NoSuchElementException Exception thrown if the outbox is empty.
+	 */
+	public synchronized void remove() throws IOException {
+
+		if (peekedLength < 0 && peek() == null) {
+			throw new NoSuchElementException("The outbox is empty");
+		}
+
+		readPosition += RECORD_HEADER_SIZE + peekedLength;
+		peekedLength = -1;
+
+		writeCursor(syncPolicy == SyncPolicy.EVERY_APPEND);
+
+	}
+
+	/**
+	 * @return true if every appended message has been drained
+	 * @throws IOException Exception thrown if a drained segment cannot be deleted.
+	 */
+	public synchronized boolean isEmpty() throws IOException {
+		return peek() == null;
+	}
+
+	/**
+	 * @return the number of segment files holding messages that have not been drained
+	 */
+	public synchronized int getSegmentCount() {
+		return writeSegment.index - readSegment.index + 1;
+	}
+
+	/**
+	 * @return the directory holding the outbox files
+	 */
+	public Path getDirectory() {
+		return directory;
+	}
+
+	/**
+	 * Forces the outbox to the storage device, unless the sync policy is {@link SyncPolicy#NONE}. Messages that have
+	 * not been drained are kept for the next outbox opened on the directory.
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+
+		if (closed) {
+			return;
+		}
+
+		closed = true;
+
+		if (syncPolicy != SyncPolicy.NONE) {
+			writeSegment.buffer.force();
+			cursor.force();
+		}
+
+	}
+
+	// private methods
+
+	/**
+	 * Opens the segments left by a previous outbox, finding the end of the last complete message in the last segment
+	 * and discarding the segments that have already been drained.
+	 */
+	private void recover() throws IOException {
+
+		List<Integer> indexes = listSegments();
+
+		long position = cursor.getLong(0);
+		int cursorIndex = (int) (position >>> 32);
+		readPosition = (int) position;
+
+		if (indexes.isEmpty() || cursorIndex > indexes.get(indexes.size() - 1)) {
+			indexes.add(cursorIndex);
+		} else if (cursorIndex < indexes.get(0)) {
+			cursorIndex = indexes.get(0);
+			readPosition = 0;
+		}
+
+		for (int index : indexes) {
+			if (index < cursorIndex) {
+				Files.deleteIfExists(getSegmentFile(index));
+			}
+		}
+
+		writeSegment = openSegment(indexes.get(indexes.size() - 1));
+		writePosition = findEnd(writeSegment.buffer);
+
+		if (cursorIndex == writeSegment.index) {
+			readSegment = writeSegment;
+			readPosition = Math.min(readPosition, writePosition);
+		} else {
+			readSegment = openSegment(cursorIndex);
+		}
+
+		writeCursor(false);
+
+	}
+
+	/**
+	 * Finds the end of the last complete message in a segment, clearing anything written after it.
+	 */
+	private int findEnd(MappedByteBuffer buffer) {
+
+		int position = 0;
+		while (position <= segmentSize - RECORD_HEADER_SIZE) {
+
+			int length = buffer.getInt(position);
+			if (length <= 0 || length > segmentSize - RECORD_HEADER_SIZE - position || readRecord(buffer, position, length) == null) {
+				break;
+			}
+
+			position += RECORD_HEADER_SIZE + length;
+
+		}
+
+		// Clear a partially written message so that it is not mistaken for a message once it is overwritten
+		if (position <= segmentSize - RECORD_HEADER_SIZE && buffer.getInt(position) != 0) {
+
+			for (int i = position; i < segmentSize; i++) {
+				buffer.put(i, (byte) 0);
+			}
+
+			buffer.force();
+
+		}
+
+		return position;
+
+	}
+
+	/**
+	 * Returns the message at a position in a segment, or null if it does not match its checksum.
+	 */
+	private ByteBuffer readRecord(MappedByteBuffer buffer, int position, int length) {
+
+		if (length < 0 || length > segmentSize - RECORD_HEADER_SIZE - position) {
+			return null;
+		}
+
+		ByteBuffer record = buffer.duplicate();
+		record.limit(position + RECORD_HEADER_SIZE + length);
+		record.position(position + RECORD_HEADER_SIZE);
+
+		ByteBuffer body = record.slice();
+		if (checksumOf(body) != buffer.getInt(position + Integer.BYTES)) {
+			return null;
+		}
+
+		return body;
+
+	}
+
+	/**
+	 * Starts the next segment once the current segment is full.
+	 */
+	private void roll() throws IOException {
+
+		if (syncPolicy != SyncPolicy.NONE) {
+			writeSegment.buffer.force();
+		}
+
+		writeSegment = openSegment(writeSegment.index + 1);
+		writePosition = 0;
+
+	}
+
+	/**
+	 * Moves the drain cursor to the start of the next segment and deletes the drained segment.
+	 */
+	private void nextReadSegment() throws IOException {
+
+		Segment drainedSegment = readSegment;
+
+		readSegment = drainedSegment.index + 1 == writeSegment.index ? writeSegment : openSegment(drainedSegment.index + 1);
+		readPosition = 0;
+		peekedLength = -1;
+
+		writeCursor(syncPolicy != SyncPolicy.NONE);
+
+		Files.deleteIfExists(getSegmentFile(drainedSegment.index));
+
+	}
+
+	private void writeCursor(boolean force) {
+
+		cursor.putLong(0, (long) readSegment.index << 32 | readPosition);
+
+		if (force) {
+			cursor.force();
+		}
+
+	}
+
+	private int checksumOf(ByteBuffer body) {
+		checksum.reset();
+		checksum.update(body.duplicate());
+		return (int) checksum.getValue();
+	}
+
+	private Segment openSegment(int index) throws IOException {
+		return new Segment(index, map(getSegmentFile(index), segmentSize));
+	}
+
+	private static MappedByteBuffer map(Path file, int size) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+		}
+	}
+
+	private List<Integer> listSegments() throws IOException {
+
+		List<Integer> indexes = new ArrayList<>();
+
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SEGMENT_EXTENSION)) {
+			for (Path file : files) {
+				String name = file.getFileName().toString();
+				indexes.add(Integer.valueOf(name.substring(0, name.length() - SEGMENT_EXTENSION.length())));
+			}
+		}
+
+		Collections.sort(indexes);
+		return indexes;
+
+	}
+
+	private Path getSegmentFile(int index) {
+		return directory.resolve(String.format("%010d%s", index, SEGMENT_EXTENSION));
+	}
+
+	private void checkOpen() {
+		if (closed) {
+			throw new IllegalStateException("The outbox has been closed");
+		}
+	}
+
+	private static final class Segment {
+
+		private final int index;
+
+		private final MappedByteBuffer buffer;
+
+		private Segment(int index, MappedByteBuffer buffer) {
+			this.index = index;
+			this.buffer = buffer;
+		}
+
+	}
+
+}
@@ -0,0 +1,119 @@
+/**
+ * Copyright (c) 2017-2018, FinancialForce.com, inc
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ *   are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ *      this list of conditions and the following disclaimer in the documentation
+ *      and/or other materials provided with the distribution.
+ * - Neither the name of the FinancialForce.com, inc nor the names of its contributors
+ *      may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ *  OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL
+ *  THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ *  EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ *  OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY
+ *  OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ **/
+
+package com.financialforce.orizuru.registry;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+import org.apache.avro.Schema;
+
+/**
+ * Schema registry that persists the registered schemas as files in a directory.
+ * <p>
+ * Each schema is written to a file named after its fingerprint, so processes that share the directory can decode
+ * each other's fingerprint transports. Schemas are also held in memory once registered or loaded.
+ */
+public class FileSchemaRegistry extends InMemorySchemaRegistry {
+
+	private static final String FILE_EXTENSION = ".avsc";
+
+	private final Path directory;
+
+	/**
+	 * Constructs a schema registry backed by the given directory, creating the directory if required.
+	 * 
+	 * @param directory The directory containing the schema files.
+	 * @throws IOException Exception thrown if the directory cannot be created.
+	 */
+	public FileSchemaRegistry(Path directory) throws IOException {
+		this.directory = Files.createDirectories(directory);
+	}
+
+	/**
+	 * @return the directory containing the schema files
+	 */
+	public Path getDirectory() {
+		return directory;
+	}
+
+	/**
+	 * Writes the schema to its file, unless the file already exists.
+	 * <p>
+	 * The file is written under a temporary name and then moved into place, so concurrent readers never see a
+	 * partially written schema.
+	 */
+	@Override
+	protected void store(long fingerprint, Schema schema) {
+
+		Path file = getFile(fingerprint);
+		if (Files.exists(file)) {
+			return;
+		}
+
+		try {
+
+			Path temporaryFile = Files.createTempFile(directory, null, ".tmp");
+			Files.write(temporaryFile, schema.toString().getBytes(StandardCharsets.UTF_8));
+			Files.move(temporaryFile, file, StandardCopyOption.ATOMIC_MOVE);
+
+		} catch (IOException ex) {
+			throw new UncheckedIOException(ex);
+		}
+
+	}
+
+	/**
+	 * Reads the schema from its file, if the file exists.
+	 */
+	@Override
+	protected Schema load(long fingerprint) {
+
+		Path file = getFile(fingerprint);
+		if (!Files.exists(file)) {
+			return null;
+		}
+
+		try {
+			String schema = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+			return new Schema.Parser().parse(schema);
+		} catch (IOException ex) {
+			throw new UncheckedIOException(ex);
+		}
+
+	}
+
+	// private methods
+
+	private Path getFile(long fingerprint) {
+		return directory.resolve(String.format("%016x%s", fingerprint, FILE_EXTENSION));
+	}
+
+}
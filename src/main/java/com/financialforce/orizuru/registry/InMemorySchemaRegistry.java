@@ -0,0 +1,116 @@
+/**
+ * Copyright (c) 2017-2018, FinancialForce.com, inc
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ *   are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ *      this list of conditions and the following disclaimer in the documentation
+ *      and/or other materials provided with the distribution.
+ * - Neither the name of the FinancialForce.com, inc nor the names of its contributors
+ *      may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ *  OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL
+ *  THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ *  EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ *  OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY
+ *  OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ **/
+
+package com.financialforce.orizuru.registry;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaNormalization;
+
+import com.financialforce.orizuru.interfaces.ISchemaRegistry;
+
+/**
+ * Schema registry holding the registered schemas in memory.
+ * <p>
+ * Publishers and consumers sharing an instance can exchange fingerprints in place of schema text.
+ */
+public class InMemorySchemaRegistry implements ISchemaRegistry {
+
+	private final ConcurrentHashMap<Long, Schema> schemasByFingerprint = new ConcurrentHashMap<>();
+
+	private final ConcurrentHashMap<Schema, Long> fingerprintsBySchema = new ConcurrentHashMap<>();
+
+	/* (non-Javadoc)
+	 * @see com.financialforce.orizuru.interfaces.ISchemaRegistry#register(org.apache.avro.Schema)
+	 */
+	@Override
+	public long register(Schema schema) {
+
+		Long fingerprint = fingerprintsBySchema.get(schema);
+		if (fingerprint == null) {
+
+			fingerprint = SchemaNormalization.parsingFingerprint64(schema);
+			if (schemasByFingerprint.putIfAbsent(fingerprint, schema) == null) {
+				try {
+					store(fingerprint, schema);
+				} catch (RuntimeException ex) {
+					// Forget the schema so that the next registration tries to store it again
+					schemasByFingerprint.remove(fingerprint, schema);
+					throw ex;
+				}
+			}
+
+			fingerprintsBySchema.put(schema, fingerprint);
+
+		}
+
+		return fingerprint;
+
+	}
+
+	/* (non-Javadoc)
+	 * @see com.financialforce.orizuru.interfaces.ISchemaRegistry#lookup(long)
+	 */
+	@Override
+	public Schema lookup(long fingerprint) {
+
+		Schema schema = schemasByFingerprint.get(fingerprint);
+		if (schema == null) {
+
+			schema = load(fingerprint);
+			if (schema != null) {
+				Schema existing = schemasByFingerprint.putIfAbsent(fingerprint, schema);
+				schema = existing != null ? existing : schema;
+			}
+
+		}
+
+		return schema;
+
+	}
+
+	/**
+	 * Called when a schema is registered for the first time. If this throws an exception, the schema is not
+	 * registered.
+	 * 
+	 * @param fingerprint The fingerprint of the schema.
+	 * @param schema The schema.
+	 */
+	protected void store(long fingerprint, Schema schema) {
+	}
+
+	/**
+	 * Called when a fingerprint is looked up that has not been registered in memory.
+	 * 
+	 * @param fingerprint The fingerprint of the schema.
+	 * @return The schema, or null if it cannot be found.
+	 */
+	protected Schema load(long fingerprint) {
+		return null;
+	}
+
+}
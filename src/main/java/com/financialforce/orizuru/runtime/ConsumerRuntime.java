@@ -0,0 +1,345 @@
+/**
+ * Copyright (c) 2017-2018, FinancialForce.com, inc
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ *   are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ *      this list of conditions and the following disclaimer in the documentation
+ *      and/or other materials provided with the distribution.
+ * - Neither the name of the FinancialForce.com, inc nor the names of its contributors
+ *      may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ *  OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL
+ *  THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ *  EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ *  OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY
+ *  OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ **/
+
+package com.financialforce.orizuru.runtime;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.financialforce.orizuru.exception.consumer.OrizuruConsumerException;
+import com.financialforce.orizuru.interfaces.IConsumer;
+import com.financialforce.orizuru.interfaces.IMessageSource;
+
+/**
+ * Runs consumers against their message sources on a pool of workers.
+ * <p>
+ * Each registered consumer is given a number of workers. A worker repeatedly receives a message from the source,
+ * passes it to {@link IConsumer#consume(byte[])} and then reports the outcome back to the source, so the consumer
+ * sees as many messages at once as it has workers. Throughput and latency statistics are kept for each queue name.
+ * <p>
+ * A worker keeps running whatever its consumer or source throws. A consumer failure, including an error, is reported
+ * to the source as a failed message, and failures of the source are counted in the statistics. After the source fails
+ * to receive, the worker waits before trying again, doubling the wait for each consecutive failure up to
+ * {@link #MAXIMUM_RECEIVE_BACKOFF_MILLIS}.
+ * <p>
+ * A runtime can be started once. Consumers must be registered before it is started.
+ */
+public class ConsumerRuntime implements AutoCloseable {
+
+	/**
+	 * The default time a worker waits for a message before checking whether the runtime has been stopped.
+	 */
+	public static final long DEFAULT_POLL_TIMEOUT_MILLIS = 100;
+
+	/**
+	 * The longest time a worker waits before receiving again after the message source has repeatedly failed.
+	 */
+	public static final long MAXIMUM_RECEIVE_BACKOFF_MILLIS = 1000;
+
+	private final WorkerPool workerPool;
+
+	private final long pollTimeout;
+
+	private final List<Registration> registrations = new ArrayList<>();
+
+	private final Map<String, QueueStatistics> statistics = new ConcurrentHashMap<>();
+
+	private volatile boolean running = false;
+
+	private ExecutorService executor = null;
+
+	/**
+	 * Constructs a runtime running its workers on the default {@link WorkerPool}.
+	 */
+	public ConsumerRuntime() {
+		this(WorkerPool.getDefault());
+	}
+
+	/**
+	 * Constructs a runtime.
+	 * 
+	 * @param workerPool The kind of thread to run the workers on.
+	 */
+	public ConsumerRuntime(WorkerPool workerPool) {
+		this(workerPool, DEFAULT_POLL_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Constructs a runtime.
+	 * 
+	 * @param workerPool The kind of thread to run the workers on.
+	 * @param pollTimeout The time a worker waits for a message before checking whether the runtime has been stopped.
+	 * @param unit The unit of the poll timeout.
+	 */
+	public ConsumerRuntime(WorkerPool workerPool, long pollTimeout, TimeUnit unit) {
+
+		if (!workerPool.isAvailable()) {
+			throw new IllegalArgumentException(String.format("The %s worker pool is not available", workerPool));
+		}
+
+		if (pollTimeout <= 0) {
+			throw new IllegalArgumentException("The poll timeout must be positive");
+		}
+
+		this.workerPool = workerPool;
+		this.pollTimeout = unit.toNanos(pollTimeout);
+
+	}
+
+	/**
+	 * Registers a consumer with the runtime.
+	 * 
+	 * @param consumer The consumer.
+	 * @param source The source of the messages for the consumer.
+	 * @param concurrency The number of messages to consume at once.
+	 * @return This runtime.
+	 */
+	public synchronized ConsumerRuntime register(IConsumer consumer, IMessageSource source, int concurrency) {
+
+		Objects.requireNonNull(consumer, "consumer");
+		Objects.requireNonNull(source, "source");
+
+		if (concurrency < 1) {
+			throw new IllegalArgumentException("The concurrency must be at least 1");
+		}
+
+		if (executor != null) {
+			throw new IllegalStateException("The runtime has already been started");
+		}
+
+		QueueStatistics queueStatistics = statistics.computeIfAbsent(consumer.getQueueName(), QueueStatistics::new);
+		registrations.add(new Registration(consumer, source, concurrency, queueStatistics));
+		return this;
+
+	}
+
+	/**
+	 * Starts the workers for all the registered consumers.
+	 */
+	public synchronized void start() {
+
+		if (executor != null) {
+			throw new IllegalStateException("The runtime has already been started");
+		}
+
+		if (registrations.isEmpty()) {
+			throw new IllegalStateException("No consumers have been registered");
+		}
+
+		int parallelism = 0;
+		for (Registration registration : registrations) {
+			parallelism += registration.concurrency;
+		}
+
+		executor = workerPool.newExecutor(parallelism);
+		running = true;
+
+		for (QueueStatistics queueStatistics : statistics.values()) {
+			queueStatistics.start();
+		}
+
+		for (Registration registration : registrations) {
+			for (int i = 0; i < registration.concurrency; i++) {
+				executor.execute(() -> work(registration));
+			}
+		}
+
+	}
+
+	/**
+	 * Stops receiving messages and waits for the messages being consumed to complete.
+	 * <p>
+	 * If the workers do not finish within the timeout they are interrupted.
+	 * 
+	 * @param timeout The maximum time to wait.
+	 * @param unit The unit of the timeout.
+	 * @return true if all the workers finished within the timeout.
+	 * @throws InterruptedException Exception thrown if the thread is interrupted while waiting.
+	 */
+	public synchronized boolean stop(long timeout, TimeUnit unit) throws InterruptedException {
+
+		running = false;
+
+		if (executor == null) {
+			return true;
+		}
+
+		executor.shutdown();
+		if (executor.awaitTermination(timeout, unit)) {
+			return true;
+		}
+
+		executor.shutdownNow();
+		return false;
+
+	}
+
+	/**
+	 * Stops the runtime, waiting for the messages being consumed to complete.
+	 * <p>
+	 * If the thread is interrupted while waiting, the workers are left to finish and the interrupt status is kept.
+	 */
+	@Override
+	public void close() {
+
+		try {
+			stop(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+
+	}
+
+	/**
+	 * @return true if the runtime has been started and not stopped
+	 */
+	public boolean isRunning() {
+		return running;
+	}
+
+	/**
+	 * @return the kind of thread the workers run on
+	 */
+	public WorkerPool getWorkerPool() {
+		return workerPool;
+	}
+
+	/**
+	 * Returns the statistics for a queue.
+	 * 
+	 * @param queueName The name of the queue, as returned by the consumer.
+	 * @return The statistics, or null if no consumer for the queue is registered.
+	 */
+	public QueueStatistics getStatistics(String queueName) {
+		return statistics.get(queueName);
+	}
+
+	/**
+	 * @return the statistics for every registered queue, keyed by queue name
+	 */
+	public Map<String, QueueStatistics> getStatistics() {
+		return Collections.unmodifiableMap(statistics);
+	}
+
+	// private methods
+
+	private void work(Registration registration) {
+
+		long maximumBackoff = Math.max(pollTimeout, TimeUnit.MILLISECONDS.toNanos(MAXIMUM_RECEIVE_BACKOFF_MILLIS));
+		long backoff = 0;
+
+		while (running) {
+
+			byte[] body;
+			try {
+				body = registration.source.receive(pollTimeout, TimeUnit.NANOSECONDS);
+				backoff = 0;
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+				return;
+			} catch (RuntimeException ex) {
+
+				registration.statistics.recordReceiveFailure();
+
+				// Wait before receiving again so that a source that keeps failing does not keep the worker busy
+				backoff = backoff == 0 ? pollTimeout : Math.min(backoff * 2, maximumBackoff);
+				try {
+					TimeUnit.NANOSECONDS.sleep(backoff);
+				} catch (InterruptedException iex) {
+					Thread.currentThread().interrupt();
+					return;
+				}
+
+				continue;
+
+			}
+
+			if (body != null) {
+				consume(registration, body);
+			}
+
+		}
+
+	}
+
+	private static void consume(Registration registration, byte[] body) {
+
+		registration.statistics.recordStarted();
+		long startTime = System.nanoTime();
+
+		byte[] outgoingMessage = null;
+		Exception failure = null;
+		try {
+			outgoingMessage = registration.consumer.consume(body);
+		} catch (Exception ex) {
+			failure = ex;
+		} catch (VirtualMachineError | ThreadDeath ex) {
+			// The JVM cannot be relied on to carry on after these, so they end the worker rather than fail the message
+			throw ex;
+		} catch (Error ex) {
+			failure = new OrizuruConsumerException("An error was thrown by the consumer", ex);
+		}
+
+		registration.statistics.recordCompleted(System.nanoTime() - startTime, failure != null);
+
+		try {
+			if (failure == null) {
+				registration.source.complete(body, outgoingMessage);
+			} else {
+				registration.source.fail(body, failure);
+			}
+		} catch (RuntimeException ex) {
+			registration.statistics.recordAcknowledgeFailure();
+		}
+
+	}
+
+	private static final class Registration {
+
+		private final IConsumer consumer;
+
+		private final IMessageSource source;
+
+		private final int concurrency;
+
+		private final QueueStatistics statistics;
+
+		private Registration(IConsumer consumer, IMessageSource source, int concurrency, QueueStatistics statistics) {
+			this.consumer = consumer;
+			this.source = source;
+			this.concurrency = concurrency;
+			this.statistics = statistics;
+		}
+
+	}
+
+}
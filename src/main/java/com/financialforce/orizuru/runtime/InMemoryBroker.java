@@ -0,0 +1,341 @@
+/**
+ * Copyright (c) 2017-2018, FinancialForce.com, inc
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ *   are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ *      this list of conditions and the following disclaimer in the documentation
+ *      and/or other materials provided with the distribution.
+ * - Neither the name of the FinancialForce.com, inc nor the names of its contributors
+ *      may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ *  OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL
+ *  THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ *  EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ *  OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY
+ *  OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ **/
+
+package com.financialforce.orizuru.runtime;
+
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.financialforce.orizuru.interfaces.IMessageSource;
+import com.financialforce.orizuru.interfaces.IQueueable;
+
+/**
+ * A broker holding its queues in memory, so that a chain of consumers can be run within a single JVM.
+ * <p>
+ * Queues are identified by name, as returned by {@link IQueueable#getQueueName()}, and are created when first used.
+ * Each queue holds at most a fixed number of messages, counting those that have been delivered but not yet
+ * acknowledged, and sending to a full queue waits for space.
+ * <p>
+ * A subscription delivers the messages from a queue as an {@link IMessageSource}, so it can be registered with a
+ * {@link ConsumerRuntime}. Subscriptions to the same queue compete for its messages. Each subscription holds at most
+ * its prefetch count of unacknowledged messages, and can forward the outgoing messages of its consumer to the queue
+ * of the next consumer in the chain.
+ */
+public class InMemoryBroker {
+
+	/**
+	 * The default maximum number of messages held by a queue.
+	 */
+	public static final int DEFAULT_CAPACITY = 1024;
+
+	/**
+	 * The default maximum number of unacknowledged messages held by a subscription.
+	 */
+	public static final int DEFAULT_PREFETCH = 16;
+
+	private final ConcurrentHashMap<String, Queue> queues = new ConcurrentHashMap<>();
+
+	private final int capacity;
+
+	private final int prefetch;
+
+	private final AcknowledgeMode acknowledgeMode;
+
+	/**
+	 * Constructs a broker with the default capacity and prefetch count, acknowledging messages once consumed.
+	 */
+	public InMemoryBroker() {
+		this(DEFAULT_CAPACITY, DEFAULT_PREFETCH, AcknowledgeMode.MANUAL);
+	}
+
+	/**
+	 * Constructs a broker.
+	 * 
+	 * @param capacity The maximum number of messages held by each queue.
+	 * @param prefetch The maximum number of unacknowledged messages held by each subscription.
+	 * @param acknowledgeMode When delivered messages are acknowledged.
+	 */
+	public InMemoryBroker(int capacity, int prefetch, AcknowledgeMode acknowledgeMode) {
+
+		if (capacity < 1) {
+			throw new IllegalArgumentException("The capacity must be at least 1");
+		}
+
+		if (prefetch < 1) {
+			throw new IllegalArgumentException("The prefetch count must be at least 1");
+		}
+
+		this.capacity = capacity;
+		this.prefetch = prefetch;
+		this.acknowledgeMode = Objects.requireNonNull(acknowledgeMode, "acknowledgeMode");
+
+	}
+
+	/**
+	 * Sends a message to a queue, waiting for space if the queue is full.
+	 * 
+	 * @param queueName The name of the queue.
+	 * @param body The message bytes.
+	 * @throws InterruptedException Exception thrown if the thread is interrupted while waiting.
+	 */
+	public void send(String queueName, byte[] body) throws InterruptedException {
+		getQueue(queueName).put(Objects.requireNonNull(body, "body"));
+	}
+
+	/**
+	 * Sends a message to the queue of a publisher or consumer, waiting for space if the queue is full.
+	 * 
+	 * @param destination The publisher or consumer.
+	 * @param body The message bytes.
+	 * @throws InterruptedException Exception thrown if the thread is interrupted while waiting.
+	 */
+	public void send(IQueueable destination, byte[] body) throws InterruptedException {
+		send(destination.getQueueName(), body);
+	}
+
+	/**
+	 * Sends a message to a queue, waiting up to the timeout for space if the queue is full.
+	 * 
+	 * @param queueName The name of the queue.
+	 * @param body The message bytes.
+	 * @param timeout The maximum time to wait.
+	 * @param unit The unit of the timeout.
+	 * @return true if the message was sent, or false if the queue was still full after the timeout.
+	 * @throws InterruptedException Exception thrown if the thread is interrupted while waiting.
+	 */
+	public boolean offer(String queueName, byte[] body, long timeout, TimeUnit unit) throws InterruptedException {
+		return getQueue(queueName).offer(Objects.requireNonNull(body, "body"), timeout, unit);
+	}
+
+	/**
+	 * Subscribes to the messages in a queue.
+	 * 
+	 * @param queueName The name of the queue.
+	 * @return The subscription.
+	 */
+	public IMessageSource subscribe(String queueName) {
+		return new Subscription(getQueue(queueName), null);
+	}
+
+	/**
+	 * Subscribes to the messages in a queue, forwarding the outgoing messages of the consumer to another queue.
+	 * 
+	 * @param queueName The name of the queue.
+	 * @param outgoingQueueName The name of the queue to send outgoing messages to.
+	 * @return The subscription.
+	 */
+	public IMessageSource subscribe(String queueName, String outgoingQueueName) {
+		return new Subscription(getQueue(queueName), getQueue(outgoingQueueName));
+	}
+
+	/**
+	 * Subscribes to the queue of a consumer, forwarding its outgoing messages to the queue of its publisher.
+	 * 
+	 * @param consumer The consumer.
+	 * @param publisher The publisher used by the consumer, or null if it does not publish.
+	 * @return The subscription.
+	 */
+	public IMessageSource subscribe(IQueueable consumer, IQueueable publisher) {
+		return publisher == null ? subscribe(consumer.getQueueName()) : subscribe(consumer.getQueueName(), publisher.getQueueName());
+	}
+
+	/**
+	 * Returns the number of messages waiting to be delivered from a queue.
+	 * 
+	 * @param queueName The name of the queue.
+	 * @return The number of messages.
+	 */
+	public int getDepth(String queueName) {
+		Queue queue = queues.get(queueName);
+		return queue == null ? 0 : queue.messages.size();
+	}
+
+	/**
+	 * Returns the number of messages delivered from a queue that have not yet been acknowledged.
+	 * 
+	 * @param queueName The name of the queue.
+	 * @return The number of messages.
+	 */
+	public int getUnacknowledgedCount(String queueName) {
+		Queue queue = queues.get(queueName);
+		return queue == null ? 0 : capacity - queue.space.availablePermits() - queue.messages.size();
+	}
+
+	/**
+	 * Returns the number of messages returned to a queue after they failed to be consumed.
+	 * 
+	 * @param queueName The name of the queue.
+	 * @return The number of messages.
+	 */
+	public long getRedeliveryCount(String queueName) {
+		Queue queue = queues.get(queueName);
+		return queue == null ? 0 : queue.redeliveryCount.sum();
+	}
+
+	/**
+	 * @return the maximum number of messages held by each queue
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * @return the maximum number of unacknowledged messages held by each subscription
+	 */
+	public int getPrefetch() {
+		return prefetch;
+	}
+
+	/**
+	 * @return when delivered messages are acknowledged
+	 */
+	public AcknowledgeMode getAcknowledgeMode() {
+		return acknowledgeMode;
+	}
+
+	// private methods
+
+	private Queue getQueue(String queueName) {
+		return queues.computeIfAbsent(Objects.requireNonNull(queueName, "queueName"), name -> new Queue(capacity));
+	}
+
+	/**
+	 * The messages in a queue.
+	 * <p>
+	 * A permit of the space semaphore is held by each message from when it is sent until it is acknowledged.
+	 */
+	private static final class Queue {
+
+		private final LinkedBlockingDeque<byte[]> messages = new LinkedBlockingDeque<>();
+
+		private final Semaphore space;
+
+		private final LongAdder redeliveryCount = new LongAdder();
+
+		private Queue(int capacity) {
+			this.space = new Semaphore(capacity, true);
+		}
+
+		private void put(byte[] body) throws InterruptedException {
+			space.acquire();
+			messages.addLast(body);
+		}
+
+		private boolean offer(byte[] body, long timeout, TimeUnit unit) throws InterruptedException {
+
+			if (!space.tryAcquire(timeout, unit)) {
+				return false;
+			}
+
+			messages.addLast(body);
+			return true;
+
+		}
+
+	}
+
+	private final class Subscription implements IMessageSource {
+
+		private final Queue queue;
+
+		private final Queue outgoingQueue;
+
+		private final Semaphore unacknowledged = new Semaphore(prefetch);
+
+		private Subscription(Queue queue, Queue outgoingQueue) {
+			this.queue = queue;
+			this.outgoingQueue = outgoingQueue;
+		}
+
+		@Override
+		public byte[] receive(long timeout, TimeUnit unit) throws InterruptedException {
+
+			long deadline = System.nanoTime() + unit.toNanos(timeout);
+
+			if (!unacknowledged.tryAcquire(timeout, unit)) {
+				return null;
+			}
+
+			byte[] body;
+			try {
+				body = queue.messages.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+			} catch (InterruptedException ex) {
+				unacknowledged.release();
+				throw ex;
+			}
+
+			if (body == null) {
+				unacknowledged.release();
+			} else if (acknowledgeMode == AcknowledgeMode.AUTO) {
+				acknowledge();
+			}
+
+			return body;
+
+		}
+
+		@Override
+		public void complete(byte[] body, byte[] outgoingMessage) {
+
+			if (outgoingQueue != null && outgoingMessage != null) {
+				try {
+					outgoingQueue.put(outgoingMessage);
+				} catch (InterruptedException ex) {
+					Thread.currentThread().interrupt();
+					fail(body, ex);
+					return;
+				}
+			}
+
+			if (acknowledgeMode == AcknowledgeMode.MANUAL) {
+				acknowledge();
+			}
+
+		}
+
+		@Override
+		public void fail(byte[] body, Exception cause) {
+
+			if (acknowledgeMode == AcknowledgeMode.MANUAL) {
+				queue.redeliveryCount.increment();
+				queue.messages.addFirst(body);
+				unacknowledged.release();
+			}
+
+		}
+
+		private void acknowledge() {
+			queue.space.release();
+			unacknowledged.release();
+		}
+
+	}
+
+}
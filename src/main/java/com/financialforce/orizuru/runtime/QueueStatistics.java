@@ -0,0 +1,148 @@
+/**
+ * Copyright (c) 2017-2018, FinancialForce.com, inc
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ *   are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ *      this list of conditions and the following disclaimer in the documentation
+ *      and/or other materials provided with the distribution.
+ * - Neither the name of the FinancialForce.com, inc nor the names of its contributors
+ *      may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ *  OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL
+ *  THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ *  EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ *  OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY
+ *  OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ **/
+
+package com.financialforce.orizuru.runtime;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.financialforce.orizuru.instrumentation.DurationStatistics;
+
+/**
+ * Throughput and latency statistics for the messages consumed from a queue.
+ * <p>
+ * The statistics are updated by many workers at once without locking, so a snapshot read while messages are being
+ * consumed may be slightly out of step between its values.
+ */
+public class QueueStatistics {
+
+	private final String queueName;
+
+	private final DurationStatistics latency = new DurationStatistics();
+	private final LongAdder receiveFailureCount = new LongAdder();
+	private final LongAdder acknowledgeFailureCount = new LongAdder();
+	private final LongAdder inFlightCount = new LongAdder();
+
+	private volatile long startTime;
+
+	/**
+	 * Constructs empty statistics for a queue.
+	 *
+	 * @param queueName The name of the queue.
+	 */
+	public QueueStatistics(String queueName) {
+		this.queueName = queueName;
+		this.startTime = System.nanoTime();
+	}
+
+	/**
+	 * @return the name of the queue
+	 */
+	public String getQueueName() {
+		return queueName;
+	}
+
+	/**
+	 * @return the number of messages consumed, including those that failed
+	 */
+	public long getMessageCount() {
+		return latency.getCount();
+	}
+
+	/**
+	 * @return the number of messages for which the consumer threw an exception
+	 */
+	public long getFailureCount() {
+		return latency.getFailureCount();
+	}
+
+	/**
+	 * @return the number of times the message source threw an exception
+	 */
+	public long getReceiveFailureCount() {
+		return receiveFailureCount.sum();
+	}
+
+	/**
+	 * @return the number of times the message source threw an exception when told the outcome of a message
+	 */
+	public long getAcknowledgeFailureCount() {
+		return acknowledgeFailureCount.sum();
+	}
+
+	/**
+	 * @return the number of messages currently being consumed
+	 */
+	public long getInFlightCount() {
+		return inFlightCount.sum();
+	}
+
+	/**
+	 * @return the mean time taken to consume a message, in nanoseconds
+	 */
+	public long getMeanLatency() {
+		return latency.getMeanDuration();
+	}
+
+	/**
+	 * @return the longest time taken to consume a message, in nanoseconds
+	 */
+	public long getMaximumLatency() {
+		return latency.getMaximumDuration();
+	}
+
+	/**
+	 * @return the number of messages consumed per second since the statistics were started
+	 */
+	public double getThroughput() {
+		long elapsed = Math.max(1, System.nanoTime() - startTime);
+		return latency.getCount() * (double) TimeUnit.SECONDS.toNanos(1) / elapsed;
+	}
+
+	// package-private methods
+
+	void start() {
+		startTime = System.nanoTime();
+	}
+
+	void recordStarted() {
+		inFlightCount.increment();
+	}
+
+	void recordCompleted(long duration, boolean failed) {
+		inFlightCount.decrement();
+		latency.record(duration, failed);
+	}
+
+	void recordReceiveFailure() {
+		receiveFailureCount.increment();
+	}
+
+	void recordAcknowledgeFailure() {
+		acknowledgeFailureCount.increment();
+	}
+
+}
@@ -0,0 +1,184 @@
+/**
+ * Copyright (c) 2017-2018, FinancialForce.com, inc
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ *   are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ *      this list of conditions and the following disclaimer in the documentation
+ *      and/or other materials provided with the distribution.
+ * - Neither the name of the FinancialForce.com, inc nor the names of its contributors
+ *      may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ *  OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL
+ *  THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ *  EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ *  OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY
+ *  OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ **/
+
+package com.financialforce.orizuru.runtime;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import com.financialforce.orizuru.exception.OrizuruException;
+import com.financialforce.orizuru.exception.consumer.OrizuruConsumerException;
+import com.financialforce.orizuru.interfaces.IConsumer;
+
+/**
+ * Wraps a consumer so that messages are only passed to it within the limits of a {@link RateLimiter}.
+ * <p>
+ * A message that arrives while the limits are reached waits for them, so throughput is held at the capacity of
+ * whatever the consumer calls rather than the consumer failing. A message that cannot be consumed within the
+ * maximum wait fails with an {@link OrizuruConsumerException} without being passed to the consumer.
+ * <p>
+ * A batch of messages takes a single permit to consume and a token for each message.
+ */
+public class RateLimitedConsumer implements IConsumer {
+
+	private final IConsumer consumer;
+
+	private final RateLimiter rateLimiter;
+
+	private final long maximumWait;
+
+	/**
+	 * Constructs a consumer that waits as long as necessary for the limits.
+	 * 
+	 * @param consumer The consumer to pass messages to.
+	 * @param rateLimiter The limits to apply.
+	 */
+	public RateLimitedConsumer(IConsumer consumer, RateLimiter rateLimiter) {
+		this(consumer, rateLimiter, Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Constructs a consumer.
+	 * 
+	 * @param consumer The consumer to pass messages to.
+	 * @param rateLimiter The limits to apply.
+	 * @param maximumWait The maximum time a message waits for the limits before failing.
+	 * @param unit The unit of the maximum wait.
+	 */
+	public RateLimitedConsumer(IConsumer consumer, RateLimiter rateLimiter, long maximumWait, TimeUnit unit) {
+
+		Objects.requireNonNull(consumer, "consumer");
+		Objects.requireNonNull(rateLimiter, "rateLimiter");
+
+		if (maximumWait < 0) {
+			throw new IllegalArgumentException("The maximum wait must not be negative");
+		}
+
+		this.consumer = consumer;
+		this.rateLimiter = rateLimiter;
+		this.maximumWait = unit.toNanos(maximumWait);
+
+	}
+
+	/**
+	 * Wraps a consumer with the limiter configured for its queue.
+	 * 
+	 * @param consumer The consumer to pass messages to.
+	 * @param rateLimiters The limiters, keyed by queue name.
+	 * @return The wrapped consumer, or the consumer itself if no limiter is configured for its queue.
+	 */
+	public static IConsumer wrap(IConsumer consumer, Map<String, RateLimiter> rateLimiters) {
+		RateLimiter rateLimiter = rateLimiters.get(consumer.getQueueName());
+		return rateLimiter == null ? consumer : new RateLimitedConsumer(consumer, rateLimiter);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.financialforce.orizuru.interfaces.IConsumer#consume(byte[])
+	 */
+	@Override
+	public byte[] consume(byte[] body) throws OrizuruException {
+
+		acquire(1);
+		try {
+			return consumer.consume(body);
+		} finally {
+			rateLimiter.release();
+		}
+
+	}
+
+	/* (non-Javadoc)
+	 * @see com.financialforce.orizuru.interfaces.IConsumer#consumeBuffer(java.nio.ByteBuffer)
+	 */
+	@Override
+	public ByteBuffer consumeBuffer(ByteBuffer body) throws OrizuruException {
+
+		acquire(1);
+		try {
+			return consumer.consumeBuffer(body);
+		} finally {
+			rateLimiter.release();
+		}
+
+	}
+
+	/* (non-Javadoc)
+	 * @see com.financialforce.orizuru.interfaces.IConsumer#consumeBatch(java.util.List)
+	 */
+	@Override
+	public List<byte[]> consumeBatch(List<byte[]> bodies) throws OrizuruException {
+
+		acquire(bodies.size());
+		try {
+			return consumer.consumeBatch(bodies);
+		} finally {
+			rateLimiter.release();
+		}
+
+	}
+
+	@Override
+	public String getQueueName() {
+		return consumer.getQueueName();
+	}
+
+	/**
+	 * @return the consumer that messages are passed to
+	 */
+	public IConsumer getConsumer() {
+		return consumer;
+	}
+
+	/**
+	 * @return the limits applied to the consumer
+	 */
+	public RateLimiter getRateLimiter() {
+		return rateLimiter;
+	}
+
+	// private methods
+
+	private void acquire(int messages) throws OrizuruConsumerException {
+
+		try {
+
+			if (!rateLimiter.acquire(messages, maximumWait, TimeUnit.NANOSECONDS)) {
+				throw new OrizuruConsumerException("Timed out waiting for the rate limit",
+						new TimeoutException(String.format("No permit for queue %s within %d ns", getQueueName(), maximumWait)));
+			}
+
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new OrizuruConsumerException("Interrupted waiting for the rate limit", ex);
+		}
+
+	}
+
+}
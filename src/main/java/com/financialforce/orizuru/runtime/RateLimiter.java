@@ -0,0 +1,291 @@
+/**
+ * Copyright (c) 2017-2018, FinancialForce.com, inc
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ *   are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ *      this list of conditions and the following disclaimer in the documentation
+ *      and/or other materials provided with the distribution.
+ * - Neither the name of the FinancialForce.com, inc nor the names of its contributors
+ *      may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ *  OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL
+ *  THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ *  EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ *  OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY
+ *  OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ **/
+
+package com.financialforce.orizuru.runtime;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import com.financialforce.orizuru.instrumentation.DurationStatistics;
+
+/**
+ * Limits how many messages are consumed at once and how many are consumed per second.
+ * <p>
+ * The rate is enforced with a token bucket. Tokens are added at the given rate up to the burst size, and each
+ * message takes one token, so a quiet queue can consume a burst of messages at once before settling at the rate.
+ * A request for more tokens than are stored is granted straight away and the shortfall is paid for by the next
+ * request, which waits until the bucket is no longer in debt. The number of messages being consumed at once is
+ * limited separately by a fixed number of permits.
+ * <p>
+ * A limiter is thread-safe, and is usually shared by all the consumers of a queue so that the limits apply to the
+ * queue as a whole.
+ */
+public class RateLimiter {
+
+	/**
+	 * The maximum number of messages in flight to use for no limit.
+	 */
+	public static final int UNLIMITED_IN_FLIGHT = Integer.MAX_VALUE;
+
+	/**
+	 * The rate to use for no limit.
+	 */
+	public static final double UNLIMITED_RATE = Double.POSITIVE_INFINITY;
+
+	private final int maximumInFlight;
+
+	private final double messagesPerSecond;
+
+	private final int burstSize;
+
+	private final Semaphore permits;
+
+	private final double tokenInterval;
+
+	private double storedTokens;
+
+	private long nextFreeTime;
+
+	private final DurationStatistics waits = new DurationStatistics();
+
+	/**
+	 * Constructs a limiter with a full bucket of tokens.
+	 * 
+	 * @param maximumInFlight The maximum number of messages consumed at once, or {@link #UNLIMITED_IN_FLIGHT}.
+	 * @param messagesPerSecond The rate at which messages are consumed once the burst is used up, or
+	 *            {@link #UNLIMITED_RATE}.
+	 * @param burstSize The maximum number of tokens stored while the queue is quiet.
+	 */
+	public RateLimiter(int maximumInFlight, double messagesPerSecond, int burstSize) {
+
+		if (maximumInFlight < 1) {
+			throw new IllegalArgumentException("The maximum in flight must be at least 1");
+		}
+
+		if (!(messagesPerSecond > 0)) {
+			throw new IllegalArgumentException("The rate must be positive");
+		}
+
+		if (burstSize < 1) {
+			throw new IllegalArgumentException("The burst size must be at least 1");
+		}
+
+		this.maximumInFlight = maximumInFlight;
+		this.messagesPerSecond = messagesPerSecond;
+		this.burstSize = burstSize;
+		this.permits = new Semaphore(maximumInFlight, true);
+		this.tokenInterval = TimeUnit.SECONDS.toNanos(1) / messagesPerSecond;
+		this.storedTokens = burstSize;
+		this.nextFreeTime = System.nanoTime();
+
+	}
+
+	/**
+	 * Waits for a permit to consume and for enough tokens for the given number of messages.
+	 * <p>
+	 * If the permit is acquired then {@link #release()} must be called once the messages have been consumed.
+	 * 
+	 * @param messages The number of messages to be consumed with the permit.
+	 * @param timeout The maximum time to wait.
+	 * @param unit The unit of the timeout.
+	 * @return true if the permit was acquired, false if it could not be acquired within the timeout.
+	 * @throws InterruptedException Exception thrown if the thread is interrupted while waiting.
+	 */
+	public boolean acquire(int messages, long timeout, TimeUnit unit) throws InterruptedException {
+
+		long startTime = System.nanoTime();
+		long deadline = startTime + unit.toNanos(timeout);
+		boolean waited = false;
+
+		if (!permits.tryAcquire()) {
+
+			waited = true;
+			if (!permits.tryAcquire(unit.toNanos(timeout), TimeUnit.NANOSECONDS)) {
+				recordWait(startTime, true);
+				return false;
+			}
+
+		}
+
+		try {
+
+			long readyTime = reserve(messages, deadline);
+			if (readyTime == Long.MIN_VALUE) {
+				permits.release();
+				recordWait(startTime, true);
+				return false;
+			}
+
+			long delay = readyTime - System.nanoTime();
+			if (delay > 0) {
+				waited = true;
+				TimeUnit.NANOSECONDS.sleep(delay);
+			}
+
+		} catch (InterruptedException ex) {
+			permits.release();
+			throw ex;
+		}
+
+		if (waited) {
+			recordWait(startTime, false);
+		}
+
+		return true;
+
+	}
+
+	/**
+	 * Returns the permit taken by {@link #acquire(int, long, TimeUnit)}.
+	 */
+	public void release() {
+		permits.release();
+	}
+
+	/**
+	 * @return the maximum number of messages consumed at once
+	 */
+	public int getMaximumInFlight() {
+		return maximumInFlight;
+	}
+
+	/**
+	 * @return the rate at which messages are consumed once the burst is used up
+	 */
+	public double getMessagesPerSecond() {
+		return messagesPerSecond;
+	}
+
+	/**
+	 * @return the maximum number of tokens stored while the queue is quiet
+	 */
+	public int getBurstSize() {
+		return burstSize;
+	}
+
+	/**
+	 * @return the number of permits to consume not currently taken
+	 */
+	public int getAvailablePermits() {
+		return permits.availablePermits();
+	}
+
+	/**
+	 * @return the number of tokens in the bucket, which is negative while the bucket is in debt
+	 */
+	public synchronized double getAvailableTokens() {
+
+		if (messagesPerSecond == UNLIMITED_RATE) {
+			return Double.POSITIVE_INFINITY;
+		}
+
+		long now = System.nanoTime();
+		refill(now);
+
+		return storedTokens - (nextFreeTime - now) / tokenInterval;
+
+	}
+
+	/**
+	 * @return the number of times a permit was not immediately available
+	 */
+	public long getWaitCount() {
+		return waits.getCount();
+	}
+
+	/**
+	 * @return the number of times a permit could not be acquired within the timeout
+	 */
+	public long getTimeoutCount() {
+		return waits.getFailureCount();
+	}
+
+	/**
+	 * @return the total time spent waiting for permits, in nanoseconds
+	 */
+	public long getTotalWaitTime() {
+		return waits.getTotalDuration();
+	}
+
+	/**
+	 * @return the mean time spent waiting by those that had to wait, in nanoseconds
+	 */
+	public long getMeanWaitTime() {
+		return waits.getMeanDuration();
+	}
+
+	/**
+	 * @return the longest time spent waiting for a permit, in nanoseconds
+	 */
+	public long getMaximumWaitTime() {
+		return waits.getMaximumDuration();
+	}
+
+	// private methods
+
+	/**
+	 * Takes tokens for the messages, returning the time at which they may be consumed, or {@link Long#MIN_VALUE} if
+	 * that is after the deadline, in which case no tokens are taken.
+	 */
+	private synchronized long reserve(int messages, long deadline) {
+
+		if (messagesPerSecond == UNLIMITED_RATE) {
+			return System.nanoTime();
+		}
+
+		long now = System.nanoTime();
+		refill(now);
+
+		long readyTime = nextFreeTime;
+		if (readyTime - now > 0 && readyTime - deadline > 0) {
+			return Long.MIN_VALUE;
+		}
+
+		double fromStore = Math.min(messages, storedTokens);
+		storedTokens -= fromStore;
+		nextFreeTime += (long) ((messages - fromStore) * tokenInterval);
+
+		return readyTime;
+
+	}
+
+	/**
+	 * Adds the tokens earned since the bucket was last out of debt.
+	 */
+	private void refill(long now) {
+
+		if (now - nextFreeTime > 0) {
+			storedTokens = Math.min(burstSize, storedTokens + (now - nextFreeTime) / tokenInterval);
+			nextFreeTime = now;
+		}
+
+	}
+
+	private void recordWait(long startTime, boolean timedOut) {
+		waits.record(System.nanoTime() - startTime, timedOut);
+	}
+
+}
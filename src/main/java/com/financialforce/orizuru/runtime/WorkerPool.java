@@ -0,0 +1,134 @@
+/**
+ * Copyright (c) 2017-2018, FinancialForce.com, inc
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ *   are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ *      this list of conditions and the following disclaimer in the documentation
+ *      and/or other materials provided with the distribution.
+ * - Neither the name of the FinancialForce.com, inc nor the names of its contributors
+ *      may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ *  OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL
+ *  THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ *  EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ *  OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY
+ *  OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ **/
+
+package com.financialforce.orizuru.runtime;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+
+/**
+ * The kinds of thread that a {@link ConsumerRuntime} can run its workers on.
+ */
+public enum WorkerPool {
+
+	/**
+	 * A fixed pool of daemon platform threads, one for each worker.
+	 */
+	PLATFORM(WorkerPool::newPlatformExecutor),
+
+	/**
+	 * A fork-join pool with a parallelism of one for each worker.
+	 */
+	FORK_JOIN(ForkJoinPool::new),
+
+	/**
+	 * A new virtual thread for each worker. Only available from Java 21, so it is looked up reflectively to keep the
+	 * library running on Java 8.
+	 */
+	VIRTUAL(reflectiveFactory(findFactory(Executors.class, "newVirtualThreadPerTaskExecutor")));
+
+	private final IntFunction<ExecutorService> factory;
+
+	WorkerPool(IntFunction<ExecutorService> factory) {
+		this.factory = factory;
+	}
+
+	/**
+	 * @return true if this kind of thread is supported by the running Java version
+	 */
+	public boolean isAvailable() {
+		return factory != null;
+	}
+
+	/**
+	 * Creates an executor to run workers on.
+	 * 
+	 * @param parallelism The number of workers that will run at once.
+	 * @return The executor.
+	 * @throws UnsupportedOperationException Exception thrown if this kind of thread is not available.
+	 */
+	public ExecutorService newExecutor(int parallelism) {
+
+		if (factory == null) {
+			throw new UnsupportedOperationException(String.format("The %s worker pool is not available in this Java runtime", this));
+		}
+
+		return factory.apply(parallelism);
+
+	}
+
+	/**
+	 * @return virtual threads if available, otherwise platform threads
+	 */
+	public static WorkerPool getDefault() {
+		return VIRTUAL.isAvailable() ? VIRTUAL : PLATFORM;
+	}
+
+	// package-private methods
+
+	static Method findFactory(Class<?> type, String name) {
+
+		try {
+			return type.getMethod(name);
+		} catch (NoSuchMethodException ex) {
+			return null;
+		}
+
+	}
+
+	static IntFunction<ExecutorService> reflectiveFactory(Method factory) {
+		return factory == null ? null : parallelism -> invokeFactory(factory);
+	}
+
+	static ExecutorService invokeFactory(Method factory) {
+
+		try {
+			return (ExecutorService) factory.invoke(null);
+		} catch (ReflectiveOperationException ex) {
+			throw new IllegalStateException("Failed to create the executor", ex);
+		}
+
+	}
+
+	// private methods
+
+	private static ExecutorService newPlatformExecutor(int parallelism) {
+
+		AtomicInteger threadCount = new AtomicInteger();
+
+		return Executors.newFixedThreadPool(parallelism, runnable -> {
+			Thread thread = new Thread(runnable, "orizuru-worker-" + threadCount.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+
+	}
+
+}
@@ -0,0 +1,518 @@
+/**
+ * Copyright (c) 2017-2018, FinancialForce.com, inc
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ *   are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ *      this list of conditions and the following disclaimer in the documentation
+ *      and/or other materials provided with the distribution.
+ * - Neither the name of the FinancialForce.com, inc nor the names of its contributors
+ *      may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ *  OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL
+ *  THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ *  EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ *  OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY
+ *  OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ **/
+
+package com.financialforce.orizuru;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaBuilder;
+import org.apache.avro.generic.GenericContainer;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.generic.GenericRecordBuilder;
+import org.hamcrest.core.IsInstanceOf;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import com.financialforce.orizuru.cache.DeduplicationCache;
+import com.financialforce.orizuru.codec.TransportFormat;
+import com.financialforce.orizuru.exception.consumer.decode.DecodeTransportException;
+import com.financialforce.orizuru.exception.consumer.handler.HandleMessageException;
+import com.financialforce.orizuru.exception.publisher.OrizuruPublisherException;
+import com.financialforce.orizuru.instrumentation.AggregatingStageListener;
+import com.financialforce.orizuru.instrumentation.Stage;
+import com.financialforce.orizuru.instrumentation.StageStatistics;
+import com.financialforce.orizuru.interfaces.IAsyncConsumer;
+import com.financialforce.orizuru.interfaces.IPublisher;
+import com.financialforce.orizuru.message.Context;
+import com.financialforce.orizuru.registry.InMemorySchemaRegistry;
+
+public class AbstractAsyncConsumerTest {
+
+	private static final String QUEUE_NAME = "testQueue";
+
+	@Rule
+	public final ExpectedException exception = ExpectedException.none();
+
+	@Test
+	public void consumeAsync_shouldPublishTheOutgoingMessageOnceTheHandlerCompletes() throws Exception {
+
+		// given
+		CompletableFuture<GenericRecord> handled = new CompletableFuture<>();
+		IPublisher<GenericRecord> publisher = mockPublisher();
+		when(publisher.publish(any(), any())).thenReturn(new byte[] { 1 });
+
+		Consumer consumer = new Consumer(input -> handled);
+		consumer.publisher = publisher;
+
+		// when
+		CompletableFuture<byte[]> outgoingMessage = consumer.consumeAsync(createTransport("test"));
+
+		// then
+		assertFalse(outgoingMessage.isDone());
+		assertEquals("test", consumer.inputs.get(0));
+
+		handled.complete(createRecord("result"));
+		assertArrayEquals(new byte[] { 1 }, outgoingMessage.get());
+
+	}
+
+	@Test
+	public void consumeAsync_shouldReportTheHandlerToTheStageListenerOnceItCompletes() throws Exception {
+
+		// given
+		CompletableFuture<GenericRecord> handled = new CompletableFuture<>();
+		AggregatingStageListener stageListener = new AggregatingStageListener();
+
+		Consumer consumer = new Consumer(input -> handled);
+		consumer.stageListener = stageListener;
+
+		// when
+		CompletableFuture<byte[]> outgoingMessage = consumer.consumeAsync(createTransport("test"));
+
+		// then
+		assertEquals(0, stageListener.getStatistics(QUEUE_NAME, Stage.HANDLE_MESSAGE).getCount());
+
+		handled.complete(createRecord("result"));
+		outgoingMessage.get();
+
+		StageStatistics statistics = stageListener.getStatistics(QUEUE_NAME, Stage.HANDLE_MESSAGE);
+		assertEquals(1, statistics.getCount());
+		assertEquals(1, statistics.getTotalSize());
+		assertEquals(0, statistics.getFailureCount());
+
+	}
+
+	@Test
+	public void consumeAsync_shouldCompleteWithNullIfNoPublisherIsDefined() throws Exception {
+
+		// given
+		Consumer consumer = new Consumer(input -> CompletableFuture.completedFuture(input));
+
+		// when
+		CompletableFuture<byte[]> outgoingMessage = consumer.consumeAsync(createTransport("test"));
+
+		// then
+		assertNull(outgoingMessage.get());
+
+	}
+
+	@Test
+	public void consumeAsync_shouldCompleteWithNullWithoutHandlingIfTheFilterRejectsTheMessage() throws Exception {
+
+		// given
+		IPublisher<GenericRecord> publisher = mockPublisher();
+		Consumer consumer = new Consumer(input -> CompletableFuture.completedFuture(input));
+		consumer.publisher = publisher;
+		consumer.messageFilter = (queueName, context, body) -> false;
+
+		// when
+		CompletableFuture<byte[]> outgoingMessage = consumer.consumeAsync(createTransport("test"));
+
+		// then
+		assertNull(outgoingMessage.get());
+		assertTrue(consumer.inputs.isEmpty());
+		verifyZeroInteractions(publisher);
+
+	}
+
+	@Test
+	public void consumeAsync_shouldCompleteWithThePreviouslyPublishedBytesForADuplicateMessage() throws Exception {
+
+		// given
+		IPublisher<GenericRecord> publisher = mockPublisher();
+		when(publisher.publish(any(), any())).thenReturn(new byte[] { 1 }, new byte[] { 2 });
+
+		Consumer consumer = new Consumer(input -> CompletableFuture.completedFuture(input));
+		consumer.publisher = publisher;
+		consumer.deduplicationCache = new DeduplicationCache(10, 1, TimeUnit.MINUTES);
+
+		byte[] body = createTransport("test");
+
+		// when
+		byte[] first = consumer.consumeAsync(body).get();
+		byte[] second = consumer.consumeAsync(body).get();
+
+		// then
+		assertArrayEquals(new byte[] { 1 }, first);
+		assertArrayEquals(first, second);
+		assertEquals(Arrays.asList("test"), consumer.inputs);
+
+	}
+
+	@Test
+	public void consumeAsync_shouldHandleTheMessagesInABatchTransportTogether() throws Exception {
+
+		// given
+		Consumer consumer = new Consumer(input -> CompletableFuture.completedFuture(input));
+		consumer.publisher = new AbstractPublisher<GenericRecord>(QUEUE_NAME) {
+		};
+
+		// when
+		byte[] outgoingMessage = consumer.consumeAsync(createBatchTransport("first", "second")).get();
+
+		// then
+		assertEquals(TransportFormat.BATCH, TransportFormat.of(outgoingMessage));
+		assertEquals(Arrays.asList("first", "second"), consumer.inputs);
+
+		Consumer nextConsumer = new Consumer(input -> CompletableFuture.completedFuture(null));
+		nextConsumer.consume(outgoingMessage);
+		assertEquals(consumer.inputs, nextConsumer.inputs);
+
+	}
+
+	@Test
+	public void consumeAsync_shouldCompleteExceptionallyIfTheTransportCannotBeDecoded() throws Exception {
+
+		// expect
+		exception.expect(ExecutionException.class);
+		exception.expectCause(IsInstanceOf.<Throwable>instanceOf(DecodeTransportException.class));
+
+		// given
+		IAsyncConsumer consumer = new Consumer(input -> CompletableFuture.completedFuture(input));
+
+		// when
+		consumer.consumeAsync(null).get();
+
+	}
+
+	@Test
+	public void consumeAsync_shouldCompleteExceptionallyIfTheFilterThrows() throws Exception {
+
+		// given
+		IllegalStateException expected = new IllegalStateException();
+
+		Consumer consumer = new Consumer(input -> CompletableFuture.completedFuture(input));
+		consumer.messageFilter = (queueName, context, body) -> {
+			throw expected;
+		};
+
+		// when
+		CompletableFuture<byte[]> outgoingMessage = consumer.consumeAsync(createTransport("test"));
+
+		// then
+		assertSame(expected, getFailure(outgoingMessage));
+		assertTrue(consumer.inputs.isEmpty());
+
+	}
+
+	@Test
+	public void consumeAsync_shouldCompleteExceptionallyIfTheHandlerThrows() throws Exception {
+
+		// given
+		IAsyncConsumer consumer = new Consumer(input -> {
+			throw new IllegalStateException();
+		});
+
+		// when
+		Throwable failure = getFailure(consumer.consumeAsync(createTransport("test")));
+
+		// then
+		assertTrue(failure instanceof HandleMessageException);
+		assertTrue(failure.getCause() instanceof IllegalStateException);
+
+	}
+
+	@Test
+	public void consumeAsync_shouldCompleteExceptionallyIfTheHandlerReturnsNull() throws Exception {
+
+		// given
+		IAsyncConsumer consumer = new Consumer(input -> null);
+
+		// when
+		Throwable failure = getFailure(consumer.consumeAsync(createTransport("test")));
+
+		// then
+		assertTrue(failure instanceof HandleMessageException);
+		assertTrue(failure.getCause() instanceof NullPointerException);
+
+	}
+
+	@Test
+	public void consumeAsync_shouldNotWrapAHandleMessageExceptionFromTheHandler() throws Exception {
+
+		// given
+		HandleMessageException expected = new HandleMessageException(new NullPointerException());
+		CompletableFuture<GenericRecord> handled = new CompletableFuture<>();
+
+		IAsyncConsumer consumer = new Consumer(input -> handled.thenApply(record -> record));
+
+		// when
+		CompletableFuture<byte[]> outgoingMessage = consumer.consumeAsync(createTransport("test"));
+		handled.completeExceptionally(expected);
+
+		// then
+		assertSame(expected, getFailure(outgoingMessage));
+
+	}
+
+	@Test
+	public void consumeAsync_shouldCompleteExceptionallyIfPublishingFails() throws Exception {
+
+		// given
+		OrizuruPublisherException expected = new OrizuruPublisherException(new NullPointerException());
+		IPublisher<GenericRecord> publisher = mockPublisher();
+		when(publisher.publish(any(), any())).thenThrow(expected);
+
+		Consumer consumer = new Consumer(input -> CompletableFuture.completedFuture(input));
+		consumer.publisher = publisher;
+
+		// when
+		Throwable failure = getFailure(consumer.consumeAsync(createTransport("test")));
+
+		// then
+		assertSame(expected, failure);
+
+	}
+
+	@Test
+	public void consume_shouldWaitForTheHandlerToComplete() throws Exception {
+
+		// given
+		Consumer consumer = new Consumer(input -> CompletableFuture.supplyAsync(() -> input));
+		consumer.publisher = new AbstractPublisher<GenericRecord>(QUEUE_NAME) {
+		};
+
+		// when
+		byte[] outgoingMessage = consumer.consume(createTransport("test"));
+
+		// then
+		assertEquals(TransportFormat.SCHEMA, TransportFormat.of(outgoingMessage));
+		assertEquals(Arrays.asList("test"), consumer.inputs);
+
+	}
+
+	@Test
+	public void handleMessage_shouldNotWrapAHandleMessageExceptionFromTheHandler() throws Exception {
+
+		// given
+		HandleMessageException expected = new HandleMessageException(new NullPointerException());
+		CompletableFuture<GenericRecord> handled = new CompletableFuture<>();
+		handled.completeExceptionally(expected);
+
+		Consumer consumer = new Consumer(input -> handled);
+
+		// when
+		try {
+			consumer.handleMessage(new Context(), createRecord("test"));
+		} catch (HandleMessageException ex) {
+
+			// then
+			assertSame(expected, ex);
+			return;
+
+		}
+
+		throw new AssertionError("Expected a HandleMessageException");
+
+	}
+
+	@Test
+	public void handleMessage_throwsHandleMessageExceptionIfTheHandlerFails() throws Exception {
+
+		// expect
+		exception.expect(HandleMessageException.class);
+		exception.expectMessage("Failed to consume message: Failed to handle message");
+		exception.expectCause(IsInstanceOf.<Throwable>instanceOf(IllegalStateException.class));
+
+		// given
+		CompletableFuture<GenericRecord> handled = new CompletableFuture<>();
+		handled.completeExceptionally(new IllegalStateException());
+
+		Consumer consumer = new Consumer(input -> handled);
+
+		// when
+		consumer.handleMessage(new Context(), createRecord("test"));
+
+	}
+
+	@Test
+	public void handleMessage_throwsHandleMessageExceptionIfTheHandlerThrows() throws Exception {
+
+		// expect
+		exception.expect(HandleMessageException.class);
+		exception.expectCause(IsInstanceOf.<Throwable>instanceOf(IllegalStateException.class));
+
+		// given
+		Consumer consumer = new Consumer(input -> {
+			throw new IllegalStateException();
+		});
+
+		// when
+		consumer.handleMessage(new Context(), createRecord("test"));
+
+	}
+
+	@Test
+	public void handleMessage_shouldRestoreTheInterruptFlagIfInterrupted() throws Exception {
+
+		// given
+		Consumer consumer = new Consumer(input -> new CompletableFuture<>());
+		Thread.currentThread().interrupt();
+
+		// when
+		try {
+			consumer.handleMessage(new Context(), createRecord("test"));
+		} catch (HandleMessageException ex) {
+
+			// then
+			assertTrue(Thread.interrupted());
+			assertTrue(ex.getCause() instanceof InterruptedException);
+			return;
+
+		}
+
+		throw new AssertionError("Expected a HandleMessageException");
+
+	}
+
+	@Test
+	public void constructor_shouldSetTheSchemaRegistryAndReaderSchema() throws Exception {
+
+		// given
+		InMemorySchemaRegistry schemaRegistry = new InMemorySchemaRegistry();
+		Schema readerSchema = createTestSchema();
+
+		// when
+		Consumer consumer = new Consumer(schemaRegistry, readerSchema);
+
+		// then
+		assertSame(schemaRegistry, consumer.schemaRegistry);
+		assertSame(readerSchema, consumer.readerSchema);
+		assertSame(schemaRegistry, new Consumer(schemaRegistry).schemaRegistry);
+
+	}
+
+	private Throwable getFailure(CompletableFuture<byte[]> future) throws InterruptedException {
+
+		try {
+			future.get();
+		} catch (ExecutionException ex) {
+			return ex.getCause();
+		}
+
+		throw new AssertionError("Expected the future to complete exceptionally");
+
+	}
+
+	private Schema createTestSchema() {
+		return SchemaBuilder.record("TestSchema").namespace("com.financialforce.orizuru.AbstractAsyncConsumerTest")
+				.fields().name("testString").type().stringType().noDefault().endRecord();
+	}
+
+	private GenericRecord createRecord(String value) {
+		return new GenericRecordBuilder(createTestSchema()).set("testString", value).build();
+	}
+
+	private Context createContext() {
+		Context context = mock(Context.class);
+		when(context.getSchemaText()).thenReturn("{\"name\":\"test\",\"type\":\"record\",\"fields\":[]}");
+		when(context.getDataBuffer()).thenReturn(ByteBuffer.wrap(new byte[0]));
+		return context;
+	}
+
+	private byte[] createTransport(String value) throws Exception {
+
+		AbstractPublisher<GenericContainer> publisher = new AbstractPublisher<GenericContainer>(QUEUE_NAME) {
+		};
+
+		return publisher.publish(createContext(), createRecord(value));
+
+	}
+
+	private byte[] createBatchTransport(String... values) throws Exception {
+
+		List<GenericContainer> messages = new ArrayList<>();
+		for (String value : values) {
+			messages.add(createRecord(value));
+		}
+
+		AbstractPublisher<GenericContainer> publisher = new AbstractPublisher<GenericContainer>(QUEUE_NAME) {
+		};
+
+		return publisher.publishBatch(createContext(), messages);
+
+	}
+
+	@SuppressWarnings("unchecked")
+	private <T extends GenericContainer> IPublisher<T> mockPublisher() {
+		return mock(IPublisher.class);
+	}
+
+	private interface Handler {
+
+		CompletableFuture<GenericRecord> handle(GenericRecord input);
+
+	}
+
+	private class Consumer extends AbstractAsyncConsumer<GenericRecord, GenericRecord> {
+
+		private final List<String> inputs = new ArrayList<>();
+
+		private final Handler handler;
+
+		public Consumer(Handler handler) {
+			super(QUEUE_NAME);
+			this.handler = handler;
+		}
+
+		public Consumer(InMemorySchemaRegistry schemaRegistry) {
+			super(QUEUE_NAME, schemaRegistry);
+			this.handler = null;
+		}
+
+		public Consumer(InMemorySchemaRegistry schemaRegistry, Schema readerSchema) {
+			super(QUEUE_NAME, schemaRegistry, readerSchema);
+			this.handler = null;
+		}
+
+		@Override
+		public CompletableFuture<GenericRecord> handleMessageAsync(Context context, GenericRecord input) {
+			inputs.add(input.get("testString").toString());
+			return handler.handle(input);
+		}
+
+	}
+
+}
@@ -26,27 +26,65 @@
 
 package com.financialforce.orizuru;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
+import java.io.EOFException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipException;
 
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaBuilder;
 import org.apache.avro.generic.GenericContainer;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.generic.GenericRecordBuilder;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.specific.SpecificDatumReader;
+import org.apache.avro.specific.SpecificRecordBase;
 import org.hamcrest.core.IsInstanceOf;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
+import org.mockito.ArgumentCaptor;
 
+import com.financialforce.orizuru.cache.DeduplicationCache;
+import com.financialforce.orizuru.codec.DeflateCompressionCodec;
+import com.financialforce.orizuru.codec.TransportFormat;
 import com.financialforce.orizuru.exception.OrizuruException;
 import com.financialforce.orizuru.exception.consumer.decode.DecodeTransportException;
 import com.financialforce.orizuru.exception.consumer.handler.HandleMessageException;
+import com.financialforce.orizuru.exception.publisher.OrizuruPublisherException;
+import com.financialforce.orizuru.instrumentation.AggregatingStageListener;
+import com.financialforce.orizuru.instrumentation.Stage;
+import com.financialforce.orizuru.instrumentation.StageStatistics;
+import com.financialforce.orizuru.interfaces.ICompressionCodec;
 import com.financialforce.orizuru.interfaces.IConsumer;
 import com.financialforce.orizuru.interfaces.IPublisher;
+import com.financialforce.orizuru.interfaces.ISchemaRegistry;
+import com.financialforce.orizuru.interfaces.IStageListener;
 import com.financialforce.orizuru.message.Context;
+import com.financialforce.orizuru.registry.InMemorySchemaRegistry;
+import com.financialforce.orizuru.transport.Transport;
+import com.financialforce.orizuru.util.TestCompressionCodec;
+import com.financialforce.orizuru.util.TestMessage;
 
 public class AbstractConsumerTest {
 
@@ -75,7 +113,7 @@ public class AbstractConsumerTest {
 	public void consume_callsThePublishMethodIfAPublisherIsDefined() throws Exception {
 
 		// given
-		IPublisher<GenericContainer> publisher = mock(IPublisher.class);
+		IPublisher<GenericContainer> publisher = mockPublisher();
 		Consumer consumer = new Consumer(QUEUE_NAME);
 		consumer.setPublisher(publisher);
 
@@ -105,6 +143,76 @@ public class AbstractConsumerTest {
 
 	}
 
+	@Test
+	public void consumeBuffer_shouldDecodeATransportHeldInADirectBuffer() throws Exception {
+
+		// given
+		byte[] bytes = Base64.getDecoder().decode(VALID_MESSAGE.getBytes());
+		ByteBuffer body = ByteBuffer.allocateDirect(bytes.length + 4);
+		body.position(2);
+		body.put(bytes);
+		body.position(2);
+		body.limit(bytes.length + 2);
+
+		IPublisher<GenericContainer> publisher = mockPublisher();
+		when(publisher.publish(any(), any())).thenReturn(new byte[] { 1, 2, 3 });
+
+		Consumer consumer = new Consumer(QUEUE_NAME);
+		consumer.setPublisher(publisher);
+
+		// when
+		ByteBuffer outgoingMessage = consumer.consumeBuffer(body);
+
+		// then
+		assertEquals(ByteBuffer.wrap(new byte[] { 1, 2, 3 }), outgoingMessage);
+		assertEquals(2, body.position());
+
+		ArgumentCaptor<Context> context = ArgumentCaptor.forClass(Context.class);
+		verify(publisher, times(1)).publish(context.capture(), any());
+		assertEquals("test", context.getValue().getSchema().getName());
+		assertArrayEquals("{}".getBytes(), context.getValue().getData());
+
+	}
+
+	@Test
+	public void consumeBuffer_shouldReturnNullIfNoPublisherIsDefined() throws Exception {
+
+		// given
+		ByteBuffer body = ByteBuffer.wrap(Base64.getDecoder().decode(VALID_MESSAGE.getBytes())).asReadOnlyBuffer();
+
+		IConsumer consumer = new Consumer(QUEUE_NAME);
+
+		// when
+		ByteBuffer outgoingMessage = consumer.consumeBuffer(body);
+
+		// then
+		assertNull(outgoingMessage);
+
+	}
+
+	@Test
+	public void consume_shouldForwardTheContextAsReceived() throws Exception {
+
+		// given
+		byte[] body = Base64.getDecoder().decode(VALID_MESSAGE.getBytes());
+
+		ForwardingConsumer consumer = new ForwardingConsumer(QUEUE_NAME);
+		consumer.setPublisher(new AbstractPublisher<GenericContainer>(QUEUE_NAME) {
+		});
+
+		SpecificDatumReader<Transport> reader = new SpecificDatumReader<>(Transport.class);
+		Transport incomingTransport = reader.read(null, DecoderFactory.get().binaryDecoder(body, null));
+
+		// when
+		byte[] outgoingMessage = consumer.consume(body);
+
+		// then
+		Transport outgoingTransport = reader.read(null, DecoderFactory.get().binaryDecoder(outgoingMessage, null));
+		assertEquals(incomingTransport.getContextSchema(), outgoingTransport.getContextSchema());
+		assertEquals(incomingTransport.getContextBuffer(), outgoingTransport.getContextBuffer());
+
+	}
+
 	@Test
 	public void consume_throwsDecodeTransportExceptionForNullBody() throws OrizuruException {
 
@@ -121,6 +229,22 @@ public class AbstractConsumerTest {
 
 	}
 
+	@Test
+	public void consume_throwsDecodeTransportExceptionForATruncatedBody() throws OrizuruException {
+
+		// expect
+		exception.expect(DecodeTransportException.class);
+		exception.expectMessage("Failed to consume message: Failed to decode transport");
+		exception.expectCause(IsInstanceOf.<Throwable>instanceOf(EOFException.class));
+
+		// given
+		IConsumer consumer = new Consumer(QUEUE_NAME);
+
+		// when
+		consumer.consume(new byte[] { 2 });
+
+	}
+
 	@Test
 	public void consume_throwsAHandleMessageExceptionForAnInvalidMessage() throws Exception {
 
@@ -157,19 +281,1112 @@ public class AbstractConsumerTest {
 
 	}
 
-	private class Consumer extends AbstractConsumer<GenericContainer, GenericContainer> {
+	@Test
+	public void consume_shouldDecodeAFingerprintTransportIfASchemaRegistryIsDefined() throws Exception {
 
-		public Consumer(String queueName) {
-			super(queueName);
-		}
+		// given
+		ISchemaRegistry schemaRegistry = new InMemorySchemaRegistry();
+		byte[] body = createFingerprintTransport(schemaRegistry);
 
-		@Override
-		public GenericContainer handleMessage(Context context, GenericContainer input) throws HandleMessageException {
-			return null;
-		}
+		IPublisher<GenericContainer> publisher = mockPublisher();
+		Consumer consumer = new Consumer(QUEUE_NAME, schemaRegistry);
+		consumer.setPublisher(publisher);
+
+		// when
+		consumer.consume(body);
+
+		// then
+		ArgumentCaptor<Context> context = ArgumentCaptor.forClass(Context.class);
+		verify(publisher, times(1)).publish(context.capture(), any());
+		assertEquals("test", context.getValue().getSchema().getName());
+
+	}
+
+	@Test
+	public void consume_shouldReportTheStagesOfAFingerprintTransportToTheStageListener() throws Exception {
+
+		// given
+		ISchemaRegistry schemaRegistry = new InMemorySchemaRegistry();
+		AggregatingStageListener stageListener = new AggregatingStageListener();
+
+		Consumer consumer = new Consumer(QUEUE_NAME, schemaRegistry);
+		consumer.stageListener = stageListener;
+
+		byte[] body = createFingerprintTransport(schemaRegistry);
+
+		// when
+		consumer.consume(body);
+
+		// then
+		Map<Stage, StageStatistics> statistics = stageListener.getStatistics(QUEUE_NAME);
+		assertEquals(body.length, statistics.get(Stage.DECODE_TRANSPORT).getTotalSize());
+		assertEquals(1, statistics.get(Stage.DECODE_CONTEXT).getCount());
+		assertEquals(1, statistics.get(Stage.HANDLE_MESSAGE).getCount());
+
+	}
+
+	@Test
+	public void consume_throwsDecodeTransportExceptionForAFingerprintTransportWithoutASchemaRegistry() throws Exception {
+
+		// expect
+		exception.expect(DecodeTransportException.class);
+		exception.expectMessage("Failed to consume message: Failed to decode transport");
+		exception.expectCause(IsInstanceOf.<Throwable>instanceOf(IllegalStateException.class));
+
+		// given
+		byte[] body = createFingerprintTransport(new InMemorySchemaRegistry());
+
+		IConsumer consumer = new Consumer(QUEUE_NAME);
+
+		// when
+		consumer.consume(body);
+
+	}
+
+	@Test
+	public void consume_throwsDecodeTransportExceptionForAnUnknownTransportFormat() throws Exception {
+
+		// expect
+		exception.expect(DecodeTransportException.class);
+		exception.expectMessage("Failed to consume message: Failed to decode transport");
+		exception.expectCause(IsInstanceOf.<Throwable>instanceOf(IllegalArgumentException.class));
+
+		// given
+		byte[] body = new byte[] { TransportFormat.MARKER, 127 };
+
+		IConsumer consumer = new Consumer(QUEUE_NAME);
+
+		// when
+		consumer.consume(body);
+
+	}
+
+	@Test
+	public void consume_shouldDecodeTheMessageIntoTheSchemaOfTheInputType() throws Exception {
+
+		// given
+		Schema writerSchema = SchemaBuilder.record("TestMessage").namespace("com.financialforce.orizuru.util")
+				.fields().name("extra").type().stringType().noDefault().name("name").type().stringType().noDefault().endRecord();
+
+		GenericRecordBuilder builder = new GenericRecordBuilder(writerSchema);
+		builder.set("extra", "extra");
+		builder.set("name", "testName");
+
+		byte[] body = createTransport(builder.build(), new byte[0]);
+
+		List<TestMessage> inputs = new ArrayList<>();
+		AbstractConsumer<TestMessage, GenericContainer> consumer = new InputConsumer<TestMessage>(inputs) {
+		};
+
+		// when
+		consumer.consume(body);
+
+		// then
+		assertEquals(TestMessage.SCHEMA$, consumer.readerSchema);
+		assertEquals("testName", inputs.get(0).getName().toString());
+
+	}
+
+	@Test
+	public void consume_shouldDecodeTheMessageIntoTheGivenReaderSchema() throws Exception {
+
+		// given
+		Schema writerSchema = SchemaBuilder.record("TestSchema").namespace("com.financialforce.orizuru.AbstractConsumerTest")
+				.fields().name("testString").type().stringType().noDefault().name("extra").type().stringType().noDefault().endRecord();
+
+		Schema readerSchema = SchemaBuilder.record("TestSchema").namespace("com.financialforce.orizuru.AbstractConsumerTest")
+				.fields().name("testString").type().stringType().noDefault().endRecord();
+
+		GenericRecordBuilder builder = new GenericRecordBuilder(writerSchema);
+		builder.set("testString", "test");
+		builder.set("extra", "extra");
+
+		byte[] body = createTransport(builder.build(), new byte[0]);
+
+		List<GenericContainer> inputs = new ArrayList<>();
+		AbstractConsumer<GenericContainer, GenericContainer> consumer = new AbstractConsumer<GenericContainer, GenericContainer>(QUEUE_NAME, null, readerSchema) {
+
+			@Override
+			public GenericContainer handleMessage(Context context, GenericContainer input) throws HandleMessageException {
+				inputs.add(input);
+				return null;
+			}
+
+		};
+
+		// when
+		consumer.consume(body);
+
+		// then
+		GenericRecord input = (GenericRecord) inputs.get(0);
+		assertEquals(readerSchema, input.getSchema());
+		assertEquals("test", input.get("testString").toString());
+
+	}
+
+	@Test
+	public void constructor_shouldNotSetAReaderSchemaForAnInputTypeWithoutAGeneratedSchema() throws Exception {
+
+		// when
+		AbstractConsumer<SpecificRecordBase, GenericContainer> consumer = new InputConsumer<SpecificRecordBase>(new ArrayList<>()) {
+		};
+
+		// then
+		assertNull(consumer.readerSchema);
+
+	}
+
+	@Test
+	public void constructor_shouldNotSetAReaderSchemaForAGenericInputType() throws Exception {
+
+		// when
+		Consumer consumer = new Consumer(QUEUE_NAME);
+
+		// then
+		assertNull(consumer.readerSchema);
+
+	}
+
+	private byte[] createTransport(GenericContainer message, byte[] contextData) throws Exception {
+
+		Context context = mock(Context.class);
+		when(context.getSchemaText()).thenReturn("{\"name\":\"test\",\"type\":\"record\",\"fields\":[]}");
+		when(context.getDataBuffer()).thenReturn(ByteBuffer.wrap(contextData));
+
+		AbstractPublisher<GenericContainer> publisher = new AbstractPublisher<GenericContainer>(QUEUE_NAME) {
+		};
+
+		return publisher.publish(context, message);
+
+	}
+
+	@Test
+	public void consumeBatch_shouldHandleConsecutiveMessagesWithTheSameContextTogether() throws Exception {
+
+		// given
+		Schema schema = SchemaBuilder.record("TestSchema").namespace("com.financialforce.orizuru.AbstractConsumerTest")
+				.fields().name("testString").type().stringType().noDefault().endRecord();
+
+		byte[] first = createTransport(new GenericRecordBuilder(schema).set("testString", "first").build(), new byte[] { 1 });
+		byte[] second = createTransport(new GenericRecordBuilder(schema).set("testString", "second").build(), new byte[] { 1 });
+		byte[] third = createTransport(new GenericRecordBuilder(schema).set("testString", "third").build(), new byte[] { 2 });
+
+		IPublisher<GenericContainer> publisher = mockPublisher();
+		when(publisher.publish(any(), any())).thenReturn(new byte[] { 1 }, new byte[] { 2 }, new byte[] { 3 });
+
+		BatchConsumer consumer = new BatchConsumer();
+		consumer.publisher = publisher;
+
+		// when
+		List<byte[]> outgoingMessages = consumer.consumeBatch(Arrays.asList(first, second, third));
+
+		// then
+		assertEquals(3, outgoingMessages.size());
+		assertArrayEquals(new byte[] { 3 }, outgoingMessages.get(2));
+
+		assertEquals(2, consumer.batches.size());
+		assertEquals(Arrays.asList("first", "second"), consumer.batches.get(0));
+		assertEquals(Arrays.asList("third"), consumer.batches.get(1));
+
+		ArgumentCaptor<Context> context = ArgumentCaptor.forClass(Context.class);
+		verify(publisher, times(3)).publish(context.capture(), any());
+		assertArrayEquals(new byte[] { 1 }, context.getAllValues().get(1).getData());
+		assertArrayEquals(new byte[] { 2 }, context.getAllValues().get(2).getData());
+
+	}
+
+	@Test
+	public void consumeBatch_shouldReturnNullForEachMessageIfNoPublisherIsDefined() throws Exception {
+
+		// given
+		byte[] body = Base64.getDecoder().decode(VALID_MESSAGE.getBytes());
+
+		IConsumer consumer = new Consumer(QUEUE_NAME);
+
+		// when
+		List<byte[]> outgoingMessages = consumer.consumeBatch(Arrays.asList(body, body));
+
+		// then
+		assertEquals(Arrays.asList(null, null), outgoingMessages);
+
+	}
+
+	@Test
+	public void consumeBatch_shouldReturnAnEmptyListForAnEmptyBatch() throws Exception {
+
+		// given
+		IConsumer consumer = new Consumer(QUEUE_NAME);
+
+		// when
+		List<byte[]> outgoingMessages = consumer.consumeBatch(new ArrayList<>());
+
+		// then
+		assertTrue(outgoingMessages.isEmpty());
+
+	}
+
+	@Test
+	public void consumeBatch_throwsAHandleMessageExceptionIfTheHandlerReturnsTheWrongNumberOfMessages() throws Exception {
+
+		// expect
+		exception.expect(HandleMessageException.class);
+		exception.expectMessage("Failed to consume message: Failed to handle message");
+		exception.expectCause(IsInstanceOf.<Throwable>instanceOf(IllegalStateException.class));
+
+		// given
+		byte[] body = Base64.getDecoder().decode(VALID_MESSAGE.getBytes());
+
+		IConsumer consumer = new Consumer(QUEUE_NAME) {
+
+			@Override
+			public List<GenericContainer> handleMessages(Context context, List<GenericContainer> inputs) throws HandleMessageException {
+				return new ArrayList<>();
+			}
+
+		};
+
+		// when
+		consumer.consumeBatch(Arrays.asList(body));
+
+	}
+
+	@Test
+	public void consumeBatch_throwsDecodeTransportExceptionForNullBody() throws Exception {
+
+		// expect
+		exception.expect(DecodeTransportException.class);
+		exception.expectMessage("Failed to consume message: Failed to decode transport");
+		exception.expectCause(IsInstanceOf.<Throwable>instanceOf(NullPointerException.class));
+
+		// given
+		IConsumer consumer = new Consumer(QUEUE_NAME);
+
+		// when
+		consumer.consumeBatch(Arrays.asList((byte[]) null));
+
+	}
+
+	@Test
+	public void consume_shouldHandleTheMessagesInABatchTransportTogether() throws Exception {
+
+		// given
+		byte[] body = createBatchTransport("first", "second", "third");
+
+		BatchConsumer consumer = new BatchConsumer();
+		consumer.publisher = new AbstractPublisher<GenericContainer>(QUEUE_NAME) {
+		};
+
+		// when
+		byte[] outgoingMessage = consumer.consume(body);
+
+		// then
+		assertEquals(TransportFormat.BATCH, TransportFormat.of(outgoingMessage));
+		assertEquals(Arrays.asList(Arrays.asList("first", "second", "third")), consumer.batches);
+
+		BatchConsumer nextConsumer = new BatchConsumer();
+		nextConsumer.consume(outgoingMessage);
+		assertEquals(consumer.batches, nextConsumer.batches);
+
+	}
+
+	@Test
+	public void consume_shouldReturnNullForABatchTransportIfNoPublisherIsDefined() throws Exception {
+
+		// given
+		ByteBuffer body = ByteBuffer.wrap(createBatchTransport("first"));
+
+		BatchConsumer consumer = new BatchConsumer();
+
+		// when
+		ByteBuffer outgoingMessage = consumer.consumeBuffer(body);
+
+		// then
+		assertNull(outgoingMessage);
+		assertEquals(Arrays.asList(Arrays.asList("first")), consumer.batches);
+
+	}
+
+	@Test
+	public void consumeBatch_shouldConsumeABatchTransportOnItsOwn() throws Exception {
+
+		// given
+		IPublisher<GenericContainer> publisher = mockPublisher();
+		when(publisher.publish(any(), any())).thenReturn(new byte[] { 1 });
+		when(publisher.publishBatch(any(), any())).thenReturn(new byte[] { 2 });
+
+		BatchConsumer consumer = new BatchConsumer();
+		consumer.publisher = publisher;
+
+		byte[] first = createTransport(new GenericRecordBuilder(createTestSchema()).set("testString", "first").build(), new byte[0]);
+		byte[] batch = createBatchTransport("second", "third");
+
+		// when
+		List<byte[]> outgoingMessages = consumer.consumeBatch(Arrays.asList(first, batch, first));
+
+		// then
+		assertEquals(3, outgoingMessages.size());
+		assertArrayEquals(new byte[] { 2 }, outgoingMessages.get(1));
+
+		assertEquals(Arrays.asList(Arrays.asList("first"), Arrays.asList("second", "third"), Arrays.asList("first")), consumer.batches);
+
+	}
+
+	@Test
+	public void consume_throwsDecodeTransportExceptionForATruncatedBatchTransport() throws OrizuruException {
+
+		// expect
+		exception.expect(DecodeTransportException.class);
+		exception.expectMessage("Failed to consume message: Failed to decode transport");
+		exception.expectCause(IsInstanceOf.<Throwable>instanceOf(EOFException.class));
+
+		// given
+		IConsumer consumer = new Consumer(QUEUE_NAME);
+
+		// when
+		consumer.consume(new byte[] { TransportFormat.MARKER, TransportFormat.BATCH.getVersion(), 2 });
+
+	}
+
+	@Test
+	public void consume_shouldReportEachStageToTheStageListener() throws Exception {
+
+		// given
+		byte[] body = Base64.getDecoder().decode(VALID_MESSAGE.getBytes());
+
+		AggregatingStageListener stageListener = new AggregatingStageListener();
+
+		ForwardingConsumer consumer = new ForwardingConsumer(QUEUE_NAME);
+		consumer.stageListener = stageListener;
+		consumer.setPublisher(new AbstractPublisher<GenericContainer>("nextQueue") {
+		});
+
+		// when
+		byte[] outgoingMessage = consumer.consume(body);
+
+		// then
+		Map<Stage, StageStatistics> statistics = stageListener.getStatistics(QUEUE_NAME);
+		assertEquals(outgoingMessage.length, statistics.get(Stage.PUBLISH).getTotalSize());
+		assertEquals(body.length, statistics.get(Stage.DECODE_TRANSPORT).getTotalSize());
+		assertEquals(1, statistics.get(Stage.DECODE_CONTEXT).getCount());
+		assertEquals(1, statistics.get(Stage.DECODE_MESSAGE).getCount());
+		assertEquals(1, statistics.get(Stage.HANDLE_MESSAGE).getTotalSize());
+
+	}
+
+	@Test
+	public void consume_shouldNotReportStagesToADisabledStageListener() throws Exception {
+
+		// given
+		IStageListener stageListener = mock(IStageListener.class);
+		when(stageListener.isEnabled()).thenReturn(false);
+
+		ForwardingConsumer consumer = new ForwardingConsumer(QUEUE_NAME);
+		consumer.stageListener = stageListener;
+		consumer.setPublisher(new AbstractPublisher<GenericContainer>("nextQueue") {
+		});
+
+		byte[] body = Base64.getDecoder().decode(VALID_MESSAGE.getBytes());
+
+		// when
+		byte[] outgoingMessage = consumer.consume(body);
+
+		// then
+		assertTrue(outgoingMessage.length > 0);
+		verify(stageListener, never()).stageCompleted(any(), any(), anyLong(), anyInt(), any());
+
+	}
+
+	@Test
+	public void consume_shouldReportEachStageOfABatchTransportToTheStageListener() throws Exception {
+
+		// given
+		AggregatingStageListener stageListener = new AggregatingStageListener();
+
+		BatchConsumer consumer = new BatchConsumer();
+		consumer.stageListener = stageListener;
+		consumer.publisher = new AbstractPublisher<GenericContainer>("nextQueue") {
+		};
+
+		// when
+		consumer.consume(createBatchTransport("first", "second"));
+		consumer.consumeBatch(Arrays.asList(createTransport(new GenericRecordBuilder(createTestSchema()).set("testString", "third").build(), new byte[0])));
+
+		// then
+		Map<Stage, StageStatistics> statistics = stageListener.getStatistics(QUEUE_NAME);
+		assertEquals(2, statistics.get(Stage.DECODE_TRANSPORT).getCount());
+		assertEquals(2, statistics.get(Stage.DECODE_MESSAGE).getCount());
+		assertEquals(3, statistics.get(Stage.HANDLE_MESSAGE).getTotalSize());
+		assertEquals(2, statistics.get(Stage.PUBLISH).getCount());
+
+	}
+
+	@Test
+	public void consume_shouldReportFailedStagesToTheStageListener() throws Exception {
+
+		// given
+		byte[] body = Base64.getDecoder().decode(VALID_MESSAGE.getBytes());
+
+		AggregatingStageListener stageListener = new AggregatingStageListener();
+
+		IPublisher<GenericContainer> publisher = mockPublisher();
+		when(publisher.publish(any(), any())).thenThrow(new OrizuruPublisherException(new NullPointerException()));
+
+		Consumer consumer = new Consumer(QUEUE_NAME);
+		consumer.stageListener = stageListener;
+		consumer.setPublisher(publisher);
+
+		// when
+		try {
+			consumer.consume(body);
+		} catch (OrizuruPublisherException ex) {
+			// expected
+		}
+
+		try {
+			consumer.consume(new byte[] { 1 });
+		} catch (DecodeTransportException ex) {
+			// expected
+		}
+
+		// then
+		assertEquals(1, stageListener.getStatistics(QUEUE_NAME, Stage.PUBLISH).getFailureCount());
+		assertEquals(1, stageListener.getStatistics(QUEUE_NAME, Stage.DECODE_TRANSPORT).getFailureCount());
+		assertEquals(0, stageListener.getStatistics(QUEUE_NAME, Stage.HANDLE_MESSAGE).getFailureCount());
+
+	}
+
+	@Test
+	public void consume_shouldDecompressACompressedTransport() throws Exception {
+
+		// given
+		byte[] contextData = new byte[2000];
+		Arrays.fill(contextData, (byte) 'c');
+
+		GenericContainer message = createTestMessage(2000);
+		byte[] body = createCompressedTransport(new DeflateCompressionCodec(), null, message, contextData);
+
+		IPublisher<GenericContainer> publisher = mockPublisher();
+		ForwardingConsumer consumer = new ForwardingConsumer(QUEUE_NAME);
+		consumer.setPublisher(publisher);
+
+		// when
+		consumer.consume(body);
+
+		// then
+		assertEquals(TransportFormat.COMPRESSED, TransportFormat.of(body));
+
+		ArgumentCaptor<Context> context = ArgumentCaptor.forClass(Context.class);
+		ArgumentCaptor<GenericContainer> input = ArgumentCaptor.forClass(GenericContainer.class);
+		verify(publisher, times(1)).publish(context.capture(), input.capture());
+		assertEquals(ByteBuffer.wrap(contextData), context.getValue().getDataBuffer());
+		assertEquals(message, input.getValue());
+
+	}
+
+	@Test
+	public void consume_shouldDecompressACompressedFingerprintTransportWithACodecDeclaredAsAService() throws Exception {
+
+		// given
+		ISchemaRegistry schemaRegistry = new InMemorySchemaRegistry();
+
+		GenericContainer message = createTestMessage(2000);
+		byte[] body = createCompressedTransport(new TestCompressionCodec(), schemaRegistry, message, new byte[0]);
+
+		IPublisher<GenericContainer> publisher = mockPublisher();
+		ForwardingConsumer consumer = new ForwardingConsumer(QUEUE_NAME, schemaRegistry);
+		consumer.setPublisher(publisher);
+
+		// when
+		consumer.consume(body);
+
+		// then
+		assertEquals(TransportFormat.COMPRESSED_FINGERPRINT, TransportFormat.of(body));
+		assertEquals(TestCompressionCodec.ID, body[2]);
+
+		ArgumentCaptor<GenericContainer> input = ArgumentCaptor.forClass(GenericContainer.class);
+		verify(publisher, times(1)).publish(any(), input.capture());
+		assertEquals(message, input.getValue());
+
+	}
+
+	@Test
+	public void consume_throwsDecodeTransportExceptionForAnUnknownCompressionCodec() throws Exception {
+
+		// expect
+		exception.expect(DecodeTransportException.class);
+		exception.expectMessage("Failed to consume message: Failed to decode transport");
+		exception.expectCause(IsInstanceOf.<Throwable>instanceOf(IllegalArgumentException.class));
+
+		// given
+		byte[] body = createCompressedTransport(new DeflateCompressionCodec(), null, createTestMessage(2000), new byte[0]);
+		body[2] = (byte) 200;
+
+		IConsumer consumer = new Consumer(QUEUE_NAME);
+
+		// when
+		consumer.consume(body);
+
+	}
+
+	@Test
+	public void consume_throwsDecodeTransportExceptionForCorruptCompressedData() throws Exception {
+
+		// expect
+		exception.expect(DecodeTransportException.class);
+		exception.expectMessage("Failed to consume message: Failed to decode transport");
+		exception.expectCause(IsInstanceOf.<Throwable>instanceOf(ZipException.class));
+
+		// given
+		byte[] body = createCompressedTransport(new DeflateCompressionCodec(), null, createTestMessage(2000), new byte[0]);
+		body[body.length - 3] ^= 0x55;
+		body[body.length - 5] ^= 0x55;
+
+		IConsumer consumer = new Consumer(QUEUE_NAME);
+
+		// when
+		consumer.consume(body);
+
+	}
+
+	@Test
+	public void consume_shouldDropAMessageRejectedByTheMessageFilterWithoutDecodingTheMessage() throws Exception {
+
+		// given
+		byte[] transport = createTransport(createTestMessage(10), new byte[] { 7 });
+		byte[] body = Arrays.copyOf(transport, transport.length - 1);
+
+		List<Context> contexts = new ArrayList<>();
+		IPublisher<GenericContainer> publisher = mockPublisher();
+		Consumer consumer = new Consumer(QUEUE_NAME);
+		consumer.setPublisher(publisher);
+		consumer.messageFilter = (queueName, context, incomingMessage) -> {
+			contexts.add(context);
+			return false;
+		};
+
+		// when
+		byte[] outgoingMessage = consumer.consume(body);
+
+		// then
+		assertNull(outgoingMessage);
+		assertArrayEquals(new byte[] { 7 }, contexts.get(0).getData());
+		verify(publisher, times(0)).publish(any(), any());
+
+	}
+
+	@Test
+	public void consume_shouldConsumeAMessageAcceptedByTheMessageFilter() throws Exception {
+
+		// given
+		GenericContainer message = createTestMessage(10);
+		byte[] body = createTransport(message, new byte[] { 7 });
+
+		IPublisher<GenericContainer> publisher = mockPublisher();
+		ForwardingConsumer consumer = new ForwardingConsumer(QUEUE_NAME);
+		consumer.setPublisher(publisher);
+		consumer.messageFilter = (queueName, context, incomingMessage) -> QUEUE_NAME.equals(queueName)
+				&& incomingMessage.remaining() == body.length;
+
+		// when
+		consumer.consume(body);
+
+		// then
+		verify(publisher, times(1)).publish(any(), eq(message));
+
+	}
+
+	@Test
+	public void consume_shouldDropABatchTransportRejectedByTheMessageFilter() throws Exception {
+
+		// given
+		BatchConsumer consumer = new BatchConsumer();
+		consumer.messageFilter = (queueName, context, incomingMessage) -> false;
+
+		// when
+		byte[] outgoingMessage = consumer.consume(createBatchTransport("first", "second"));
+
+		// then
+		assertNull(outgoingMessage);
+		assertTrue(consumer.batches.isEmpty());
+
+	}
+
+	@Test
+	public void consumeBatch_shouldReturnNullInPlaceOfAMessageRejectedByTheMessageFilter() throws Exception {
+
+		// given
+		IPublisher<GenericContainer> publisher = mockPublisher();
+		when(publisher.publish(any(), any())).thenReturn(new byte[] { 1 }, new byte[] { 3 });
+
+		BatchConsumer consumer = new BatchConsumer();
+		consumer.publisher = publisher;
+		consumer.messageFilter = (queueName, context, incomingMessage) -> context.getDataBuffer().get(0) != 2;
+
+		byte[] first = createTransport(new GenericRecordBuilder(createTestSchema()).set("testString", "first").build(), new byte[] { 1 });
+		byte[] second = createTransport(new GenericRecordBuilder(createTestSchema()).set("testString", "second").build(), new byte[] { 2 });
+		byte[] third = createTransport(new GenericRecordBuilder(createTestSchema()).set("testString", "third").build(), new byte[] { 1 });
+
+		// when
+		List<byte[]> outgoingMessages = consumer.consumeBatch(Arrays.asList(first, second, third));
+
+		// then
+		assertEquals(3, outgoingMessages.size());
+		assertArrayEquals(new byte[] { 1 }, outgoingMessages.get(0));
+		assertNull(outgoingMessages.get(1));
+		assertArrayEquals(new byte[] { 3 }, outgoingMessages.get(2));
+		assertEquals(Arrays.asList(Arrays.asList("first"), Arrays.asList("third")), consumer.batches);
+
+	}
+
+	@Test
+	public void consume_shouldReportTheMessageFilterToTheStageListener() throws Exception {
+
+		// given
+		byte[] body = createTransport(createTestMessage(10), new byte[] { 7 });
+
+		AggregatingStageListener stageListener = new AggregatingStageListener();
+
+		Consumer consumer = new Consumer(QUEUE_NAME);
+		consumer.stageListener = stageListener;
+		consumer.messageFilter = (queueName, context, incomingMessage) -> false;
+
+		// when
+		consumer.consume(body);
+
+		// then
+		Map<Stage, StageStatistics> statistics = stageListener.getStatistics(QUEUE_NAME);
+		assertEquals(body.length, statistics.get(Stage.FILTER_MESSAGE).getTotalSize());
+		assertEquals(0, statistics.get(Stage.DECODE_TRANSPORT).getCount());
+		assertEquals(0, statistics.get(Stage.HANDLE_MESSAGE).getCount());
+
+	}
+
+	@Test
+	public void peekContext_shouldReadTheContextOfATransport() throws Exception {
+
+		// given
+		byte[] body = createTransport(createTestMessage(10), new byte[] { 7 });
+
+		// when
+		Context context = new Consumer(QUEUE_NAME).peekContext(ByteBuffer.wrap(body));
+
+		// then
+		assertArrayEquals(new byte[] { 7 }, context.getData());
+		assertEquals("test", context.getSchema().getName());
+
+	}
+
+	@Test
+	public void peekContext_shouldReadTheContextOfACompressedTransport() throws Exception {
+
+		// given
+		byte[] contextData = new byte[2000];
+		Arrays.fill(contextData, (byte) 'c');
+
+		byte[] body = createCompressedTransport(new DeflateCompressionCodec(), null, createTestMessage(2000), contextData);
+
+		// when
+		Context context = new Consumer(QUEUE_NAME).peekContext(ByteBuffer.wrap(body));
+
+		// then
+		assertEquals(ByteBuffer.wrap(contextData), context.getDataBuffer());
+
+	}
+
+	@Test
+	public void peekContext_shouldReadTheContextOfAFingerprintTransport() throws Exception {
+
+		// given
+		ISchemaRegistry schemaRegistry = new InMemorySchemaRegistry();
+		byte[] body = createFingerprintTransport(schemaRegistry);
+
+		// when
+		Context context = new Consumer(QUEUE_NAME, schemaRegistry).peekContext(ByteBuffer.wrap(body));
+
+		// then
+		assertEquals("test", context.getSchema().getName());
+		assertEquals(0, context.getDataSize());
+
+	}
+
+	@Test
+	public void peekContext_throwsDecodeTransportExceptionForAFingerprintTransportWithoutASchemaRegistry() throws Exception {
+
+		// expect
+		exception.expect(DecodeTransportException.class);
+		exception.expectCause(IsInstanceOf.<Throwable>instanceOf(IllegalStateException.class));
+
+		// given
+		byte[] body = createFingerprintTransport(new InMemorySchemaRegistry());
+
+		// when
+		new Consumer(QUEUE_NAME).peekContext(ByteBuffer.wrap(body));
+
+	}
+
+	@Test
+	public void peekContext_shouldReadTheContextOfABatchTransport() throws Exception {
+
+		// given
+		byte[] body = createBatchTransport("first", "second");
+
+		// when
+		Context context = new Consumer(QUEUE_NAME).peekContext(ByteBuffer.wrap(body));
+
+		// then
+		assertEquals("test", context.getSchema().getName());
+
+	}
+
+	@Test
+	public void peekContext_throwsDecodeTransportExceptionForATruncatedContext() throws Exception {
+
+		// expect
+		exception.expect(DecodeTransportException.class);
+
+		// given
+		byte[] body = createTransport(createTestMessage(10), new byte[] { 7 });
+
+		// when
+		new Consumer(QUEUE_NAME).peekContext(ByteBuffer.wrap(body, 0, 10));
+
+	}
+
+	@Test
+	public void consume_shouldReturnThePreviouslyPublishedBytesForADuplicateMessageWithoutHandlingIt() throws Exception {
+
+		// given
+		IPublisher<GenericContainer> publisher = mockPublisher();
+		when(publisher.publish(any(), any())).thenReturn(new byte[] { 1 }, new byte[] { 2 });
+
+		Consumer consumer = new Consumer(QUEUE_NAME);
+		consumer.setPublisher(publisher);
+		consumer.deduplicationCache = new DeduplicationCache(10, 1, TimeUnit.MINUTES);
+
+		byte[] body = createTransport(createTestMessage(10), new byte[] { 7 });
+
+		// when
+		byte[] first = consumer.consume(body);
+		byte[] second = consumer.consume(Arrays.copyOf(body, body.length));
+
+		// then
+		assertArrayEquals(new byte[] { 1 }, first);
+		assertArrayEquals(first, second);
+		assertEquals(1, consumer.deduplicationCache.getDuplicateCount());
+		verify(publisher, times(1)).publish(any(), any());
+
+	}
+
+	@Test
+	public void consume_shouldNotDecodeADuplicateMessageIfNothingWasPublished() throws Exception {
+
+		// given
+		byte[] body = createTransport(createTestMessage(10), new byte[] { 7 });
+
+		AggregatingStageListener stageListener = new AggregatingStageListener();
+
+		Consumer consumer = new Consumer(QUEUE_NAME);
+		consumer.stageListener = stageListener;
+		consumer.deduplicationCache = new DeduplicationCache(10, 1, TimeUnit.MINUTES);
+
+		// when
+		consumer.consume(body);
+		byte[] outgoingMessage = consumer.consume(body);
+
+		// then
+		assertNull(outgoingMessage);
+		assertEquals(1, stageListener.getStatistics(QUEUE_NAME).get(Stage.DECODE_TRANSPORT).getCount());
+
+	}
+
+	@Test
+	public void consume_shouldIdentifyMessagesByTheKeyExtractedFromTheContext() throws Exception {
+
+		// given
+		BatchConsumer consumer = new BatchConsumer();
+		consumer.deduplicationCache = new DeduplicationCache(10, 1, TimeUnit.MINUTES);
+		consumer.messageKeyExtractor = context -> context.getDataBuffer().get(0);
+
+		byte[] first = createTransport(new GenericRecordBuilder(createTestSchema()).set("testString", "first").build(), new byte[] { 1 });
+		byte[] second = createTransport(new GenericRecordBuilder(createTestSchema()).set("testString", "second").build(), new byte[] { 1 });
+		byte[] third = createTransport(new GenericRecordBuilder(createTestSchema()).set("testString", "third").build(), new byte[] { 2 });
+
+		// when
+		consumer.consumeBatch(Arrays.asList(first));
+		consumer.consumeBatch(Arrays.asList(second));
+		consumer.consumeBatch(Arrays.asList(third));
+
+		// then
+		assertEquals(Arrays.asList(Arrays.asList("first"), Arrays.asList("third")), consumer.batches);
+
+	}
+
+	@Test
+	public void consume_shouldPeekTheContextOnceForTheFilterTheKeyExtractorAndTheHandler() throws Exception {
+
+		// given
+		List<Context> contexts = new ArrayList<>();
+		AggregatingStageListener stageListener = new AggregatingStageListener();
+
+		Consumer consumer = new Consumer(QUEUE_NAME) {
+
+			@Override
+			public GenericContainer handleMessage(Context context, GenericContainer input) throws HandleMessageException {
+				contexts.add(context);
+				return null;
+			}
+
+		};
+		consumer.stageListener = stageListener;
+		consumer.deduplicationCache = new DeduplicationCache(10, 1, TimeUnit.MINUTES);
+		consumer.messageFilter = (queueName, context, incomingMessage) -> contexts.add(context);
+		consumer.messageKeyExtractor = context -> {
+			contexts.add(context);
+			return context.getDataBuffer().get(0);
+		};
+
+		byte[] body = createTransport(createTestMessage(10), new byte[] { 7 });
+
+		// when
+		consumer.consume(body);
+
+		// then
+		assertEquals(3, contexts.size());
+		assertSame(contexts.get(0), contexts.get(1));
+		assertSame(contexts.get(0), contexts.get(2));
+		assertArrayEquals(new byte[] { 7 }, contexts.get(0).getData());
+		assertEquals(1, stageListener.getStatistics(QUEUE_NAME).get(Stage.DECODE_TRANSPORT).getCount());
+		assertEquals(0, stageListener.getStatistics(QUEUE_NAME).get(Stage.DECODE_CONTEXT).getCount());
+
+	}
+
+	@Test
+	public void consume_shouldNotRecordAMessageThatFailsToBeHandled() throws Exception {
+
+		// given
+		byte[] body = createTransport(createTestMessage(10), new byte[] { 7 });
+
+		ErrorConsumer consumer = new ErrorConsumer(QUEUE_NAME);
+		consumer.deduplicationCache = new DeduplicationCache(10, 1, TimeUnit.MINUTES);
+
+		// when
+		try {
+			consumer.consume(body);
+		} catch (HandleMessageException ex) {
+			// expected
+		}
+
+		// then
+		assertEquals(0, consumer.deduplicationCache.size());
+
+	}
+
+	@Test
+	public void consumeBatch_shouldReturnThePreviouslyPublishedBytesInPlaceOfADuplicateMessage() throws Exception {
+
+		// given
+		IPublisher<GenericContainer> publisher = mockPublisher();
+		when(publisher.publish(any(), any())).thenReturn(new byte[] { 1 }, new byte[] { 2 }, new byte[] { 3 });
+
+		BatchConsumer consumer = new BatchConsumer();
+		consumer.publisher = publisher;
+		consumer.deduplicationCache = new DeduplicationCache(10, 1, TimeUnit.MINUTES);
+
+		byte[] first = createTransport(new GenericRecordBuilder(createTestSchema()).set("testString", "first").build(), new byte[] { 1 });
+		byte[] second = createTransport(new GenericRecordBuilder(createTestSchema()).set("testString", "second").build(), new byte[] { 1 });
+
+		// when
+		consumer.consumeBatch(Arrays.asList(first));
+		List<byte[]> outgoingMessages = consumer.consumeBatch(Arrays.asList(second, first));
+
+		// then
+		assertEquals(2, outgoingMessages.size());
+		assertArrayEquals(new byte[] { 2 }, outgoingMessages.get(0));
+		assertArrayEquals(new byte[] { 1 }, outgoingMessages.get(1));
+		assertEquals(Arrays.asList(Arrays.asList("first"), Arrays.asList("second")), consumer.batches);
+
+	}
+
+	@Test
+	public void consumeBatch_shouldHandleAMessageDeliveredTwiceInTheSameBatchOnce() throws Exception {
+
+		// given
+		IPublisher<GenericContainer> publisher = mockPublisher();
+		when(publisher.publish(any(), any())).thenReturn(new byte[] { 1 }, new byte[] { 2 }, new byte[] { 3 });
+
+		BatchConsumer consumer = new BatchConsumer();
+		consumer.publisher = publisher;
+		consumer.deduplicationCache = new DeduplicationCache(10, 1, TimeUnit.MINUTES);
+
+		byte[] first = createTransport(new GenericRecordBuilder(createTestSchema()).set("testString", "first").build(), new byte[] { 1 });
+		byte[] second = createTransport(new GenericRecordBuilder(createTestSchema()).set("testString", "second").build(), new byte[] { 1 });
+
+		// when
+		List<byte[]> outgoingMessages = consumer.consumeBatch(Arrays.asList(first, second, Arrays.copyOf(first, first.length)));
+
+		// then
+		assertEquals(3, outgoingMessages.size());
+		assertArrayEquals(new byte[] { 1 }, outgoingMessages.get(0));
+		assertArrayEquals(new byte[] { 2 }, outgoingMessages.get(1));
+		assertArrayEquals(new byte[] { 1 }, outgoingMessages.get(2));
+		assertEquals(Arrays.asList(Arrays.asList("first", "second")), consumer.batches);
+		assertEquals(1, consumer.deduplicationCache.getDuplicateCount());
+
+	}
+
+	private GenericContainer createTestMessage(int length) {
+
+		char[] text = new char[length];
+		Arrays.fill(text, 'a');
+
+		return new GenericRecordBuilder(createTestSchema()).set("testString", new String(text)).build();
+
+	}
+
+	private byte[] createCompressedTransport(ICompressionCodec codec, ISchemaRegistry schemaRegistry, GenericContainer message,
+			byte[] contextData) throws Exception {
+
+		Schema contextSchema = new Schema.Parser().parse("{\"name\":\"test\",\"type\":\"record\",\"fields\":[]}");
+
+		Context context = mock(Context.class);
+		when(context.getSchema()).thenReturn(contextSchema);
+		when(context.getSchemaText()).thenReturn(contextSchema.toString());
+		when(context.getDataBuffer()).thenReturn(ByteBuffer.wrap(contextData));
+
+		AbstractPublisher<GenericContainer> publisher = new AbstractPublisher<GenericContainer>(QUEUE_NAME, schemaRegistry) {
+		};
+		publisher.compressionCodec = codec;
+
+		return publisher.publish(context, message);
+
+	}
+
+	private Schema createTestSchema() {
+		return SchemaBuilder.record("TestSchema").namespace("com.financialforce.orizuru.AbstractConsumerTest")
+				.fields().name("testString").type().stringType().noDefault().endRecord();
+	}
+
+	private byte[] createBatchTransport(String... values) throws Exception {
+
+		Context context = mock(Context.class);
+		when(context.getSchemaText()).thenReturn("{\"name\":\"test\",\"type\":\"record\",\"fields\":[]}");
+		when(context.getDataBuffer()).thenReturn(ByteBuffer.wrap(new byte[0]));
+
+		List<GenericContainer> messages = new ArrayList<>();
+		for (String value : values) {
+			messages.add(new GenericRecordBuilder(createTestSchema()).set("testString", value).build());
+		}
+
+		AbstractPublisher<GenericContainer> publisher = new AbstractPublisher<GenericContainer>(QUEUE_NAME) {
+		};
+
+		return publisher.publishBatch(context, messages);
+
+	}
+
+	private byte[] createFingerprintTransport(ISchemaRegistry schemaRegistry) throws Exception {
+
+		Schema schema = SchemaBuilder.record("TestSchema").namespace("com.financialforce.orizuru.AbstractConsumerTest")
+				.fields().name("testString").type().stringType().noDefault().endRecord();
+
+		Context context = mock(Context.class);
+		when(context.getSchema()).thenReturn(new Schema.Parser().parse("{\"name\":\"test\",\"type\":\"record\",\"fields\":[]}"));
+		when(context.getDataBuffer()).thenReturn(ByteBuffer.wrap(new byte[0]));
+
+		GenericRecordBuilder builder = new GenericRecordBuilder(schema);
+		builder.set("testString", "test");
+
+		AbstractPublisher<GenericContainer> publisher = new AbstractPublisher<GenericContainer>(QUEUE_NAME, schemaRegistry) {
+		};
+
+		return publisher.publish(context, builder.build());
+
+	}
+
+	@SuppressWarnings("unchecked")
+	private <T extends GenericContainer> IPublisher<T> mockPublisher() {
+		return mock(IPublisher.class);
+	}
+
+	private class Consumer extends AbstractConsumer<GenericContainer, GenericContainer> {
+
+		public Consumer(String queueName) {
+			super(queueName);
+		}
+
+		public Consumer(String queueName, ISchemaRegistry schemaRegistry) {
+			super(queueName, schemaRegistry);
+		}
+
+		@Override
+		public GenericContainer handleMessage(Context context, GenericContainer input) throws HandleMessageException {
+			return null;
+		}
+
+		public void setPublisher(IPublisher<GenericContainer> publisher) {
+			this.publisher = publisher;
+		}
+
+	}
+
+	private class ForwardingConsumer extends Consumer {
+
+		public ForwardingConsumer(String queueName) {
+			super(queueName);
+		}
+
+		public ForwardingConsumer(String queueName, ISchemaRegistry schemaRegistry) {
+			super(queueName, schemaRegistry);
+		}
+
+		@Override
+		public GenericContainer handleMessage(Context context, GenericContainer input) throws HandleMessageException {
+			return input;
+		}
+
+	}
+
+	private abstract class InputConsumer<T extends GenericContainer> extends AbstractConsumer<T, GenericContainer> {
+
+		private final List<T> inputs;
+
+		public InputConsumer(List<T> inputs) {
+			super(QUEUE_NAME);
+			this.inputs = inputs;
+		}
+
+		@Override
+		public GenericContainer handleMessage(Context context, T input) throws HandleMessageException {
+			inputs.add(input);
+			return null;
+		}
+
+	}
+
+	private class BatchConsumer extends AbstractConsumer<GenericRecord, GenericContainer> {
+
+		private final List<List<String>> batches = new ArrayList<>();
+
+		public BatchConsumer() {
+			super(QUEUE_NAME);
+		}
+
+		@Override
+		public GenericContainer handleMessage(Context context, GenericRecord input) throws HandleMessageException {
+			throw new HandleMessageException(new UnsupportedOperationException());
+		}
+
+		@Override
+		public List<GenericContainer> handleMessages(Context context, List<GenericRecord> inputs) throws HandleMessageException {
+
+			List<String> batch = new ArrayList<>();
+			for (GenericRecord input : inputs) {
+				batch.add(input.get("testString").toString());
+			}
+
+			batches.add(batch);
+			return new ArrayList<>(inputs);
 
-		public void setPublisher(IPublisher<GenericContainer> publisher) {
-			this.publisher = publisher;
 		}
 
 	}
@@ -0,0 +1,183 @@
+/**
+ * Copyright (c) 2017-2018, FinancialForce.com, inc
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ *   are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ *      this list of conditions and the following disclaimer in the documentation
+ *      and/or other materials provided with the distribution.
+ * - Neither the name of the FinancialForce.com, inc nor the names of its contributors
+ *      may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ *  OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL
+ *  THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ *  EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ *  OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY
+ *  OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ **/
+
+package com.financialforce.orizuru;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaBuilder;
+import org.apache.avro.generic.GenericData.Record;
+import org.apache.avro.generic.GenericRecord;
+import org.junit.Test;
+
+import com.financialforce.orizuru.exception.consumer.handler.HandleMessageException;
+import com.financialforce.orizuru.message.Context;
+import com.financialforce.orizuru.message.FieldPositions;
+import com.financialforce.orizuru.registry.InMemorySchemaRegistry;
+import com.financialforce.orizuru.util.TestMessage;
+
+public class AbstractGenericConsumerTest {
+
+	private static final String QUEUE_NAME = "testQueue";
+
+	@Test
+	public void constructor_shouldNotFindAReaderSchema() {
+
+		// when
+		Consumer consumer = new Consumer(null);
+
+		// then
+		assertNull(consumer.readerSchema);
+		assertEquals(QUEUE_NAME, consumer.getQueueName());
+
+	}
+
+	@Test
+	public void constructor_shouldSetTheSchemaRegistry() {
+
+		// given
+		InMemorySchemaRegistry schemaRegistry = new InMemorySchemaRegistry();
+
+		// when
+		Consumer consumer = new Consumer(schemaRegistry, null);
+
+		// then
+		assertSame(schemaRegistry, consumer.schemaRegistry);
+
+	}
+
+	@Test
+	public void consume_shouldDecodeAGenericRecordEvenIfThereIsAGeneratedClass() throws Exception {
+
+		// given
+		byte[] body = new Publisher().publish(createContext(), createMessage("test"));
+
+		Consumer consumer = new Consumer(null);
+
+		// when
+		consumer.consume(body);
+
+		// then
+		assertEquals(Record.class, consumer.inputs.get(0).getClass());
+		assertEquals("test", consumer.names.get(0).toString());
+
+	}
+
+	@Test
+	public void consume_shouldResolveTheMessageIntoTheReaderSchema() throws Exception {
+
+		// given
+		Schema readerSchema = SchemaBuilder.record("TestMessage").namespace("com.financialforce.orizuru.util").fields()
+				.optionalString("id").requiredString("name").endRecord();
+
+		byte[] body = new Publisher().publish(createContext(), createMessage("test"));
+
+		Consumer consumer = new Consumer(readerSchema);
+
+		// when
+		consumer.consume(body);
+
+		// then
+		assertEquals(readerSchema, consumer.inputs.get(0).getSchema());
+		assertEquals("test", consumer.names.get(0).toString());
+
+	}
+
+	@Test
+	public void consume_shouldDecodeGenericRecordsFromABatchTransport() throws Exception {
+
+		// given
+		byte[] body = new Publisher().publishBatch(createContext(), Arrays.asList(createMessage("first"), createMessage("second")));
+
+		Consumer consumer = new Consumer(null);
+
+		// when
+		consumer.consume(body);
+
+		// then
+		assertEquals(2, consumer.inputs.size());
+		assertEquals(Record.class, consumer.inputs.get(1).getClass());
+		assertEquals("second", consumer.names.get(1).toString());
+
+	}
+
+	private Context createContext() {
+		Context context = mock(Context.class);
+		when(context.getSchemaText()).thenReturn("{\"name\":\"test\",\"type\":\"record\",\"fields\":[]}");
+		when(context.getDataBuffer()).thenReturn(ByteBuffer.wrap(new byte[0]));
+		return context;
+	}
+
+	private static TestMessage createMessage(String name) {
+		TestMessage message = new TestMessage();
+		message.setName(name);
+		return message;
+	}
+
+	private static class Publisher extends AbstractPublisher<TestMessage> {
+
+		Publisher() {
+			super(QUEUE_NAME);
+		}
+
+	}
+
+	private static class Consumer extends AbstractGenericConsumer<GenericRecord> {
+
+		private static final FieldPositions FIELDS = new FieldPositions("name");
+
+		private final List<GenericRecord> inputs = new ArrayList<>();
+
+		private final List<Object> names = new ArrayList<>();
+
+		Consumer(Schema readerSchema) {
+			this(null, readerSchema);
+		}
+
+		Consumer(InMemorySchemaRegistry schemaRegistry, Schema readerSchema) {
+			super(QUEUE_NAME, schemaRegistry, readerSchema);
+		}
+
+		@Override
+		public GenericRecord handleMessage(Context context, GenericRecord input) throws HandleMessageException {
+			inputs.add(input);
+			names.add(FIELDS.get(input, 0));
+			return input;
+		}
+
+	}
+
+}
@@ -0,0 +1,179 @@
+/**
+ * Copyright (c) 2017-2018, FinancialForce.com, inc
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ *   are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ *      this list of conditions and the following disclaimer in the documentation
+ *      and/or other materials provided with the distribution.
+ * - Neither the name of the FinancialForce.com, inc nor the names of its contributors
+ *      may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ *  OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL
+ *  THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ *  EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ *  OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY
+ *  OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ **/
+
+package com.financialforce.orizuru;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaBuilder;
+import org.apache.avro.generic.GenericData.Record;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.generic.GenericRecordBuilder;
+import org.junit.Test;
+
+import com.financialforce.orizuru.codec.DeflateCompressionCodec;
+import com.financialforce.orizuru.codec.TransportFormat;
+import com.financialforce.orizuru.exception.consumer.handler.HandleMessageException;
+import com.financialforce.orizuru.interfaces.ISchemaRegistry;
+import com.financialforce.orizuru.message.Context;
+import com.financialforce.orizuru.registry.InMemorySchemaRegistry;
+import com.financialforce.orizuru.util.TestMessage;
+
+public class AbstractGenericPublisherTest {
+
+	private static final String QUEUE_NAME = "testQueue";
+
+	private static final Schema SCHEMA = SchemaBuilder.record("Route").namespace("com.financialforce.orizuru.AbstractGenericPublisherTest")
+			.fields().requiredString("target").endRecord();
+
+	@Test
+	public void publish_shouldWriteTheSameTransportAsTheSpecificPublisher() throws Exception {
+
+		// given
+		TestMessage message = new TestMessage();
+		message.setName("test");
+
+		Context context = createContext();
+		byte[] expected = new AbstractPublisher<TestMessage>(QUEUE_NAME) {
+		}.publish(context, message);
+
+		AbstractGenericPublisher<TestMessage> publisher = new AbstractGenericPublisher<TestMessage>(QUEUE_NAME) {
+		};
+
+		// when
+		byte[] outgoingMessage = publisher.publish(context, message);
+
+		// then
+		assertArrayEquals(expected, outgoingMessage);
+
+	}
+
+	@Test
+	public void publish_shouldWriteAGenericRecordThatIsConsumedAsAGenericRecord() throws Exception {
+
+		// given
+		GenericRecord message = new GenericRecordBuilder(SCHEMA).set("target", "queue").build();
+		AbstractGenericPublisher<GenericRecord> publisher = new AbstractGenericPublisher<GenericRecord>(QUEUE_NAME) {
+		};
+
+		Consumer consumer = new Consumer();
+
+		// when
+		consumer.consume(publisher.publish(createContext(), message));
+
+		// then
+		assertEquals(Record.class, consumer.inputs.get(0).getClass());
+		assertEquals("queue", consumer.inputs.get(0).get("target").toString());
+
+	}
+
+	@Test
+	public void publish_shouldCompressAGenericRecordWrittenWithTheGenericWriter() throws Exception {
+
+		// given
+		StringBuilder target = new StringBuilder();
+		for (int i = 0; i < 200; i++) {
+			target.append("queue");
+		}
+
+		GenericRecord message = new GenericRecordBuilder(SCHEMA).set("target", target.toString()).build();
+		AbstractGenericPublisher<GenericRecord> publisher = new AbstractGenericPublisher<GenericRecord>(QUEUE_NAME) {
+		};
+		publisher.compressionCodec = new DeflateCompressionCodec();
+		publisher.compressionThreshold = 16;
+
+		Consumer consumer = new Consumer();
+
+		// when
+		byte[] outgoingMessage = publisher.publish(createContext(), message);
+		consumer.consume(outgoingMessage);
+
+		// then
+		assertEquals(TransportFormat.COMPRESSED, TransportFormat.of(outgoingMessage));
+		assertEquals(target.toString(), consumer.inputs.get(0).get("target").toString());
+
+	}
+
+	@Test
+	public void publish_shouldWriteAFingerprintTransportThatIsConsumedWithTheSameSchemaRegistry() throws Exception {
+
+		// given
+		InMemorySchemaRegistry schemaRegistry = new InMemorySchemaRegistry();
+
+		GenericRecord message = new GenericRecordBuilder(SCHEMA).set("target", "queue").build();
+		AbstractGenericPublisher<GenericRecord> publisher = new AbstractGenericPublisher<GenericRecord>(QUEUE_NAME, schemaRegistry) {
+		};
+
+		Consumer consumer = new Consumer(schemaRegistry);
+
+		// when
+		byte[] outgoingMessage = publisher.publish(createContext(), message);
+		consumer.consume(outgoingMessage);
+
+		// then
+		assertEquals(TransportFormat.FINGERPRINT, TransportFormat.of(outgoingMessage));
+		assertEquals(Record.class, consumer.inputs.get(0).getClass());
+		assertEquals("queue", consumer.inputs.get(0).get("target").toString());
+
+	}
+
+	private Context createContext() {
+		Context context = mock(Context.class);
+		when(context.getSchema()).thenReturn(new Schema.Parser().parse("{\"name\":\"test\",\"type\":\"record\",\"fields\":[]}"));
+		when(context.getSchemaText()).thenReturn("{\"name\":\"test\",\"type\":\"record\",\"fields\":[]}");
+		when(context.getDataBuffer()).thenReturn(ByteBuffer.wrap(new byte[0]));
+		return context;
+	}
+
+	private static class Consumer extends AbstractGenericConsumer<GenericRecord> {
+
+		private final List<GenericRecord> inputs = new ArrayList<>();
+
+		Consumer() {
+			super(QUEUE_NAME);
+		}
+
+		Consumer(ISchemaRegistry schemaRegistry) {
+			super(QUEUE_NAME, schemaRegistry);
+		}
+
+		@Override
+		public GenericRecord handleMessage(Context context, GenericRecord input) throws HandleMessageException {
+			inputs.add(input);
+			return input;
+		}
+
+	}
+
+}
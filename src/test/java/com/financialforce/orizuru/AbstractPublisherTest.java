@@ -26,27 +26,57 @@
 
 package com.financialforce.orizuru;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import org.apache.avro.Schema;
 import org.apache.avro.SchemaBuilder;
 import org.apache.avro.generic.GenericContainer;
 import org.apache.avro.generic.GenericData.Record;
 import org.apache.avro.generic.GenericRecordBuilder;
+import org.apache.avro.io.BinaryDecoder;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.io.EncoderFactory;
+import org.apache.avro.specific.SpecificDatumReader;
+import org.apache.avro.specific.SpecificDatumWriter;
 import org.hamcrest.core.IsInstanceOf;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 
+import com.financialforce.orizuru.codec.DeflateCompressionCodec;
+import com.financialforce.orizuru.codec.DirectBufferPool;
+import com.financialforce.orizuru.codec.PooledBuffer;
+import com.financialforce.orizuru.codec.TransportFormat;
 import com.financialforce.orizuru.exception.publisher.OrizuruPublisherException;
 import com.financialforce.orizuru.exception.publisher.encode.EncodeMessageContentException;
 import com.financialforce.orizuru.exception.publisher.encode.EncodeTransportException;
+import com.financialforce.orizuru.instrumentation.AggregatingStageListener;
+import com.financialforce.orizuru.instrumentation.Stage;
+import com.financialforce.orizuru.instrumentation.StageStatistics;
+import com.financialforce.orizuru.interfaces.ICompressionCodec;
+import com.financialforce.orizuru.interfaces.ISchemaRegistry;
 import com.financialforce.orizuru.message.Context;
+import com.financialforce.orizuru.message.Message;
+import com.financialforce.orizuru.registry.InMemorySchemaRegistry;
+import com.financialforce.orizuru.transport.BatchTransport;
+import com.financialforce.orizuru.transport.FingerprintTransport;
+import com.financialforce.orizuru.transport.Transport;
 
 public class AbstractPublisherTest {
 
@@ -102,6 +132,7 @@ public class AbstractPublisherTest {
 		Context context = mock(Context.class);
 		when(context.getSchema())
 				.thenReturn(new Schema.Parser().parse("{\"name\":\"test\",\"type\":\"record\",\"fields\":[]}"));
+		when(context.getSchemaText()).thenReturn("{\"name\":\"test\",\"type\":\"record\",\"fields\":[]}");
 		when(context.getDataBuffer()).thenReturn(ByteBuffer.wrap("{}".getBytes()));
 
 		GenericRecordBuilder builder = new GenericRecordBuilder(schema);
@@ -125,6 +156,7 @@ public class AbstractPublisherTest {
 		Context context = mock(Context.class);
 		when(context.getSchema())
 				.thenReturn(new Schema.Parser().parse("{\"name\":\"test\",\"type\":\"record\",\"fields\":[]}"));
+		when(context.getSchemaText()).thenReturn("{\"name\":\"test\",\"type\":\"record\",\"fields\":[]}");
 		when(context.getDataBuffer()).thenReturn(null);
 
 		GenericRecordBuilder builder = new GenericRecordBuilder(schema);
@@ -143,6 +175,7 @@ public class AbstractPublisherTest {
 		Context context = mock(Context.class);
 		when(context.getSchema())
 				.thenReturn(new Schema.Parser().parse("{\"name\":\"test\",\"type\":\"record\",\"fields\":[]}"));
+		when(context.getSchemaText()).thenReturn("{\"name\":\"test\",\"type\":\"record\",\"fields\":[]}");
 		when(context.getDataBuffer()).thenReturn(ByteBuffer.wrap("{}".getBytes()));
 
 		GenericRecordBuilder builder = new GenericRecordBuilder(schema);
@@ -154,11 +187,576 @@ public class AbstractPublisherTest {
 
 	}
 
+	@Test
+	public void publish_shouldWriteTheMessageIntoTheBuffer() throws Exception {
+
+		// given
+		Context context = mock(Context.class);
+		when(context.getSchema())
+				.thenReturn(new Schema.Parser().parse("{\"name\":\"test\",\"type\":\"record\",\"fields\":[]}"));
+		when(context.getSchemaText()).thenReturn("{\"name\":\"test\",\"type\":\"record\",\"fields\":[]}");
+		when(context.getDataBuffer()).thenReturn(ByteBuffer.wrap("{}".getBytes()));
+
+		GenericRecordBuilder builder = new GenericRecordBuilder(schema);
+		builder.set("testString", "test");
+		Record record = builder.build();
+
+		byte[] expected = publisher.publish(context, record);
+
+		ByteBuffer destination = ByteBuffer.allocateDirect(expected.length + 1);
+		destination.put((byte) 1);
+
+		// when
+		ByteBuffer buffer = publisher.publish(context, record, destination);
+
+		// then
+		assertSame(destination, buffer);
+		assertEquals(expected.length + 1, destination.position());
+
+		destination.flip();
+		destination.get();
+		assertEquals(ByteBuffer.wrap(expected), destination);
+
+	}
+
+	@Test
+	public void publish_shouldThrowAnOrizuruPublisherExceptionIfTheMessageDoesNotFitInTheBuffer() throws Exception {
+
+		// expect
+		exception.expect(OrizuruPublisherException.class);
+		exception.expectCause(IsInstanceOf.<Throwable>instanceOf(BufferOverflowException.class));
+		exception.expectMessage("Failed to publish message");
+
+		// given
+		Context context = mock(Context.class);
+		when(context.getSchema())
+				.thenReturn(new Schema.Parser().parse("{\"name\":\"test\",\"type\":\"record\",\"fields\":[]}"));
+		when(context.getSchemaText()).thenReturn("{\"name\":\"test\",\"type\":\"record\",\"fields\":[]}");
+		when(context.getDataBuffer()).thenReturn(ByteBuffer.wrap("{}".getBytes()));
+
+		GenericRecordBuilder builder = new GenericRecordBuilder(schema);
+		builder.set("testString", "test");
+		Record record = builder.build();
+
+		// when
+		publisher.publish(context, record, ByteBuffer.allocate(4));
+
+	}
+
+	@Test
+	public void publishPooled_shouldWriteTheMessageIntoAPooledDirectBuffer() throws Exception {
+
+		// given
+		Context context = createContext(ByteBuffer.wrap("{}".getBytes()));
+		Record record = createRecord(10);
+		byte[] expected = publisher.publish(context, record);
+
+		DirectBufferPool bufferPool = new DirectBufferPool(DirectBufferPool.MINIMUM_SIZE_CLASS, 1);
+		publisher.bufferPool = bufferPool;
+
+		// when
+		PooledBuffer pooledBuffer = publisher.publishPooled(context, record);
+
+		// then
+		ByteBuffer buffer = pooledBuffer.getBuffer();
+		assertTrue(buffer.isDirect());
+		assertEquals(ByteBuffer.wrap(expected), buffer);
+
+		pooledBuffer.release();
+		assertEquals(1, bufferPool.getFreeCount());
+
+	}
+
+	@Test
+	public void publishBatchPooled_shouldWriteTheBatchIntoAPooledDirectBuffer() throws Exception {
+
+		// given
+		Context context = createContext(ByteBuffer.wrap("{}".getBytes()));
+		List<GenericContainer> records = Arrays.asList(createRecord(10), createRecord(20));
+		byte[] expected = publisher.publishBatch(context, records);
+
+		// when
+		try (PooledBuffer pooledBuffer = publisher.publishBatchPooled(context, records)) {
+
+			// then
+			assertEquals(ByteBuffer.wrap(expected), pooledBuffer.getBuffer());
+
+		}
+
+	}
+
+	@Test
+	public void publish_shouldWriteTheSameBytesAsTheTransportWriter() throws Exception {
+
+		// given
+		Schema contextSchema = new Schema.Parser().parse("{\"name\":\"test\",\"type\":\"record\",\"fields\":[]}");
+
+		Context context = mock(Context.class);
+		when(context.getSchemaText()).thenReturn(contextSchema.toString());
+		when(context.getDataBuffer()).thenReturn(ByteBuffer.wrap("{}".getBytes()));
+
+		char[] text = new char[300];
+		Arrays.fill(text, 'a');
+
+		GenericRecordBuilder builder = new GenericRecordBuilder(schema);
+		builder.set("testString", new String(text));
+		Record record = builder.build();
+
+		Message message = new Message();
+		message.encode(record);
+
+		Transport transport = new Transport(contextSchema.toString(), ByteBuffer.wrap("{}".getBytes()),
+				schema.toString(), message.getDataBuffer());
+
+		ByteArrayOutputStream expected = new ByteArrayOutputStream();
+		BinaryEncoder encoder = EncoderFactory.get().binaryEncoder(expected, null);
+		new SpecificDatumWriter<Transport>(Transport.class).write(transport, encoder);
+		encoder.flush();
+
+		// when
+		byte[] body = publisher.publish(context, record);
+
+		// then
+		assertArrayEquals(expected.toByteArray(), body);
+
+	}
+
+	@Test
+	public void publish_shouldPublishAFingerprintTransportIfASchemaRegistryIsDefined() throws Exception {
+
+		// given
+		Schema contextSchema = new Schema.Parser().parse("{\"name\":\"test\",\"type\":\"record\",\"fields\":[]}");
+
+		Context context = mock(Context.class);
+		when(context.getSchema()).thenReturn(contextSchema);
+		when(context.getDataBuffer()).thenReturn(ByteBuffer.wrap("{}".getBytes()));
+
+		GenericRecordBuilder builder = new GenericRecordBuilder(schema);
+		builder.set("testString", "test");
+		Record record = builder.build();
+
+		ISchemaRegistry schemaRegistry = new InMemorySchemaRegistry();
+
+		// when
+		byte[] body = new Publisher(schemaRegistry).publish(context, record);
+
+		// then
+		assertEquals(TransportFormat.FINGERPRINT, TransportFormat.of(body));
+
+		BinaryDecoder decoder = DecoderFactory.get().binaryDecoder(body, 2, body.length - 2, null);
+		FingerprintTransport transport = new SpecificDatumReader<FingerprintTransport>(FingerprintTransport.class).read(null, decoder);
+
+		assertEquals(contextSchema, schemaRegistry.lookup(transport.getContextFingerprint()));
+		assertEquals(schema, schemaRegistry.lookup(transport.getMessageFingerprint()));
+		assertEquals(ByteBuffer.wrap("{}".getBytes()), transport.getContextBuffer());
+
+		Message message = new Message(schema, transport.getMessageBuffer().array());
+		assertEquals(record, message.decode());
+
+	}
+
+	@Test
+	public void publish_shouldThrowAnEncodeTransportExceptionForAnInvalidFingerprintTransportContext() throws Exception {
+
+		// expect
+		exception.expect(EncodeTransportException.class);
+		exception.expectCause(IsInstanceOf.<Throwable>instanceOf(NullPointerException.class));
+		exception.expectMessage("Failed to publish message: Failed to encode transport");
+
+		// given
+		Context context = mock(Context.class);
+		when(context.getSchema())
+				.thenReturn(new Schema.Parser().parse("{\"name\":\"test\",\"type\":\"record\",\"fields\":[]}"));
+		when(context.getDataBuffer()).thenReturn(null);
+
+		GenericRecordBuilder builder = new GenericRecordBuilder(schema);
+		builder.set("testString", "testString");
+		Record record = builder.build();
+
+		// when
+		new Publisher(new InMemorySchemaRegistry()).publish(context, record);
+
+	}
+
+	@Test
+	public void publishBatch_shouldPublishABatchTransport() throws Exception {
+
+		// given
+		Context context = mock(Context.class);
+		when(context.getSchemaText()).thenReturn("{\"name\":\"test\",\"type\":\"record\",\"fields\":[]}");
+		when(context.getDataBuffer()).thenReturn(ByteBuffer.wrap("{}".getBytes()));
+
+		List<GenericContainer> records = new ArrayList<>();
+		for (int i = 0; i < 3; i++) {
+			records.add(new GenericRecordBuilder(schema).set("testString", "test" + i).build());
+		}
+
+		// when
+		byte[] body = publisher.publishBatch(context, records);
+
+		// then
+		assertEquals(TransportFormat.BATCH, TransportFormat.of(body));
+
+		BinaryDecoder decoder = DecoderFactory.get().binaryDecoder(body, 2, body.length - 2, null);
+		BatchTransport transport = new SpecificDatumReader<BatchTransport>(BatchTransport.class).read(null, decoder);
+
+		assertEquals("{\"name\":\"test\",\"type\":\"record\",\"fields\":[]}", transport.getContextSchema().toString());
+		assertEquals(ByteBuffer.wrap("{}".getBytes()), transport.getContextBuffer());
+		assertEquals(schema.toString(), transport.getMessageSchema().toString());
+		assertEquals(3, transport.getMessageBuffers().size());
+
+		Message message = Message.wrap(schema, transport.getMessageBuffers().get(2));
+		assertEquals(records.get(2), message.decode());
+
+	}
+
+	@Test
+	public void publishBatch_shouldThrowAnOrizuruPublisherExceptionForAnEmptyBatch() throws Exception {
+
+		// expect
+		exception.expect(OrizuruPublisherException.class);
+		exception.expectCause(IsInstanceOf.<Throwable>instanceOf(IllegalArgumentException.class));
+		exception.expectMessage("Failed to publish message");
+
+		// when
+		publisher.publishBatch(mock(Context.class), new ArrayList<>());
+
+	}
+
+	@Test
+	public void publishBatch_shouldThrowAnOrizuruPublisherExceptionForMessagesWithDifferentSchemas() throws Exception {
+
+		// expect
+		exception.expect(OrizuruPublisherException.class);
+		exception.expectCause(IsInstanceOf.<Throwable>instanceOf(IllegalArgumentException.class));
+		exception.expectMessage("Failed to publish message");
+
+		// given
+		Context context = mock(Context.class);
+		when(context.getSchemaText()).thenReturn("{\"name\":\"test\",\"type\":\"record\",\"fields\":[]}");
+		when(context.getDataBuffer()).thenReturn(ByteBuffer.wrap("{}".getBytes()));
+
+		Schema otherSchema = SchemaBuilder.record("OtherSchema").fields().name("testString").type().stringType().noDefault().endRecord();
+
+		List<GenericContainer> records = new ArrayList<>();
+		records.add(new GenericRecordBuilder(schema).set("testString", "test").build());
+		records.add(new GenericRecordBuilder(otherSchema).set("testString", "test").build());
+
+		// when
+		publisher.publishBatch(context, records);
+
+	}
+
+	@Test
+	public void publishBatch_shouldThrowAnEncodeTransportExceptionForAnInvalidContext() throws Exception {
+
+		// expect
+		exception.expect(EncodeTransportException.class);
+		exception.expectCause(IsInstanceOf.<Throwable>instanceOf(NullPointerException.class));
+		exception.expectMessage("Failed to publish message: Failed to encode transport");
+
+		// given
+		Context context = mock(Context.class);
+		when(context.getSchemaText()).thenReturn("{\"name\":\"test\",\"type\":\"record\",\"fields\":[]}");
+		when(context.getDataBuffer()).thenReturn(null);
+
+		List<GenericContainer> records = new ArrayList<>();
+		records.add(new GenericRecordBuilder(schema).set("testString", "test").build());
+
+		// when
+		publisher.publishBatch(context, records);
+
+	}
+
+	@Test
+	public void publish_shouldReportTheEncodeStageToTheStageListener() throws Exception {
+
+		// given
+		Context context = mock(Context.class);
+		when(context.getSchemaText()).thenReturn("{\"name\":\"test\",\"type\":\"record\",\"fields\":[]}");
+		when(context.getDataBuffer()).thenReturn(ByteBuffer.wrap("{}".getBytes()));
+
+		AggregatingStageListener stageListener = new AggregatingStageListener();
+		publisher.stageListener = stageListener;
+
+		List<GenericContainer> records = Arrays.asList(new GenericRecordBuilder(schema).set("testString", "test").build());
+
+		// when
+		byte[] body = publisher.publish(context, records.get(0));
+		byte[] batch = publisher.publishBatch(context, records);
+
+		// then
+		StageStatistics statistics = stageListener.getStatistics(QUEUE_NAME, Stage.ENCODE_TRANSPORT);
+		assertEquals(2, statistics.getCount());
+		assertEquals(0, statistics.getFailureCount());
+		assertEquals(body.length + batch.length, statistics.getTotalSize());
+
+	}
+
+	@Test
+	public void publish_shouldReportAFailedEncodeStageToTheStageListener() throws Exception {
+
+		// given
+		AggregatingStageListener stageListener = new AggregatingStageListener();
+		publisher.stageListener = stageListener;
+
+		// when
+		try {
+			publisher.publish(null, null);
+		} catch (OrizuruPublisherException ex) {
+
+			// then
+			assertEquals(1, stageListener.getStatistics(QUEUE_NAME, Stage.ENCODE_TRANSPORT).getFailureCount());
+			return;
+
+		}
+
+		throw new AssertionError("Expected an OrizuruPublisherException");
+
+	}
+
+	@Test
+	public void publish_shouldWriteTheSameBytesIfNoBufferReachesTheCompressionThreshold() throws Exception {
+
+		// given
+		Context context = createContext(ByteBuffer.wrap("{}".getBytes()));
+		Record record = createRecord(10);
+
+		byte[] expected = publisher.publish(context, record);
+
+		publisher.compressionCodec = new DeflateCompressionCodec();
+
+		// when
+		byte[] body = publisher.publish(context, record);
+
+		// then
+		assertArrayEquals(expected, body);
+
+	}
+
+	@Test
+	public void publish_shouldNotCompressABufferThatDoesNotGetSmaller() throws Exception {
+
+		// given
+		Context context = createContext(ByteBuffer.wrap("{}".getBytes()));
+		Record record = createRecord(2);
+
+		byte[] expected = publisher.publish(context, record);
+
+		publisher.compressionCodec = new DeflateCompressionCodec();
+		publisher.compressionThreshold = 0;
+
+		// when
+		byte[] body = publisher.publish(context, record);
+
+		// then
+		assertArrayEquals(expected, body);
+
+	}
+
+	@Test
+	public void publish_shouldThrowAnEncodeMessageContentExceptionForAnInvalidMessageToBeCompressed() throws Exception {
+
+		// expect
+		exception.expect(EncodeMessageContentException.class);
+		exception.expectCause(IsInstanceOf.<Throwable>instanceOf(ClassCastException.class));
+
+		// given
+		Context context = createContext(ByteBuffer.wrap("{}".getBytes()));
+		Record record = new GenericRecordBuilder(schema).set("testString", Boolean.TRUE).build();
+
+		publisher.compressionCodec = new DeflateCompressionCodec();
+		publisher.compressionThreshold = 0;
+
+		// when
+		publisher.publish(context, record);
+
+	}
+
+	@Test
+	public void publish_shouldCompressTheMessageFromTheCompressionThreshold() throws Exception {
+
+		// given
+		DeflateCompressionCodec codec = new DeflateCompressionCodec();
+		publisher.compressionCodec = codec;
+
+		Context context = createContext(ByteBuffer.wrap("{}".getBytes()));
+		Record record = createRecord(AbstractPublisher.DEFAULT_COMPRESSION_THRESHOLD);
+
+		Message message = new Message();
+		message.encode(record);
+
+		// when
+		byte[] body = publisher.publish(context, record);
+
+		// then
+		assertEquals(TransportFormat.COMPRESSED, TransportFormat.of(body));
+		assertEquals(DeflateCompressionCodec.ID, body[2]);
+		assertEquals(TransportFormat.MESSAGE_COMPRESSED, body[3]);
+		assertTrue(body.length < message.getData().length);
+
+		Transport transport = readTransport(body, 4);
+		assertEquals(ByteBuffer.wrap("{}".getBytes()), transport.getContextBuffer());
+		assertEquals(message.getDataBuffer(), codec.decompress(transport.getMessageBuffer()));
+
+	}
+
+	@Test
+	public void publish_shouldCompressTheContextFromTheCompressionThreshold() throws Exception {
+
+		// given
+		DeflateCompressionCodec codec = new DeflateCompressionCodec();
+		publisher.compressionCodec = codec;
+		publisher.compressionThreshold = 100;
+
+		byte[] contextData = new byte[200];
+		Arrays.fill(contextData, (byte) 'c');
+
+		Context context = createContext(ByteBuffer.wrap(contextData));
+		Record record = createRecord(200);
+
+		Message message = new Message();
+		message.encode(record);
+
+		// when
+		byte[] body = publisher.publish(context, record);
+
+		// then
+		assertEquals(TransportFormat.CONTEXT_COMPRESSED | TransportFormat.MESSAGE_COMPRESSED, body[3]);
+
+		Transport transport = readTransport(body, 4);
+		assertEquals(ByteBuffer.wrap(contextData), codec.decompress(transport.getContextBuffer()));
+		assertEquals(message.getDataBuffer(), codec.decompress(transport.getMessageBuffer()));
+
+	}
+
+	@Test
+	public void publish_shouldPublishACompressedFingerprintTransportIfASchemaRegistryIsDefined() throws Exception {
+
+		// given
+		Schema contextSchema = new Schema.Parser().parse("{\"name\":\"test\",\"type\":\"record\",\"fields\":[]}");
+
+		Context context = mock(Context.class);
+		when(context.getSchema()).thenReturn(contextSchema);
+		when(context.getDataBuffer()).thenReturn(ByteBuffer.wrap("{}".getBytes()));
+
+		Record record = createRecord(AbstractPublisher.DEFAULT_COMPRESSION_THRESHOLD);
+
+		ISchemaRegistry schemaRegistry = new InMemorySchemaRegistry();
+		DeflateCompressionCodec codec = new DeflateCompressionCodec();
+
+		Publisher compressingPublisher = new Publisher(schemaRegistry);
+		compressingPublisher.compressionCodec = codec;
+
+		// when
+		byte[] body = compressingPublisher.publish(context, record);
+
+		// then
+		assertEquals(TransportFormat.COMPRESSED_FINGERPRINT, TransportFormat.of(body));
+		assertEquals(TransportFormat.MESSAGE_COMPRESSED, body[3]);
+
+		BinaryDecoder decoder = DecoderFactory.get().binaryDecoder(body, 4, body.length - 4, null);
+		FingerprintTransport transport = new SpecificDatumReader<FingerprintTransport>(FingerprintTransport.class).read(null, decoder);
+
+		assertEquals(contextSchema, schemaRegistry.lookup(transport.getContextFingerprint()));
+		assertEquals(schema, schemaRegistry.lookup(transport.getMessageFingerprint()));
+
+		Message message = Message.wrap(schema, codec.decompress(transport.getMessageBuffer()));
+		assertEquals(record, message.decode());
+
+	}
+
+	@Test
+	public void publish_shouldPublishAFingerprintTransportIfNoBufferIsCompressed() throws Exception {
+
+		// given
+		Context context = mock(Context.class);
+		when(context.getSchema()).thenReturn(new Schema.Parser().parse("{\"name\":\"test\",\"type\":\"record\",\"fields\":[]}"));
+		when(context.getDataBuffer()).thenReturn(ByteBuffer.wrap("{}".getBytes()));
+
+		Record record = createRecord(10);
+
+		Publisher compressingPublisher = new Publisher(new InMemorySchemaRegistry());
+		byte[] expected = compressingPublisher.publish(context, record);
+
+		compressingPublisher.compressionCodec = new DeflateCompressionCodec();
+
+		// when
+		byte[] body = compressingPublisher.publish(context, record);
+
+		// then
+		assertArrayEquals(expected, body);
+
+	}
+
+	@Test
+	public void publish_shouldThrowAnEncodeTransportExceptionIfCompressionFails() throws Exception {
+
+		// expect
+		exception.expect(EncodeTransportException.class);
+		exception.expectCause(IsInstanceOf.<Throwable>instanceOf(IOException.class));
+		exception.expectMessage("Failed to publish message: Failed to encode transport");
+
+		// given
+		ICompressionCodec codec = mock(ICompressionCodec.class);
+		when(codec.compress(any())).thenThrow(new IOException("test"));
+		publisher.compressionCodec = codec;
+
+		// when
+		publisher.publish(createContext(ByteBuffer.wrap("{}".getBytes())), createRecord(AbstractPublisher.DEFAULT_COMPRESSION_THRESHOLD));
+
+	}
+
+	@Test
+	public void publish_shouldThrowAnEncodeTransportExceptionForAnInvalidCompressedTransportContext() throws Exception {
+
+		// expect
+		exception.expect(EncodeTransportException.class);
+		exception.expectCause(IsInstanceOf.<Throwable>instanceOf(NullPointerException.class));
+
+		// given
+		publisher.compressionCodec = new DeflateCompressionCodec();
+
+		// when
+		publisher.publish(createContext(null), createRecord(10));
+
+	}
+
+	private Context createContext(ByteBuffer contextBuffer) {
+
+		Context context = mock(Context.class);
+		when(context.getSchemaText()).thenReturn("{\"name\":\"test\",\"type\":\"record\",\"fields\":[]}");
+		when(context.getDataBuffer()).thenReturn(contextBuffer);
+
+		return context;
+
+	}
+
+	private Record createRecord(int length) {
+
+		char[] text = new char[length];
+		Arrays.fill(text, 'a');
+
+		GenericRecordBuilder builder = new GenericRecordBuilder(schema);
+		builder.set("testString", new String(text));
+		return builder.build();
+
+	}
+
+	private Transport readTransport(byte[] body, int offset) throws IOException {
+		BinaryDecoder decoder = DecoderFactory.get().binaryDecoder(body, offset, body.length - offset, null);
+		return new SpecificDatumReader<Transport>(Transport.class).read(null, decoder);
+	}
+
 	private class Publisher extends AbstractPublisher<GenericContainer> {
 
 		public Publisher() {
 			super(QUEUE_NAME);
 		}
 
+		public Publisher(ISchemaRegistry schemaRegistry) {
+			super(QUEUE_NAME, schemaRegistry);
+		}
+
 	}
 }
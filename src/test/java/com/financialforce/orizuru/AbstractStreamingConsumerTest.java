@@ -0,0 +1,300 @@
+/**
+ * Copyright (c) 2017-2018, FinancialForce.com, inc
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ *   are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ *      this list of conditions and the following disclaimer in the documentation
+ *      and/or other materials provided with the distribution.
+ * - Neither the name of the FinancialForce.com, inc nor the names of its contributors
+ *      may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ *  OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL
+ *  THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ *  EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ *  OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY
+ *  OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ **/
+
+package com.financialforce.orizuru;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.avro.AvroRuntimeException;
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaBuilder;
+import org.apache.avro.generic.GenericContainer;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.generic.GenericRecordBuilder;
+import org.hamcrest.core.IsInstanceOf;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import com.financialforce.orizuru.exception.consumer.decode.DecodeMessageContentException;
+import com.financialforce.orizuru.exception.consumer.handler.HandleMessageException;
+import com.financialforce.orizuru.instrumentation.AggregatingStageListener;
+import com.financialforce.orizuru.instrumentation.Stage;
+import com.financialforce.orizuru.interfaces.IPublisher;
+import com.financialforce.orizuru.interfaces.ISchemaRegistry;
+import com.financialforce.orizuru.message.ArrayStream;
+import com.financialforce.orizuru.message.Context;
+import com.financialforce.orizuru.registry.InMemorySchemaRegistry;
+import com.financialforce.orizuru.util.TestMessage;
+
+public class AbstractStreamingConsumerTest {
+
+	private static final String QUEUE_NAME = "testQueue";
+
+	private static final Schema SCHEMA = SchemaBuilder.record("Lines").namespace("com.financialforce.orizuru.AbstractStreamingConsumerTest")
+			.fields().requiredString("header").name("lines").type().array().items(TestMessage.SCHEMA$).noDefault()
+			.endRecord();
+
+	@Rule
+	public final ExpectedException exception = ExpectedException.none();
+
+	@Test
+	public void constructor_shouldDecodeTheItemsIntoTheSchemaOfTheItemType() {
+
+		// when
+		Consumer consumer = new Consumer();
+
+		// then
+		assertEquals(TestMessage.SCHEMA$, consumer.itemReaderSchema);
+		assertEquals("lines", consumer.getFieldName());
+		assertEquals(QUEUE_NAME, consumer.getQueueName());
+
+	}
+
+	@Test
+	public void constructor_shouldSetTheSchemaRegistry() {
+
+		// given
+		InMemorySchemaRegistry schemaRegistry = new InMemorySchemaRegistry();
+
+		// when
+		Consumer consumer = new Consumer(schemaRegistry);
+
+		// then
+		assertSame(schemaRegistry, consumer.schemaRegistry);
+		assertEquals(TestMessage.SCHEMA$, consumer.itemReaderSchema);
+
+	}
+
+	@Test
+	public void constructor_shouldUseTheGivenItemReaderSchema() {
+
+		// given
+		Schema itemReaderSchema = SchemaBuilder.record("TestMessage").namespace("com.financialforce.orizuru.util").fields()
+				.endRecord();
+
+		// when
+		AbstractStreamingConsumer<GenericRecord, GenericRecord> consumer = new AbstractStreamingConsumer<GenericRecord, GenericRecord>(
+				QUEUE_NAME, new InMemorySchemaRegistry(), "lines", itemReaderSchema) {
+
+			@Override
+			public GenericRecord handleItems(Context context, ArrayStream<GenericRecord> items) throws HandleMessageException {
+				return null;
+			}
+
+		};
+
+		// then
+		assertSame(itemReaderSchema, consumer.itemReaderSchema);
+
+	}
+
+	@Test
+	public void consume_shouldPassTheItemsToTheHandlerAsTheyAreDecoded() throws Exception {
+
+		// given
+		IPublisher<GenericContainer> publisher = mockPublisher();
+		when(publisher.publish(any(), any())).thenReturn(new byte[] { 1 });
+
+		Consumer consumer = new Consumer();
+		consumer.publisher = publisher;
+
+		// when
+		byte[] outgoingMessage = consumer.consume(createTransport("a", "b", "c"));
+
+		// then
+		assertArrayEquals(new byte[] { 1 }, outgoingMessage);
+		assertEquals(Arrays.asList("a", "b", "c"), consumer.names);
+
+	}
+
+	@Test
+	public void consume_shouldPassTheItemsOfAMessageThatHasAlreadyBeenDecoded() throws Exception {
+
+		// given
+		Consumer consumer = new Consumer();
+
+		// when
+		byte[] outgoingMessage = consumer.consume(new Context(), createRecord("a", "b"));
+
+		// then
+		assertNull(outgoingMessage);
+		assertEquals(Arrays.asList("a", "b"), consumer.names);
+
+	}
+
+	@Test
+	public void consume_shouldPassTheItemsOfEachMessageInABatch() throws Exception {
+
+		// given
+		Consumer consumer = new Consumer();
+
+		// when
+		consumer.consumeBatch(Arrays.asList(createTransport("a"), createTransport("b", "c")));
+
+		// then
+		assertEquals(Arrays.asList("a", "b", "c"), consumer.names);
+
+	}
+
+	@Test
+	public void consume_throwsAHandleMessageExceptionForAMessageWithoutTheArrayField() throws Exception {
+
+		// expect
+		exception.expect(HandleMessageException.class);
+		exception.expectCause(IsInstanceOf.<Throwable>instanceOf(IllegalArgumentException.class));
+
+		// given
+		GenericRecord record = new GenericRecordBuilder(TestMessage.SCHEMA$).set("name", "a").build();
+
+		// when
+		new Consumer().consume(new Context(), record);
+
+	}
+
+	@Test
+	public void consume_throwsADecodeMessageContentExceptionForAMessageWithoutTheArrayField() throws Exception {
+
+		// expect
+		exception.expect(DecodeMessageContentException.class);
+		exception.expectCause(IsInstanceOf.<Throwable>instanceOf(IllegalArgumentException.class));
+
+		// given
+		GenericRecord record = new GenericRecordBuilder(TestMessage.SCHEMA$).set("name", "a").build();
+
+		// when
+		new Consumer().consume(createTransport(record));
+
+	}
+
+	@Test
+	public void consume_throwsADecodeMessageContentExceptionIfAnItemCannotBeDecoded() throws Exception {
+
+		// expect
+		exception.expect(DecodeMessageContentException.class);
+		exception.expectCause(IsInstanceOf.<Throwable>instanceOf(AvroRuntimeException.class));
+
+		// given
+		byte[] body = createTransport("a", "b");
+		body[body.length - 3] = 0x7E;
+
+		// when
+		new Consumer().consume(body);
+
+	}
+
+	@Test
+	public void consume_shouldReportTheDecodeAndHandleStagesToTheStageListener() throws Exception {
+
+		// given
+		AggregatingStageListener stageListener = new AggregatingStageListener();
+
+		Consumer consumer = new Consumer();
+		consumer.stageListener = stageListener;
+
+		// when
+		consumer.consume(createTransport("a"));
+
+		// then
+		assertEquals(1, stageListener.getStatistics(QUEUE_NAME, Stage.DECODE_MESSAGE).getCount());
+		assertEquals(1, stageListener.getStatistics(QUEUE_NAME, Stage.HANDLE_MESSAGE).getCount());
+
+	}
+
+	private GenericRecord createRecord(String... names) {
+
+		List<TestMessage> lines = new ArrayList<>();
+		for (String name : names) {
+			TestMessage line = new TestMessage();
+			line.setName(name);
+			lines.add(line);
+		}
+
+		return new GenericRecordBuilder(SCHEMA).set("header", "header").set("lines", lines).build();
+
+	}
+
+	private byte[] createTransport(String... names) throws Exception {
+		return createTransport(createRecord(names));
+	}
+
+	private byte[] createTransport(GenericRecord record) throws Exception {
+
+		Context context = mock(Context.class);
+		when(context.getSchemaText()).thenReturn("{\"name\":\"test\",\"type\":\"record\",\"fields\":[]}");
+		when(context.getDataBuffer()).thenReturn(ByteBuffer.wrap(new byte[0]));
+
+		AbstractPublisher<GenericContainer> publisher = new AbstractPublisher<GenericContainer>(QUEUE_NAME) {
+		};
+
+		return publisher.publish(context, record);
+
+	}
+
+	@SuppressWarnings("unchecked")
+	private <T extends GenericContainer> IPublisher<T> mockPublisher() {
+		return mock(IPublisher.class);
+	}
+
+	private class Consumer extends AbstractStreamingConsumer<TestMessage, GenericContainer> {
+
+		private final List<String> names = new ArrayList<>();
+
+		public Consumer() {
+			super(QUEUE_NAME, "lines");
+		}
+
+		public Consumer(ISchemaRegistry schemaRegistry) {
+			super(QUEUE_NAME, schemaRegistry, "lines");
+		}
+
+		@Override
+		public GenericContainer handleItems(Context context, ArrayStream<TestMessage> items) throws HandleMessageException {
+
+			TestMessage item = null;
+			while (items.hasNext()) {
+				item = items.next(item);
+				names.add(item.getName().toString());
+			}
+
+			return null;
+
+		}
+
+	}
+
+}
@@ -0,0 +1,546 @@
+/**
+ * Copyright (c) 2017-2018, FinancialForce.com, inc
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ *   are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ *      this list of conditions and the following disclaimer in the documentation
+ *      and/or other materials provided with the distribution.
+ * - Neither the name of the FinancialForce.com, inc nor the names of its contributors
+ *      may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ *  OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL
+ *  THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ *  EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ *  OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY
+ *  OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ **/
+
+package com.financialforce.orizuru;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaBuilder;
+import org.apache.avro.generic.GenericContainer;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.generic.GenericRecordBuilder;
+import org.hamcrest.core.IsInstanceOf;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import com.financialforce.orizuru.cache.DeduplicationCache;
+import com.financialforce.orizuru.codec.TransportFormat;
+import com.financialforce.orizuru.exception.consumer.handler.HandleMessageException;
+import com.financialforce.orizuru.exception.publisher.OrizuruPublisherException;
+import com.financialforce.orizuru.message.Context;
+import com.financialforce.orizuru.util.TestMessage;
+
+public class LocalPublisherTest {
+
+	private static final String QUEUE_NAME = "testQueue";
+
+	@Rule
+	public final ExpectedException exception = ExpectedException.none();
+
+	@Test
+	public void publish_shouldPassTheMessageDirectlyToTheNextConsumer() throws Exception {
+
+		// given
+		Context context = createContext();
+		TestMessage message = createMessage("test");
+
+		SpecificConsumer consumer = new SpecificConsumer();
+		LocalPublisher<TestMessage> publisher = new LocalPublisher<>(consumer);
+
+		// when
+		byte[] outgoingMessage = publisher.publish(context, message);
+
+		// then
+		assertNull(outgoingMessage);
+		assertSame(message, consumer.inputs.get(0));
+		assertSame(context, consumer.contexts.get(0));
+
+	}
+
+	@Test
+	public void publish_shouldReturnTheBytesPublishedByTheNextConsumer() throws Exception {
+
+		// given
+		SpecificConsumer consumer = new SpecificConsumer();
+		consumer.publisher = new AbstractPublisher<TestMessage>("nextQueue") {
+		};
+
+		LocalPublisher<TestMessage> publisher = new LocalPublisher<>(consumer);
+
+		// when
+		byte[] outgoingMessage = publisher.publish(createContext(), createMessage("test"));
+
+		// then
+		assertEquals(TransportFormat.SCHEMA, TransportFormat.of(outgoingMessage));
+
+		SpecificConsumer nextConsumer = new SpecificConsumer();
+		nextConsumer.consume(outgoingMessage);
+		assertEquals("test", nextConsumer.inputs.get(0).getName().toString());
+
+	}
+
+	@Test
+	public void publish_shouldCopyTheMessageIfRequired() throws Exception {
+
+		// given
+		TestMessage message = createMessage("test");
+
+		SpecificConsumer consumer = new SpecificConsumer();
+		LocalPublisher<TestMessage> publisher = new LocalPublisher<>(consumer, true);
+
+		// when
+		publisher.publish(createContext(), message);
+
+		// then
+		assertNotSame(message, consumer.inputs.get(0));
+		assertEquals(message, consumer.inputs.get(0));
+
+	}
+
+	@Test
+	public void publish_shouldCopyAGenericRecordIntoTheGeneratedClass() throws Exception {
+
+		// given
+		GenericRecord message = new GenericRecordBuilder(TestMessage.SCHEMA$).set("name", "test").build();
+
+		SpecificConsumer consumer = new SpecificConsumer();
+		LocalPublisher<TestMessage> publisher = new LocalPublisher<>(consumer);
+
+		// when
+		publisher.publish(createContext(), toTestMessage(message));
+
+		// then
+		assertTrue(consumer.inputs.get(0) instanceof TestMessage);
+		assertEquals("test", consumer.inputs.get(0).getName().toString());
+
+	}
+
+	@Test
+	public void publish_shouldPassAnyMessageToAGenericConsumer() throws Exception {
+
+		// given
+		GenericRecord message = new GenericRecordBuilder(createSchema()).set("name", "test").build();
+
+		GenericConsumer consumer = new GenericConsumer();
+		LocalPublisher<GenericContainer> publisher = new LocalPublisher<>(consumer);
+
+		// when
+		publisher.publish(createContext(), message);
+
+		// then
+		assertSame(message, consumer.inputs.get(0));
+
+	}
+
+	@Test
+	public void publish_shouldEncodeTheMessageIfTheNextConsumerReadsADifferentSchema() throws Exception {
+
+		// given
+		Schema schema = SchemaBuilder.record("TestMessage").namespace("com.financialforce.orizuru.util").fields()
+				.name("name").type().stringType().noDefault()
+				.name("extra").type().intType().noDefault().endRecord();
+		GenericRecord message = new GenericRecordBuilder(schema).set("name", "test").set("extra", 1).build();
+
+		SpecificConsumer consumer = new SpecificConsumer();
+		LocalPublisher<TestMessage> publisher = new LocalPublisher<>(consumer);
+
+		// when
+		publisher.publish(createContext(), toTestMessage(message));
+
+		// then
+		assertTrue(consumer.inputs.get(0) instanceof TestMessage);
+		assertEquals("test", consumer.inputs.get(0).getName().toString());
+
+	}
+
+	@Test
+	public void publish_shouldApplyTheMessageFilterOfTheNextConsumer() throws Exception {
+
+		// given
+		SpecificConsumer consumer = new SpecificConsumer();
+		consumer.messageFilter = (queueName, context, body) -> false;
+
+		LocalPublisher<TestMessage> publisher = new LocalPublisher<>(consumer);
+
+		// when
+		byte[] outgoingMessage = publisher.publish(createContext(), createMessage("test"));
+
+		// then
+		assertNull(outgoingMessage);
+		assertTrue(consumer.inputs.isEmpty());
+
+	}
+
+	@Test
+	public void publish_shouldNotHandleAMessageAlreadyConsumedByTheNextConsumer() throws Exception {
+
+		// given
+		SpecificConsumer consumer = new SpecificConsumer();
+		consumer.deduplicationCache = new DeduplicationCache(10, 1, TimeUnit.MINUTES);
+		consumer.publisher = new AbstractPublisher<TestMessage>("nextQueue") {
+		};
+
+		LocalPublisher<TestMessage> publisher = new LocalPublisher<>(consumer);
+		byte[] firstOutgoingMessage = publisher.publish(createContext(), createMessage("test"));
+
+		// when
+		byte[] outgoingMessage = publisher.publish(createContext(), createMessage("test"));
+
+		// then
+		assertArrayEquals(firstOutgoingMessage, outgoingMessage);
+		assertEquals(1, consumer.inputs.size());
+
+	}
+
+	@Test
+	public void publish_throwsOrizuruPublisherExceptionForANullMessage() throws Exception {
+
+		// expect
+		exception.expect(OrizuruPublisherException.class);
+		exception.expectCause(IsInstanceOf.<Throwable>instanceOf(NullPointerException.class));
+
+		// given
+		LocalPublisher<TestMessage> publisher = new LocalPublisher<>(new SpecificConsumer());
+
+		// when
+		publisher.publish(createContext(), null);
+
+	}
+
+	@Test
+	public void publish_shouldPropagateExceptionsFromTheNextConsumer() throws Exception {
+
+		// expect
+		exception.expect(HandleMessageException.class);
+
+		// given
+		SpecificConsumer consumer = new SpecificConsumer() {
+
+			@Override
+			public TestMessage handleMessage(Context context, TestMessage input) throws HandleMessageException {
+				throw new HandleMessageException(new IllegalStateException());
+			}
+
+		};
+
+		LocalPublisher<TestMessage> publisher = new LocalPublisher<>(consumer);
+
+		// when
+		publisher.publish(createContext(), createMessage("test"));
+
+	}
+
+	@Test
+	public void publish_shouldPutTheBytesPublishedByTheNextConsumerIntoTheBuffer() throws Exception {
+
+		// given
+		SpecificConsumer consumer = new SpecificConsumer();
+		consumer.publisher = new AbstractPublisher<TestMessage>("nextQueue") {
+		};
+
+		LocalPublisher<TestMessage> publisher = new LocalPublisher<>(consumer);
+		ByteBuffer destination = ByteBuffer.allocate(1024);
+
+		// when
+		ByteBuffer result = publisher.publish(createContext(), createMessage("test"), destination);
+
+		// then
+		assertSame(destination, result);
+		assertTrue(destination.position() > 0);
+
+	}
+
+	@Test
+	public void publish_shouldLeaveTheBufferUnchangedIfTheNextConsumerDoesNotPublish() throws Exception {
+
+		// given
+		LocalPublisher<TestMessage> publisher = new LocalPublisher<>(new SpecificConsumer());
+		ByteBuffer destination = ByteBuffer.allocate(16);
+
+		// when
+		publisher.publish(createContext(), createMessage("test"), destination);
+
+		// then
+		assertEquals(0, destination.position());
+
+	}
+
+	@Test
+	public void publish_throwsOrizuruPublisherExceptionIfTheBufferIsTooSmall() throws Exception {
+
+		// expect
+		exception.expect(OrizuruPublisherException.class);
+		exception.expectCause(IsInstanceOf.<Throwable>instanceOf(BufferOverflowException.class));
+
+		// given
+		SpecificConsumer consumer = new SpecificConsumer();
+		consumer.publisher = new AbstractPublisher<TestMessage>("nextQueue") {
+		};
+
+		LocalPublisher<TestMessage> publisher = new LocalPublisher<>(consumer);
+
+		// when
+		publisher.publish(createContext(), createMessage("test"), ByteBuffer.allocate(1));
+
+	}
+
+	@Test
+	public void publishBatch_shouldPassTheMessagesDirectlyToTheNextConsumer() throws Exception {
+
+		// given
+		TestMessage first = createMessage("first");
+		TestMessage second = createMessage("second");
+
+		SpecificConsumer consumer = new SpecificConsumer();
+		consumer.publisher = new AbstractPublisher<TestMessage>("nextQueue") {
+		};
+
+		LocalPublisher<TestMessage> publisher = new LocalPublisher<>(consumer);
+
+		// when
+		byte[] outgoingMessage = publisher.publishBatch(createContext(), Arrays.asList(first, second));
+
+		// then
+		assertEquals(TransportFormat.BATCH, TransportFormat.of(outgoingMessage));
+		assertSame(first, consumer.inputs.get(0));
+		assertSame(second, consumer.inputs.get(1));
+
+	}
+
+	@Test
+	public void publishBatch_shouldEncodeTheMessagesIfTheNextConsumerReadsADifferentSchema() throws Exception {
+
+		// given
+		Schema schema = SchemaBuilder.record("TestMessage").namespace("com.financialforce.orizuru.util").fields()
+				.name("name").type().stringType().noDefault()
+				.name("extra").type().intType().noDefault().endRecord();
+		GenericRecord message = new GenericRecordBuilder(schema).set("name", "test").set("extra", 1).build();
+
+		SpecificConsumer consumer = new SpecificConsumer();
+		LocalPublisher<TestMessage> publisher = new LocalPublisher<>(consumer);
+
+		List<TestMessage> messages = toTestMessage(Arrays.asList(message));
+
+		// when
+		publisher.publishBatch(createContext(), messages);
+
+		// then
+		assertEquals("test", consumer.inputs.get(0).getName().toString());
+
+	}
+
+	@Test
+	public void publishBatch_throwsOrizuruPublisherExceptionForAnEmptyBatch() throws Exception {
+
+		// expect
+		exception.expect(OrizuruPublisherException.class);
+		exception.expectCause(IsInstanceOf.<Throwable>instanceOf(IllegalArgumentException.class));
+
+		// given
+		LocalPublisher<TestMessage> publisher = new LocalPublisher<>(new SpecificConsumer());
+
+		// when
+		publisher.publishBatch(createContext(), new ArrayList<>());
+
+	}
+
+	@Test
+	public void publishBatch_throwsOrizuruPublisherExceptionForMixedSchemas() throws Exception {
+
+		// expect
+		exception.expect(OrizuruPublisherException.class);
+		exception.expectCause(IsInstanceOf.<Throwable>instanceOf(IllegalArgumentException.class));
+
+		// given
+		GenericRecord other = new GenericRecordBuilder(createSchema()).set("name", "other").build();
+		LocalPublisher<GenericContainer> publisher = new LocalPublisher<>(new GenericConsumer());
+
+		// when
+		publisher.publishBatch(createContext(), Arrays.asList(createMessage("test"), other));
+
+	}
+
+	@Test
+	public void getQueueName_shouldReturnTheQueueNameOfTheNextConsumer() {
+
+		// given
+		LocalPublisher<TestMessage> publisher = new LocalPublisher<>(new SpecificConsumer());
+
+		// when
+		String queueName = publisher.getQueueName();
+
+		// then
+		assertEquals(QUEUE_NAME, queueName);
+
+	}
+
+	@Test
+	public void consume_shouldPassTheOutgoingMessageToTheNextConsumerInTheSameJvm() throws Exception {
+
+		// given
+		SpecificConsumer next = new SpecificConsumer();
+
+		GenericConsumer first = new GenericConsumer() {
+
+			@Override
+			public GenericContainer handleMessage(Context context, GenericContainer input) throws HandleMessageException {
+				super.handleMessage(context, input);
+				return createMessage("forwarded");
+			}
+
+		};
+		first.publisher = new LocalPublisher<>(new ForwardingConsumer(next));
+
+		AbstractPublisher<TestMessage> source = new AbstractPublisher<TestMessage>(QUEUE_NAME) {
+		};
+		byte[] body = source.publish(createContext(), createMessage("test"));
+
+		// when
+		first.consume(body);
+
+		// then
+		assertEquals("test", ((TestMessage) first.inputs.get(0)).getName().toString());
+		assertEquals("forwarded", next.inputs.get(0).getName().toString());
+
+	}
+
+	@Test
+	public void publish_shouldNotCopyAGenericRecordIntoTheGeneratedClassForAGenericConsumer() throws Exception {
+
+		// given
+		GenericRecord message = new GenericRecordBuilder(TestMessage.SCHEMA$).set("name", "test").build();
+
+		List<GenericRecord> inputs = new ArrayList<>();
+		AbstractGenericConsumer<GenericRecord> consumer = new AbstractGenericConsumer<GenericRecord>(QUEUE_NAME, null, TestMessage.SCHEMA$) {
+
+			@Override
+			public GenericRecord handleMessage(Context context, GenericRecord input) throws HandleMessageException {
+				inputs.add(input);
+				return input;
+			}
+
+		};
+
+		LocalPublisher<GenericRecord> publisher = new LocalPublisher<>(consumer, true);
+
+		// when
+		publisher.publish(createContext(), message);
+
+		// then
+		assertNotSame(message, inputs.get(0));
+		assertEquals(message, inputs.get(0));
+		assertTrue(!(inputs.get(0) instanceof TestMessage));
+
+	}
+
+	private Context createContext() {
+		Context context = mock(Context.class);
+		when(context.getSchemaText()).thenReturn("{\"name\":\"test\",\"type\":\"record\",\"fields\":[]}");
+		when(context.getDataBuffer()).thenReturn(ByteBuffer.wrap(new byte[0]));
+		return context;
+	}
+
+	private static TestMessage createMessage(String name) {
+		TestMessage message = new TestMessage();
+		message.setName(name);
+		return message;
+	}
+
+	private Schema createSchema() {
+		return SchemaBuilder.record("Other").namespace("com.financialforce.orizuru.LocalPublisherTest").fields()
+				.name("name").type().stringType().noDefault().endRecord();
+	}
+
+	/**
+	 * Publishers are typed by the generated class, so records that are not are passed through an unchecked cast.
+	 */
+	@SuppressWarnings("unchecked")
+	private static <T> T toTestMessage(Object message) {
+		return (T) message;
+	}
+
+	private static class SpecificConsumer extends AbstractConsumer<TestMessage, TestMessage> {
+
+		private final List<Context> contexts = new ArrayList<>();
+
+		private final List<TestMessage> inputs = new ArrayList<>();
+
+		SpecificConsumer() {
+			super(QUEUE_NAME);
+		}
+
+		@Override
+		public TestMessage handleMessage(Context context, TestMessage input) throws HandleMessageException {
+			contexts.add(context);
+			inputs.add(input);
+			return input;
+		}
+
+	}
+
+	private static class GenericConsumer extends AbstractConsumer<GenericContainer, GenericContainer> {
+
+		protected final List<GenericContainer> inputs = new ArrayList<>();
+
+		GenericConsumer() {
+			super(QUEUE_NAME);
+		}
+
+		@Override
+		public GenericContainer handleMessage(Context context, GenericContainer input) throws HandleMessageException {
+			inputs.add(input);
+			return input;
+		}
+
+	}
+
+	/**
+	 * Passes its input on to the next consumer, with the generic type the first consumer publishes.
+	 */
+	private static class ForwardingConsumer extends AbstractConsumer<GenericContainer, GenericContainer> {
+
+		private final SpecificConsumer next;
+
+		ForwardingConsumer(SpecificConsumer next) {
+			super(QUEUE_NAME);
+			this.next = next;
+		}
+
+		@Override
+		public GenericContainer handleMessage(Context context, GenericContainer input) throws HandleMessageException {
+			next.inputs.add((TestMessage) input);
+			return input;
+		}
+
+	}
+
+}
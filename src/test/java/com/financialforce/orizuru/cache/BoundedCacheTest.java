@@ -0,0 +1,229 @@
+/**
+ * Copyright (c) 2017-2018, FinancialForce.com, inc
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ *   are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ *      this list of conditions and the following disclaimer in the documentation
+ *      and/or other materials provided with the distribution.
+ * - Neither the name of the FinancialForce.com, inc nor the names of its contributors
+ *      may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ *  OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL
+ *  THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ *  EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ *  OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY
+ *  OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ **/
+
+package com.financialforce.orizuru.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+public class BoundedCacheTest {
+
+	@Rule
+	public final ExpectedException exception = ExpectedException.none();
+
+	@Test
+	public void constructor_shouldThrowAnIllegalArgumentExceptionIfTheMaximumSizeIsLessThanOne() {
+
+		// expect
+		exception.expect(IllegalArgumentException.class);
+		exception.expectMessage("The maximum size must be at least 1");
+
+		// when
+		new BoundedCache<String, String>(0);
+
+	}
+
+	@Test
+	public void get_shouldLoadTheValueOnlyOnce() {
+
+		// given
+		AtomicInteger loadCount = new AtomicInteger();
+		BoundedCache<String, String> cache = new BoundedCache<>(2);
+
+		// when
+		String first = cache.get("key", key -> key + loadCount.incrementAndGet());
+		String second = cache.get("key", key -> key + loadCount.incrementAndGet());
+
+		// then
+		assertSame(first, second);
+		assertEquals("key1", second);
+		assertEquals(1, loadCount.get());
+		assertEquals(1, cache.getHitCount());
+		assertEquals(1, cache.getMissCount());
+		assertEquals(1, cache.size());
+
+	}
+
+	@Test
+	public void get_shouldEvictTheLeastRecentlyUsedEntry() throws Exception {
+
+		// given
+		BoundedCache<String, String> cache = new BoundedCache<>(2);
+		cache.get("a", key -> key);
+		Thread.sleep(1);
+		cache.get("b", key -> key);
+		Thread.sleep(1);
+		cache.get("a", key -> key);
+		Thread.sleep(1);
+
+		// when
+		cache.get("c", key -> key);
+
+		// then
+		assertEquals(2, cache.size());
+		assertEquals(1, cache.getEvictionCount());
+		assertEquals("a", cache.get("a", key -> "reloaded"));
+		assertEquals("reloaded", cache.get("b", key -> "reloaded"));
+
+	}
+
+	@Test
+	public void get_shouldNotCacheAValueIfTheLoaderFails() {
+
+		// given
+		BoundedCache<String, String> cache = new BoundedCache<>(2);
+
+		try {
+			cache.get("key", key -> {
+				throw new IllegalStateException("test");
+			});
+		} catch (IllegalStateException expected) {
+			// expected
+		}
+
+		// when
+		String value = cache.get("key", key -> "value");
+
+		// then
+		assertEquals("value", value);
+		assertEquals(2, cache.getMissCount());
+
+	}
+
+	@Test
+	public void getIfPresent_shouldReturnNullWithoutLoadingAMissingValue() {
+
+		// given
+		BoundedCache<String, String> cache = new BoundedCache<>(2);
+		cache.put("key", "value");
+
+		// when
+		String present = cache.getIfPresent("key");
+		String missing = cache.getIfPresent("other");
+
+		// then
+		assertEquals("value", present);
+		assertNull(missing);
+		assertEquals(1, cache.getHitCount());
+		assertEquals(1, cache.getMissCount());
+		assertEquals(1, cache.size());
+
+	}
+
+	@Test
+	public void put_shouldReplaceTheValueAndEvictTheLeastRecentlyUsedEntry() throws Exception {
+
+		// given
+		BoundedCache<String, String> cache = new BoundedCache<>(2);
+		cache.put("a", "first");
+		Thread.sleep(1);
+		cache.put("b", "second");
+		Thread.sleep(1);
+		cache.put("a", "replaced");
+		Thread.sleep(1);
+
+		// when
+		cache.put("c", "third");
+
+		// then
+		assertEquals(2, cache.size());
+		assertEquals("replaced", cache.getIfPresent("a"));
+		assertNull(cache.getIfPresent("b"));
+
+	}
+
+	@Test
+	public void put_shouldEvictTheLeastRecentlyUsedEntriesInABatch() throws Exception {
+
+		// given
+		BoundedCache<Integer, Integer> cache = new BoundedCache<>(32);
+		for (int i = 0; i < 32; i++) {
+			cache.put(i, i);
+			Thread.sleep(1);
+		}
+
+		// when
+		cache.put(32, 32);
+		cache.put(33, 33);
+
+		// then
+		assertEquals(31, cache.size());
+		assertEquals(3, cache.getEvictionCount());
+		assertNull(cache.getIfPresent(0));
+		assertNull(cache.getIfPresent(1));
+		assertNull(cache.getIfPresent(2));
+		assertEquals(Integer.valueOf(3), cache.getIfPresent(3));
+		assertEquals(Integer.valueOf(33), cache.getIfPresent(33));
+
+	}
+
+	@Test
+	public void remove_shouldOnlyRemoveTheGivenValue() {
+
+		// given
+		BoundedCache<String, String> cache = new BoundedCache<>(2);
+		String value = new String("value");
+		cache.put("key", value);
+
+		// when
+		boolean removedOther = cache.remove("key", new String("value"));
+		boolean removed = cache.remove("key", value);
+		boolean removedMissing = cache.remove("key", value);
+
+		// then
+		assertFalse(removedOther);
+		assertTrue(removed);
+		assertFalse(removedMissing);
+		assertEquals(0, cache.size());
+
+	}
+
+	@Test
+	public void clear_shouldRemoveAllEntries() {
+
+		// given
+		BoundedCache<String, String> cache = new BoundedCache<>(2);
+		cache.get("key", key -> key);
+
+		// when
+		cache.clear();
+
+		// then
+		assertEquals(0, cache.size());
+		assertEquals(2, cache.getMaximumSize());
+
+	}
+
+}
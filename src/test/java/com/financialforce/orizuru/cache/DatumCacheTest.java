@@ -0,0 +1,241 @@
+/**
+ * Copyright (c) 2017-2018, FinancialForce.com, inc
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ *   are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ *      this list of conditions and the following disclaimer in the documentation
+ *      and/or other materials provided with the distribution.
+ * - Neither the name of the FinancialForce.com, inc nor the names of its contributors
+ *      may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ *  OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL
+ *  THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ *  EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ *  OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY
+ *  OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ **/
+
+package com.financialforce.orizuru.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaBuilder;
+import org.apache.avro.generic.GenericData.Record;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.generic.GenericRecordBuilder;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.DatumReader;
+import org.apache.avro.io.DatumWriter;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.io.EncoderFactory;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.financialforce.orizuru.util.TestMessage;
+
+public class DatumCacheTest {
+
+	private Schema writerSchema;
+	private Schema readerSchema;
+
+	@Before
+	public void doBefore() {
+
+		writerSchema = SchemaBuilder.record("TestSchema").namespace("com.financialforce.orizuru.cache")
+				.fields().name("first").type().stringType().noDefault()
+				.name("second").type().stringType().noDefault().endRecord();
+
+		readerSchema = SchemaBuilder.record("TestSchema").namespace("com.financialforce.orizuru.cache")
+				.fields().name("second").type().stringType().noDefault().endRecord();
+
+	}
+
+	@Test
+	public void getInstance_shouldReturnTheSharedCache() {
+
+		// when
+		DatumCache cache = DatumCache.getInstance();
+
+		// then
+		assertSame(cache, DatumCache.getInstance());
+
+	}
+
+	@Test
+	public void getReader_shouldReturnTheSameReaderOnTheSameThread() {
+
+		// given
+		DatumCache cache = new DatumCache(2);
+
+		// when
+		DatumReader<Record> first = cache.getReader(writerSchema);
+		DatumReader<Record> second = cache.getReader(writerSchema);
+
+		// then
+		assertSame(first, second);
+		assertEquals(1, cache.getReaders().getHitCount());
+		assertEquals(1, cache.getReaders().getMissCount());
+
+	}
+
+	@Test
+	public void getReader_shouldReturnADifferentReaderOnAnotherThread() throws Exception {
+
+		// given
+		DatumCache cache = new DatumCache(2);
+		DatumReader<Record> reader = cache.getReader(writerSchema);
+
+		AtomicReference<DatumReader<Record>> otherReader = new AtomicReference<>();
+		Thread thread = new Thread(() -> otherReader.set(cache.getReader(writerSchema)));
+
+		// when
+		thread.start();
+		thread.join();
+
+		// then
+		assertNotSame(reader, otherReader.get());
+		assertEquals(1, cache.getReaders().size());
+
+	}
+
+	@Test
+	public void getReader_shouldResolveTheWriterSchemaIntoTheReaderSchema() throws Exception {
+
+		// given
+		DatumCache cache = new DatumCache(2);
+
+		GenericRecordBuilder builder = new GenericRecordBuilder(writerSchema);
+		builder.set("first", "one");
+		builder.set("second", "two");
+
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		BinaryEncoder encoder = EncoderFactory.get().binaryEncoder(baos, null);
+		cache.<GenericRecord>getWriter(writerSchema).write(builder.build(), encoder);
+		encoder.flush();
+
+		DatumReader<GenericRecord> reader = cache.getReader(writerSchema, readerSchema);
+
+		// when
+		GenericRecord result = reader.read(null, DecoderFactory.get().binaryDecoder(baos.toByteArray(), null));
+
+		// then
+		assertEquals("two", result.get("second").toString());
+		assertNull(result.get("first"));
+		assertSame(reader, cache.getReader(writerSchema, readerSchema));
+
+	}
+
+	@Test
+	public void getGenericReader_shouldReadGenericRecordsEvenIfThereIsAGeneratedClass() throws Exception {
+
+		// given
+		DatumCache cache = new DatumCache(2);
+
+		TestMessage message = new TestMessage();
+		message.setName("test");
+
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		BinaryEncoder encoder = EncoderFactory.get().binaryEncoder(baos, null);
+		cache.<TestMessage>getGenericWriter(TestMessage.SCHEMA$).write(message, encoder);
+		encoder.flush();
+
+		DatumReader<GenericRecord> reader = cache.getGenericReader(TestMessage.SCHEMA$, TestMessage.SCHEMA$);
+
+		// when
+		GenericRecord result = reader.read(null, DecoderFactory.get().binaryDecoder(baos.toByteArray(), null));
+
+		// then
+		assertEquals(Record.class, result.getClass());
+		assertEquals("test", result.get("name").toString());
+
+	}
+
+	@Test
+	public void getGenericReader_shouldBeCachedSeparatelyFromTheSpecificReader() {
+
+		// given
+		DatumCache cache = new DatumCache(2);
+		DatumReader<Record> specificReader = cache.getReader(writerSchema, readerSchema);
+
+		// when
+		DatumReader<Record> genericReader = cache.getGenericReader(writerSchema, readerSchema);
+
+		// then
+		assertNotSame(specificReader, genericReader);
+		assertSame(genericReader, cache.getGenericReader(writerSchema, readerSchema));
+		assertEquals(1, cache.getReaders().size());
+		assertEquals(1, cache.getGenericReaders().size());
+		assertEquals(1, cache.getGenericReaders().getHitCount());
+
+	}
+
+	@Test
+	public void getReader_shouldKeyEqualWriterAndReaderSchemasByTheSchemaAlone() {
+
+		// given
+		DatumCache cache = new DatumCache(2);
+		Schema equalSchema = new Schema.Parser().parse(writerSchema.toString());
+
+		// when
+		DatumReader<Record> first = cache.getReader(writerSchema);
+		DatumReader<Record> second = cache.getReader(writerSchema, equalSchema);
+
+		// then
+		assertSame(first, second);
+		assertEquals(1, cache.getReaders().size());
+		assertEquals(1, cache.getReaders().getHitCount());
+
+	}
+
+	@Test
+	public void getGenericWriter_shouldReturnTheSameWriterForEqualSchemas() {
+
+		// given
+		DatumCache cache = new DatumCache(2);
+		Schema equalSchema = new Schema.Parser().parse(writerSchema.toString());
+
+		// when
+		DatumWriter<Record> first = cache.getGenericWriter(writerSchema);
+		DatumWriter<Record> second = cache.getGenericWriter(equalSchema);
+
+		// then
+		assertSame(first, second);
+		assertNotSame(first, cache.getWriter(writerSchema));
+		assertEquals(1, cache.getGenericWriters().getHitCount());
+
+	}
+
+	@Test
+	public void getWriter_shouldReturnTheSameWriterForEqualSchemas() {
+
+		// given
+		DatumCache cache = new DatumCache(2);
+		Schema equalSchema = new Schema.Parser().parse(writerSchema.toString());
+
+		// when
+		DatumWriter<Record> first = cache.getWriter(writerSchema);
+		DatumWriter<Record> second = cache.getWriter(equalSchema);
+
+		// then
+		assertSame(first, second);
+		assertEquals(1, cache.getWriters().getHitCount());
+
+	}
+
+}
@@ -0,0 +1,198 @@
+/**
+ * Copyright (c) 2017-2018, FinancialForce.com, inc
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ *   are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ *      this list of conditions and the following disclaimer in the documentation
+ *      and/or other materials provided with the distribution.
+ * - Neither the name of the FinancialForce.com, inc nor the names of its contributors
+ *      may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ *  OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL
+ *  THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ *  EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ *  OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY
+ *  OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ **/
+
+package com.financialforce.orizuru.cache;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+
+import java.nio.ByteBuffer;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.TimeUnit;
+
+import org.hamcrest.core.IsInstanceOf;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+public class DeduplicationCacheTest {
+
+	@Rule
+	public final ExpectedException exception = ExpectedException.none();
+
+	@Test
+	public void constructor_shouldThrowAnIllegalArgumentExceptionIfTheTimeToLiveIsNotPositive() {
+
+		// expect
+		exception.expect(IllegalArgumentException.class);
+		exception.expectMessage("The time to live must be positive");
+
+		// when
+		new DeduplicationCache(10, 0, TimeUnit.SECONDS);
+
+	}
+
+	@Test
+	public void get_shouldReturnTheRecordedOutcome() {
+
+		// given
+		byte[] outgoingMessage = new byte[] { 1, 2, 3 };
+		DeduplicationCache cache = new DeduplicationCache(10, 1, TimeUnit.MINUTES);
+		cache.put("key", outgoingMessage);
+
+		// when
+		DeduplicationCache.Entry entry = cache.get("key");
+
+		// then
+		assertArrayEquals(outgoingMessage, entry.getOutgoingMessage());
+		assertNull(cache.get("other"));
+		assertEquals(1, cache.getDuplicateCount());
+
+	}
+
+	@Test
+	public void get_shouldReturnACopyOfTheRecordedOutgoingMessage() {
+
+		// given
+		byte[] outgoingMessage = new byte[] { 1, 2, 3 };
+		DeduplicationCache cache = new DeduplicationCache(10, 1, TimeUnit.MINUTES);
+		cache.put("key", outgoingMessage);
+		outgoingMessage[0] = 9;
+
+		// when
+		byte[] first = cache.get("key").getOutgoingMessage();
+		first[1] = 9;
+		byte[] second = cache.get("key").getOutgoingMessage();
+
+		// then
+		assertNotSame(first, second);
+		assertArrayEquals(new byte[] { 1, 2, 3 }, second);
+
+	}
+
+	@Test
+	public void get_shouldReturnAnOutcomeWithNoOutgoingMessage() {
+
+		// given
+		DeduplicationCache cache = new DeduplicationCache(10, 1, TimeUnit.MINUTES);
+		cache.put("key", null);
+
+		// when
+		DeduplicationCache.Entry entry = cache.get("key");
+
+		// then
+		assertNull(entry.getOutgoingMessage());
+
+	}
+
+	@Test
+	public void get_shouldRemoveAnExpiredOutcome() throws Exception {
+
+		// given
+		DeduplicationCache cache = new DeduplicationCache(10, 1, TimeUnit.MILLISECONDS);
+		cache.put("key", new byte[] { 1 });
+		Thread.sleep(5);
+
+		// when
+		DeduplicationCache.Entry entry = cache.get("key");
+
+		// then
+		assertNull(entry);
+		assertEquals(0, cache.size());
+		assertEquals(0, cache.getDuplicateCount());
+
+	}
+
+	@Test
+	public void put_shouldForgetTheLeastRecentlyUsedMessage() throws Exception {
+
+		// given
+		DeduplicationCache cache = new DeduplicationCache(2, 1, TimeUnit.MINUTES);
+		cache.put("a", null);
+		Thread.sleep(1);
+		cache.put("b", null);
+		Thread.sleep(1);
+
+		// when
+		cache.put("c", null);
+
+		// then
+		assertEquals(2, cache.size());
+		assertEquals(1, cache.getEvictionCount());
+		assertNull(cache.get("a"));
+
+	}
+
+	@Test
+	public void fingerprint_shouldDependOnlyOnTheRemainingBytes() {
+
+		// given
+		ByteBuffer body = ByteBuffer.wrap(new byte[] { 9, 1, 2, 3 });
+		body.position(1);
+
+		// when
+		Object fingerprint = DeduplicationCache.fingerprint(body);
+
+		// then
+		assertEquals(1, body.position());
+		assertEquals(DeduplicationCache.fingerprint(ByteBuffer.wrap(new byte[] { 1, 2, 3 })), fingerprint);
+		assertEquals(DeduplicationCache.fingerprint(ByteBuffer.wrap(new byte[] { 1, 2, 3 })).hashCode(), fingerprint.hashCode());
+		assertNotEquals(DeduplicationCache.fingerprint(ByteBuffer.wrap(new byte[] { 1, 2, 4 })), fingerprint);
+
+	}
+
+	@Test
+	public void createDigest_throwsAnIllegalStateExceptionForAnUnknownAlgorithm() {
+
+		// expect
+		exception.expect(IllegalStateException.class);
+		exception.expectCause(IsInstanceOf.<Throwable>instanceOf(NoSuchAlgorithmException.class));
+
+		// when
+		DeduplicationCache.createDigest("unknown");
+
+	}
+
+	@Test
+	public void clear_shouldForgetAllMessages() {
+
+		// given
+		DeduplicationCache cache = new DeduplicationCache(10, 1, TimeUnit.MINUTES);
+		cache.put("key", null);
+
+		// when
+		cache.clear();
+
+		// then
+		assertEquals(0, cache.size());
+		assertNull(cache.get("key"));
+
+	}
+
+}
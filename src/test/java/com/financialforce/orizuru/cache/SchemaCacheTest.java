@@ -0,0 +1,89 @@
+/**
+ * Copyright (c) 2017-2018, FinancialForce.com, inc
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ *   are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ *      this list of conditions and the following disclaimer in the documentation
+ *      and/or other materials provided with the distribution.
+ * - Neither the name of the FinancialForce.com, inc nor the names of its contributors
+ *      may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ *  OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL
+ *  THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ *  EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ *  OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY
+ *  OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ **/
+
+package com.financialforce.orizuru.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaParseException;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+public class SchemaCacheTest {
+
+	private static final String SCHEMA = "{\"type\":\"record\",\"name\":\"TestSchema\",\"namespace\":\"com.financialforce.orizuru.cache\",\"fields\":[{\"name\":\"testString\",\"type\":\"string\"}]}";
+
+	@Rule
+	public final ExpectedException exception = ExpectedException.none();
+
+	@Test
+	public void getInstance_shouldReturnTheSharedCache() {
+
+		// when
+		SchemaCache cache = SchemaCache.getInstance();
+
+		// then
+		assertSame(cache, SchemaCache.getInstance());
+		assertEquals(SchemaCache.DEFAULT_MAXIMUM_SIZE, cache.getMaximumSize());
+
+	}
+
+	@Test
+	public void parse_shouldReturnTheSameSchemaForTheSameText() {
+
+		// given
+		SchemaCache cache = new SchemaCache(1);
+
+		// when
+		Schema first = cache.parse(SCHEMA);
+		Schema second = cache.parse(new String(SCHEMA));
+
+		// then
+		assertSame(first, second);
+		assertEquals("com.financialforce.orizuru.cache.TestSchema", second.getFullName());
+		assertEquals(1, cache.getHitCount());
+		assertEquals(1, cache.getMissCount());
+
+	}
+
+	@Test
+	public void parse_shouldThrowASchemaParseExceptionForAnInvalidSchema() {
+
+		// expect
+		exception.expect(SchemaParseException.class);
+
+		// given
+		SchemaCache cache = new SchemaCache(1);
+
+		// when
+		cache.parse("invalid");
+
+	}
+
+}
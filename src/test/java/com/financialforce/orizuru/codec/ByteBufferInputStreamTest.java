@@ -0,0 +1,148 @@
+/**
+ * Copyright (c) 2017-2018, FinancialForce.com, inc
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ *   are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ *      this list of conditions and the following disclaimer in the documentation
+ *      and/or other materials provided with the distribution.
+ * - Neither the name of the FinancialForce.com, inc nor the names of its contributors
+ *      may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ *  OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL
+ *  THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ *  EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ *  OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY
+ *  OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ **/
+
+package com.financialforce.orizuru.codec;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.EOFException;
+import java.nio.ByteBuffer;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+public class ByteBufferInputStreamTest {
+
+	@Rule
+	public final ExpectedException exception = ExpectedException.none();
+
+	@Test
+	public void read_shouldReadTheRemainingBytesWithoutChangingTheBuffer() {
+
+		// given
+		ByteBuffer buffer = ByteBuffer.wrap(new byte[] { 1, (byte) 0xFF, 3, 4, 5 });
+		buffer.position(1);
+
+		ByteBufferInputStream input = new ByteBufferInputStream().reset(buffer);
+		byte[] bytes = new byte[4];
+
+		// when
+		int first = input.read();
+		int count = input.read(bytes, 1, 3);
+
+		// then
+		assertEquals(0xFF, first);
+		assertEquals(3, count);
+		assertArrayEquals(new byte[] { 0, 3, 4, 5 }, bytes);
+		assertEquals(1, buffer.position());
+
+	}
+
+	@Test
+	public void read_shouldReturnMinusOneAtTheEndOfTheBuffer() {
+
+		// given
+		ByteBufferInputStream input = new ByteBufferInputStream();
+
+		// when/then
+		assertEquals(-1, input.read());
+		assertEquals(-1, input.read(new byte[1], 0, 1));
+		assertEquals(0, input.read(new byte[1], 0, 0));
+
+	}
+
+	@Test
+	public void skip_shouldSkipNoMoreThanTheRemainingBytes() {
+
+		// given
+		ByteBufferInputStream input = new ByteBufferInputStream().reset(ByteBuffer.wrap(new byte[] { 1, 2, 3 }));
+
+		// when
+		long skipped = input.skip(2);
+		long skippedAtEnd = input.skip(2);
+
+		// then
+		assertEquals(2, skipped);
+		assertEquals(1, skippedAtEnd);
+		assertEquals(0, input.available());
+
+	}
+
+	@Test
+	public void readSlice_shouldReturnASliceOfTheBuffer() throws Exception {
+
+		// given
+		ByteBuffer buffer = ByteBuffer.allocateDirect(4);
+		buffer.put(new byte[] { 1, 2, 3, 4 });
+		buffer.flip();
+
+		ByteBufferInputStream input = new ByteBufferInputStream().reset(buffer);
+		input.read();
+
+		// when
+		ByteBuffer slice = input.readSlice(2);
+
+		// then
+		assertEquals(ByteBuffer.wrap(new byte[] { 2, 3 }), slice);
+		assertEquals(4, input.read());
+
+		buffer.put(1, (byte) 9);
+		assertEquals(9, slice.get(0));
+
+	}
+
+	@Test
+	public void readSlice_shouldThrowAnEOFExceptionIfTooFewBytesRemain() throws Exception {
+
+		// expect
+		exception.expect(EOFException.class);
+
+		// given
+		ByteBufferInputStream input = new ByteBufferInputStream().reset(ByteBuffer.wrap(new byte[] { 1 }));
+
+		// when
+		input.readSlice(2);
+
+	}
+
+	@Test
+	public void readSlice_shouldThrowAnIllegalArgumentExceptionForANegativeLength() throws Exception {
+
+		// expect
+		exception.expect(IllegalArgumentException.class);
+		exception.expectMessage("Malformed data. Length is negative: -1");
+
+		// given
+		ByteBufferInputStream input = new ByteBufferInputStream();
+
+		// when
+		input.readSlice(-1);
+
+	}
+
+}
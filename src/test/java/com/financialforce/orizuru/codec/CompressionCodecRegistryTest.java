@@ -0,0 +1,184 @@
+/**
+ * Copyright (c) 2017-2018, FinancialForce.com, inc
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ *   are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ *      this list of conditions and the following disclaimer in the documentation
+ *      and/or other materials provided with the distribution.
+ * - Neither the name of the FinancialForce.com, inc nor the names of its contributors
+ *      may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ *  OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL
+ *  THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ *  EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ *  OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY
+ *  OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ **/
+
+package com.financialforce.orizuru.codec;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ServiceLoader;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import com.financialforce.orizuru.interfaces.ICompressionCodec;
+import com.financialforce.orizuru.util.TestCompressionCodec;
+
+public class CompressionCodecRegistryTest {
+
+	@Rule
+	public final ExpectedException exception = ExpectedException.none();
+
+	@Test
+	public void constructor_shouldRegisterTheDeflateCodec() {
+
+		// when
+		ICompressionCodec codec = new CompressionCodecRegistry().get(DeflateCompressionCodec.ID);
+
+		// then
+		assertTrue(codec instanceof DeflateCompressionCodec);
+
+	}
+
+	@Test
+	public void getInstance_shouldRegisterTheCodecsDeclaredAsServices() {
+
+		// when
+		ICompressionCodec codec = CompressionCodecRegistry.getInstance().get(TestCompressionCodec.ID);
+
+		// then
+		assertTrue(codec instanceof TestCompressionCodec);
+		assertSame(CompressionCodecRegistry.getInstance(), CompressionCodecRegistry.getInstance());
+
+	}
+
+	@Test
+	public void register_shouldReplaceACodecWithTheSameName() {
+
+		// given
+		CompressionCodecRegistry registry = new CompressionCodecRegistry();
+		DeflateCompressionCodec codec = new DeflateCompressionCodec(9);
+
+		// when
+		registry.register(codec);
+
+		// then
+		assertSame(codec, registry.get(DeflateCompressionCodec.ID));
+
+	}
+
+	@Test
+	public void register_throwsAnIllegalArgumentExceptionForACodecWithAnIdentifierInUse() {
+
+		// given
+		CompressionCodecRegistry registry = new CompressionCodecRegistry();
+		ICompressionCodec codec = new NamedCodec((byte) 1, "other");
+
+		// when
+		try {
+			registry.register(codec);
+		} catch (IllegalArgumentException ex) {
+
+			// then
+			assertEquals("The compression codec identifier 1 is already used by deflate", ex.getMessage());
+			assertTrue(registry.get((byte) 1) instanceof DeflateCompressionCodec);
+			return;
+
+		}
+
+		throw new AssertionError("Expected an IllegalArgumentException");
+
+	}
+
+	@Test
+	public void registerAll_shouldRegisterEachCodecFromTheServiceLoader() {
+
+		// given
+		CompressionCodecRegistry registry = new CompressionCodecRegistry();
+
+		// when
+		registry.registerAll(ServiceLoader.load(ICompressionCodec.class));
+
+		// then
+		assertTrue(registry.get(TestCompressionCodec.ID) instanceof TestCompressionCodec);
+
+	}
+
+	@Test
+	public void get_shouldFindACodecWithANegativeIdentifier() {
+
+		// given
+		CompressionCodecRegistry registry = new CompressionCodecRegistry();
+		ICompressionCodec codec = new NamedCodec((byte) 0xF0, "high");
+		registry.register(codec);
+
+		// when
+		ICompressionCodec found = registry.get((byte) 0xF0);
+
+		// then
+		assertSame(codec, found);
+
+	}
+
+	@Test
+	public void get_throwsAnIllegalArgumentExceptionForAnUnknownCodec() {
+
+		// expect
+		exception.expect(IllegalArgumentException.class);
+		exception.expectMessage("Unknown compression codec: 200");
+
+		// when
+		new CompressionCodecRegistry().get((byte) 200);
+
+	}
+
+	private static class NamedCodec implements ICompressionCodec {
+
+		private final byte id;
+		private final String name;
+
+		NamedCodec(byte id, String name) {
+			this.id = id;
+			this.name = name;
+		}
+
+		@Override
+		public byte getId() {
+			return id;
+		}
+
+		@Override
+		public String getName() {
+			return name;
+		}
+
+		@Override
+		public ByteBuffer compress(ByteBuffer input) throws IOException {
+			return input;
+		}
+
+		@Override
+		public ByteBuffer decompress(ByteBuffer input) throws IOException {
+			return input;
+		}
+
+	}
+
+}
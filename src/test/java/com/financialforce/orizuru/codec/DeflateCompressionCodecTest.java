@@ -0,0 +1,339 @@
+/**
+ * Copyright (c) 2017-2018, FinancialForce.com, inc
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ *   are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ *      this list of conditions and the following disclaimer in the documentation
+ *      and/or other materials provided with the distribution.
+ * - Neither the name of the FinancialForce.com, inc nor the names of its contributors
+ *      may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ *  OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL
+ *  THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ *  EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ *  OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY
+ *  OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ **/
+
+package com.financialforce.orizuru.codec;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.Deflater;
+import java.util.zip.ZipException;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+public class DeflateCompressionCodecTest {
+
+	@Rule
+	public final ExpectedException exception = ExpectedException.none();
+
+	private final DeflateCompressionCodec codec = new DeflateCompressionCodec();
+
+	@Test
+	public void constructor_shouldUseTheDefaultCompressionLevel() {
+
+		// then
+		assertEquals(DeflateCompressionCodec.ID, codec.getId());
+		assertEquals(DeflateCompressionCodec.NAME, codec.getName());
+		assertEquals(Deflater.DEFAULT_COMPRESSION, codec.getLevel());
+
+	}
+
+	@Test
+	public void constructor_throwsAnIllegalArgumentExceptionForAnInvalidLevel() {
+
+		// expect
+		exception.expect(IllegalArgumentException.class);
+		exception.expectMessage("Invalid compression level: 10");
+
+		// when
+		new DeflateCompressionCodec(10);
+
+	}
+
+	@Test
+	public void constructor_throwsAnIllegalArgumentExceptionForANonPositiveMaximumDecompressedSize() {
+
+		// expect
+		exception.expect(IllegalArgumentException.class);
+		exception.expectMessage("The maximum decompressed size must be at least 1");
+
+		// when
+		new DeflateCompressionCodec(Deflater.DEFAULT_COMPRESSION, 0);
+
+	}
+
+	@Test
+	public void compress_shouldMakeRepetitiveDataSmaller() throws Exception {
+
+		// given
+		byte[] data = new byte[64 * 1024];
+		Arrays.fill(data, (byte) 'a');
+
+		// when
+		ByteBuffer compressed = codec.compress(ByteBuffer.wrap(data));
+
+		// then
+		assertTrue(compressed.remaining() < data.length / 100);
+		assertEquals(ByteBuffer.wrap(data), codec.decompress(compressed));
+
+	}
+
+	@Test
+	public void compress_shouldRoundTripDataOfEverySize() throws Exception {
+
+		// given
+		Random random = new Random(17);
+
+		for (int length : new int[] { 0, 1, 2, 63, 64, 65, 1023, 1024, 65535, 65536, 65537, 300000 }) {
+
+			byte[] data = new byte[length];
+			random.nextBytes(data);
+
+			// when
+			ByteBuffer compressed = codec.compress(ByteBuffer.wrap(data));
+
+			// then
+			assertEquals(ByteBuffer.wrap(data), codec.decompress(compressed));
+
+		}
+
+	}
+
+	@Test
+	public void compress_shouldCompressTheRemainingBytesWithoutChangingThePosition() throws Exception {
+
+		// given
+		ByteBuffer direct = ByteBuffer.allocateDirect(8);
+		direct.put(new byte[] { 9, 9, 1, 2, 3, 4, 5, 6 });
+		direct.position(2);
+
+		ByteBuffer heap = ByteBuffer.wrap(new byte[] { 9, 1, 2, 3, 4, 5, 6, 9 }, 1, 6).slice();
+
+		// when
+		ByteBuffer fromDirect = codec.compress(direct);
+		ByteBuffer fromHeap = codec.compress(heap);
+
+		// then
+		assertEquals(ByteBuffer.wrap(new byte[] { 1, 2, 3, 4, 5, 6 }), codec.decompress(fromHeap));
+		assertEquals(ByteBuffer.wrap(new byte[] { 1, 2, 3, 4, 5, 6 }), codec.decompress(fromDirect));
+		assertEquals(2, direct.position());
+		assertEquals(0, heap.position());
+
+	}
+
+	@Test
+	public void decompress_shouldDecompressTheRemainingBytesWithoutChangingThePosition() throws Exception {
+
+		// given
+		ByteBuffer compressed = codec.compress(ByteBuffer.wrap(new byte[] { 1, 2, 3 }));
+
+		ByteBuffer direct = ByteBuffer.allocateDirect(compressed.remaining() + 1);
+		direct.put((byte) 9);
+		direct.put(compressed.duplicate());
+		direct.position(1);
+
+		// when
+		ByteBuffer decompressed = codec.decompress(direct);
+
+		// then
+		assertEquals(1, direct.position());
+		assertEquals(ByteBuffer.wrap(new byte[] { 1, 2, 3 }), decompressed);
+
+	}
+
+	@Test
+	public void decompress_shouldDecompressDataFromAnotherLevel() throws Exception {
+
+		// given
+		byte[] data = "accounting line, accounting line, accounting line".getBytes();
+		ByteBuffer compressed = new DeflateCompressionCodec(Deflater.BEST_SPEED).compress(ByteBuffer.wrap(data));
+
+		// when
+		ByteBuffer decompressed = new DeflateCompressionCodec(Deflater.BEST_COMPRESSION).decompress(compressed);
+
+		// then
+		assertEquals(ByteBuffer.wrap(data), decompressed);
+
+	}
+
+	@Test
+	public void decompress_throwsAZipExceptionIfTheLengthIsMissing() throws Exception {
+
+		// expect
+		exception.expect(ZipException.class);
+		exception.expectMessage("Compressed data is truncated");
+
+		// when
+		codec.decompress(ByteBuffer.wrap(new byte[] { 0, 0, 1 }));
+
+	}
+
+	@Test
+	public void decompress_throwsAZipExceptionIfTheLengthIsNegative() throws Exception {
+
+		// expect
+		exception.expect(ZipException.class);
+		exception.expectMessage("Malformed data. Length is negative: -1");
+
+		// when
+		codec.decompress(ByteBuffer.wrap(new byte[] { -1, -1, -1, -1, 0 }));
+
+	}
+
+	@Test
+	public void decompress_throwsAZipExceptionIfTheLengthIsLargerThanTheMaximum() throws Exception {
+
+		// expect
+		exception.expect(ZipException.class);
+		exception.expectMessage("Malformed data. Length 2147483647 is larger than the maximum decompressed size of 67108864");
+
+		// when
+		codec.decompress(ByteBuffer.wrap(new byte[] { 127, -1, -1, -1, 0 }));
+
+	}
+
+	@Test
+	public void decompress_shouldAcceptALengthEqualToTheMaximum() throws Exception {
+
+		// given
+		DeflateCompressionCodec limitedCodec = new DeflateCompressionCodec(Deflater.DEFAULT_COMPRESSION, 3);
+		ByteBuffer compressed = limitedCodec.compress(ByteBuffer.wrap(new byte[] { 1, 2, 3 }));
+
+		// when
+		ByteBuffer decompressed = limitedCodec.decompress(compressed);
+
+		// then
+		assertEquals(ByteBuffer.wrap(new byte[] { 1, 2, 3 }), decompressed);
+		assertEquals(3, limitedCodec.getMaximumDecompressedSize());
+
+	}
+
+	@Test
+	public void close_shouldLeaveTheCodecUsable() throws Exception {
+
+		// given
+		ByteBuffer compressed = codec.compress(ByteBuffer.wrap(new byte[] { 1, 2, 3 }));
+
+		// when
+		codec.close();
+
+		// then
+		assertEquals(ByteBuffer.wrap(new byte[] { 1, 2, 3 }), codec.decompress(compressed));
+		assertEquals(ByteBuffer.wrap(new byte[] { 4, 5 }), codec.decompress(codec.compress(ByteBuffer.wrap(new byte[] { 4, 5 }))));
+
+	}
+
+	@Test
+	public void close_shouldEndTheIdleInflaters() throws Exception {
+
+		// given
+		ByteBuffer compressed = codec.compress(ByteBuffer.wrap(new byte[] { 1, 2, 3 }));
+		codec.decompress(compressed);
+
+		// when
+		codec.close();
+
+		// then
+		assertEquals(ByteBuffer.wrap(new byte[] { 1, 2, 3 }), codec.decompress(compressed));
+
+	}
+
+	@Test
+	public void compress_shouldRecycleTheDeflaterIfCompressingFails() throws Exception {
+
+		// given
+		try {
+			codec.compress(null);
+		} catch (NullPointerException ex) {
+			// expected
+		}
+
+		// when
+		ByteBuffer compressed = codec.compress(ByteBuffer.wrap(new byte[] { 1, 2, 3 }));
+
+		// then
+		assertEquals(ByteBuffer.wrap(new byte[] { 1, 2, 3 }), codec.decompress(compressed));
+
+	}
+
+	@Test
+	public void decompress_throwsAZipExceptionIfTheDataIsTruncated() throws Exception {
+
+		// expect
+		exception.expect(ZipException.class);
+		exception.expectMessage("Compressed data is truncated");
+
+		// given
+		byte[] data = new byte[1000];
+		new Random(17).nextBytes(data);
+
+		ByteBuffer compressed = codec.compress(ByteBuffer.wrap(data));
+		compressed.limit(compressed.limit() - 10);
+
+		// when
+		codec.decompress(compressed);
+
+	}
+
+	@Test
+	public void decompress_throwsAZipExceptionIfTheDataIsLongerThanItsLength() throws Exception {
+
+		// expect
+		exception.expect(ZipException.class);
+		exception.expectMessage("Compressed data is longer than its length");
+
+		// given
+		ByteBuffer compressed = codec.compress(ByteBuffer.wrap(new byte[100]));
+		compressed.putInt(compressed.position(), 99);
+
+		// when
+		codec.decompress(compressed);
+
+	}
+
+	@Test
+	public void decompress_throwsAZipExceptionIfTheDataIsShorterThanItsLength() throws Exception {
+
+		// expect
+		exception.expect(ZipException.class);
+		exception.expectMessage("Compressed data is shorter than its length");
+
+		// given
+		ByteBuffer compressed = codec.compress(ByteBuffer.wrap(new byte[100]));
+		compressed.putInt(compressed.position(), 101);
+
+		// when
+		codec.decompress(compressed);
+
+	}
+
+	@Test
+	public void decompress_throwsAZipExceptionForInvalidData() throws Exception {
+
+		// expect
+		exception.expect(ZipException.class);
+
+		// when
+		codec.decompress(ByteBuffer.wrap(new byte[] { 0, 0, 0, 10, -1, -1, -1, -1 }));
+
+	}
+
+}
@@ -0,0 +1,219 @@
+/**
+ * Copyright (c) 2017-2018, FinancialForce.com, inc
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ *   are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ *      this list of conditions and the following disclaimer in the documentation
+ *      and/or other materials provided with the distribution.
+ * - Neither the name of the FinancialForce.com, inc nor the names of its contributors
+ *      may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ *  OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL
+ *  THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ *  EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ *  OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY
+ *  OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ **/
+
+package com.financialforce.orizuru.codec;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+public class DirectBufferPoolTest {
+
+	@Rule
+	public final ExpectedException exception = ExpectedException.none();
+
+	@Test
+	public void constructor_shouldThrowAnIllegalArgumentExceptionIfTheMaximumPooledSizeIsTooSmall() {
+
+		// expect
+		exception.expect(IllegalArgumentException.class);
+		exception.expectMessage("The maximum pooled size must be between 256 and 1073741824");
+
+		// when
+		new DirectBufferPool(DirectBufferPool.MINIMUM_SIZE_CLASS - 1, 1);
+
+	}
+
+	@Test
+	public void constructor_shouldThrowAnIllegalArgumentExceptionIfTheMaximumFreeBuffersIsLessThanOne() {
+
+		// expect
+		exception.expect(IllegalArgumentException.class);
+		exception.expectMessage("The maximum number of free buffers must be at least 1");
+
+		// when
+		new DirectBufferPool(DirectBufferPool.MINIMUM_SIZE_CLASS, 0);
+
+	}
+
+	@Test
+	public void constructor_shouldRoundTheMaximumPooledSizeUpToAPowerOfTwo() {
+
+		// when
+		DirectBufferPool pool = new DirectBufferPool(1000, 1);
+
+		// then
+		assertEquals(1024, pool.getMaximumPooledSize());
+
+	}
+
+	@Test
+	public void acquire_shouldThrowAnIllegalArgumentExceptionForANegativeCapacity() {
+
+		// expect
+		exception.expect(IllegalArgumentException.class);
+		exception.expectMessage("The capacity must not be negative");
+
+		// when
+		new DirectBufferPool(1024, 1).acquire(-1);
+
+	}
+
+	@Test
+	public void acquire_shouldReturnADirectBufferFromTheSmallestSizeClassThatFits() {
+
+		// given
+		DirectBufferPool pool = new DirectBufferPool(4096, 1);
+
+		// when
+		ByteBuffer buffer = pool.acquire(513).getBuffer();
+
+		// then
+		assertTrue(buffer.isDirect());
+		assertEquals(1024, buffer.capacity());
+		assertEquals(513, buffer.limit());
+		assertEquals(0, buffer.position());
+		assertEquals(256, pool.acquire(1).getBuffer().capacity());
+		assertEquals(512, pool.acquire(512).getBuffer().capacity());
+
+	}
+
+	@Test
+	public void acquire_shouldReuseAReleasedBuffer() {
+
+		// given
+		DirectBufferPool pool = new DirectBufferPool(4096, 1);
+
+		PooledBuffer first = pool.acquire(300);
+		ByteBuffer buffer = first.getBuffer();
+		buffer.put((byte) 1);
+		first.release();
+
+		// when
+		PooledBuffer second = pool.acquire(400);
+
+		// then
+		assertSame(buffer, second.getBuffer());
+		assertEquals(0, buffer.position());
+		assertEquals(400, buffer.limit());
+		assertEquals(1, pool.getAllocationCount());
+		assertEquals(1, pool.getReuseCount());
+		assertEquals(0, pool.getFreeCount());
+
+	}
+
+	@Test
+	public void acquire_shouldNotPoolABufferLargerThanTheMaximumPooledSize() {
+
+		// given
+		DirectBufferPool pool = new DirectBufferPool(256, 1);
+
+		PooledBuffer first = pool.acquire(257);
+		ByteBuffer buffer = first.getBuffer();
+
+		// when
+		first.release();
+
+		// then
+		assertEquals(257, buffer.capacity());
+		assertEquals(0, pool.getFreeCount());
+		assertNotSame(buffer, pool.acquire(257).getBuffer());
+
+	}
+
+	@Test
+	public void release_shouldDiscardABufferIfTheSizeClassIsFull() {
+
+		// given
+		DirectBufferPool pool = new DirectBufferPool(256, 1);
+		PooledBuffer first = pool.acquire(10);
+		PooledBuffer second = pool.acquire(10);
+
+		// when
+		first.release();
+		second.release();
+
+		// then
+		assertEquals(1, pool.getFreeCount());
+
+	}
+
+	@Test
+	public void release_shouldThrowAnIllegalStateExceptionIfTheBufferHasAlreadyBeenReleased() {
+
+		// expect
+		exception.expect(IllegalStateException.class);
+		exception.expectMessage("The buffer has already been released");
+
+		// given
+		PooledBuffer buffer = new DirectBufferPool(256, 1).acquire(10);
+		buffer.release();
+
+		// when
+		buffer.release();
+
+	}
+
+	@Test
+	public void getBuffer_shouldThrowAnIllegalStateExceptionIfTheBufferHasBeenReleased() {
+
+		// expect
+		exception.expect(IllegalStateException.class);
+		exception.expectMessage("The buffer has already been released");
+
+		// given
+		PooledBuffer buffer = new DirectBufferPool(256, 1).acquire(10);
+		buffer.release();
+
+		// when
+		buffer.getBuffer();
+
+	}
+
+	@Test
+	public void close_shouldReleaseTheBufferOnlyOnce() {
+
+		// given
+		DirectBufferPool pool = new DirectBufferPool(256, 2);
+		PooledBuffer buffer = pool.acquire(10);
+
+		// when
+		buffer.close();
+		buffer.close();
+
+		// then
+		assertEquals(1, pool.getFreeCount());
+
+	}
+
+}
@@ -0,0 +1,176 @@
+/**
+ * Copyright (c) 2017-2018, FinancialForce.com, inc
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ *   are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ *      this list of conditions and the following disclaimer in the documentation
+ *      and/or other materials provided with the distribution.
+ * - Neither the name of the FinancialForce.com, inc nor the names of its contributors
+ *      may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ *  OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL
+ *  THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ *  EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ *  OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY
+ *  OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ **/
+
+package com.financialforce.orizuru.codec;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.EncoderFactory;
+import org.junit.Test;
+
+public class ReusableOutputStreamTest {
+
+	@Test
+	public void write_shouldGrowTheBuffer() {
+
+		// given
+		ReusableOutputStream output = new ReusableOutputStream(2, 16);
+
+		// when
+		output.write(1);
+		output.write(new byte[] { 2, 3, 4 }, 1, 2);
+		output.write(ByteBuffer.wrap(new byte[] { 5, 6 }));
+
+		// then
+		assertEquals(5, output.size());
+		assertArrayEquals(new byte[] { 1, 3, 4, 5, 6 }, output.toByteArray());
+
+	}
+
+	@Test
+	public void write_shouldNotChangeThePositionOfTheByteBuffer() {
+
+		// given
+		ReusableOutputStream output = new ReusableOutputStream(2, 16);
+		ByteBuffer src = ByteBuffer.wrap(new byte[] { 1, 2, 3 });
+		src.position(1);
+
+		// when
+		output.write(src);
+
+		// then
+		assertEquals(1, src.position());
+		assertArrayEquals(new byte[] { 2, 3 }, output.toByteArray());
+
+	}
+
+	@Test
+	public void reset_shouldKeepTheBufferUpToTheMaximumRetainedCapacity() {
+
+		// given
+		ReusableOutputStream output = new ReusableOutputStream(2, 16);
+		output.write(new byte[8], 0, 8);
+		byte[] buffer = output.getBuffer();
+
+		// when
+		output.reset();
+
+		// then
+		assertEquals(0, output.size());
+		assertSame(buffer, output.getBuffer());
+
+	}
+
+	@Test
+	public void reset_shouldKeepABufferLargerThanTheMaximumRetainedCapacityWhileLargeMessagesAreWritten() {
+
+		// given
+		ReusableOutputStream output = new ReusableOutputStream(2, 16);
+		output.write(new byte[32], 0, 32);
+
+		// when
+		for (int i = 1; i < ReusableOutputStream.RELEASE_AFTER_RESETS; i++) {
+			output.reset();
+			output.write(new byte[8], 0, 8);
+		}
+		output.reset();
+		output.write(new byte[32], 0, 32);
+		output.reset();
+
+		// then
+		assertEquals(32, output.getBuffer().length);
+
+	}
+
+	@Test
+	public void reset_shouldReleaseABufferLargerThanTheMaximumRetainedCapacityOnceMessagesAreSmallAgain() {
+
+		// given
+		ReusableOutputStream output = new ReusableOutputStream(2, 16);
+		output.write(new byte[32], 0, 32);
+		output.reset();
+
+		// when
+		for (int i = 0; i < ReusableOutputStream.RELEASE_AFTER_RESETS; i++) {
+			assertTrue(output.getBuffer().length > 16);
+			output.write(new byte[8], 0, 8);
+			output.reset();
+		}
+
+		// then
+		assertEquals(2, output.getBuffer().length);
+
+	}
+
+	@Test
+	public void writeLengthPrefix_shouldWriteASingleByteLengthBeforeTheBytes() {
+
+		// given
+		ReusableOutputStream output = new ReusableOutputStream(2, 16);
+		output.write(9);
+
+		// when
+		int position = output.reserveLengthPrefix();
+		output.write(new byte[] { 1, 2, 3 }, 0, 3);
+		output.writeLengthPrefix(position);
+
+		// then
+		assertArrayEquals(new byte[] { 9, 6, 1, 2, 3 }, output.toByteArray());
+
+	}
+
+	@Test
+	public void writeLengthPrefix_shouldWriteAMultipleByteLengthBeforeTheBytes() throws Exception {
+
+		// given
+		byte[] bytes = new byte[200];
+		Arrays.fill(bytes, (byte) 7);
+
+		ByteArrayOutputStream expected = new ByteArrayOutputStream();
+		BinaryEncoder encoder = EncoderFactory.get().directBinaryEncoder(expected, null);
+		encoder.writeBytes(bytes);
+
+		ReusableOutputStream output = new ReusableOutputStream(2, 16);
+
+		// when
+		int position = output.reserveLengthPrefix();
+		output.write(bytes, 0, bytes.length);
+		output.writeLengthPrefix(position);
+
+		// then
+		assertArrayEquals(expected.toByteArray(), output.toByteArray());
+
+	}
+
+}
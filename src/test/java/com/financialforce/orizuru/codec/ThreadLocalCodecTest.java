@@ -0,0 +1,97 @@
+/**
+ * Copyright (c) 2017-2018, FinancialForce.com, inc
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ *   are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ *      this list of conditions and the following disclaimer in the documentation
+ *      and/or other materials provided with the distribution.
+ * - Neither the name of the FinancialForce.com, inc nor the names of its contributors
+ *      may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ *  OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL
+ *  THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ *  EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ *  OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY
+ *  OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ **/
+
+package com.financialforce.orizuru.codec;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.avro.io.BinaryDecoder;
+import org.apache.avro.io.BinaryEncoder;
+import org.junit.Test;
+
+public class ThreadLocalCodecTest {
+
+	@Test
+	public void get_shouldReturnACodecPerThread() throws Exception {
+
+		// given
+		ThreadLocalCodec codec = ThreadLocalCodec.get();
+
+		AtomicReference<ThreadLocalCodec> otherCodec = new AtomicReference<>();
+		Thread thread = new Thread(() -> otherCodec.set(ThreadLocalCodec.get()));
+
+		// when
+		thread.start();
+		thread.join();
+
+		// then
+		assertSame(codec, ThreadLocalCodec.get());
+		assertNotSame(codec, otherCodec.get());
+
+	}
+
+	@Test
+	public void decoder_shouldReuseTheDecoder() throws Exception {
+
+		// given
+		ThreadLocalCodec codec = ThreadLocalCodec.get();
+
+		// when
+		BinaryDecoder first = codec.decoder(new byte[] { 2 });
+		long firstValue = first.readLong();
+		BinaryDecoder second = codec.decoder(new byte[] { 0, 4 }, 1, 1);
+		long secondValue = second.readLong();
+
+		// then
+		assertSame(first, second);
+		assertEquals(1, firstValue);
+		assertEquals(2, secondValue);
+
+	}
+
+	@Test
+	public void encoder_shouldResetTheOutput() throws Exception {
+
+		// given
+		ThreadLocalCodec codec = ThreadLocalCodec.get();
+		codec.encoder().writeLong(1);
+
+		// when
+		BinaryEncoder encoder = codec.encoder();
+		encoder.writeLong(2);
+		encoder.flush();
+
+		// then
+		assertArrayEquals(new byte[] { 4 }, codec.getOutput().toByteArray());
+
+	}
+
+}
@@ -0,0 +1,358 @@
+/**
+ * Copyright (c) 2017-2018, FinancialForce.com, inc
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ *   are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ *      this list of conditions and the following disclaimer in the documentation
+ *      and/or other materials provided with the distribution.
+ * - Neither the name of the FinancialForce.com, inc nor the names of its contributors
+ *      may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ *  OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL
+ *  THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ *  EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ *  OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY
+ *  OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ **/
+
+package com.financialforce.orizuru.codec;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Modifier;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.io.EncoderFactory;
+import org.apache.avro.specific.SpecificDatumReader;
+import org.apache.avro.specific.SpecificDatumWriter;
+import org.apache.avro.util.Utf8;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import com.financialforce.orizuru.transport.Transport;
+
+public class TransportCodecTest {
+
+	private static final int FUZZ_ITERATIONS = 2000;
+
+	@Rule
+	public final ExpectedException exception = ExpectedException.none();
+
+	@Test
+	public void constructor_shouldBePrivate() throws Exception {
+
+		// given
+		Constructor<TransportCodec> constructor = TransportCodec.class.getDeclaredConstructor();
+
+		// when
+		constructor.setAccessible(true);
+		constructor.newInstance();
+
+		// then
+		assertTrue(Modifier.isPrivate(constructor.getModifiers()));
+
+	}
+
+	@Test
+	public void write_shouldWriteTheSameBytesAsTheGeneratedWriter() throws Exception {
+
+		// given
+		Transport transport = createTransport(new Random(1), 300);
+		ReusableOutputStream output = new ReusableOutputStream(16, 1024);
+
+		// when
+		TransportCodec.write(output, transport);
+
+		// then
+		assertArrayEquals(writeWithGeneratedWriter(transport), output.toByteArray());
+
+	}
+
+	@Test
+	public void write_shouldNotChangeThePositionOfTheBuffers() throws Exception {
+
+		// given
+		Transport transport = createTransport(new Random(2), 10);
+		ReusableOutputStream output = new ReusableOutputStream(16, 1024);
+
+		// when
+		TransportCodec.write(output, transport);
+
+		// then
+		assertEquals(0, transport.getContextBuffer().position());
+		assertEquals(0, transport.getMessageBuffer().position());
+
+	}
+
+	@Test
+	public void write_shouldWriteStringSchemaTextAsUtf8() throws Exception {
+
+		// given
+		Transport transport = new Transport("café 😀", ByteBuffer.allocate(0), "message", ByteBuffer.allocate(0));
+		ReusableOutputStream output = new ReusableOutputStream(16, 1024);
+
+		// when
+		TransportCodec.write(output, transport);
+
+		// then
+		assertArrayEquals(writeWithGeneratedWriter(transport), output.toByteArray());
+
+	}
+
+	@Test
+	public void write_throwsNullPointerExceptionIfAFieldIsNull() throws Exception {
+
+		// expect
+		exception.expect(NullPointerException.class);
+
+		// when
+		TransportCodec.write(new ReusableOutputStream(16, 1024), new Transport("context", ByteBuffer.allocate(0), null, ByteBuffer.allocate(0)));
+
+	}
+
+	@Test
+	public void read_shouldReadTheTransportWrittenByTheGeneratedWriter() throws Exception {
+
+		// given
+		Transport transport = createTransport(new Random(3), 300);
+		ByteBuffer record = ByteBuffer.wrap(writeWithGeneratedWriter(transport));
+
+		// when
+		Transport result = TransportCodec.read(record);
+
+		// then
+		assertEquals(transport, result);
+		assertEquals(0, record.position());
+
+	}
+
+	@Test
+	public void read_shouldReadTheBuffersAsSlicesOfTheRecord() throws Exception {
+
+		// given
+		byte[] bytes = writeWithGeneratedWriter(createTransport(new Random(4), 10));
+
+		// when
+		Transport result = TransportCodec.read(ByteBuffer.wrap(bytes));
+
+		// then
+		assertTrue(result.getMessageBuffer().hasArray());
+		assertEquals(bytes, result.getMessageBuffer().array());
+
+	}
+
+	@Test
+	public void read_shouldReadFromADirectBuffer() throws Exception {
+
+		// given
+		Transport transport = createTransport(new Random(5), 100);
+		byte[] bytes = writeWithGeneratedWriter(transport);
+		ByteBuffer record = ByteBuffer.allocateDirect(bytes.length);
+		record.put(bytes);
+		record.flip();
+
+		// when
+		Transport result = TransportCodec.read(record);
+
+		// then
+		assertEquals(transport, result);
+
+	}
+
+	@Test
+	public void peekContext_shouldReadOnlyTheContextFields() throws Exception {
+
+		// given
+		Transport transport = createTransport(new Random(9), 100);
+		byte[] bytes = writeWithGeneratedWriter(transport);
+
+		// The context fields followed by an empty message schema, which is a single byte
+		ReusableOutputStream output = new ReusableOutputStream(16, 1024);
+		TransportCodec.writeHeader(output, transport.getContextSchema(), transport.getContextBuffer(), "");
+		int contextLength = output.size() - 1;
+
+		// when
+		Transport result = TransportCodec.peekContext(ByteBuffer.wrap(bytes, 0, contextLength));
+
+		// then
+		assertEquals(transport.getContextSchema(), result.getContextSchema());
+		assertEquals(transport.getContextBuffer(), result.getContextBuffer());
+		assertNull(result.getMessageSchema());
+		assertNull(result.getMessageBuffer());
+
+	}
+
+	@Test
+	public void read_throwsEOFExceptionIfTheRecordIsTruncated() throws Exception {
+
+		// expect
+		exception.expect(EOFException.class);
+
+		// given
+		byte[] bytes = writeWithGeneratedWriter(createTransport(new Random(6), 10));
+
+		// when
+		TransportCodec.read(ByteBuffer.wrap(bytes, 0, bytes.length - 1));
+
+	}
+
+	@Test
+	public void read_throwsIOExceptionIfALengthIsNegative() throws Exception {
+
+		// expect
+		exception.expect(IOException.class);
+		exception.expectMessage("Malformed data. Length is negative: -1");
+
+		// when
+		TransportCodec.read(ByteBuffer.wrap(new byte[] { 1 }));
+
+	}
+
+	@Test
+	public void read_throwsIOExceptionIfALengthIsLongerThanAnInt() throws Exception {
+
+		// expect
+		exception.expect(IOException.class);
+		exception.expectMessage("Invalid int encoding");
+
+		// when
+		TransportCodec.read(ByteBuffer.wrap(new byte[] { (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, 0 }));
+
+	}
+
+	@Test
+	public void readInt_shouldReadTheValuesWrittenByTheEncoder() throws Exception {
+
+		// given
+		int[] values = { 0, -1, 1, 63, -64, 64, Integer.MAX_VALUE, Integer.MIN_VALUE };
+		ReusableOutputStream output = new ReusableOutputStream(16, 1024);
+		for (int value : values) {
+			output.writeVarInt(value);
+		}
+
+		ByteBuffer input = ByteBuffer.wrap(output.toByteArray());
+
+		// when / then
+		for (int value : values) {
+			assertEquals(value, TransportCodec.readInt(input));
+		}
+
+		assertEquals(0, input.remaining());
+
+	}
+
+	@Test
+	public void fuzz_shouldRoundTripRandomTransportsLikeTheGeneratedClass() throws Exception {
+
+		Random random = new Random(7);
+
+		for (int i = 0; i < FUZZ_ITERATIONS; i++) {
+
+			// given
+			Transport transport = createTransport(random, random.nextInt(4) == 0 ? 5000 : 64);
+			ReusableOutputStream output = new ReusableOutputStream(16, 1024);
+
+			// when
+			TransportCodec.write(output, transport);
+			byte[] bytes = output.toByteArray();
+
+			// then
+			assertArrayEquals(writeWithGeneratedWriter(transport), bytes);
+			assertEquals(transport, TransportCodec.read(ByteBuffer.wrap(bytes)));
+			assertEquals(transport, readWithGeneratedReader(bytes));
+
+		}
+
+	}
+
+	@Test
+	public void fuzz_shouldReadCorruptedTransportsLikeTheGeneratedClassOrFail() throws Exception {
+
+		Random random = new Random(8);
+
+		for (int i = 0; i < FUZZ_ITERATIONS; i++) {
+
+			// given
+			byte[] bytes = writeWithGeneratedWriter(createTransport(random, 32));
+			int corruptions = 1 + random.nextInt(3);
+			for (int j = 0; j < corruptions; j++) {
+				bytes[random.nextInt(bytes.length)] = (byte) random.nextInt(256);
+			}
+			int length = random.nextInt(4) == 0 ? random.nextInt(bytes.length + 1) : bytes.length;
+
+			// when
+			Transport result;
+			try {
+				result = TransportCodec.read(ByteBuffer.wrap(bytes, 0, length));
+			} catch (IOException ex) {
+				continue;
+			}
+
+			// then
+			byte[] record = new byte[length];
+			System.arraycopy(bytes, 0, record, 0, length);
+			assertEquals(readWithGeneratedReader(record), result);
+
+		}
+
+	}
+
+	private static Transport createTransport(Random random, int maximumSize) {
+		return new Transport(new Utf8(randomString(random, maximumSize)), ByteBuffer.wrap(randomBytes(random, maximumSize)),
+				new Utf8(randomString(random, maximumSize)), ByteBuffer.wrap(randomBytes(random, maximumSize)));
+	}
+
+	private static String randomString(Random random, int maximumSize) {
+
+		StringBuilder builder = new StringBuilder();
+		int length = random.nextInt(maximumSize + 1);
+		for (int i = 0; i < length; i++) {
+			builder.append(random.nextInt(8) == 0 ? (char) (0x80 + random.nextInt(0x700)) : (char) (0x20 + random.nextInt(0x5F)));
+		}
+
+		return builder.toString();
+
+	}
+
+	private static byte[] randomBytes(Random random, int maximumSize) {
+		byte[] bytes = new byte[random.nextInt(maximumSize + 1)];
+		random.nextBytes(bytes);
+		return bytes;
+	}
+
+	private static byte[] writeWithGeneratedWriter(Transport transport) throws IOException {
+
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		BinaryEncoder encoder = EncoderFactory.get().binaryEncoder(baos, null);
+		new SpecificDatumWriter<Transport>(Transport.class).write(transport, encoder);
+		encoder.flush();
+
+		return baos.toByteArray();
+
+	}
+
+	private static Transport readWithGeneratedReader(byte[] bytes) throws IOException {
+		return new SpecificDatumReader<Transport>(Transport.class).read(null, DecoderFactory.get().binaryDecoder(bytes, null));
+	}
+
+}
@@ -0,0 +1,145 @@
+/**
+ * Copyright (c) 2017-2018, FinancialForce.com, inc
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ *   are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ *      this list of conditions and the following disclaimer in the documentation
+ *      and/or other materials provided with the distribution.
+ * - Neither the name of the FinancialForce.com, inc nor the names of its contributors
+ *      may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ *  OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL
+ *  THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ *  EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ *  OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY
+ *  OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ **/
+
+package com.financialforce.orizuru.codec;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+public class TransportFormatTest {
+
+	@Rule
+	public final ExpectedException exception = ExpectedException.none();
+
+	@Test
+	public void of_shouldReturnSchemaForAMessageWithoutAHeader() {
+
+		// given
+		byte[] body = new byte[] { 2, 'a', 0 };
+
+		// when
+		TransportFormat format = TransportFormat.of(body);
+
+		// then
+		assertEquals(TransportFormat.SCHEMA, format);
+
+	}
+
+	@Test
+	public void of_shouldReturnSchemaForAMessageShorterThanTheHeader() {
+
+		// when
+		TransportFormat format = TransportFormat.of(new byte[] { TransportFormat.MARKER });
+
+		// then
+		assertEquals(TransportFormat.SCHEMA, format);
+
+	}
+
+	@Test
+	public void of_shouldReturnTheFormatMatchingTheHeader() {
+
+		// given
+		byte[] body = new byte[] { TransportFormat.MARKER, TransportFormat.FINGERPRINT.getVersion(), 0 };
+
+		// when
+		TransportFormat format = TransportFormat.of(body);
+
+		// then
+		assertEquals(TransportFormat.FINGERPRINT, format);
+
+	}
+
+	@Test
+	public void of_shouldReturnTheFormatMatchingTheHeaderAtThePositionOfTheBuffer() {
+
+		// given
+		ByteBuffer body = ByteBuffer.wrap(new byte[] { 0, TransportFormat.MARKER, TransportFormat.BATCH.getVersion(), 0 });
+		body.position(1);
+
+		// when
+		TransportFormat format = TransportFormat.of(body);
+
+		// then
+		assertEquals(TransportFormat.BATCH, format);
+		assertEquals(1, body.position());
+
+	}
+
+	@Test
+	public void of_shouldThrowAnIllegalArgumentExceptionForAnUnknownVersion() {
+
+		// expect
+		exception.expect(IllegalArgumentException.class);
+		exception.expectMessage("Unknown transport format version: 127");
+
+		// when
+		TransportFormat.of(new byte[] { TransportFormat.MARKER, 127 });
+
+	}
+
+	@Test
+	public void getHeader_shouldReturnTheMarkerAndVersion() {
+
+		// when/then
+		assertArrayEquals(new byte[0], TransportFormat.SCHEMA.getHeader());
+		assertArrayEquals(new byte[] { TransportFormat.MARKER, 1 }, TransportFormat.FINGERPRINT.getHeader());
+
+	}
+
+	@Test
+	public void isCompressed_shouldReturnTrueForTheCompressedFormats() {
+
+		// when/then
+		assertFalse(TransportFormat.SCHEMA.isCompressed());
+		assertFalse(TransportFormat.FINGERPRINT.isCompressed());
+		assertFalse(TransportFormat.BATCH.isCompressed());
+		assertTrue(TransportFormat.COMPRESSED.isCompressed());
+		assertTrue(TransportFormat.COMPRESSED_FINGERPRINT.isCompressed());
+
+	}
+
+	@Test
+	public void getRecordOffset_shouldIncludeTheCodecAndFlagsOfTheCompressedFormats() {
+
+		// when/then
+		assertEquals(0, TransportFormat.SCHEMA.getRecordOffset());
+		assertEquals(2, TransportFormat.FINGERPRINT.getRecordOffset());
+		assertEquals(2, TransportFormat.BATCH.getRecordOffset());
+		assertEquals(4, TransportFormat.COMPRESSED.getRecordOffset());
+		assertEquals(4, TransportFormat.COMPRESSED_FINGERPRINT.getRecordOffset());
+
+	}
+
+}
@@ -0,0 +1,97 @@
+/**
+ * Copyright (c) 2017-2018, FinancialForce.com, inc
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ *   are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ *      this list of conditions and the following disclaimer in the documentation
+ *      and/or other materials provided with the distribution.
+ * - Neither the name of the FinancialForce.com, inc nor the names of its contributors
+ *      may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ *  OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL
+ *  THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ *  EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ *  OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY
+ *  OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ **/
+
+package com.financialforce.orizuru.instrumentation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class AggregatingStageListenerTest {
+
+	private static final String QUEUE_NAME = "testQueue";
+
+	@Test
+	public void stageCompleted_shouldAggregateTheStagesForEachQueue() {
+
+		// given
+		AggregatingStageListener listener = new AggregatingStageListener();
+
+		// when
+		listener.stageCompleted(QUEUE_NAME, Stage.DECODE_MESSAGE, 100, 10, null);
+		listener.stageCompleted(QUEUE_NAME, Stage.DECODE_MESSAGE, 300, 30, new IllegalStateException());
+		listener.stageCompleted("otherQueue", Stage.PUBLISH, 50, 5, null);
+
+		// then
+		StageStatistics statistics = listener.getStatistics(QUEUE_NAME, Stage.DECODE_MESSAGE);
+		assertEquals(2, statistics.getCount());
+		assertEquals(1, statistics.getFailureCount());
+		assertEquals(40, statistics.getTotalSize());
+
+		assertEquals(0, listener.getStatistics(QUEUE_NAME, Stage.PUBLISH).getCount());
+		assertEquals(1, listener.getStatistics("otherQueue", Stage.PUBLISH).getCount());
+		assertTrue(listener.isEnabled());
+
+	}
+
+	@Test
+	public void getStatistics_shouldReturnEveryStageOfAQueue() {
+
+		// given
+		AggregatingStageListener listener = new AggregatingStageListener();
+		listener.stageCompleted(QUEUE_NAME, Stage.HANDLE_MESSAGE, 100, 1, null);
+
+		// when
+		Map<Stage, StageStatistics> statistics = listener.getStatistics(QUEUE_NAME);
+
+		// then
+		assertEquals(Stage.values().length, statistics.size());
+		assertEquals(100, statistics.get(Stage.HANDLE_MESSAGE).getTotalDuration());
+
+	}
+
+	@Test
+	public void reset_shouldDiscardTheStatistics() {
+
+		// given
+		AggregatingStageListener listener = new AggregatingStageListener();
+		listener.stageCompleted(QUEUE_NAME, Stage.HANDLE_MESSAGE, 100, 1, null);
+		assertEquals(Collections.singleton(QUEUE_NAME), listener.getQueueNames());
+
+		// when
+		listener.reset();
+
+		// then
+		assertTrue(listener.getQueueNames().isEmpty());
+		assertEquals(0, listener.getStatistics(QUEUE_NAME, Stage.HANDLE_MESSAGE).getCount());
+
+	}
+
+}
@@ -0,0 +1,68 @@
+/**
+ * Copyright (c) 2017-2018, FinancialForce.com, inc
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ *   are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ *      this list of conditions and the following disclaimer in the documentation
+ *      and/or other materials provided with the distribution.
+ * - Neither the name of the FinancialForce.com, inc nor the names of its contributors
+ *      may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ *  OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL
+ *  THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ *  EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ *  OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY
+ *  OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ **/
+
+package com.financialforce.orizuru.instrumentation;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class StageStatisticsTest {
+
+	@Test
+	public void constructor_shouldCreateEmptyStatistics() {
+
+		// when
+		StageStatistics statistics = new StageStatistics();
+
+		// then
+		assertEquals(0, statistics.getCount());
+		assertEquals(0, statistics.getMeanDuration());
+		assertEquals(0, statistics.getMaximumDuration());
+
+	}
+
+	@Test
+	public void record_shouldUpdateTheCountsDurationsAndSizes() {
+
+		// given
+		StageStatistics statistics = new StageStatistics();
+
+		// when
+		statistics.record(100, 10, false);
+		statistics.record(300, 20, true);
+
+		// then
+		assertEquals(2, statistics.getCount());
+		assertEquals(1, statistics.getFailureCount());
+		assertEquals(400, statistics.getTotalDuration());
+		assertEquals(200, statistics.getMeanDuration());
+		assertEquals(300, statistics.getMaximumDuration());
+		assertEquals(30, statistics.getTotalSize());
+
+	}
+
+}
@@ -0,0 +1,100 @@
+/**
+ * Copyright (c) 2017-2018, FinancialForce.com, inc
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ *   are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ *      this list of conditions and the following disclaimer in the documentation
+ *      and/or other materials provided with the distribution.
+ * - Neither the name of the FinancialForce.com, inc nor the names of its contributors
+ *      may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ *  OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL
+ *  THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ *  EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ *  OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY
+ *  OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ **/
+
+package com.financialforce.orizuru.interfaces;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class IConsumerTest {
+
+	@Test
+	public void consumeBatch_shouldConsumeEachMessageInTurn() throws Exception {
+
+		// given
+		IConsumer consumer = new IConsumer() {
+
+			@Override
+			public String getQueueName() {
+				return "testQueue";
+			}
+
+			@Override
+			public byte[] consume(byte[] body) {
+				return new byte[] { (byte) (body[0] * 2) };
+			}
+
+		};
+
+		// when
+		List<byte[]> outgoingMessages = consumer.consumeBatch(Arrays.asList(new byte[] { 1 }, new byte[] { 2 }));
+
+		// then
+		assertEquals(2, outgoingMessages.size());
+		assertArrayEquals(new byte[] { 2 }, outgoingMessages.get(0));
+		assertArrayEquals(new byte[] { 4 }, outgoingMessages.get(1));
+
+	}
+
+	@Test
+	public void consumeBuffer_shouldConsumeTheRemainingBytesOfTheBuffer() throws Exception {
+
+		// given
+		IConsumer consumer = new IConsumer() {
+
+			@Override
+			public String getQueueName() {
+				return "testQueue";
+			}
+
+			@Override
+			public byte[] consume(byte[] body) {
+				return new byte[] { (byte) body.length, (byte) (body[0] * 2) };
+			}
+
+		};
+
+		ByteBuffer body = ByteBuffer.allocateDirect(4);
+		body.put(new byte[] { 1, 2, 3, 4 });
+		body.position(1);
+		body.limit(3);
+
+		// when
+		ByteBuffer outgoingMessage = consumer.consumeBuffer(body);
+
+		// then
+		assertEquals(ByteBuffer.wrap(new byte[] { 2, 4 }), outgoingMessage);
+		assertEquals(1, body.position());
+
+	}
+
+}
@@ -0,0 +1,106 @@
+/**
+ * Copyright (c) 2017-2018, FinancialForce.com, inc
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ *   are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ *      this list of conditions and the following disclaimer in the documentation
+ *      and/or other materials provided with the distribution.
+ * - Neither the name of the FinancialForce.com, inc nor the names of its contributors
+ *      may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ *  OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL
+ *  THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ *  EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ *  OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY
+ *  OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ **/
+
+package com.financialforce.orizuru.interfaces;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+
+import org.apache.avro.generic.GenericContainer;
+import org.hamcrest.core.IsInstanceOf;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import com.financialforce.orizuru.exception.publisher.OrizuruPublisherException;
+import com.financialforce.orizuru.message.Context;
+
+public class IPublisherTest {
+
+	@Rule
+	public final ExpectedException exception = ExpectedException.none();
+
+	private final IPublisher<GenericContainer> publisher = new IPublisher<GenericContainer>() {
+
+		@Override
+		public String getQueueName() {
+			return "testQueue";
+		}
+
+		@Override
+		public byte[] publish(Context context, GenericContainer output) {
+			return new byte[] { 1, 2, 3 };
+		}
+
+	};
+
+	@Test
+	public void publish_shouldCopyThePublishedMessageIntoTheBuffer() throws Exception {
+
+		// given
+		ByteBuffer destination = ByteBuffer.allocateDirect(4);
+
+		// when
+		ByteBuffer result = publisher.publish(new Context(), null, destination);
+
+		// then
+		assertSame(destination, result);
+		assertEquals(3, destination.position());
+
+		destination.flip();
+		assertEquals(ByteBuffer.wrap(new byte[] { 1, 2, 3 }), destination);
+
+	}
+
+	@Test
+	public void publish_shouldThrowAnOrizuruPublisherExceptionIfTheMessageDoesNotFitInTheBuffer() throws Exception {
+
+		// expect
+		exception.expect(OrizuruPublisherException.class);
+		exception.expectCause(IsInstanceOf.<Throwable>instanceOf(BufferOverflowException.class));
+
+		// when
+		publisher.publish(new Context(), null, ByteBuffer.allocate(2));
+
+	}
+
+	@Test
+	public void publishBatch_shouldThrowAnOrizuruPublisherExceptionByDefault() throws Exception {
+
+		// expect
+		exception.expect(OrizuruPublisherException.class);
+		exception.expectCause(IsInstanceOf.<Throwable>instanceOf(UnsupportedOperationException.class));
+
+		// when
+		publisher.publishBatch(new Context(), Collections.emptyList());
+
+	}
+
+}
@@ -0,0 +1,313 @@
+/**
+ * Copyright (c) 2017-2018, FinancialForce.com, inc
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ *   are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ *      this list of conditions and the following disclaimer in the documentation
+ *      and/or other materials provided with the distribution.
+ * - Neither the name of the FinancialForce.com, inc nor the names of its contributors
+ *      may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ *  OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL
+ *  THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ *  EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ *  OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY
+ *  OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ **/
+
+package com.financialforce.orizuru.message;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.stream.Collectors;
+
+import org.apache.avro.AvroRuntimeException;
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaBuilder;
+import org.apache.avro.generic.GenericData.Record;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericRecordBuilder;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.io.EncoderFactory;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+public class ArrayStreamTest {
+
+	private static final Schema ITEM_SCHEMA = SchemaBuilder.record("Line").namespace("com.financialforce.orizuru.ArrayStreamTest")
+			.fields().requiredLong("amount").requiredString("description").endRecord();
+
+	private static final Schema ARRAY_SCHEMA = Schema.createArray(ITEM_SCHEMA);
+
+	@Rule
+	public final ExpectedException exception = ExpectedException.none();
+
+	@Test
+	public void next_shouldDecodeEachItemOfAnArrayWrittenInManyBlocks() throws Exception {
+
+		// given
+		List<Record> lines = createLines(100);
+		byte[] data = encodeInBlocks(lines);
+
+		ArrayStream<Record> items = createStream(data);
+
+		// when
+		List<Record> decoded = new ArrayList<>();
+		while (items.hasNext()) {
+			decoded.add(items.next());
+		}
+
+		// then
+		assertEquals(lines, decoded);
+		assertEquals(100, items.getCount());
+		assertFalse(items.hasNext());
+
+	}
+
+	@Test
+	public void next_shouldDecodeIntoTheGivenItem() throws Exception {
+
+		// given
+		ArrayStream<Record> items = createStream(encodeInBlocks(createLines(3)));
+
+		Record first = items.next();
+
+		// when
+		Record second = items.next(first);
+
+		// then
+		assertSame(first, second);
+		assertEquals(1L, second.get("amount"));
+
+	}
+
+	@Test
+	public void next_shouldThrowANoSuchElementExceptionAfterTheLastItem() throws Exception {
+
+		// expect
+		exception.expect(NoSuchElementException.class);
+
+		// given
+		ArrayStream<Record> items = createStream(encodeInBlocks(new ArrayList<>()));
+
+		// when
+		items.next();
+
+	}
+
+	@Test
+	public void next_shouldThrowAnAvroRuntimeExceptionIfAnItemCannotBeDecoded() throws Exception {
+
+		// expect
+		exception.expect(AvroRuntimeException.class);
+		exception.expectMessage("Failed to decode array item");
+
+		// given
+		byte[] data = encodeInBlocks(createLines(3));
+		ArrayStream<Record> items = createStream(Arrays.copyOf(data, 6));
+
+		// when
+		items.next();
+
+	}
+
+	@Test
+	public void hasNext_shouldThrowAnAvroRuntimeExceptionIfTheNextBlockCannotBeDecoded() throws Exception {
+
+		// expect
+		exception.expect(AvroRuntimeException.class);
+		exception.expectMessage("Failed to decode array");
+
+		// given
+		ArrayStream<Record> items = createStream(new byte[] { 2, 2, 0 });
+		items.next();
+
+		// when
+		items.hasNext();
+
+	}
+
+	@Test
+	public void stream_shouldStreamTheRemainingItems() throws Exception {
+
+		// given
+		ArrayStream<Record> items = createStream(encodeInBlocks(createLines(10)));
+		items.next();
+
+		// when
+		long total = items.stream().mapToLong(item -> (Long) item.get("amount")).sum();
+
+		// then
+		assertEquals(1 + 2 + 3 + 4 + 5 + 6 + 7 + 8 + 9, total);
+		assertEquals(10, items.getCount());
+
+	}
+
+	@Test
+	public void of_shouldIterateOverTheItemsOfARecord() {
+
+		// given
+		Schema schema = createRecordSchema(ARRAY_SCHEMA);
+		List<Record> lines = createLines(3);
+		Record record = new GenericRecordBuilder(schema).set("lines", lines).build();
+
+		// when
+		ArrayStream<Record> items = ArrayStream.of(record, "lines");
+
+		// then
+		assertEquals(ITEM_SCHEMA, items.getItemSchema());
+		assertEquals(lines, items.stream().collect(Collectors.toList()));
+		assertEquals(3, items.getCount());
+
+	}
+
+	@Test
+	public void of_shouldReturnAnEmptyStreamForANullArrayOfARecord() {
+
+		// given
+		Schema schema = createRecordSchema(SchemaBuilder.unionOf().nullType().and().type(ARRAY_SCHEMA).endUnion());
+		Record record = new GenericRecordBuilder(schema).set("lines", null).build();
+
+		// when
+		ArrayStream<Record> items = ArrayStream.of(record, "lines");
+
+		// then
+		assertEquals(ITEM_SCHEMA, items.getItemSchema());
+		assertFalse(items.hasNext());
+
+	}
+
+	@Test
+	public void of_shouldThrowAnIllegalArgumentExceptionForAMissingField() {
+
+		// expect
+		exception.expect(IllegalArgumentException.class);
+		exception.expectMessage("The message has no field named other");
+
+		// given
+		Record record = new GenericRecordBuilder(createRecordSchema(ARRAY_SCHEMA)).set("lines", createLines(1)).build();
+
+		// when
+		ArrayStream.of(record, "other");
+
+	}
+
+	@Test
+	public void of_shouldThrowAnIllegalArgumentExceptionForAFieldThatIsNotAnArray() {
+
+		// expect
+		exception.expect(IllegalArgumentException.class);
+		exception.expectMessage("The field lines is not an array");
+
+		// given
+		Schema schema = createRecordSchema(SchemaBuilder.unionOf().nullType().and().stringType().endUnion());
+		Record record = new GenericRecordBuilder(schema).set("lines", "line").build();
+
+		// when
+		ArrayStream.of(record, "lines");
+
+	}
+
+	@Test
+	public void findField_shouldThrowAnIllegalArgumentExceptionForASchemaThatIsNotARecord() {
+
+		// expect
+		exception.expect(IllegalArgumentException.class);
+		exception.expectMessage("The message has no field named lines");
+
+		// when
+		ArrayStream.findField(ARRAY_SCHEMA, "lines");
+
+	}
+
+	@Test
+	public void findArraySchema_shouldThrowAnIllegalArgumentExceptionForAFieldThatIsNotAnArrayOrUnion() {
+
+		// expect
+		exception.expect(IllegalArgumentException.class);
+		exception.expectMessage("The field lines is not an array");
+
+		// when
+		ArrayStream.findArraySchema(createRecordSchema(Schema.create(Schema.Type.STRING)).getField("lines"));
+
+	}
+
+	@Test
+	public void hasNext_shouldReportAnEmptyStreamAsFinished() throws Exception {
+
+		// given
+		ArrayStream<Record> items = createStream(new byte[] { 0 });
+
+		// when/then
+		assertFalse(items.hasNext());
+		assertFalse(items.hasNext());
+		assertEquals(0, items.getCount());
+
+	}
+
+	@Test
+	public void hasNext_shouldNotDecodeTheNextItem() throws Exception {
+
+		// given
+		ArrayStream<Record> items = createStream(encodeInBlocks(createLines(1)));
+
+		// when/then
+		assertTrue(items.hasNext());
+		assertTrue(items.hasNext());
+		assertEquals(0, items.getCount());
+
+	}
+
+	private static Schema createRecordSchema(Schema linesSchema) {
+		return SchemaBuilder.record("Lines").namespace("com.financialforce.orizuru.ArrayStreamTest").fields()
+				.name("lines").type(linesSchema).noDefault().endRecord();
+	}
+
+	private static List<Record> createLines(int count) {
+
+		List<Record> lines = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			lines.add(new GenericRecordBuilder(ITEM_SCHEMA).set("amount", (long) i).set("description", "line " + i).build());
+		}
+
+		return lines;
+
+	}
+
+	private static byte[] encodeInBlocks(List<Record> lines) throws Exception {
+
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		BinaryEncoder encoder = new EncoderFactory().configureBlockSize(64).blockingBinaryEncoder(output, null);
+		new GenericDatumWriter<List<Record>>(ARRAY_SCHEMA).write(lines, encoder);
+		encoder.flush();
+
+		return output.toByteArray();
+
+	}
+
+	private static ArrayStream<Record> createStream(byte[] data) throws Exception {
+		return new ArrayStream<>(ITEM_SCHEMA, DecoderFactory.get().binaryDecoder(data, null),
+				new GenericDatumReader<Record>(ITEM_SCHEMA));
+	}
+
+}
@@ -26,12 +26,30 @@
 
 package com.financialforce.orizuru.message;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+
+import org.apache.avro.AvroRuntimeException;
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaParseException;
+import org.apache.avro.util.Utf8;
 import org.hamcrest.core.IsInstanceOf;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 
 import com.financialforce.orizuru.exception.consumer.decode.DecodeContextException;
+import com.financialforce.orizuru.interfaces.ISchemaRegistry;
+import com.financialforce.orizuru.registry.InMemorySchemaRegistry;
+import com.financialforce.orizuru.transport.BatchTransport;
+import com.financialforce.orizuru.transport.FingerprintTransport;
+import com.financialforce.orizuru.transport.Transport;
+import com.financialforce.orizuru.util.TestMessage;
 
 public class ContextTest {
 
@@ -54,4 +72,211 @@ public class ContextTest {
 
 	}
 
+	@Test
+	public void decodeFromTransport_shouldDecodeTheContextFromAFingerprintTransport() throws Exception {
+
+		// given
+		ByteBuffer expectedContext = ByteBuffer.wrap("{}".getBytes());
+
+		Schema schema = new TestMessage().getSchema();
+		ISchemaRegistry schemaRegistry = new InMemorySchemaRegistry();
+		long fingerprint = schemaRegistry.register(schema);
+
+		FingerprintTransport transport = new FingerprintTransport();
+		transport.setContextFingerprint(fingerprint);
+		transport.setContextBuffer(expectedContext);
+
+		Context context = new Context();
+
+		// when
+		context.decodeFromTransport(transport, schemaRegistry);
+
+		// then
+		assertEquals(schema, context.getSchema());
+		assertEquals(expectedContext, context.getDataBuffer());
+
+	}
+
+	@Test
+	public void decodeFromTransport_shouldThrowADecodeContextExceptionIfTheFingerprintIsUnknown() throws Exception {
+
+		// expect
+		exception.expect(DecodeContextException.class);
+		exception.expectMessage("Failed to consume message: Failed to decode context");
+		exception.expectCause(IsInstanceOf.<Throwable>instanceOf(AvroRuntimeException.class));
+
+		// given
+		FingerprintTransport transport = new FingerprintTransport();
+		transport.setContextFingerprint(1L);
+
+		Context context = new Context();
+
+		// when
+		context.decodeFromTransport(transport, new InMemorySchemaRegistry());
+
+	}
+
+	@Test
+	public void decodeFromTransport_shouldNotParseTheSchemaTextUntilTheSchemaIsRequested() throws Exception {
+
+		// given
+		String schemaText = "{ \"name\": \"test\", \"type\": \"record\", \"fields\": [] }";
+
+		Transport transport = new Transport();
+		transport.setContextSchema(new Utf8(schemaText));
+		transport.setContextBuffer(ByteBuffer.wrap("{}".getBytes()));
+
+		Context context = new Context();
+
+		// when
+		context.decodeFromTransport(transport);
+
+		// then
+		assertNull(context.schema);
+		assertSame(transport.getContextSchema(), context.getSchemaText());
+		assertEquals("test", context.getSchema().getName());
+		assertSame(context.getSchema(), context.getSchema());
+
+	}
+
+	@Test
+	public void decodeFromBatchTransport_shouldDecodeTheContext() throws Exception {
+
+		// given
+		BatchTransport transport = new BatchTransport();
+		transport.setContextSchema(new Utf8(new TestMessage().getSchema().toString()));
+		transport.setContextBuffer(ByteBuffer.wrap("{}".getBytes()));
+
+		Context context = new Context();
+
+		// when
+		context.decodeFromBatchTransport(transport);
+
+		// then
+		assertSame(transport.getContextSchema(), context.getSchemaText());
+		assertEquals(new TestMessage().getSchema(), context.getSchema());
+		assertEquals(ByteBuffer.wrap("{}".getBytes()), context.getDataBuffer());
+
+	}
+
+	@Test
+	public void decodeFromBatchTransport_shouldThrowADecodeContextExceptionIfTheTransportIsNull() throws Exception {
+
+		// expect
+		exception.expect(DecodeContextException.class);
+		exception.expectMessage("Failed to consume message: Failed to decode context");
+		exception.expectCause(IsInstanceOf.<Throwable>instanceOf(NullPointerException.class));
+
+		// when
+		new Context().decodeFromBatchTransport(null);
+
+	}
+
+	@Test
+	public void getSchema_shouldThrowASchemaParseExceptionIfTheSchemaTextIsInvalid() throws Exception {
+
+		// expect
+		exception.expect(SchemaParseException.class);
+
+		// given
+		Transport transport = new Transport();
+		transport.setContextSchema("invalid");
+		transport.setContextBuffer(ByteBuffer.wrap("{}".getBytes()));
+
+		Context context = new Context();
+		context.decodeFromTransport(transport);
+
+		// when
+		context.getSchema();
+
+	}
+
+	@Test
+	public void getSchemaText_shouldReturnTheTextOfTheSchemaOnceTheContextIsEncoded() throws Exception {
+
+		// given
+		Transport transport = new Transport();
+		transport.setContextSchema("invalid");
+		transport.setContextBuffer(ByteBuffer.wrap("{}".getBytes()));
+
+		Context context = new Context();
+		context.decodeFromTransport(transport);
+
+		TestMessage data = new TestMessage();
+		data.setName("testName");
+
+		// when
+		context.encode(data);
+
+		// then
+		assertEquals(data.getSchema(), context.getSchema());
+		assertEquals(data.getSchema().toString(), context.getSchemaText());
+
+	}
+
+	@Test
+	public void getSchemaText_shouldReturnNullForAnEmptyContext() throws Exception {
+
+		// given
+		Context context = new Context();
+
+		// when/then
+		assertNull(context.getSchemaText());
+		assertNull(context.getSchema());
+
+	}
+
+	@Test
+	public void contentEquals_shouldCompareTheSchemaTextAndData() throws Exception {
+
+		// given
+		Context context = createContext(new Utf8("{\"name\":\"test\",\"type\":\"record\",\"fields\":[]}"), "{}");
+		Context sameContext = createContext(new Utf8("{\"name\":\"test\",\"type\":\"record\",\"fields\":[]}"), "{}");
+		Context sameText = createContext("{\"name\":\"test\",\"type\":\"record\",\"fields\":[]}", "{}");
+		Context otherText = createContext(new Utf8("{\"name\":\"other\",\"type\":\"record\",\"fields\":[]}"), "{}");
+
+		// when/then
+		assertTrue(context.contentEquals(sameContext));
+		assertTrue(context.contentEquals(sameText));
+		assertFalse(context.contentEquals(otherText));
+		assertFalse(context.contentEquals(createContext(new Utf8("{\"name\":\"test\",\"type\":\"record\",\"fields\":[]}"), "[]")));
+		assertNull(context.schema);
+
+	}
+
+	@Test
+	public void contentEquals_shouldCompareTheSchemasOfContextsWithoutSchemaText() throws Exception {
+
+		// given
+		Schema schema = new TestMessage().getSchema();
+		ISchemaRegistry schemaRegistry = new InMemorySchemaRegistry();
+
+		FingerprintTransport transport = new FingerprintTransport();
+		transport.setContextFingerprint(schemaRegistry.register(schema));
+		transport.setContextBuffer(ByteBuffer.wrap("{}".getBytes()));
+
+		Context context = new Context();
+		context.decodeFromTransport(transport, schemaRegistry);
+
+		Context sameContext = new Context();
+		sameContext.decodeFromTransport(transport, schemaRegistry);
+
+		// when/then
+		assertTrue(context.contentEquals(sameContext));
+		assertFalse(context.contentEquals(createContext(schema.toString(), "[]")));
+
+	}
+
+	private Context createContext(CharSequence schemaText, String data) throws Exception {
+
+		Transport transport = new Transport();
+		transport.setContextSchema(schemaText);
+		transport.setContextBuffer(ByteBuffer.wrap(data.getBytes()));
+
+		Context context = new Context();
+		context.decodeFromTransport(transport);
+		return context;
+
+	}
+
 }
@@ -0,0 +1,161 @@
+/**
+ * Copyright (c) 2017-2018, FinancialForce.com, inc
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ *   are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ *      this list of conditions and the following disclaimer in the documentation
+ *      and/or other materials provided with the distribution.
+ * - Neither the name of the FinancialForce.com, inc nor the names of its contributors
+ *      may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ *  OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL
+ *  THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ *  EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ *  OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY
+ *  OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ **/
+
+package com.financialforce.orizuru.message;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.apache.avro.AvroRuntimeException;
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaBuilder;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.generic.GenericRecordBuilder;
+import org.hamcrest.core.IsInstanceOf;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import com.financialforce.orizuru.util.TestMessage;
+
+public class FieldPositionsTest {
+
+	private static final Schema SCHEMA = SchemaBuilder.record("Route").namespace("com.financialforce.orizuru.message.FieldPositionsTest")
+			.fields().requiredString("tenant").requiredLong("id").requiredString("target").endRecord();
+
+	@Rule
+	public final ExpectedException exception = ExpectedException.none();
+
+	@Test
+	public void positionsOf_shouldReturnThePositionOfEachField() {
+
+		// given
+		FieldPositions positions = new FieldPositions("target", "tenant", "missing");
+
+		// when
+		int[] result = positions.positionsOf(SCHEMA);
+
+		// then
+		assertArrayEquals(new int[] { 2, 0, -1 }, result);
+
+	}
+
+	@Test
+	public void positionsOf_shouldReturnTheSamePositionsForTheSameSchema() {
+
+		// given
+		FieldPositions positions = new FieldPositions("target");
+		int[] first = positions.positionsOf(SCHEMA);
+		positions.positionsOf(TestMessage.SCHEMA$);
+
+		// when
+		int[] second = positions.positionsOf(new Schema.Parser().parse(SCHEMA.toString()));
+
+		// then
+		assertSame(first, second);
+
+	}
+
+	@Test
+	public void get_shouldReturnTheValueOfTheField() {
+
+		// given
+		FieldPositions positions = new FieldPositions("tenant", "target");
+		GenericRecord record = new GenericRecordBuilder(SCHEMA).set("tenant", "acme").set("id", 1L).set("target", "queue").build();
+
+		// when
+		Object target = positions.get(record, 1);
+
+		// then
+		assertEquals("queue", target);
+		assertEquals("acme", positions.get(record, 0));
+
+	}
+
+	@Test
+	public void get_shouldReturnNullIfTheFieldIsNotInTheSchema() {
+
+		// given
+		FieldPositions positions = new FieldPositions("target");
+		TestMessage record = new TestMessage();
+		record.setName("test");
+
+		// when
+		Object target = positions.get(record, 0);
+
+		// then
+		assertNull(target);
+
+	}
+
+	@Test
+	public void put_shouldSetTheValueOfTheField() {
+
+		// given
+		FieldPositions positions = new FieldPositions("target");
+		GenericRecord record = new GenericRecordBuilder(SCHEMA).set("tenant", "acme").set("id", 1L).set("target", "queue").build();
+
+		// when
+		positions.put(record, 0, "other");
+
+		// then
+		assertEquals("other", record.get("target"));
+
+	}
+
+	@Test
+	public void put_throwsAvroRuntimeExceptionIfTheFieldIsNotInTheSchema() {
+
+		// expect
+		exception.expect(IsInstanceOf.instanceOf(AvroRuntimeException.class));
+		exception.expectMessage("Not a field of com.financialforce.orizuru.util.TestMessage: target");
+
+		// given
+		FieldPositions positions = new FieldPositions("target");
+
+		// when
+		positions.put(new TestMessage(), 0, "other");
+
+	}
+
+	@Test
+	public void getFieldNames_shouldReturnACopyOfTheFieldNames() {
+
+		// given
+		FieldPositions positions = new FieldPositions("tenant", "target");
+
+		// when
+		String[] fieldNames = positions.getFieldNames();
+		fieldNames[0] = "changed";
+
+		// then
+		assertArrayEquals(new String[] { "tenant", "target" }, positions.getFieldNames());
+
+	}
+
+}
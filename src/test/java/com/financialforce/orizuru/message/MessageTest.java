@@ -26,15 +26,32 @@
 
 package com.financialforce.orizuru.message;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
 
+import java.lang.management.ManagementFactory;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
+import com.sun.management.ThreadMXBean;
+import org.apache.avro.AvroRuntimeException;
 import org.apache.avro.Schema;
+import org.apache.avro.SchemaBuilder;
 import org.apache.avro.SchemaParseException;
 import org.apache.avro.generic.GenericData.Record;
+import org.apache.avro.generic.GenericRecord;
 import org.apache.avro.generic.GenericRecordBuilder;
+import org.apache.avro.util.Utf8;
 import org.hamcrest.core.IsInstanceOf;
 import org.junit.Rule;
 import org.junit.Test;
@@ -43,11 +60,23 @@ import org.junit.rules.ExpectedException;
 import com.financialforce.orizuru.exception.consumer.decode.DecodeMessageContentException;
 import com.financialforce.orizuru.exception.consumer.decode.DecodeMessageException;
 import com.financialforce.orizuru.exception.publisher.encode.EncodeMessageContentException;
+import com.financialforce.orizuru.interfaces.ISchemaRegistry;
+import com.financialforce.orizuru.registry.InMemorySchemaRegistry;
+import com.financialforce.orizuru.transport.BatchTransport;
+import com.financialforce.orizuru.transport.FingerprintTransport;
 import com.financialforce.orizuru.transport.Transport;
 import com.financialforce.orizuru.util.TestMessage;
 
 public class MessageTest {
 
+	private static final int WARM_UP_ITERATIONS = 200000;
+
+	private static final int MEASURED_ITERATIONS = 100000;
+
+	private static final int MEASURED_ROUNDS = 5;
+
+	private static final long MAXIMUM_ALLOCATED_BYTES_PER_MESSAGE = 256;
+
 	@Rule
 	public final ExpectedException exception = ExpectedException.none();
 
@@ -146,6 +175,82 @@ public class MessageTest {
 
 	}
 
+	@Test
+	public void decodeFromTransport_shouldDecodeTheMessageFromAFingerprintTransport() throws Exception {
+
+		// given
+		ByteBuffer expectedMessage = ByteBuffer.wrap("{\"name\":\"testName\"}".getBytes());
+
+		Schema schema = new TestMessage().getSchema();
+		ISchemaRegistry schemaRegistry = new InMemorySchemaRegistry();
+		long fingerprint = schemaRegistry.register(schema);
+
+		FingerprintTransport transport = new FingerprintTransport();
+		transport.setMessageFingerprint(fingerprint);
+		transport.setMessageBuffer(expectedMessage);
+
+		Message message = new Message();
+
+		// when
+		message.decodeFromTransport(transport, schemaRegistry);
+
+		// then
+		assertEquals(schema, message.getSchema());
+		assertEquals(expectedMessage, message.getDataBuffer());
+
+	}
+
+	@Test
+	public void decodeFromTransport_shouldThrowADecodeMessageExceptionIfTheFingerprintIsUnknown() throws Exception {
+
+		// expect
+		exception.expect(DecodeMessageException.class);
+		exception.expectMessage("Failed to consume message: Failed to decode message");
+		exception.expectCause(IsInstanceOf.<Throwable>instanceOf(AvroRuntimeException.class));
+
+		// given
+		FingerprintTransport transport = new FingerprintTransport();
+		transport.setMessageFingerprint(1L);
+
+		Message message = new Message();
+
+		// when
+		message.decodeFromTransport(transport, new InMemorySchemaRegistry());
+
+	}
+
+	@Test
+	public void decodeBatchFromTransport_shouldDecodeTheMessagesWithASharedSchema() throws Exception {
+
+		// given
+		BatchTransport transport = new BatchTransport();
+		transport.setMessageSchema(new TestMessage().getSchema().toString());
+		transport.setMessageBuffers(Arrays.asList(ByteBuffer.wrap(Base64.getDecoder().decode("EHRlc3ROYW1l")),
+				ByteBuffer.wrap(new byte[] { 2, 'a' })));
+
+		// when
+		List<Message> messages = Message.decodeBatchFromTransport(transport);
+
+		// then
+		assertEquals(2, messages.size());
+		assertSame(messages.get(0).getSchema(), messages.get(1).getSchema());
+		assertEquals("testName", ((TestMessage) messages.get(0).decode()).getName().toString());
+		assertEquals("a", ((TestMessage) messages.get(1).decode()).getName().toString());
+
+	}
+
+	@Test
+	public void decodeBatchFromTransport_shouldThrowADecodeMessageExceptionIfTheTransportIsNull() throws Exception {
+
+		// expect
+		exception.expect(DecodeMessageException.class);
+		exception.expectCause(IsInstanceOf.<Throwable>instanceOf(NullPointerException.class));
+
+		// when
+		Message.decodeBatchFromTransport(null);
+
+	}
+
 	@Test
 	public void encode_shouldThrowAnEncodeMessageContentExceptionIfTheMessageDataIsNull() throws Exception {
 
@@ -184,6 +289,53 @@ public class MessageTest {
 
 	}
 
+	@Test
+	public void encode_shouldOnlyAllocateTheEncodedDataInTheSteadyState() throws Exception {
+
+		// given
+		ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+		assumeTrue(threads.isThreadAllocatedMemorySupported());
+
+		GenericRecordBuilder builder = new GenericRecordBuilder(new TestMessage().getSchema());
+		builder.set("name", new Utf8("testName"));
+		Record record = builder.build();
+
+		Message message = new Message();
+		for (int i = 0; i < WARM_UP_ITERATIONS; i++) {
+			message.encode(record);
+		}
+
+		// when
+		long allocatedPerMessage = measureAllocatedBytesPerMessage(threads, () -> message.encode(record));
+
+		// then
+		assertTrue(String.format("Allocated %d bytes per message", allocatedPerMessage), allocatedPerMessage <= MAXIMUM_ALLOCATED_BYTES_PER_MESSAGE);
+
+	}
+
+	@Test
+	public void decode_shouldNotAllocateANewRecordInTheSteadyStateWhenReusingARecord() throws Exception {
+
+		// given
+		ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+		assumeTrue(threads.isThreadAllocatedMemorySupported());
+
+		Message message = new Message(new TestMessage().getSchema(), Base64.getDecoder().decode("EHRlc3ROYW1l"));
+		TestMessage reuse = message.decode();
+		for (int i = 0; i < WARM_UP_ITERATIONS; i++) {
+			reuse = message.decode(reuse);
+		}
+
+		TestMessage record = reuse;
+
+		// when
+		long allocatedPerMessage = measureAllocatedBytesPerMessage(threads, () -> message.decode(record));
+
+		// then
+		assertTrue(String.format("Allocated %d bytes per message", allocatedPerMessage), allocatedPerMessage <= MAXIMUM_ALLOCATED_BYTES_PER_MESSAGE);
+
+	}
+
 	@Test
 	public void getSchema_shouldReturnTheMessageSchema() throws Exception {
 
@@ -198,4 +350,318 @@ public class MessageTest {
 
 	}
 
+	@Test
+	public void decode_shouldResolveTheMessageContentIntoTheReaderSchema() throws Exception {
+
+		// given
+		Schema writerSchema = new Schema.Parser().parse("{\"type\":\"record\",\"name\":\"TestMessage\","
+				+ "\"namespace\":\"com.financialforce.orizuru.util\",\"fields\":[{\"name\":\"id\",\"type\":\"long\"},"
+				+ "{\"name\":\"name\",\"type\":\"string\"}]}");
+
+		Record record = new GenericRecordBuilder(writerSchema).set("id", 1L).set("name", "testName").build();
+
+		Message message = new Message();
+		message.encode(record);
+
+		// when
+		TestMessage avroMessage = message.decode(TestMessage.SCHEMA$, null);
+
+		// then
+		assertEquals("testName", avroMessage.getName().toString());
+
+	}
+
+	@Test
+	public void decodeGeneric_shouldThrowADecodeMessageContentExceptionIfTheSchemaIsNull() throws Exception {
+
+		// expect
+		exception.expect(DecodeMessageContentException.class);
+		exception.expectMessage("Failed to consume message: Failed to decode message content");
+		exception.expectCause(IsInstanceOf.<Throwable>instanceOf(NullPointerException.class));
+
+		// given
+		Message message = new Message();
+
+		// when
+		message.decodeGeneric(null, null);
+
+	}
+
+	@Test
+	public void decodeGeneric_shouldDecodeAGenericRecordEvenIfThereIsAGeneratedClass() throws Exception {
+
+		// given
+		Message message = new Message(TestMessage.SCHEMA$, Base64.getDecoder().decode("EHRlc3ROYW1l"));
+
+		// when
+		GenericRecord avroMessage = message.decodeGeneric(null, null);
+
+		// then
+		assertEquals(Record.class, avroMessage.getClass());
+		assertEquals("testName", avroMessage.get("name").toString());
+
+	}
+
+	@Test
+	public void decodeGeneric_shouldResolveTheMessageContentIntoTheReaderSchema() throws Exception {
+
+		// given
+		Schema writerSchema = new Schema.Parser().parse("{\"type\":\"record\",\"name\":\"TestMessage\","
+				+ "\"namespace\":\"com.financialforce.orizuru.util\",\"fields\":[{\"name\":\"id\",\"type\":\"long\"},"
+				+ "{\"name\":\"name\",\"type\":\"string\"}]}");
+
+		Message message = new Message();
+		message.encodeGeneric(new GenericRecordBuilder(writerSchema).set("id", 1L).set("name", "testName").build());
+
+		// when
+		GenericRecord avroMessage = message.decodeGeneric(TestMessage.SCHEMA$, null);
+
+		// then
+		assertEquals(Record.class, avroMessage.getClass());
+		assertEquals(TestMessage.SCHEMA$, avroMessage.getSchema());
+		assertEquals("testName", avroMessage.get("name").toString());
+
+	}
+
+	@Test
+	public void encodeGeneric_shouldEncodeTheSameBytesAsEncode() throws Exception {
+
+		// given
+		TestMessage testMessage = new TestMessage();
+		testMessage.setName("testName");
+
+		Message specificMessage = new Message();
+		specificMessage.encode(testMessage);
+
+		Message genericMessage = new Message();
+
+		// when
+		genericMessage.encodeGeneric(testMessage);
+
+		// then
+		assertEquals(TestMessage.SCHEMA$, genericMessage.getSchema());
+		assertArrayEquals(specificMessage.getData(), genericMessage.getData());
+
+	}
+
+	@Test
+	public void decode_shouldDecodeTheMessageContentFromADirectBuffer() throws Exception {
+
+		// given
+		byte[] data = Base64.getDecoder().decode("EHRlc3ROYW1l");
+
+		ByteBuffer buffer = ByteBuffer.allocateDirect(data.length);
+		buffer.put(data);
+		buffer.flip();
+
+		Message message = Message.wrap(new TestMessage().getSchema(), buffer);
+
+		// when
+		TestMessage avroMessage = message.decode();
+
+		// then
+		assertEquals("testName", avroMessage.getName().toString());
+		assertEquals(0, buffer.position());
+
+	}
+
+	@Test
+	public void getData_shouldCopyTheDataIfItIsASliceOfAnArray() throws Exception {
+
+		// given
+		ByteBuffer buffer = ByteBuffer.wrap(new byte[] { 1, 2, 3, 4 }, 1, 2).slice();
+
+		Message message = Message.wrap(new TestMessage().getSchema(), buffer);
+
+		// when
+		byte[] data = message.getData();
+
+		// then
+		assertArrayEquals(new byte[] { 2, 3 }, data);
+
+	}
+
+	@Test
+	public void getData_shouldReturnNullIfThereIsNoData() throws Exception {
+
+		// given
+		Message message = new Message(new TestMessage().getSchema(), null);
+
+		// when/then
+		assertNull(message.getData());
+		assertNull(message.getDataBuffer());
+
+	}
+
+	@Test
+	public void getDataSize_shouldReturnTheNumberOfBytesOfData() throws Exception {
+
+		// given
+		Message message = Message.wrap(new TestMessage().getSchema(), ByteBuffer.wrap(new byte[] { 1, 2, 3, 4 }, 1, 2));
+
+		// when/then
+		assertEquals(2, message.getDataSize());
+		assertEquals(0, new Message().getDataSize());
+
+	}
+
+	@Test
+	public void decodeArray_shouldSkipThePrecedingFieldsAndDecodeEachItem() throws Exception {
+
+		// given
+		Schema schema = createLinesSchema(Schema.createArray(TestMessage.SCHEMA$));
+
+		Message message = new Message();
+		message.encode(createLinesRecord(schema, "a", "b", "c"));
+
+		// when
+		ArrayStream<TestMessage> items = message.decodeArray("lines", TestMessage.SCHEMA$);
+
+		// then
+		assertEquals(TestMessage.SCHEMA$, items.getItemSchema());
+		assertEquals("a", items.next().getName().toString());
+		assertEquals("b", items.next().getName().toString());
+		assertEquals("c", items.next().getName().toString());
+		assertFalse(items.hasNext());
+
+	}
+
+	@Test
+	public void decodeArray_shouldResolveEachItemIntoTheReaderSchema() throws Exception {
+
+		// given
+		Schema itemSchema = new Schema.Parser().parse("{\"type\":\"record\",\"name\":\"TestMessage\","
+				+ "\"namespace\":\"com.financialforce.orizuru.util\",\"fields\":[{\"name\":\"id\",\"type\":\"long\"},"
+				+ "{\"name\":\"name\",\"type\":\"string\"}]}");
+		Schema schema = createLinesSchema(Schema.createArray(itemSchema));
+
+		Record item = new GenericRecordBuilder(itemSchema).set("id", 1L).set("name", "testName").build();
+		Record record = new GenericRecordBuilder(schema).set("header", "header").set("totals", new HashMap<String, Long>())
+				.set("lines", Arrays.asList(item)).build();
+
+		Message message = new Message();
+		message.encode(record);
+
+		// when
+		ArrayStream<TestMessage> items = message.decodeArray("lines", TestMessage.SCHEMA$);
+
+		// then
+		assertEquals("testName", items.next().getName().toString());
+
+	}
+
+	@Test
+	public void decodeArray_shouldDecodeTheItemsAsWrittenWithoutAReaderSchema() throws Exception {
+
+		// given
+		Schema schema = createLinesSchema(SchemaBuilder.unionOf().nullType().and().array().items(TestMessage.SCHEMA$).endUnion());
+
+		Message message = new Message();
+		message.encode(createLinesRecord(schema, "a"));
+
+		ByteBuffer buffer = ByteBuffer.allocateDirect(message.getDataSize());
+		buffer.put(message.getDataBuffer());
+		buffer.flip();
+
+		// when
+		ArrayStream<TestMessage> items = Message.wrap(schema, buffer).decodeArray("lines", null);
+
+		// then
+		assertEquals("a", items.next().getName().toString());
+		assertFalse(items.hasNext());
+
+	}
+
+	@Test
+	public void decodeArray_shouldReturnAnEmptyStreamForANullArray() throws Exception {
+
+		// given
+		Schema schema = createLinesSchema(SchemaBuilder.unionOf().nullType().and().array().items(TestMessage.SCHEMA$).endUnion());
+		Record record = new GenericRecordBuilder(schema).set("header", "header").set("totals", new HashMap<String, Long>())
+				.set("lines", null).build();
+
+		Message message = new Message();
+		message.encode(record);
+
+		// when
+		ArrayStream<TestMessage> items = message.decodeArray("lines", null);
+
+		// then
+		assertEquals(TestMessage.SCHEMA$, items.getItemSchema());
+		assertFalse(items.hasNext());
+
+	}
+
+	@Test
+	public void decodeArray_shouldThrowADecodeMessageContentExceptionForAMissingField() throws Exception {
+
+		// expect
+		exception.expect(DecodeMessageContentException.class);
+		exception.expectCause(IsInstanceOf.<Throwable>instanceOf(IllegalArgumentException.class));
+
+		// given
+		Schema schema = createLinesSchema(Schema.createArray(TestMessage.SCHEMA$));
+
+		Message message = new Message();
+		message.encode(createLinesRecord(schema, "a"));
+
+		// when
+		message.decodeArray("other", null);
+
+	}
+
+	private static Schema createLinesSchema(Schema linesSchema) {
+		return SchemaBuilder.record("Lines").namespace("com.financialforce.orizuru.MessageTest").fields()
+				.requiredString("header").name("totals").type().map().values().longType().noDefault()
+				.name("lines").type(linesSchema).noDefault().name("trailer").type().stringType().stringDefault("")
+				.endRecord();
+	}
+
+	private static Record createLinesRecord(Schema schema, String... names) {
+
+		List<TestMessage> lines = new ArrayList<>();
+		for (String name : names) {
+			TestMessage line = new TestMessage();
+			line.setName(name);
+			lines.add(line);
+		}
+
+		Map<String, Long> totals = new HashMap<>();
+		totals.put("amount", 10L);
+
+		return new GenericRecordBuilder(schema).set("header", "header").set("totals", totals).set("lines", lines)
+				.set("trailer", "trailer").build();
+
+	}
+
+	/**
+	 * Measures the allocation of an operation over several rounds, taking the lowest so that a round disturbed by
+	 * the compiler or by other threads does not fail the test.
+	 */
+	private long measureAllocatedBytesPerMessage(ThreadMXBean threads, Operation operation) throws Exception {
+
+		long threadId = Thread.currentThread().getId();
+		long lowest = Long.MAX_VALUE;
+
+		for (int round = 0; round < MEASURED_ROUNDS; round++) {
+
+			long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+			for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+				operation.run();
+			}
+
+			lowest = Math.min(lowest, (threads.getThreadAllocatedBytes(threadId) - allocatedBefore) / MEASURED_ITERATIONS);
+
+		}
+
+		return lowest;
+
+	}
+
+	private interface Operation {
+
+		void run() throws Exception;
+
+	}
+
 }
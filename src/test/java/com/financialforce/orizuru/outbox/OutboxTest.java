@@ -0,0 +1,471 @@
+/**
+ * Copyright (c) 2017-2018, FinancialForce.com, inc
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ *   are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ *      this list of conditions and the following disclaimer in the documentation
+ *      and/or other materials provided with the distribution.
+ * - Neither the name of the FinancialForce.com, inc nor the names of its contributors
+ *      may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ *  OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL
+ *  THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ *  EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ *  OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY
+ *  OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ **/
+
+package com.financialforce.orizuru.outbox;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.NoSuchElementException;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+public class OutboxTest {
+
+	@Rule
+	public final ExpectedException exception = ExpectedException.none();
+
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	private Path directory;
+
+	@Before
+	public void doBefore() {
+		directory = folder.getRoot().toPath().resolve("outbox");
+	}
+
+	@Test
+	public void constructor_shouldCreateTheDirectory() throws Exception {
+
+		// when
+		try (Outbox outbox = new Outbox(directory, 64, SyncPolicy.NONE)) {
+
+			// then
+			assertTrue(Files.isDirectory(directory));
+			assertEquals(directory, outbox.getDirectory());
+			assertTrue(outbox.isEmpty());
+
+		}
+
+	}
+
+	@Test
+	public void constructor_shouldUseTheDefaultSegmentSize() throws Exception {
+
+		// when
+		try (Outbox outbox = new Outbox(directory)) {
+
+			// then
+			assertEquals(Outbox.DEFAULT_SEGMENT_SIZE, Files.size(directory.resolve("0000000000.segment")));
+
+		}
+
+	}
+
+	@Test
+	public void constructor_shouldThrowAnIllegalArgumentExceptionIfTheSegmentSizeIsTooSmall() throws Exception {
+
+		// expect
+		exception.expect(IllegalArgumentException.class);
+		exception.expectMessage("The segment size must be larger than 8");
+
+		// when
+		new Outbox(directory, Outbox.RECORD_HEADER_SIZE, SyncPolicy.NONE);
+
+	}
+
+	@Test
+	public void peek_shouldReturnTheMessagesInTheOrderTheyWereAppended() throws Exception {
+
+		try (Outbox outbox = new Outbox(directory, 1024, SyncPolicy.EVERY_APPEND)) {
+
+			// given
+			outbox.append(bytes("first"));
+			outbox.append(ByteBuffer.wrap(bytes("second")));
+
+			// when
+			ByteBuffer first = outbox.peek();
+
+			// then
+			assertArrayEquals(bytes("first"), toArray(first));
+			assertArrayEquals(bytes("first"), toArray(outbox.peek()));
+			assertTrue(first.isReadOnly());
+
+			outbox.remove();
+			assertArrayEquals(bytes("second"), toArray(outbox.peek()));
+
+			outbox.remove();
+			assertNull(outbox.peek());
+
+		}
+
+	}
+
+	@Test
+	public void append_shouldNotChangeThePositionOfTheBuffer() throws Exception {
+
+		try (Outbox outbox = new Outbox(directory, 1024, SyncPolicy.NONE)) {
+
+			// given
+			ByteBuffer body = ByteBuffer.wrap(bytes("message"));
+
+			// when
+			outbox.append(body);
+
+			// then
+			assertEquals(0, body.position());
+			assertArrayEquals(bytes("message"), toArray(outbox.peek()));
+
+		}
+
+	}
+
+	@Test
+	public void append_shouldRollToTheNextSegmentWhenTheMessageDoesNotFit() throws Exception {
+
+		try (Outbox outbox = new Outbox(directory, 32, SyncPolicy.ON_ROLL)) {
+
+			// when
+			for (int i = 0; i < 5; i++) {
+				outbox.append(bytes("message" + i));
+			}
+
+			// then
+			assertEquals(3, outbox.getSegmentCount());
+
+			for (int i = 0; i < 5; i++) {
+				assertArrayEquals(bytes("message" + i), toArray(outbox.peek()));
+				outbox.remove();
+			}
+
+			assertTrue(outbox.isEmpty());
+			assertEquals(1, outbox.getSegmentCount());
+
+		}
+
+	}
+
+	@Test
+	public void append_shouldRollToTheNextSegmentWithoutForcingWritesIfTheSyncPolicyIsNone() throws Exception {
+
+		try (Outbox outbox = new Outbox(directory, 32, SyncPolicy.NONE)) {
+
+			// when
+			for (int i = 0; i < 3; i++) {
+				outbox.append(bytes("message" + i));
+			}
+
+			// then
+			assertEquals(2, outbox.getSegmentCount());
+
+			for (int i = 0; i < 3; i++) {
+				assertArrayEquals(bytes("message" + i), toArray(outbox.peek()));
+				outbox.remove();
+			}
+
+			assertTrue(outbox.isEmpty());
+
+		}
+
+	}
+
+	@Test
+	public void append_shouldThrowAnIllegalArgumentExceptionForAnEmptyMessage() throws Exception {
+
+		try (Outbox outbox = new Outbox(directory, 64, SyncPolicy.NONE)) {
+
+			// expect
+			exception.expect(IllegalArgumentException.class);
+			exception.expectMessage("An empty message cannot be appended");
+
+			// when
+			outbox.append(new byte[0]);
+
+		}
+
+	}
+
+	@Test
+	public void append_shouldThrowAnIllegalArgumentExceptionIfTheMessageDoesNotFitInASegment() throws Exception {
+
+		try (Outbox outbox = new Outbox(directory, 64, SyncPolicy.NONE)) {
+
+			// expect
+			exception.expect(IllegalArgumentException.class);
+			exception.expectMessage("The message of 57 bytes does not fit in a segment of 64 bytes");
+
+			// when
+			outbox.append(new byte[57]);
+
+		}
+
+	}
+
+	@Test
+	public void append_shouldThrowAnIllegalStateExceptionIfTheOutboxHasBeenClosed() throws Exception {
+
+		// expect
+		exception.expect(IllegalStateException.class);
+		exception.expectMessage("The outbox has been closed");
+
+		// given
+		Outbox outbox = new Outbox(directory, 64, SyncPolicy.NONE);
+		outbox.close();
+
+		// when
+		outbox.append(bytes("message"));
+
+	}
+
+	@Test
+	public void peek_shouldThrowAnIOExceptionForACorruptMessage() throws Exception {
+
+		// expect
+		exception.expect(IOException.class);
+		exception.expectMessage("Corrupt message in outbox segment 0 at offset 0");
+
+		// given
+		try (Outbox outbox = new Outbox(directory, 32, SyncPolicy.ON_ROLL)) {
+			for (int i = 0; i < 3; i++) {
+				outbox.append(bytes("message" + i));
+			}
+		}
+
+		corrupt(directory.resolve("0000000000.segment"), 0);
+
+		// when
+		try (Outbox outbox = new Outbox(directory, 32, SyncPolicy.ON_ROLL)) {
+			outbox.peek();
+		}
+
+	}
+
+	@Test
+	public void remove_shouldThrowANoSuchElementExceptionIfTheOutboxIsEmpty() throws Exception {
+
+		try (Outbox outbox = new Outbox(directory, 64, SyncPolicy.NONE)) {
+
+			// expect
+			exception.expect(NoSuchElementException.class);
+
+			// when
+			outbox.remove();
+
+		}
+
+	}
+
+	@Test
+	public void remove_shouldDeleteDrainedSegments() throws Exception {
+
+		try (Outbox outbox = new Outbox(directory, 32, SyncPolicy.ON_ROLL)) {
+
+			// given
+			outbox.append(bytes("message0"));
+			outbox.append(bytes("message1"));
+			outbox.append(bytes("message2"));
+
+			// when
+			outbox.remove();
+			outbox.remove();
+			outbox.peek();
+
+			// then
+			assertFalse(Files.exists(directory.resolve("0000000000.segment")));
+			assertTrue(Files.exists(directory.resolve("0000000001.segment")));
+
+		}
+
+	}
+
+	@Test
+	public void constructor_shouldResumeDrainingFromTheCursor() throws Exception {
+
+		// given
+		try (Outbox outbox = new Outbox(directory, 32, SyncPolicy.ON_ROLL)) {
+			for (int i = 0; i < 5; i++) {
+				outbox.append(bytes("message" + i));
+			}
+			outbox.remove();
+			outbox.remove();
+			outbox.remove();
+		}
+
+		// when
+		try (Outbox outbox = new Outbox(directory, 32, SyncPolicy.ON_ROLL)) {
+
+			// then
+			assertArrayEquals(bytes("message3"), toArray(outbox.peek()));
+			outbox.remove();
+			assertArrayEquals(bytes("message4"), toArray(outbox.peek()));
+			outbox.remove();
+			assertTrue(outbox.isEmpty());
+
+		}
+
+	}
+
+	@Test
+	public void constructor_shouldDeleteASegmentThatHasAlreadyBeenDrained() throws Exception {
+
+		// given
+		drainFirstSegment();
+		Files.write(directory.resolve("0000000000.segment"), new byte[32]);
+
+		// when
+		try (Outbox outbox = new Outbox(directory, 32, SyncPolicy.ON_ROLL)) {
+
+			// then
+			assertFalse(Files.exists(directory.resolve("0000000000.segment")));
+			assertArrayEquals(bytes("message2"), toArray(outbox.peek()));
+
+		}
+
+	}
+
+	@Test
+	public void constructor_shouldDrainFromTheFirstSegmentIfTheCursorIsBeforeIt() throws Exception {
+
+		// given
+		drainFirstSegment();
+		Files.delete(directory.resolve("cursor"));
+
+		// when
+		try (Outbox outbox = new Outbox(directory, 32, SyncPolicy.ON_ROLL)) {
+
+			// then
+			assertArrayEquals(bytes("message2"), toArray(outbox.peek()));
+			outbox.remove();
+			assertTrue(outbox.isEmpty());
+
+		}
+
+	}
+
+	@Test
+	public void constructor_shouldAppendAfterTheRecoveredMessages() throws Exception {
+
+		// given
+		try (Outbox outbox = new Outbox(directory, 1024, SyncPolicy.ON_ROLL)) {
+			outbox.append(bytes("first"));
+		}
+
+		// when
+		try (Outbox outbox = new Outbox(directory, 1024, SyncPolicy.ON_ROLL)) {
+
+			outbox.append(bytes("second"));
+
+			// then
+			assertArrayEquals(bytes("first"), toArray(outbox.peek()));
+			outbox.remove();
+			assertArrayEquals(bytes("second"), toArray(outbox.peek()));
+
+		}
+
+	}
+
+	@Test
+	public void constructor_shouldDiscardAPartiallyWrittenMessage() throws Exception {
+
+		// given
+		try (Outbox outbox = new Outbox(directory, 1024, SyncPolicy.ON_ROLL)) {
+			outbox.append(bytes("complete"));
+			outbox.append(bytes("partial"));
+		}
+
+		corrupt(directory.resolve("0000000000.segment"), 2 * Outbox.RECORD_HEADER_SIZE + 10);
+
+		// when
+		try (Outbox outbox = new Outbox(directory, 1024, SyncPolicy.ON_ROLL)) {
+
+			outbox.append(bytes("next"));
+
+			// then
+			assertArrayEquals(bytes("complete"), toArray(outbox.peek()));
+			outbox.remove();
+			assertArrayEquals(bytes("next"), toArray(outbox.peek()));
+			outbox.remove();
+			assertTrue(outbox.isEmpty());
+
+		}
+
+	}
+
+	@Test
+	public void close_shouldDoNothingIfTheOutboxHasAlreadyBeenClosed() throws Exception {
+
+		// given
+		Outbox outbox = new Outbox(directory, 32, SyncPolicy.ON_ROLL);
+		outbox.append(bytes("message0"));
+		outbox.close();
+
+		// when
+		outbox.close();
+
+		// then
+		try (Outbox reopened = new Outbox(directory, 32, SyncPolicy.ON_ROLL)) {
+			assertArrayEquals(bytes("message0"), toArray(reopened.peek()));
+		}
+
+	}
+
+	// private methods
+
+	/**
+	 * Leaves an outbox with its first segment drained and deleted, and the third message in the second segment.
+	 */
+	private void drainFirstSegment() throws Exception {
+		try (Outbox outbox = new Outbox(directory, 32, SyncPolicy.ON_ROLL)) {
+			for (int i = 0; i < 3; i++) {
+				outbox.append(bytes("message" + i));
+			}
+			outbox.remove();
+			outbox.remove();
+			outbox.peek();
+		}
+	}
+
+	private static byte[] bytes(String value) throws Exception {
+		return value.getBytes("UTF-8");
+	}
+
+	private static byte[] toArray(ByteBuffer buffer) {
+		byte[] bytes = new byte[buffer.remaining()];
+		buffer.duplicate().get(bytes);
+		return bytes;
+	}
+
+	private static void corrupt(Path file, int position) throws Exception {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+			channel.write(ByteBuffer.wrap(new byte[] { (byte) 0xff }), position);
+		}
+	}
+
+}
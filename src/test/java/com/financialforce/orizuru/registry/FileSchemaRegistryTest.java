@@ -0,0 +1,192 @@
+/**
+ * Copyright (c) 2017-2018, FinancialForce.com, inc
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ *   are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ *      this list of conditions and the following disclaimer in the documentation
+ *      and/or other materials provided with the distribution.
+ * - Neither the name of the FinancialForce.com, inc nor the names of its contributors
+ *      may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ *  OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL
+ *  THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ *  EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ *  OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY
+ *  OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ **/
+
+package com.financialforce.orizuru.registry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaBuilder;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+public class FileSchemaRegistryTest {
+
+	@Rule
+	public final ExpectedException exception = ExpectedException.none();
+
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	private Path directory;
+	private Schema schema;
+
+	@Before
+	public void doBefore() {
+
+		directory = folder.getRoot().toPath().resolve("schemas");
+
+		schema = SchemaBuilder.record("TestSchema").namespace("com.financialforce.orizuru.registry")
+				.fields().name("testString").type().stringType().noDefault().endRecord();
+
+	}
+
+	@Test
+	public void constructor_shouldCreateTheDirectory() throws Exception {
+
+		// when
+		FileSchemaRegistry registry = new FileSchemaRegistry(directory);
+
+		// then
+		assertTrue(Files.isDirectory(directory));
+		assertEquals(directory, registry.getDirectory());
+
+	}
+
+	@Test
+	public void register_shouldWriteTheSchemaToAFileNamedAfterTheFingerprint() throws Exception {
+
+		// given
+		FileSchemaRegistry registry = new FileSchemaRegistry(directory);
+
+		// when
+		long fingerprint = registry.register(schema);
+
+		// then
+		Path file = directory.resolve(String.format("%016x.avsc", fingerprint));
+		assertEquals(schema.toString(), new String(Files.readAllBytes(file), "UTF-8"));
+
+	}
+
+	@Test
+	public void register_shouldNotRewriteAnExistingFile() throws Exception {
+
+		// given
+		long fingerprint = new FileSchemaRegistry(directory).register(schema);
+		Path file = directory.resolve(String.format("%016x.avsc", fingerprint));
+		Files.write(file, schema.toString(true).getBytes("UTF-8"));
+
+		// when
+		new FileSchemaRegistry(directory).register(schema);
+
+		// then
+		assertEquals(schema.toString(true), new String(Files.readAllBytes(file), "UTF-8"));
+
+	}
+
+	@Test
+	public void register_shouldThrowAnUncheckedIOExceptionIfTheFileCannotBeWritten() throws Exception {
+
+		// expect
+		exception.expect(UncheckedIOException.class);
+
+		// given
+		FileSchemaRegistry registry = new FileSchemaRegistry(directory);
+		Files.delete(directory);
+
+		// when
+		registry.register(schema);
+
+	}
+
+	@Test
+	public void register_shouldWriteTheFileOnTheNextRegistrationIfTheFirstWriteFailed() throws Exception {
+
+		// given
+		FileSchemaRegistry registry = new FileSchemaRegistry(directory);
+		Files.delete(directory);
+
+		try {
+			registry.register(schema);
+		} catch (UncheckedIOException ex) {
+			Files.createDirectories(directory);
+		}
+
+		// when
+		long fingerprint = registry.register(schema);
+
+		// then
+		Path file = directory.resolve(String.format("%016x.avsc", fingerprint));
+		assertEquals(schema.toString(), new String(Files.readAllBytes(file), "UTF-8"));
+
+	}
+
+	@Test
+	public void lookup_shouldLoadASchemaRegisteredByAnotherRegistry() throws Exception {
+
+		// given
+		long fingerprint = new FileSchemaRegistry(directory).register(schema);
+		FileSchemaRegistry registry = new FileSchemaRegistry(directory);
+
+		// when
+		Schema result = registry.lookup(fingerprint);
+
+		// then
+		assertEquals(schema, result);
+		assertSame(result, registry.lookup(fingerprint));
+
+	}
+
+	@Test
+	public void lookup_shouldReturnNullForAnUnknownFingerprint() throws Exception {
+
+		// given
+		FileSchemaRegistry registry = new FileSchemaRegistry(directory);
+
+		// when
+		Schema result = registry.lookup(1L);
+
+		// then
+		assertNull(result);
+
+	}
+
+	@Test
+	public void lookup_shouldThrowAnUncheckedIOExceptionIfTheFileCannotBeRead() throws Exception {
+
+		// expect
+		exception.expect(UncheckedIOException.class);
+
+		// given
+		FileSchemaRegistry registry = new FileSchemaRegistry(directory);
+		Files.createDirectory(directory.resolve(String.format("%016x.avsc", 1L)));
+
+		// when
+		registry.lookup(1L);
+
+	}
+
+}
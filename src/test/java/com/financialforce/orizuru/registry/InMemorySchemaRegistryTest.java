@@ -0,0 +1,93 @@
+/**
+ * Copyright (c) 2017-2018, FinancialForce.com, inc
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ *   are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ *      this list of conditions and the following disclaimer in the documentation
+ *      and/or other materials provided with the distribution.
+ * - Neither the name of the FinancialForce.com, inc nor the names of its contributors
+ *      may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ *  OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL
+ *  THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ *  EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ *  OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY
+ *  OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ **/
+
+package com.financialforce.orizuru.registry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaBuilder;
+import org.apache.avro.SchemaNormalization;
+import org.junit.Before;
+import org.junit.Test;
+
+public class InMemorySchemaRegistryTest {
+
+	private Schema schema;
+
+	@Before
+	public void doBefore() {
+		schema = SchemaBuilder.record("TestSchema").namespace("com.financialforce.orizuru.registry")
+				.fields().name("testString").type().stringType().noDefault().endRecord();
+	}
+
+	@Test
+	public void register_shouldReturnTheParsingFingerprintOfTheSchema() {
+
+		// given
+		InMemorySchemaRegistry registry = new InMemorySchemaRegistry();
+
+		// when
+		long fingerprint = registry.register(schema);
+
+		// then
+		assertEquals(SchemaNormalization.parsingFingerprint64(schema), fingerprint);
+		assertEquals(fingerprint, registry.register(schema));
+
+	}
+
+	@Test
+	public void lookup_shouldReturnTheRegisteredSchema() {
+
+		// given
+		InMemorySchemaRegistry registry = new InMemorySchemaRegistry();
+		long fingerprint = registry.register(schema);
+
+		// when
+		Schema result = registry.lookup(fingerprint);
+
+		// then
+		assertSame(schema, result);
+
+	}
+
+	@Test
+	public void lookup_shouldReturnNullForAnUnknownFingerprint() {
+
+		// given
+		InMemorySchemaRegistry registry = new InMemorySchemaRegistry();
+
+		// when
+		Schema result = registry.lookup(1L);
+
+		// then
+		assertNull(result);
+
+	}
+
+}
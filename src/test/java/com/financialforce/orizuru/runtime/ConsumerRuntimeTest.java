@@ -0,0 +1,556 @@
+/**
+ * Copyright (c) 2017-2018, FinancialForce.com, inc
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ *   are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ *      this list of conditions and the following disclaimer in the documentation
+ *      and/or other materials provided with the distribution.
+ * - Neither the name of the FinancialForce.com, inc nor the names of its contributors
+ *      may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ *  OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL
+ *  THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ *  EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ *  OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY
+ *  OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ **/
+
+package com.financialforce.orizuru.runtime;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeFalse;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import com.financialforce.orizuru.exception.consumer.handler.HandleMessageException;
+import com.financialforce.orizuru.interfaces.IConsumer;
+import com.financialforce.orizuru.interfaces.IMessageSource;
+
+public class ConsumerRuntimeTest {
+
+	private static final String QUEUE_NAME = "testQueue";
+
+	@Rule
+	public final ExpectedException exception = ExpectedException.none();
+
+	@Test
+	public void start_shouldConsumeTheMessagesFromTheSource() throws Exception {
+
+		for (WorkerPool workerPool : new WorkerPool[] { WorkerPool.PLATFORM, WorkerPool.FORK_JOIN }) {
+
+			// given
+			IConsumer consumer = createConsumer();
+			when(consumer.consume(any(byte[].class))).thenAnswer(invocation -> {
+				byte[] body = invocation.getArgument(0);
+				return new byte[] { (byte) (body[0] * 2) };
+			});
+
+			QueueSource source = new QueueSource(3);
+			source.add(1, 2, 3);
+
+			ConsumerRuntime runtime = new ConsumerRuntime(workerPool, 10, TimeUnit.MILLISECONDS);
+			runtime.register(consumer, source, 2);
+
+			// when
+			runtime.start();
+
+			// then
+			assertTrue(source.await());
+			assertTrue(runtime.isRunning());
+			assertTrue(runtime.stop(1, TimeUnit.SECONDS));
+			assertFalse(runtime.isRunning());
+
+			assertEquals(3, source.completed.size());
+			assertEquals(12, source.completed.stream().mapToInt(outgoingMessage -> outgoingMessage[0]).sum());
+
+			QueueStatistics statistics = runtime.getStatistics(QUEUE_NAME);
+			assertEquals(3, statistics.getMessageCount());
+			assertEquals(0, statistics.getFailureCount());
+			assertEquals(0, statistics.getInFlightCount());
+
+		}
+
+	}
+
+	@Test
+	public void start_shouldReportFailuresToTheSource() throws Exception {
+
+		// given
+		HandleMessageException failure = new HandleMessageException(new NullPointerException());
+
+		IConsumer consumer = createConsumer();
+		when(consumer.consume(any(byte[].class))).thenThrow(failure);
+
+		QueueSource source = new QueueSource(1);
+		source.add(1);
+
+		// when
+		try (ConsumerRuntime runtime = new ConsumerRuntime(WorkerPool.PLATFORM, 10, TimeUnit.MILLISECONDS)) {
+
+			runtime.register(consumer, source, 1).start();
+
+			// then
+			assertTrue(source.await());
+			assertSame(failure, source.failed.get(0));
+			assertEquals(1, runtime.getStatistics(QUEUE_NAME).getFailureCount());
+
+		}
+
+	}
+
+	@Test
+	public void start_shouldKeepReceivingIfTheSourceFails() throws Exception {
+
+		// given
+		IConsumer consumer = createConsumer();
+
+		AtomicBoolean thrown = new AtomicBoolean();
+		QueueSource source = new QueueSource(1) {
+
+			@Override
+			public byte[] receive(long timeout, TimeUnit unit) throws InterruptedException {
+
+				if (thrown.compareAndSet(false, true)) {
+					throw new IllegalStateException();
+				}
+
+				return super.receive(timeout, unit);
+
+			}
+
+		};
+		source.add(1);
+
+		// when
+		try (ConsumerRuntime runtime = new ConsumerRuntime(WorkerPool.PLATFORM, 10, TimeUnit.MILLISECONDS)) {
+
+			runtime.register(consumer, source, 1).start();
+
+			// then
+			assertTrue(source.await());
+			assertNull(source.completed.get(0));
+			assertEquals(1, runtime.getStatistics(QUEUE_NAME).getReceiveFailureCount());
+
+		}
+
+	}
+
+	@Test
+	public void start_shouldWaitBeforeReceivingAgainIfTheSourceKeepsFailing() throws Exception {
+
+		// given
+		AtomicInteger receiveCount = new AtomicInteger();
+		IMessageSource source = (timeout, unit) -> {
+			receiveCount.incrementAndGet();
+			throw new IllegalStateException();
+		};
+
+		ConsumerRuntime runtime = new ConsumerRuntime(WorkerPool.PLATFORM, 10, TimeUnit.MILLISECONDS);
+		runtime.register(createConsumer(), source, 1).start();
+
+		// when
+		Thread.sleep(200);
+		runtime.close();
+
+		// then
+		assertTrue(receiveCount.get() > 1);
+		assertTrue(receiveCount.get() < 10);
+		assertEquals(receiveCount.get(), runtime.getStatistics(QUEUE_NAME).getReceiveFailureCount());
+
+	}
+
+	@Test
+	public void start_shouldReportAnErrorThrownByTheConsumerAsAFailure() throws Exception {
+
+		// given
+		AssertionError error = new AssertionError();
+
+		IConsumer consumer = createConsumer();
+		when(consumer.consume(any(byte[].class))).thenThrow(error);
+
+		QueueSource source = new QueueSource(2);
+		source.add(1, 2);
+
+		// when
+		try (ConsumerRuntime runtime = new ConsumerRuntime(WorkerPool.PLATFORM, 10, TimeUnit.MILLISECONDS)) {
+
+			runtime.register(consumer, source, 1).start();
+
+			// then
+			assertTrue(source.await());
+			assertEquals(2, source.failed.size());
+			assertSame(error, source.failed.get(0).getCause());
+
+		}
+
+	}
+
+	@Test
+	public void start_shouldEndTheWorkerIfTheConsumerThrowsAVirtualMachineError() throws Exception {
+
+		// given
+		CountDownLatch consumed = new CountDownLatch(1);
+
+		IConsumer consumer = createConsumer();
+		when(consumer.consume(any(byte[].class))).thenAnswer(invocation -> {
+			consumed.countDown();
+			throw new StackOverflowError();
+		});
+
+		QueueSource source = new QueueSource(2);
+		source.add(1, 2);
+
+		// when
+		try (ConsumerRuntime runtime = new ConsumerRuntime(WorkerPool.PLATFORM, 10, TimeUnit.MILLISECONDS)) {
+
+			runtime.register(consumer, source, 1).start();
+
+			// then
+			assertTrue(consumed.await(5, TimeUnit.SECONDS));
+			Thread.sleep(50);
+			assertTrue(source.failed.isEmpty());
+			assertEquals(1, source.queue.size());
+			verify(consumer, times(1)).consume(any(byte[].class));
+
+		}
+
+	}
+
+	@Test
+	public void start_shouldKeepConsumingIfTheSourceFailsToCompleteAMessage() throws Exception {
+
+		// given
+		IConsumer consumer = createConsumer();
+
+		AtomicBoolean thrown = new AtomicBoolean();
+		QueueSource source = new QueueSource(2) {
+
+			@Override
+			public void complete(byte[] body, byte[] outgoingMessage) {
+
+				super.complete(body, outgoingMessage);
+
+				if (thrown.compareAndSet(false, true)) {
+					throw new IllegalStateException();
+				}
+
+			}
+
+		};
+		source.add(1, 2);
+
+		// when
+		try (ConsumerRuntime runtime = new ConsumerRuntime(WorkerPool.PLATFORM, 10, TimeUnit.MILLISECONDS)) {
+
+			runtime.register(consumer, source, 1).start();
+
+			// then
+			assertTrue(source.await());
+			assertEquals(2, source.completed.size());
+			assertEquals(1, runtime.getStatistics(QUEUE_NAME).getAcknowledgeFailureCount());
+
+		}
+
+	}
+
+	@Test
+	public void start_shouldConsumeAsManyMessagesAtOnceAsTheConcurrency() throws Exception {
+
+		// given
+		CyclicBarrier barrier = new CyclicBarrier(3);
+
+		IConsumer consumer = createConsumer();
+		when(consumer.consume(any(byte[].class))).thenAnswer(invocation -> {
+			barrier.await(5, TimeUnit.SECONDS);
+			return null;
+		});
+
+		QueueSource source = new QueueSource(3);
+		source.add(1, 2, 3);
+
+		// when
+		try (ConsumerRuntime runtime = new ConsumerRuntime(WorkerPool.PLATFORM, 10, TimeUnit.MILLISECONDS)) {
+
+			runtime.register(consumer, source, 3).start();
+
+			// then
+			assertTrue(source.await());
+			assertTrue(source.failed.isEmpty());
+
+		}
+
+	}
+
+	@Test
+	public void stop_shouldInterruptWorkersThatDoNotFinish() throws Exception {
+
+		// given
+		CountDownLatch receiving = new CountDownLatch(1);
+		IMessageSource source = (timeout, unit) -> {
+			receiving.countDown();
+			new CountDownLatch(1).await();
+			return null;
+		};
+
+		ConsumerRuntime runtime = new ConsumerRuntime(WorkerPool.PLATFORM);
+		runtime.register(createConsumer(), source, 1).start();
+		assertTrue(receiving.await(5, TimeUnit.SECONDS));
+
+		// when
+		boolean stopped = runtime.stop(10, TimeUnit.MILLISECONDS);
+
+		// then
+		assertFalse(stopped);
+
+	}
+
+	@Test
+	public void stop_shouldInterruptAWorkerWaitingToReceiveAgain() throws Exception {
+
+		// given
+		CountDownLatch receiving = new CountDownLatch(1);
+		IMessageSource source = (timeout, unit) -> {
+			receiving.countDown();
+			throw new IllegalStateException();
+		};
+
+		ConsumerRuntime runtime = new ConsumerRuntime(WorkerPool.PLATFORM, 10, TimeUnit.SECONDS);
+		runtime.register(createConsumer(), source, 1).start();
+		assertTrue(receiving.await(5, TimeUnit.SECONDS));
+
+		// when
+		boolean stopped = runtime.stop(10, TimeUnit.MILLISECONDS);
+
+		// then
+		assertFalse(stopped);
+		assertTrue(runtime.stop(5, TimeUnit.SECONDS));
+		assertEquals(1, runtime.getStatistics(QUEUE_NAME).getReceiveFailureCount());
+
+	}
+
+	@Test
+	public void close_shouldKeepTheInterruptStatusIfInterruptedWhileWaiting() throws Exception {
+
+		// given
+		CountDownLatch receiving = new CountDownLatch(1);
+		IMessageSource source = (timeout, unit) -> {
+			receiving.countDown();
+			new CountDownLatch(1).await();
+			return null;
+		};
+
+		ConsumerRuntime runtime = new ConsumerRuntime(WorkerPool.PLATFORM);
+		runtime.register(createConsumer(), source, 1).start();
+		assertTrue(receiving.await(5, TimeUnit.SECONDS));
+
+		Thread.currentThread().interrupt();
+
+		// when
+		runtime.close();
+
+		// then
+		assertTrue(Thread.interrupted());
+		assertFalse(runtime.isRunning());
+		assertFalse(runtime.stop(0, TimeUnit.SECONDS));
+
+	}
+
+	@Test
+	public void stop_shouldReturnTrueIfTheRuntimeWasNotStarted() throws Exception {
+
+		// given
+		ConsumerRuntime runtime = new ConsumerRuntime();
+
+		// when
+		boolean stopped = runtime.stop(0, TimeUnit.SECONDS);
+
+		// then
+		assertTrue(stopped);
+		assertSame(WorkerPool.getDefault(), runtime.getWorkerPool());
+
+	}
+
+	@Test
+	public void register_shouldShareTheStatisticsForAQueue() throws Exception {
+
+		// given
+		ConsumerRuntime runtime = new ConsumerRuntime(WorkerPool.PLATFORM);
+
+		// when
+		runtime.register(createConsumer(), new QueueSource(0), 1);
+		runtime.register(createConsumer(), new QueueSource(0), 1);
+
+		// then
+		assertEquals(1, runtime.getStatistics().size());
+		assertSame(runtime.getStatistics(QUEUE_NAME), runtime.getStatistics().get(QUEUE_NAME));
+
+	}
+
+	@Test
+	public void register_throwsIllegalArgumentExceptionForAConcurrencyLessThanOne() throws Exception {
+
+		// expect
+		exception.expect(IllegalArgumentException.class);
+		exception.expectMessage("The concurrency must be at least 1");
+
+		// when
+		new ConsumerRuntime(WorkerPool.PLATFORM).register(createConsumer(), new QueueSource(0), 0);
+
+	}
+
+	@Test
+	public void register_throwsIllegalStateExceptionOnceStarted() throws Exception {
+
+		// expect
+		exception.expect(IllegalStateException.class);
+		exception.expectMessage("The runtime has already been started");
+
+		// given
+		try (ConsumerRuntime runtime = new ConsumerRuntime(WorkerPool.PLATFORM, 10, TimeUnit.MILLISECONDS)) {
+
+			runtime.register(createConsumer(), new QueueSource(0), 1).start();
+
+			// when
+			runtime.register(createConsumer(), new QueueSource(0), 1);
+
+		}
+
+	}
+
+	@Test
+	public void start_throwsIllegalStateExceptionIfAlreadyStarted() throws Exception {
+
+		// expect
+		exception.expect(IllegalStateException.class);
+		exception.expectMessage("The runtime has already been started");
+
+		// given
+		try (ConsumerRuntime runtime = new ConsumerRuntime(WorkerPool.PLATFORM, 10, TimeUnit.MILLISECONDS)) {
+
+			runtime.register(createConsumer(), new QueueSource(0), 1).start();
+
+			// when
+			runtime.start();
+
+		}
+
+	}
+
+	@Test
+	public void start_throwsIllegalStateExceptionIfNoConsumersAreRegistered() throws Exception {
+
+		// expect
+		exception.expect(IllegalStateException.class);
+		exception.expectMessage("No consumers have been registered");
+
+		// when
+		new ConsumerRuntime(WorkerPool.PLATFORM).start();
+
+	}
+
+	@Test
+	public void constructor_throwsIllegalArgumentExceptionForANonPositivePollTimeout() throws Exception {
+
+		// expect
+		exception.expect(IllegalArgumentException.class);
+		exception.expectMessage("The poll timeout must be positive");
+
+		// when
+		new ConsumerRuntime(WorkerPool.PLATFORM, 0, TimeUnit.MILLISECONDS);
+
+	}
+
+	@Test
+	public void constructor_throwsIllegalArgumentExceptionIfTheWorkerPoolIsNotAvailable() throws Exception {
+
+		assumeFalse(WorkerPool.VIRTUAL.isAvailable());
+
+		// expect
+		exception.expect(IllegalArgumentException.class);
+		exception.expectMessage("The VIRTUAL worker pool is not available");
+
+		// when
+		new ConsumerRuntime(WorkerPool.VIRTUAL);
+
+	}
+
+	private IConsumer createConsumer() {
+		IConsumer consumer = mock(IConsumer.class);
+		when(consumer.getQueueName()).thenReturn(QUEUE_NAME);
+		return consumer;
+	}
+
+	private static class QueueSource implements IMessageSource {
+
+		private final BlockingQueue<byte[]> queue = new LinkedBlockingQueue<>();
+
+		private final List<byte[]> completed = new CopyOnWriteArrayList<>();
+
+		private final List<Exception> failed = new CopyOnWriteArrayList<>();
+
+		private final CountDownLatch done;
+
+		private QueueSource(int expected) {
+			this.done = new CountDownLatch(expected);
+		}
+
+		private void add(int... values) {
+			for (int value : values) {
+				queue.add(new byte[] { (byte) value });
+			}
+		}
+
+		private boolean await() throws InterruptedException {
+			return done.await(5, TimeUnit.SECONDS);
+		}
+
+		@Override
+		public byte[] receive(long timeout, TimeUnit unit) throws InterruptedException {
+			return queue.poll(timeout, unit);
+		}
+
+		@Override
+		public void complete(byte[] body, byte[] outgoingMessage) {
+			completed.add(outgoingMessage);
+			done.countDown();
+		}
+
+		@Override
+		public void fail(byte[] body, Exception cause) {
+			failed.add(cause);
+			done.countDown();
+		}
+
+	}
+
+}
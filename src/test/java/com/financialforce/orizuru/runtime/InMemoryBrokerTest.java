@@ -0,0 +1,390 @@
+/**
+ * Copyright (c) 2017-2018, FinancialForce.com, inc
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ *   are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ *      this list of conditions and the following disclaimer in the documentation
+ *      and/or other materials provided with the distribution.
+ * - Neither the name of the FinancialForce.com, inc nor the names of its contributors
+ *      may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ *  OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL
+ *  THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ *  EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ *  OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY
+ *  OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ **/
+
+package com.financialforce.orizuru.runtime;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import com.financialforce.orizuru.interfaces.IConsumer;
+import com.financialforce.orizuru.interfaces.IMessageSource;
+import com.financialforce.orizuru.interfaces.IQueueable;
+
+public class InMemoryBrokerTest {
+
+	private static final String QUEUE_NAME = "testQueue";
+
+	private static final String OUTGOING_QUEUE_NAME = "outgoingQueue";
+
+	@Rule
+	public final ExpectedException exception = ExpectedException.none();
+
+	@Test
+	public void receive_shouldDeliverTheMessagesInTheOrderTheyWereSent() throws Exception {
+
+		// given
+		InMemoryBroker broker = new InMemoryBroker();
+		broker.send(QUEUE_NAME, new byte[] { 1 });
+		broker.send(createQueueable(QUEUE_NAME), new byte[] { 2 });
+
+		IMessageSource subscription = broker.subscribe(QUEUE_NAME);
+
+		// when
+		byte[] first = subscription.receive(0, TimeUnit.SECONDS);
+		byte[] second = subscription.receive(0, TimeUnit.SECONDS);
+
+		// then
+		assertArrayEquals(new byte[] { 1 }, first);
+		assertArrayEquals(new byte[] { 2 }, second);
+		assertNull(subscription.receive(0, TimeUnit.SECONDS));
+
+		assertEquals(0, broker.getDepth(QUEUE_NAME));
+		assertEquals(2, broker.getUnacknowledgedCount(QUEUE_NAME));
+
+	}
+
+	@Test
+	public void complete_shouldAcknowledgeTheMessage() throws Exception {
+
+		// given
+		InMemoryBroker broker = new InMemoryBroker(1, 1, AcknowledgeMode.MANUAL);
+		broker.send(QUEUE_NAME, new byte[] { 1 });
+
+		IMessageSource subscription = broker.subscribe(QUEUE_NAME);
+		byte[] body = subscription.receive(0, TimeUnit.SECONDS);
+
+		// when
+		subscription.complete(body, null);
+
+		// then
+		assertEquals(0, broker.getUnacknowledgedCount(QUEUE_NAME));
+		assertTrue(broker.offer(QUEUE_NAME, new byte[] { 2 }, 0, TimeUnit.SECONDS));
+
+	}
+
+	@Test
+	public void receive_shouldNotDeliverMoreThanThePrefetchCountBeforeAcknowledgement() throws Exception {
+
+		// given
+		InMemoryBroker broker = new InMemoryBroker(10, 1, AcknowledgeMode.MANUAL);
+		broker.send(QUEUE_NAME, new byte[] { 1 });
+		broker.send(QUEUE_NAME, new byte[] { 2 });
+
+		IMessageSource subscription = broker.subscribe(QUEUE_NAME);
+		byte[] first = subscription.receive(0, TimeUnit.SECONDS);
+
+		// when
+		byte[] second = subscription.receive(0, TimeUnit.SECONDS);
+
+		// then
+		assertNull(second);
+		assertArrayEquals(new byte[] { 2 }, broker.subscribe(QUEUE_NAME).receive(0, TimeUnit.SECONDS));
+
+		subscription.complete(first, null);
+		assertEquals(1, broker.getUnacknowledgedCount(QUEUE_NAME));
+
+	}
+
+	@Test
+	public void offer_shouldReturnFalseIfTheQueueIsFull() throws Exception {
+
+		// given
+		InMemoryBroker broker = new InMemoryBroker(1, 1, AcknowledgeMode.MANUAL);
+		broker.send(QUEUE_NAME, new byte[] { 1 });
+
+		// when
+		boolean sent = broker.offer(QUEUE_NAME, new byte[] { 2 }, 10, TimeUnit.MILLISECONDS);
+
+		// then
+		assertFalse(sent);
+		assertEquals(1, broker.getDepth(QUEUE_NAME));
+
+	}
+
+	@Test
+	public void fail_shouldRedeliverTheMessageFirstIfAcknowledgedManually() throws Exception {
+
+		// given
+		InMemoryBroker broker = new InMemoryBroker();
+		broker.send(QUEUE_NAME, new byte[] { 1 });
+		broker.send(QUEUE_NAME, new byte[] { 2 });
+
+		IMessageSource subscription = broker.subscribe(QUEUE_NAME);
+		byte[] body = subscription.receive(0, TimeUnit.SECONDS);
+
+		// when
+		subscription.fail(body, new IllegalStateException());
+
+		// then
+		assertEquals(1, broker.getRedeliveryCount(QUEUE_NAME));
+		assertEquals(0, broker.getUnacknowledgedCount(QUEUE_NAME));
+		assertArrayEquals(new byte[] { 1 }, subscription.receive(0, TimeUnit.SECONDS));
+
+	}
+
+	@Test
+	public void fail_shouldDropTheMessageIfAcknowledgedAutomatically() throws Exception {
+
+		// given
+		InMemoryBroker broker = new InMemoryBroker(10, 1, AcknowledgeMode.AUTO);
+		broker.send(QUEUE_NAME, new byte[] { 1 });
+
+		IMessageSource subscription = broker.subscribe(QUEUE_NAME);
+		byte[] body = subscription.receive(0, TimeUnit.SECONDS);
+		assertEquals(0, broker.getUnacknowledgedCount(QUEUE_NAME));
+
+		// when
+		subscription.fail(body, new IllegalStateException());
+		subscription.complete(body, null);
+
+		// then
+		assertEquals(0, broker.getDepth(QUEUE_NAME));
+		assertEquals(0, broker.getRedeliveryCount(QUEUE_NAME));
+
+	}
+
+	@Test
+	public void complete_shouldForwardTheOutgoingMessage() throws Exception {
+
+		// given
+		InMemoryBroker broker = new InMemoryBroker();
+		broker.send(QUEUE_NAME, new byte[] { 1 });
+		broker.send(QUEUE_NAME, new byte[] { 2 });
+
+		IMessageSource subscription = broker.subscribe(createQueueable(QUEUE_NAME), createQueueable(OUTGOING_QUEUE_NAME));
+
+		// when
+		subscription.complete(subscription.receive(0, TimeUnit.SECONDS), new byte[] { 3 });
+		subscription.complete(subscription.receive(0, TimeUnit.SECONDS), null);
+
+		// then
+		assertEquals(1, broker.getDepth(OUTGOING_QUEUE_NAME));
+		assertArrayEquals(new byte[] { 3 }, broker.subscribe(OUTGOING_QUEUE_NAME).receive(0, TimeUnit.SECONDS));
+
+	}
+
+	@Test
+	public void complete_shouldNotForwardTheOutgoingMessageIfThereIsNoPublisher() throws Exception {
+
+		// given
+		InMemoryBroker broker = new InMemoryBroker();
+		broker.send(QUEUE_NAME, new byte[] { 1 });
+
+		IMessageSource subscription = broker.subscribe(createQueueable(QUEUE_NAME), null);
+
+		// when
+		subscription.complete(subscription.receive(0, TimeUnit.SECONDS), new byte[] { 3 });
+
+		// then
+		assertEquals(0, broker.getDepth(OUTGOING_QUEUE_NAME));
+		assertEquals(0, broker.getUnacknowledgedCount(QUEUE_NAME));
+
+	}
+
+	@Test
+	public void complete_shouldRedeliverTheMessageIfInterruptedWhileForwarding() throws Exception {
+
+		// given
+		InMemoryBroker broker = new InMemoryBroker(1, 1, AcknowledgeMode.MANUAL);
+		broker.send(QUEUE_NAME, new byte[] { 1 });
+		broker.send(OUTGOING_QUEUE_NAME, new byte[] { 2 });
+
+		IMessageSource subscription = broker.subscribe(QUEUE_NAME, OUTGOING_QUEUE_NAME);
+		byte[] body = subscription.receive(0, TimeUnit.SECONDS);
+
+		// when
+		Thread.currentThread().interrupt();
+		subscription.complete(body, new byte[] { 3 });
+
+		// then
+		assertTrue(Thread.interrupted());
+		assertEquals(1, broker.getRedeliveryCount(QUEUE_NAME));
+		assertEquals(1, broker.getDepth(QUEUE_NAME));
+		assertEquals(1, broker.getDepth(OUTGOING_QUEUE_NAME));
+
+	}
+
+	@Test
+	public void receive_shouldReleaseThePrefetchIfInterruptedWhileWaiting() throws Exception {
+
+		// given
+		InMemoryBroker broker = new InMemoryBroker(1, 1, AcknowledgeMode.MANUAL);
+		IMessageSource subscription = broker.subscribe(QUEUE_NAME);
+
+		AtomicReference<Thread> receiver = new AtomicReference<>();
+		CompletableFuture<byte[]> received = CompletableFuture.supplyAsync(() -> {
+			receiver.set(Thread.currentThread());
+			try {
+				return subscription.receive(1, TimeUnit.MINUTES);
+			} catch (InterruptedException ex) {
+				throw new IllegalStateException(ex);
+			}
+		});
+
+		// when
+		while (receiver.get() == null || receiver.get().getState() != Thread.State.TIMED_WAITING) {
+			Thread.sleep(1);
+		}
+		receiver.get().interrupt();
+
+		// then
+		try {
+			received.get();
+		} catch (ExecutionException ex) {
+			assertTrue(ex.getCause().getCause() instanceof InterruptedException);
+		}
+
+		broker.send(QUEUE_NAME, new byte[] { 1 });
+		assertArrayEquals(new byte[] { 1 }, subscription.receive(0, TimeUnit.SECONDS));
+
+	}
+
+	@Test
+	public void subscribe_shouldRunAChainOfConsumersWithAConsumerRuntime() throws Exception {
+
+		// given
+		InMemoryBroker broker = new InMemoryBroker();
+
+		IConsumer first = createConsumer(QUEUE_NAME);
+		when(first.consume(any(byte[].class))).thenAnswer(invocation -> {
+			byte[] body = invocation.getArgument(0);
+			return new byte[] { (byte) (body[0] + 1) };
+		});
+
+		IConsumer second = createConsumer(OUTGOING_QUEUE_NAME);
+
+		for (int i = 0; i < 10; i++) {
+			broker.send(first, new byte[] { (byte) i });
+		}
+
+		// when
+		try (ConsumerRuntime runtime = new ConsumerRuntime(WorkerPool.PLATFORM, 10, TimeUnit.MILLISECONDS)) {
+
+			runtime.register(first, broker.subscribe(first, createQueueable(OUTGOING_QUEUE_NAME)), 2);
+			runtime.register(second, broker.subscribe(second, null), 2);
+			runtime.start();
+
+			// then
+			long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+			while (runtime.getStatistics(OUTGOING_QUEUE_NAME).getMessageCount() < 10 && System.nanoTime() < deadline) {
+				Thread.sleep(1);
+			}
+
+			assertEquals(10, runtime.getStatistics(QUEUE_NAME).getMessageCount());
+			assertEquals(10, runtime.getStatistics(OUTGOING_QUEUE_NAME).getMessageCount());
+
+		}
+
+	}
+
+	@Test
+	public void getDepth_shouldReturnZeroForAnUnknownQueue() {
+
+		// given
+		InMemoryBroker broker = new InMemoryBroker();
+
+		// then
+		assertEquals(0, broker.getDepth(QUEUE_NAME));
+		assertEquals(0, broker.getUnacknowledgedCount(QUEUE_NAME));
+		assertEquals(0, broker.getRedeliveryCount(QUEUE_NAME));
+
+	}
+
+	@Test
+	public void constructor_shouldUseTheDefaults() {
+
+		// when
+		InMemoryBroker broker = new InMemoryBroker();
+
+		// then
+		assertEquals(InMemoryBroker.DEFAULT_CAPACITY, broker.getCapacity());
+		assertEquals(InMemoryBroker.DEFAULT_PREFETCH, broker.getPrefetch());
+		assertEquals(AcknowledgeMode.MANUAL, broker.getAcknowledgeMode());
+
+	}
+
+	@Test
+	public void constructor_throwsIllegalArgumentExceptionForACapacityLessThanOne() {
+
+		// expect
+		exception.expect(IllegalArgumentException.class);
+		exception.expectMessage("The capacity must be at least 1");
+
+		// when
+		new InMemoryBroker(0, 1, AcknowledgeMode.AUTO);
+
+	}
+
+	@Test
+	public void constructor_throwsIllegalArgumentExceptionForAPrefetchLessThanOne() {
+
+		// expect
+		exception.expect(IllegalArgumentException.class);
+		exception.expectMessage("The prefetch count must be at least 1");
+
+		// when
+		new InMemoryBroker(1, 0, AcknowledgeMode.AUTO);
+
+	}
+
+	@Test
+	public void send_throwsNullPointerExceptionForANullBody() throws Exception {
+
+		// expect
+		exception.expect(NullPointerException.class);
+		exception.expectMessage("body");
+
+		// when
+		new InMemoryBroker().send(QUEUE_NAME, null);
+
+	}
+
+	private IQueueable createQueueable(String queueName) {
+		return () -> queueName;
+	}
+
+	private IConsumer createConsumer(String queueName) {
+		IConsumer consumer = mock(IConsumer.class);
+		when(consumer.getQueueName()).thenReturn(queueName);
+		return consumer;
+	}
+
+}
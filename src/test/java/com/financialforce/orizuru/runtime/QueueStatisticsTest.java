@@ -0,0 +1,77 @@
+/**
+ * Copyright (c) 2017-2018, FinancialForce.com, inc
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ *   are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ *      this list of conditions and the following disclaimer in the documentation
+ *      and/or other materials provided with the distribution.
+ * - Neither the name of the FinancialForce.com, inc nor the names of its contributors
+ *      may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ *  OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL
+ *  THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ *  EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ *  OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY
+ *  OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ **/
+
+package com.financialforce.orizuru.runtime;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class QueueStatisticsTest {
+
+	@Test
+	public void constructor_shouldCreateEmptyStatistics() {
+
+		// when
+		QueueStatistics statistics = new QueueStatistics("testQueue");
+
+		// then
+		assertEquals("testQueue", statistics.getQueueName());
+		assertEquals(0, statistics.getMessageCount());
+		assertEquals(0, statistics.getMeanLatency());
+		assertEquals(0, statistics.getMaximumLatency());
+		assertEquals(0, statistics.getThroughput(), 0);
+
+	}
+
+	@Test
+	public void recordCompleted_shouldUpdateTheCountsAndLatencies() {
+
+		// given
+		QueueStatistics statistics = new QueueStatistics("testQueue");
+		statistics.start();
+		statistics.recordStarted();
+		statistics.recordStarted();
+		statistics.recordStarted();
+
+		// when
+		statistics.recordCompleted(100, false);
+		statistics.recordCompleted(300, true);
+		statistics.recordReceiveFailure();
+
+		// then
+		assertEquals(2, statistics.getMessageCount());
+		assertEquals(1, statistics.getFailureCount());
+		assertEquals(1, statistics.getReceiveFailureCount());
+		assertEquals(1, statistics.getInFlightCount());
+		assertEquals(200, statistics.getMeanLatency());
+		assertEquals(300, statistics.getMaximumLatency());
+		assertTrue(statistics.getThroughput() > 0);
+
+	}
+
+}
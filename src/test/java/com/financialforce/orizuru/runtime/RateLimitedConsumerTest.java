@@ -0,0 +1,267 @@
+/**
+ * Copyright (c) 2017-2018, FinancialForce.com, inc
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ *   are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ *      this list of conditions and the following disclaimer in the documentation
+ *      and/or other materials provided with the distribution.
+ * - Neither the name of the FinancialForce.com, inc nor the names of its contributors
+ *      may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ *  OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL
+ *  THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ *  EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ *  OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY
+ *  OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ **/
+
+package com.financialforce.orizuru.runtime;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.hamcrest.core.IsInstanceOf;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import com.financialforce.orizuru.exception.consumer.OrizuruConsumerException;
+import com.financialforce.orizuru.exception.consumer.handler.HandleMessageException;
+import com.financialforce.orizuru.interfaces.IConsumer;
+
+public class RateLimitedConsumerTest {
+
+	private static final String QUEUE_NAME = "testQueue";
+
+	@Rule
+	public final ExpectedException exception = ExpectedException.none();
+
+	@Test
+	public void constructor_shouldThrowAnIllegalArgumentExceptionIfTheMaximumWaitIsNegative() {
+
+		// expect
+		exception.expect(IllegalArgumentException.class);
+		exception.expectMessage("The maximum wait must not be negative");
+
+		// when
+		new RateLimitedConsumer(createConsumer(), new RateLimiter(1, 1, 1), -1, TimeUnit.SECONDS);
+
+	}
+
+	@Test
+	public void consume_shouldPassTheMessageToTheConsumerAndReleaseThePermit() throws Exception {
+
+		// given
+		IConsumer consumer = createConsumer();
+		when(consumer.consume(any(byte[].class))).thenReturn(new byte[] { 2 });
+
+		RateLimiter rateLimiter = new RateLimiter(1, RateLimiter.UNLIMITED_RATE, 1);
+
+		// when
+		byte[] outgoingMessage = new RateLimitedConsumer(consumer, rateLimiter).consume(new byte[] { 1 });
+
+		// then
+		assertArrayEquals(new byte[] { 2 }, outgoingMessage);
+		assertEquals(1, rateLimiter.getAvailablePermits());
+
+	}
+
+	@Test
+	public void consume_shouldReleaseThePermitIfTheConsumerFails() throws Exception {
+
+		// expect
+		exception.expect(HandleMessageException.class);
+
+		// given
+		IConsumer consumer = createConsumer();
+		when(consumer.consume(any(byte[].class))).thenThrow(new HandleMessageException(new NullPointerException()));
+
+		RateLimiter rateLimiter = new RateLimiter(1, RateLimiter.UNLIMITED_RATE, 1);
+
+		// when
+		try {
+			new RateLimitedConsumer(consumer, rateLimiter).consume(new byte[] { 1 });
+		} finally {
+			assertEquals(1, rateLimiter.getAvailablePermits());
+		}
+
+	}
+
+	@Test
+	public void consume_throwsOrizuruConsumerExceptionIfThePermitIsNotAcquiredWithinTheMaximumWait() throws Exception {
+
+		// expect
+		exception.expect(OrizuruConsumerException.class);
+		exception.expectMessage("Timed out waiting for the rate limit");
+		exception.expectCause(IsInstanceOf.<Throwable>instanceOf(TimeoutException.class));
+
+		// given
+		IConsumer consumer = createConsumer();
+
+		RateLimiter rateLimiter = new RateLimiter(1, RateLimiter.UNLIMITED_RATE, 1);
+		rateLimiter.acquire(1, 0, TimeUnit.SECONDS);
+
+		// when
+		new RateLimitedConsumer(consumer, rateLimiter, 10, TimeUnit.MILLISECONDS).consume(new byte[] { 1 });
+
+	}
+
+	@Test
+	public void consume_throwsOrizuruConsumerExceptionIfInterruptedWaitingForAPermit() throws Exception {
+
+		// expect
+		exception.expect(OrizuruConsumerException.class);
+		exception.expectMessage("Interrupted waiting for the rate limit");
+		exception.expectCause(IsInstanceOf.<Throwable>instanceOf(InterruptedException.class));
+
+		// given
+		IConsumer consumer = createConsumer();
+
+		RateLimiter rateLimiter = new RateLimiter(1, RateLimiter.UNLIMITED_RATE, 1);
+		rateLimiter.acquire(1, 0, TimeUnit.SECONDS);
+
+		Thread.currentThread().interrupt();
+
+		// when
+		try {
+			new RateLimitedConsumer(consumer, rateLimiter).consume(new byte[] { 1 });
+		} finally {
+			assertTrue(Thread.interrupted());
+			verifyZeroInteractions(consumer);
+		}
+
+	}
+
+	@Test
+	public void consumeBuffer_shouldPassTheMessageToTheConsumerAndReleaseThePermit() throws Exception {
+
+		// given
+		IConsumer consumer = createConsumer();
+		when(consumer.consumeBuffer(any(ByteBuffer.class))).thenReturn(ByteBuffer.wrap(new byte[] { 2 }));
+
+		RateLimiter rateLimiter = new RateLimiter(1, RateLimiter.UNLIMITED_RATE, 1);
+
+		// when
+		ByteBuffer outgoingMessage = new RateLimitedConsumer(consumer, rateLimiter).consumeBuffer(ByteBuffer.wrap(new byte[] { 1 }));
+
+		// then
+		assertEquals(ByteBuffer.wrap(new byte[] { 2 }), outgoingMessage);
+		assertEquals(1, rateLimiter.getAvailablePermits());
+
+	}
+
+	@Test
+	public void consumeBuffer_shouldReleaseThePermitIfTheConsumerFails() throws Exception {
+
+		// expect
+		exception.expect(HandleMessageException.class);
+
+		// given
+		IConsumer consumer = createConsumer();
+		when(consumer.consumeBuffer(any(ByteBuffer.class))).thenThrow(new HandleMessageException(new NullPointerException()));
+
+		RateLimiter rateLimiter = new RateLimiter(1, RateLimiter.UNLIMITED_RATE, 1);
+
+		// when
+		try {
+			new RateLimitedConsumer(consumer, rateLimiter).consumeBuffer(ByteBuffer.wrap(new byte[] { 1 }));
+		} finally {
+			assertEquals(1, rateLimiter.getAvailablePermits());
+		}
+
+	}
+
+	@Test
+	public void consumeBatch_shouldReleaseThePermitIfTheConsumerFails() throws Exception {
+
+		// expect
+		exception.expect(HandleMessageException.class);
+
+		// given
+		List<byte[]> bodies = Arrays.asList(new byte[] { 1 }, new byte[] { 2 });
+
+		IConsumer consumer = createConsumer();
+		when(consumer.consumeBatch(bodies)).thenThrow(new HandleMessageException(new NullPointerException()));
+
+		RateLimiter rateLimiter = new RateLimiter(1, RateLimiter.UNLIMITED_RATE, 1);
+
+		// when
+		try {
+			new RateLimitedConsumer(consumer, rateLimiter).consumeBatch(bodies);
+		} finally {
+			assertEquals(1, rateLimiter.getAvailablePermits());
+		}
+
+	}
+
+	@Test
+	public void consumeBatch_shouldTakeATokenForEachMessage() throws Exception {
+
+		// given
+		List<byte[]> bodies = Arrays.asList(new byte[] { 1 }, new byte[] { 2 }, new byte[] { 3 });
+
+		IConsumer consumer = createConsumer();
+		when(consumer.consumeBatch(bodies)).thenReturn(bodies);
+
+		RateLimiter rateLimiter = new RateLimiter(1, 1, 3);
+
+		// when
+		List<byte[]> outgoingMessages = new RateLimitedConsumer(consumer, rateLimiter).consumeBatch(bodies);
+
+		// then
+		assertSame(bodies, outgoingMessages);
+		assertEquals(0, rateLimiter.getAvailableTokens(), 0.1);
+		verify(consumer, times(1)).consumeBatch(bodies);
+
+	}
+
+	@Test
+	public void wrap_shouldApplyTheLimiterConfiguredForTheQueue() {
+
+		// given
+		IConsumer consumer = createConsumer();
+		RateLimiter rateLimiter = new RateLimiter(1, 1, 1);
+
+		// when
+		IConsumer limited = RateLimitedConsumer.wrap(consumer, Collections.singletonMap(QUEUE_NAME, rateLimiter));
+		IConsumer unlimited = RateLimitedConsumer.wrap(consumer, Collections.singletonMap("otherQueue", rateLimiter));
+
+		// then
+		assertSame(consumer, unlimited);
+		assertSame(rateLimiter, ((RateLimitedConsumer) limited).getRateLimiter());
+		assertSame(consumer, ((RateLimitedConsumer) limited).getConsumer());
+		assertEquals(QUEUE_NAME, limited.getQueueName());
+
+	}
+
+	private IConsumer createConsumer() {
+		IConsumer consumer = mock(IConsumer.class);
+		when(consumer.getQueueName()).thenReturn(QUEUE_NAME);
+		return consumer;
+	}
+
+}
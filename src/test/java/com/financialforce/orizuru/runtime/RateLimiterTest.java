@@ -0,0 +1,225 @@
+/**
+ * Copyright (c) 2017-2018, FinancialForce.com, inc
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ *   are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ *      this list of conditions and the following disclaimer in the documentation
+ *      and/or other materials provided with the distribution.
+ * - Neither the name of the FinancialForce.com, inc nor the names of its contributors
+ *      may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ *  OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL
+ *  THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ *  EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ *  OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY
+ *  OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ **/
+
+package com.financialforce.orizuru.runtime;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+public class RateLimiterTest {
+
+	@Rule
+	public final ExpectedException exception = ExpectedException.none();
+
+	@Test
+	public void constructor_shouldThrowAnIllegalArgumentExceptionIfTheRateIsNotPositive() {
+
+		// expect
+		exception.expect(IllegalArgumentException.class);
+		exception.expectMessage("The rate must be positive");
+
+		// when
+		new RateLimiter(1, 0, 1);
+
+	}
+
+	@Test
+	public void constructor_shouldThrowAnIllegalArgumentExceptionIfTheMaximumInFlightIsLessThanOne() {
+
+		// expect
+		exception.expect(IllegalArgumentException.class);
+		exception.expectMessage("The maximum in flight must be at least 1");
+
+		// when
+		new RateLimiter(0, 1, 1);
+
+	}
+
+	@Test
+	public void constructor_shouldThrowAnIllegalArgumentExceptionIfTheBurstSizeIsLessThanOne() {
+
+		// expect
+		exception.expect(IllegalArgumentException.class);
+		exception.expectMessage("The burst size must be at least 1");
+
+		// when
+		new RateLimiter(1, 1, 0);
+
+	}
+
+	@Test
+	public void constructor_shouldSetTheLimits() {
+
+		// when
+		RateLimiter rateLimiter = new RateLimiter(2, 3, 4);
+
+		// then
+		assertEquals(2, rateLimiter.getMaximumInFlight());
+		assertEquals(3, rateLimiter.getMessagesPerSecond(), 0);
+		assertEquals(4, rateLimiter.getBurstSize());
+
+	}
+
+	@Test
+	public void acquire_shouldLimitTheMessagesInFlight() throws Exception {
+
+		// given
+		RateLimiter rateLimiter = new RateLimiter(2, RateLimiter.UNLIMITED_RATE, 1);
+
+		// when
+		boolean first = rateLimiter.acquire(1, 0, TimeUnit.SECONDS);
+		boolean second = rateLimiter.acquire(1, 0, TimeUnit.SECONDS);
+		boolean third = rateLimiter.acquire(1, 10, TimeUnit.MILLISECONDS);
+
+		// then
+		assertTrue(first);
+		assertTrue(second);
+		assertFalse(third);
+		assertEquals(0, rateLimiter.getAvailablePermits());
+		assertEquals(1, rateLimiter.getTimeoutCount());
+		assertTrue(rateLimiter.getMaximumWaitTime() >= TimeUnit.MILLISECONDS.toNanos(10));
+		assertTrue(rateLimiter.getTotalWaitTime() >= rateLimiter.getMaximumWaitTime());
+
+		rateLimiter.release();
+		assertTrue(rateLimiter.acquire(1, 0, TimeUnit.SECONDS));
+
+	}
+
+	@Test
+	public void acquire_shouldAllowABurstAndThenWaitForTokens() throws Exception {
+
+		// given
+		RateLimiter rateLimiter = new RateLimiter(RateLimiter.UNLIMITED_IN_FLIGHT, 100, 2);
+		rateLimiter.acquire(1, 0, TimeUnit.SECONDS);
+		rateLimiter.acquire(1, 0, TimeUnit.SECONDS);
+		rateLimiter.acquire(1, 0, TimeUnit.SECONDS);
+
+		// when
+		boolean immediate = rateLimiter.acquire(1, 0, TimeUnit.SECONDS);
+		boolean waited = rateLimiter.acquire(1, 1, TimeUnit.SECONDS);
+
+		// then
+		assertFalse(immediate);
+		assertTrue(waited);
+		assertEquals(1, rateLimiter.getTimeoutCount());
+		assertEquals(2, rateLimiter.getWaitCount());
+		assertTrue(rateLimiter.getMaximumWaitTime() >= TimeUnit.MILLISECONDS.toNanos(5));
+
+	}
+
+	@Test
+	public void acquire_shouldGrantALargeRequestAndMakeTheNextRequestWait() throws Exception {
+
+		// given
+		RateLimiter rateLimiter = new RateLimiter(RateLimiter.UNLIMITED_IN_FLIGHT, 10, 1);
+
+		// when
+		boolean batch = rateLimiter.acquire(11, 0, TimeUnit.SECONDS);
+		boolean next = rateLimiter.acquire(1, 100, TimeUnit.MILLISECONDS);
+
+		// then
+		assertTrue(batch);
+		assertFalse(next);
+		assertTrue(rateLimiter.getAvailableTokens() < -9);
+
+	}
+
+	@Test
+	public void acquire_shouldReleaseThePermitIfTheTokensAreNotAvailableInTime() throws Exception {
+
+		// given
+		RateLimiter rateLimiter = new RateLimiter(1, 1, 1);
+		rateLimiter.acquire(2, 0, TimeUnit.SECONDS);
+		rateLimiter.release();
+
+		// when
+		boolean acquired = rateLimiter.acquire(1, 10, TimeUnit.MILLISECONDS);
+
+		// then
+		assertFalse(acquired);
+		assertEquals(1, rateLimiter.getAvailablePermits());
+
+	}
+
+	@Test
+	public void acquire_shouldReleaseThePermitIfInterruptedWaitingForTokens() throws Exception {
+
+		// expect
+		exception.expect(InterruptedException.class);
+
+		// given
+		RateLimiter rateLimiter = new RateLimiter(1, 1, 1);
+		rateLimiter.acquire(2, 0, TimeUnit.SECONDS);
+		rateLimiter.release();
+
+		Thread.currentThread().interrupt();
+
+		// when
+		try {
+			rateLimiter.acquire(1, 10, TimeUnit.SECONDS);
+		} finally {
+			assertFalse(Thread.interrupted());
+			assertEquals(1, rateLimiter.getAvailablePermits());
+		}
+
+	}
+
+	@Test
+	public void getAvailableTokens_shouldRefillUpToTheBurstSize() throws Exception {
+
+		// given
+		RateLimiter rateLimiter = new RateLimiter(1, 1000, 3);
+		rateLimiter.acquire(1, 0, TimeUnit.SECONDS);
+		rateLimiter.release();
+
+		// when
+		Thread.sleep(20);
+
+		// then
+		assertEquals(3, rateLimiter.getAvailableTokens(), 0);
+		assertEquals(0, rateLimiter.getMeanWaitTime());
+
+	}
+
+	@Test
+	public void getAvailableTokens_shouldReturnInfinityForAnUnlimitedRate() {
+
+		// given
+		RateLimiter rateLimiter = new RateLimiter(1, RateLimiter.UNLIMITED_RATE, 1);
+
+		// expect
+		assertEquals(Double.POSITIVE_INFINITY, rateLimiter.getAvailableTokens(), 0);
+
+	}
+
+}
@@ -0,0 +1,150 @@
+/**
+ * Copyright (c) 2017-2018, FinancialForce.com, inc
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ *   are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ *      this list of conditions and the following disclaimer in the documentation
+ *      and/or other materials provided with the distribution.
+ * - Neither the name of the FinancialForce.com, inc nor the names of its contributors
+ *      may be used to endorse or promote products derived from this software without
+ *      specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ *  OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL
+ *  THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ *  EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ *  OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY
+ *  OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *  ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ **/
+
+package com.financialforce.orizuru.runtime;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeFalse;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.hamcrest.core.IsInstanceOf;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+public class WorkerPoolTest {
+
+	@Rule
+	public final ExpectedException exception = ExpectedException.none();
+
+	@Test
+	public void newExecutor_shouldCreateDaemonPlatformThreads() throws Exception {
+
+		// given
+		ExecutorService executor = WorkerPool.PLATFORM.newExecutor(2);
+
+		// when
+		Thread thread = executor.submit(Thread::currentThread).get();
+
+		// then
+		assertTrue(thread.isDaemon());
+		assertEquals("orizuru-worker-1", thread.getName());
+
+		executor.shutdown();
+
+	}
+
+	@Test
+	public void newExecutor_shouldCreateAForkJoinPool() throws Exception {
+
+		// when
+		ExecutorService executor = WorkerPool.FORK_JOIN.newExecutor(3);
+
+		// then
+		assertTrue(executor instanceof ForkJoinPool);
+		assertEquals(3, ((ForkJoinPool) executor).getParallelism());
+
+		executor.shutdown();
+
+	}
+
+	@Test
+	public void newExecutor_throwsUnsupportedOperationExceptionIfVirtualThreadsAreNotAvailable() throws Exception {
+
+		assumeFalse(WorkerPool.VIRTUAL.isAvailable());
+
+		// expect
+		exception.expect(UnsupportedOperationException.class);
+		exception.expectMessage("The VIRTUAL worker pool is not available in this Java runtime");
+
+		// when
+		WorkerPool.VIRTUAL.newExecutor(1);
+
+	}
+
+	@Test
+	public void getDefault_shouldPreferVirtualThreads() {
+
+		// when
+		WorkerPool workerPool = WorkerPool.getDefault();
+
+		// then
+		assertEquals(WorkerPool.VIRTUAL.isAvailable() ? WorkerPool.VIRTUAL : WorkerPool.PLATFORM, workerPool);
+		assertTrue(WorkerPool.PLATFORM.isAvailable());
+		assertTrue(WorkerPool.FORK_JOIN.isAvailable());
+
+	}
+
+	@Test
+	public void findFactory_shouldReturnNullForAMissingMethod() {
+
+		// when
+		assertNull(WorkerPool.findFactory(Executors.class, "missing"));
+		assertNotNull(WorkerPool.findFactory(Executors.class, "newCachedThreadPool"));
+		assertNull(WorkerPool.reflectiveFactory(null));
+
+	}
+
+	@Test
+	public void reflectiveFactory_shouldCreateTheExecutor() throws Exception {
+
+		// when
+		ExecutorService executor = WorkerPool.reflectiveFactory(Executors.class.getMethod("newCachedThreadPool")).apply(1);
+
+		// then
+		assertFalse(executor.isShutdown());
+
+		executor.shutdown();
+		assertTrue(executor.awaitTermination(1, TimeUnit.SECONDS));
+
+	}
+
+	@Test
+	public void invokeFactory_throwsIllegalStateExceptionIfTheFactoryFails() throws Exception {
+
+		// expect
+		exception.expect(IllegalStateException.class);
+		exception.expectMessage("Failed to create the executor");
+		exception.expectCause(IsInstanceOf.<Throwable>instanceOf(ReflectiveOperationException.class));
+
+		// when
+		WorkerPool.invokeFactory(WorkerPoolTest.class.getMethod("failingFactory"));
+
+	}
+
+	public static ExecutorService failingFactory() {
+		throw new IllegalStateException();
+	}
+
+}
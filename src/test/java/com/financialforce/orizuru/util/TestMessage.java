@@ -32,6 +32,9 @@ import org.apache.avro.Schema;
 public class TestMessage extends org.apache.avro.specific.SpecificRecordBase
 		implements org.apache.avro.specific.SpecificRecord {
 
+	public static final Schema SCHEMA$ = new Schema.Parser().parse(
+			"{\"type\":\"record\",\"name\":\"TestMessage\",\"namespace\":\"com.financialforce.orizuru.util\",\"fields\":[{\"name\":\"name\",\"type\":\"string\"}]}");
+
 	private CharSequence name;
 
 	public TestMessage() {
@@ -39,8 +42,7 @@ public class TestMessage extends org.apache.avro.specific.SpecificRecordBase
 
 	@Override
 	public Schema getSchema() {
-		return new Schema.Parser().parse(
-				"{\"type\":\"record\",\"name\":\"TestMessage\",\"namespace\":\"com.financialforce.orizuru.util\",\"fields\":[{\"name\":\"name\",\"type\":\"string\"}]}");
+		return SCHEMA$;
 	}
 
 	public CharSequence getName() {